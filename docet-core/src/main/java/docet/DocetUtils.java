@@ -25,6 +25,9 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.logging.Logger;
 
 import org.jsoup.Jsoup;
@@ -36,6 +39,9 @@ import docet.model.DocetPackageDescriptor;
 import io.netty.util.internal.PlatformDependent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jsoup.safety.Cleaner;
 import org.jsoup.safety.Safelist;
 
 
@@ -75,6 +81,7 @@ public final class DocetUtils {
                 packageDesc.addfallbackLangForLang(lang, fallbackLang);
             }
         }
+        packageDesc.setIconAvailable(Files.isRegularFile(pathToPackage.resolve("icon.png")));
         return packageDesc;
     }
 
@@ -139,6 +146,22 @@ public final class DocetUtils {
 
 
     public static String cleanPageText(final String dirtyPageText, boolean enableIframe) {
+        return Jsoup.clean(dirtyPageText, newPageSafelist(enableIframe));//.replaceAll("<img ([^</]+)>", "<img $1 />");
+    }
+
+    /**
+     * Clean the given page text as {@link #cleanPageText(String, boolean)} does, returning the cleaned document
+     * instead of its body serialized to text.
+     *
+     * @param dirtyPageText the page text to be cleaned
+     * @param enableIframe true to keep iframes
+     * @return a new document holding the cleaned page in its body
+     */
+    public static Document cleanPage(final String dirtyPageText, boolean enableIframe) {
+        return new Cleaner(newPageSafelist(enableIframe)).clean(Jsoup.parseBodyFragment(dirtyPageText));
+    }
+
+    private static Safelist newPageSafelist(boolean enableIframe) {
         final Safelist safeList = Safelist.relaxed();
         if (enableIframe) {
             safeList.addTags("iframe");
@@ -148,7 +171,7 @@ public final class DocetUtils {
         safeList.removeProtocols("a", "href", "ftp", "http", "https", "mailto");
         safeList.removeProtocols("img", "src", "http", "https");
         safeList.preserveRelativeLinks(true);
-        return Jsoup.clean(dirtyPageText, safeList);//.replaceAll("<img ([^</]+)>", "<img $1 />");
+        return safeList;
     }
 
     /**
@@ -177,6 +200,47 @@ public final class DocetUtils {
         };
     }
     
+    /**
+     * Compute a fingerprint of the contents of the given directory, changing as soon as any file below it is added,
+     * removed or modified. Files are not read, their path, size and last modification time are considered.
+     *
+     * @return the fingerprint as an hex string
+     */
+    public static String computeDirectoryFingerprint(final Path dir) throws IOException {
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        final List<String> entries = new ArrayList<>();
+        for (final Path file : files) {
+            entries.add(dir.relativize(file).toString());
+            entries.add(Long.toString(Files.size(file)));
+            entries.add(Long.toString(Files.getLastModifiedTime(file).toMillis()));
+        }
+        return sha256Hex(entries);
+    }
+
+    /**
+     * @return the SHA-256 digest, as an hex string, of the given values
+     */
+    public static String sha256Hex(final List<String> values) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+        for (final String value : values) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        final StringBuilder res = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            res.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return res.toString();
+    }
+
     public static boolean extensionAllowed(String extension) {
         List<String> forbiddenExtensions = new ArrayList<>();
         
@@ -0,0 +1,210 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ScoreDoc;
+
+import docet.DocetLanguage;
+import docet.error.DocetDocumentSearchException;
+import docet.model.DocetPackageDescriptor;
+
+/**
+ * Document searcher adopted for tiny packages: pages are searched through a {@link CompactSearchIndex} kept on heap
+ * rather than through a Lucene reader, hence no directory nor file handle stays open for the package. Results are
+ * the same as the ones of {@link SimpleDocetDocSearcher}, which is still adopted for the languages lacking a compact
+ * index and for suggestions.
+ *
+ */
+public class CompactDocetDocSearcher extends SimpleDocetDocSearcher {
+
+    private static final Logger LOGGER = Logger.getLogger(CompactDocetDocSearcher.class.getName());
+
+    private final ReentrantLock compactLock;
+    private final Path searchIndexPath;
+    private final DocetPackageDescriptor descriptor;
+    private final DocetSearchFuzzyStrategy fuzzyStrategy;
+    private final int fuzzyFallbackMinHits;
+    private final DocetSearchLimits limits;
+    private final Map<String, Optional<CompactSearchIndex>> compactIndexes;
+
+    public CompactDocetDocSearcher(final Path searchIndexPath, final DocetPackageDescriptor descriptor,
+        final DocetSearchFuzzyStrategy fuzzyStrategy, final int fuzzyFallbackMinHits, final DocetSearchLimits limits) {
+        super(searchIndexPath, descriptor, fuzzyStrategy, fuzzyFallbackMinHits, DocetSearchIndexDirectoryType.FS, 0,
+            false, limits);
+        this.compactLock = new ReentrantLock(true);
+        this.searchIndexPath = searchIndexPath;
+        this.descriptor = descriptor;
+        this.fuzzyStrategy = fuzzyStrategy;
+        this.fuzzyFallbackMinHits = fuzzyFallbackMinHits;
+        this.limits = limits;
+        this.compactIndexes = new HashMap<>();
+    }
+
+    /**
+     * A package can be searched through compact indexes only in case the plugin wrote one for every language
+     * holding pages, none of them exceeding the given no. of pages.
+     *
+     * @param searchIndexPath the search index of the package
+     * @param maxDocs max no. of pages of each language
+     * @return true if the package is tiny enough to be searched through compact indexes
+     */
+    public static boolean isApplicable(final Path searchIndexPath, final int maxDocs) {
+        if (maxDocs <= 0) {
+            return false;
+        }
+        boolean found = false;
+        try {
+            for (final DocetLanguage lang : DocetLanguage.values()) {
+                final Path compactIndexPath = CompactSearchIndex.resolveCompactIndexPath(searchIndexPath,
+                    lang.toString());
+                if (Files.isRegularFile(compactIndexPath)) {
+                    if (CompactSearchIndex.readNumDocs(compactIndexPath) > maxDocs) {
+                        return false;
+                    }
+                    found = true;
+                } else if (Files.isDirectory(searchIndexPath.resolve(lang.toString()))) {
+                    return false;
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Compact search index of " + searchIndexPath + " cannot be read", ex);
+            return false;
+        }
+        return found;
+    }
+
+    @Override
+    public DocetSearchHits searchForMatchingHits(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchCursor after, final DocetSearchStatistics statistics) throws DocetDocumentSearchException {
+        final String actualSearchLang = this.getActualSearchLang(lang);
+        final CompactSearchIndex index;
+        try {
+            index = this.getCompactIndexForLang(actualSearchLang);
+        } catch (IOException ex) {
+            throw new DocetDocumentSearchException("Error on searching query " + searchText + " for lang "
+                                                        + actualSearchLang, ex);
+        }
+        if (index == null) {
+            return super.searchForMatchingHits(searchText, lang, maxNumResults, after, statistics);
+        }
+        final long deadline = this.limits.computeDeadline();
+        final String limitedSearchText = this.limits.limitSearchText(searchText);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        try {
+            final Analyzer analyzer = new AnalyzerBuilder().language(actualSearchLang).build();
+            final String field = LUCENE_QUERY_CONTENT_PREFIX + actualSearchLang;
+            final QueryParser queryParser = new QueryParser(field, analyzer);
+            final DocetSearchHits hits;
+            if (after == null) {
+                final SearchPass pass = searchWithFuzzyStrategy(queryParser, limitedSearchText, this.fuzzyStrategy,
+                    this.fuzzyFallbackMinHits, q -> index.search(q, null, maxNumResults, deadline, timedOut),
+                    statistics);
+                hits = new DocetSearchHits(null, index, pass.query, analyzer, field, pass.topDocs.scoreDocs,
+                    pass.topDocs.totalHits, 0, pass.topDocs.getMaxScore(), pass.fuzzy, deadline);
+            } else {
+                after.checkIndexVersion(index.getVersion());
+                if (after.doc < 0 || after.doc >= index.numDocs()) {
+                    throw new DocetDocumentSearchException("Search cursor out of range for query " + searchText);
+                }
+                final ScoreDoc afterDoc = new ScoreDoc(after.doc, after.score);
+                final SearchPass pass = searchAfterCursor(queryParser, limitedSearchText, after,
+                    q -> index.search(q, afterDoc, maxNumResults, deadline, timedOut), statistics);
+                hits = new DocetSearchHits(null, index, pass.query, analyzer, field, pass.topDocs.scoreDocs,
+                    pass.topDocs.totalHits, after.position, after.maxScore, pass.fuzzy, deadline);
+            }
+            if (timedOut.get()) {
+                LOGGER.log(Level.WARNING, "Search of query {0} for lang {1} on {2} ran out of its time budget, "
+                    + "returning partial results", new Object[]{searchText, actualSearchLang, this.searchIndexPath});
+                hits.markPartial();
+            }
+            return hits;
+        } catch (ParseException | IOException ex) {
+            throw new DocetDocumentSearchException("Error on searching query " + searchText + " for lang "
+                                                        + actualSearchLang, ex);
+        }
+    }
+
+    @Override
+    public boolean open(final String lang) throws IOException {
+        final boolean res = this.open();
+        if (this.getCompactIndexForLang(this.getActualSearchLang(lang)) == null) {
+            super.open(lang);
+        }
+        return res;
+    }
+
+    @Override
+    public boolean close() throws IOException {
+        try {
+            this.compactLock.lock();
+            this.compactIndexes.clear();
+        } finally {
+            this.compactLock.unlock();
+        }
+        return super.close();
+    }
+
+    private String getActualSearchLang(final String lang) {
+        final String fallbackLang = this.descriptor.getFallbackLangForLang(lang);
+        if (fallbackLang == null || fallbackLang.isEmpty()) {
+            return lang;
+        }
+        return fallbackLang;
+    }
+
+    /**
+     * Compact indexes are loaded lazily, once per language: null is returned for languages with no compact index.
+     */
+    private CompactSearchIndex getCompactIndexForLang(final String requestedLang) throws IOException {
+        final String lang = checkLanguage(requestedLang);
+        try {
+            this.compactLock.lock();
+            Optional<CompactSearchIndex> index = this.compactIndexes.get(lang);
+            if (index == null) {
+                final Path compactIndexPath = CompactSearchIndex.resolveCompactIndexPath(this.searchIndexPath, lang);
+                if (Files.isRegularFile(compactIndexPath)) {
+                    final long start = System.nanoTime();
+                    index = Optional.of(CompactSearchIndex.load(compactIndexPath));
+                    LOGGER.log(Level.FINE, "Loaded compact search index {0} with {1} documents in {2} ms",
+                        new Object[]{compactIndexPath, index.get().numDocs(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+                } else {
+                    index = Optional.empty();
+                }
+                this.compactIndexes.put(lang, index);
+            }
+            return index.orElse(null);
+        } finally {
+            this.compactLock.unlock();
+        }
+    }
+}
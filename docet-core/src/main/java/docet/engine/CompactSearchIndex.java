@@ -0,0 +1,679 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.ClassicSimilarity;
+import org.apache.lucene.store.InputStreamDataInput;
+
+/**
+ * Compact search index of a single language of a package, entirely kept on heap: postings are plain arrays of
+ * primitives and stored fields plain strings, so that tiny packages do not need a Lucene directory and reader.
+ * <p>
+ * The index is loaded from the compact-&lt;lang&gt;.dat file written by the maven plugin next to the Lucene index,
+ * which is a dump of the latter: documents hold the same analyzed terms, positions and norms, and queries are scored
+ * the same way {@link ClassicSimilarity} does, so that the same {@link org.apache.lucene.search.ScoreDoc}s are
+ * returned.
+ * <p>
+ * File layout, integers as Lucene vints:
+ * <pre>
+ * magic (int) version maxDoc numDocs numTerms
+ * numDocs x [id language title abstract (strings) doctype contents (string) norm (byte)]
+ * numTerms x [term (string) docFreq numPostings numPostings x [docDelta freq freq x positionDelta]]
+ * </pre>
+ *
+ */
+final class CompactSearchIndex {
+
+    static final String COMPACT_FILE_PREFIX = "compact-";
+    static final String COMPACT_FILE_EXTENSION = ".dat";
+    private static final int COMPACT_FILE_MAGIC = 0x44435831;
+    private static final int COMPACT_FILE_VERSION = 1;
+
+    /**
+     * Same as {@link FuzzyQuery#defaultMaxExpansions}, the max no. of terms a fuzzy term gets expanded into.
+     */
+    private static final int MAX_FUZZY_EXPANSIONS = 50;
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+    private static final ClassicSimilarity SIMILARITY = new ClassicSimilarity();
+
+    private final int maxDoc;
+    private final String[] ids;
+    private final String[] languages;
+    private final String[] titles;
+    private final String[] abstracts;
+    private final int[] docTypes;
+    private final String[] contents;
+    private final byte[] norms;
+    private final String[] terms;
+    private final Map<String, Integer> termOrds;
+    private final int[] docFreqs;
+    private final int[][] postingDocs;
+    private final int[][] postingFreqs;
+    private final int[][] postingPositions;
+    private String version;
+
+    private CompactSearchIndex(final int maxDoc, final int numDocs, final int numTerms) {
+        this.maxDoc = maxDoc;
+        this.ids = new String[numDocs];
+        this.languages = new String[numDocs];
+        this.titles = new String[numDocs];
+        this.abstracts = new String[numDocs];
+        this.docTypes = new int[numDocs];
+        this.contents = new String[numDocs];
+        this.norms = new byte[numDocs];
+        this.terms = new String[numTerms];
+        this.termOrds = new HashMap<>(numTerms * 2);
+        this.docFreqs = new int[numTerms];
+        this.postingDocs = new int[numTerms][];
+        this.postingFreqs = new int[numTerms][];
+        this.postingPositions = new int[numTerms][];
+    }
+
+    static Path resolveCompactIndexPath(final Path searchIndexPath, final String lang) {
+        return searchIndexPath.resolve(COMPACT_FILE_PREFIX + lang + COMPACT_FILE_EXTENSION);
+    }
+
+    /**
+     * @return the no. of documents held by the given compact index, reading just its header
+     */
+    static int readNumDocs(final Path compactIndexPath) throws IOException {
+        try (InputStream in = Files.newInputStream(compactIndexPath)) {
+            final InputStreamDataInput input = new InputStreamDataInput(in);
+            checkHeader(input, compactIndexPath);
+            input.readVInt();
+            return input.readVInt();
+        }
+    }
+
+    static CompactSearchIndex load(final Path compactIndexPath) throws IOException {
+        try (CheckedInputStream in = new CheckedInputStream(Files.newInputStream(compactIndexPath), new CRC32())) {
+            final InputStreamDataInput input = new InputStreamDataInput(in);
+            checkHeader(input, compactIndexPath);
+            final CompactSearchIndex index = new CompactSearchIndex(input.readVInt(), input.readVInt(),
+                input.readVInt());
+            for (int doc = 0; doc < index.numDocs(); doc++) {
+                index.ids[doc] = input.readString();
+                index.languages[doc] = input.readString();
+                index.titles[doc] = input.readString();
+                index.abstracts[doc] = input.readString();
+                index.docTypes[doc] = input.readVInt();
+                index.contents[doc] = input.readString();
+                index.norms[doc] = input.readByte();
+            }
+            for (int ord = 0; ord < index.terms.length; ord++) {
+                index.terms[ord] = input.readString();
+                index.termOrds.put(index.terms[ord], ord);
+                index.docFreqs[ord] = input.readVInt();
+                final int numPostings = input.readVInt();
+                final int[] postingDocs = new int[numPostings];
+                final int[] postingFreqs = new int[numPostings];
+                int[] positions = new int[numPostings];
+                int numPositions = 0;
+                int doc = 0;
+                for (int p = 0; p < numPostings; p++) {
+                    doc += input.readVInt();
+                    postingDocs[p] = doc;
+                    postingFreqs[p] = input.readVInt();
+                    if (numPositions + postingFreqs[p] > positions.length) {
+                        positions = Arrays.copyOf(positions, Math.max(positions.length * 2,
+                            numPositions + postingFreqs[p]));
+                    }
+                    int position = 0;
+                    for (int f = 0; f < postingFreqs[p]; f++) {
+                        position += input.readVInt();
+                        positions[numPositions++] = position;
+                    }
+                }
+                index.postingDocs[ord] = postingDocs;
+                index.postingFreqs[ord] = postingFreqs;
+                index.postingPositions[ord] = Arrays.copyOf(positions, numPositions);
+            }
+            index.version = Long.toHexString(in.getChecksum().getValue());
+            return index;
+        }
+    }
+
+    private static void checkHeader(final InputStreamDataInput input, final Path compactIndexPath) throws IOException {
+        if (input.readInt() != COMPACT_FILE_MAGIC) {
+            throw new IOException("File " + compactIndexPath + " is not a compact search index");
+        }
+        final int version = input.readVInt();
+        if (version != COMPACT_FILE_VERSION) {
+            throw new IOException("Unsupported version " + version + " of compact search index " + compactIndexPath);
+        }
+    }
+
+    /**
+     * @return the checksum of the file the index has been loaded from, see {@link DocetSearchCursor}
+     */
+    String getVersion() {
+        return this.version;
+    }
+
+    int numDocs() {
+        return this.ids.length;
+    }
+
+    /**
+     * @return the stored fields of the given document, as they would be loaded from the Lucene index
+     */
+    Document document(final int doc) {
+        final Document res = new Document();
+        res.add(new StoredField("id", this.ids[doc]));
+        res.add(new StoredField("language", this.languages[doc]));
+        res.add(new StoredField("title", this.titles[doc]));
+        res.add(new StoredField("abstract", this.abstracts[doc]));
+        res.add(new StoredField("doctype", this.docTypes[doc]));
+        res.add(new StoredField(SimpleDocetDocSearcher.LUCENE_QUERY_CONTENT_PREFIX + this.languages[doc],
+            this.contents[doc]));
+        return res;
+    }
+
+    /**
+     * Collect the top scoring documents matching the given query, after the given one if any, stopping as soon as the
+     * deadline is reached: in such a case the best documents collected so far are returned.
+     */
+    TopDocs search(final Query query, final ScoreDoc after, final int maxNumResults, final long deadline,
+        final AtomicBoolean timedOut) {
+        final Scorer scorer = this.buildScorer(query);
+        final float norm = SIMILARITY.queryNorm(scorer.getValueForNormalization());
+        scorer.normalize(Float.isInfinite(norm) || Float.isNaN(norm) ? 1f : norm, 1f);
+        final int numHits = Math.max(1, Math.min(maxNumResults, this.numDocs()));
+        final PriorityQueue<ScoreDoc> top = new PriorityQueue<>(numHits,
+            (a, b) -> a.score != b.score ? Float.compare(a.score, b.score) : Integer.compare(b.doc, a.doc));
+        int totalHits = 0;
+        float maxScore = Float.NaN;
+        for (int doc = 0; doc < this.numDocs(); doc++) {
+            if (deadline != Long.MAX_VALUE && doc % DEADLINE_CHECK_INTERVAL == 0
+                && System.nanoTime() - deadline >= 0) {
+                timedOut.set(true);
+                break;
+            }
+            final float score = scorer.score(doc);
+            if (score <= 0f) {
+                continue;
+            }
+            totalHits++;
+            if (Float.isNaN(maxScore) || score > maxScore) {
+                maxScore = score;
+            }
+            if (after != null && (score > after.score || (score == after.score && doc <= after.doc))) {
+                continue;
+            }
+            final ScoreDoc scoreDoc = new ScoreDoc(doc, score);
+            if (top.size() < numHits) {
+                top.add(scoreDoc);
+            } else if (top.comparator().compare(scoreDoc, top.peek()) > 0) {
+                top.poll();
+                top.add(scoreDoc);
+            }
+        }
+        final ScoreDoc[] scoreDocs = new ScoreDoc[top.size()];
+        for (int i = scoreDocs.length - 1; i >= 0; i--) {
+            scoreDocs[i] = top.poll();
+        }
+        if (after != null) {
+            // same as Lucene, the max score is not tracked when paging
+            maxScore = Float.NaN;
+        }
+        return new TopDocs(totalHits, scoreDocs, maxScore);
+    }
+
+    /**
+     * Only the queries built by {@link org.apache.lucene.queryparser.classic.QueryParser} out of Docet search
+     * queries are supported, any other query matches no document.
+     */
+    private Scorer buildScorer(final Query query) {
+        if (query instanceof TermQuery) {
+            return new TermScorer(this.termOrd(((TermQuery) query).getTerm()),
+                this.docFreq(((TermQuery) query).getTerm()));
+        } else if (query instanceof PhraseQuery) {
+            final PhraseQuery phraseQuery = (PhraseQuery) query;
+            final Term[] phraseTerms = phraseQuery.getTerms();
+            if (phraseTerms.length == 0) {
+                return new NoMatchScorer();
+            } else if (phraseTerms.length == 1) {
+                return new TermScorer(this.termOrd(phraseTerms[0]), this.docFreq(phraseTerms[0]));
+            }
+            final int[] ords = new int[phraseTerms.length];
+            float idf = 0f;
+            for (int i = 0; i < phraseTerms.length; i++) {
+                ords[i] = this.termOrd(phraseTerms[i]);
+                idf += SIMILARITY.idf(this.docFreq(phraseTerms[i]), this.maxDoc);
+            }
+            return new PhraseScorer(ords, phraseQuery.getPositions(), phraseQuery.getSlop(), idf);
+        } else if (query instanceof FuzzyQuery) {
+            return this.buildFuzzyScorer((FuzzyQuery) query);
+        } else if (query instanceof BoostQuery) {
+            return new BoostScorer(this.buildScorer(((BoostQuery) query).getQuery()), ((BoostQuery) query).getBoost());
+        } else if (query instanceof BooleanQuery) {
+            final BooleanQuery booleanQuery = (BooleanQuery) query;
+            final List<Scorer> clauses = new ArrayList<>();
+            final List<BooleanClause.Occur> occurs = new ArrayList<>();
+            for (final BooleanClause clause : booleanQuery.clauses()) {
+                clauses.add(this.buildScorer(clause.getQuery()));
+                occurs.add(clause.getOccur());
+            }
+            return new BooleanScorer(clauses, occurs, booleanQuery.isCoordDisabled());
+        }
+        return new NoMatchScorer();
+    }
+
+    /**
+     * Same as the rewrite of a {@link FuzzyQuery} by Lucene: the best matching terms (the ones with less edits) are
+     * blended into a disjunction, all sharing the highest document frequency among them.
+     */
+    private Scorer buildFuzzyScorer(final FuzzyQuery query) {
+        final String text = query.getTerm().text();
+        final int prefixLength = Math.min(query.getPrefixLength(), text.length());
+        final int textLength = text.codePointCount(prefixLength, text.length());
+        final List<FuzzyTerm> matches = new ArrayList<>();
+        for (int ord = 0; ord < this.terms.length; ord++) {
+            final String candidate = this.terms[ord];
+            if (!candidate.startsWith(text.substring(0, prefixLength))) {
+                continue;
+            }
+            final int edits = editDistance(text.substring(prefixLength), candidate.substring(prefixLength),
+                query.getMaxEdits(), query.getTranspositions());
+            if (edits <= query.getMaxEdits()) {
+                final int candidateLength = candidate.codePointCount(prefixLength, candidate.length());
+                matches.add(new FuzzyTerm(ord, 1f - ((float) edits / (float) Math.min(candidateLength, textLength))));
+            }
+        }
+        matches.sort((a, b) -> a.boost != b.boost ? Float.compare(b.boost, a.boost)
+            : this.terms[a.ord].compareTo(this.terms[b.ord]));
+        final List<FuzzyTerm> expansions = matches.subList(0, Math.min(MAX_FUZZY_EXPANSIONS, matches.size()));
+        int maxDocFreq = 0;
+        for (final FuzzyTerm expansion : expansions) {
+            maxDocFreq = Math.max(maxDocFreq, this.docFreqs[expansion.ord]);
+        }
+        final List<Scorer> clauses = new ArrayList<>();
+        final List<BooleanClause.Occur> occurs = new ArrayList<>();
+        for (final FuzzyTerm expansion : expansions) {
+            final int docFreq = expansions.size() > 1 ? maxDocFreq : this.docFreqs[expansion.ord];
+            clauses.add(new BoostScorer(new TermScorer(expansion.ord, docFreq), expansion.boost));
+            occurs.add(BooleanClause.Occur.SHOULD);
+        }
+        return new BooleanScorer(clauses, occurs, true);
+    }
+
+    /**
+     * @return the (Damerau-)Levenshtein distance between the given strings, or maxEdits + 1 as soon as it exceeds
+     * maxEdits
+     */
+    private static int editDistance(final String a, final String b, final int maxEdits, final boolean transpositions) {
+        final int[] s = a.codePoints().toArray();
+        final int[] t = b.codePoints().toArray();
+        if (Math.abs(s.length - t.length) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int[] prevPrev = new int[t.length + 1];
+        int[] prev = new int[t.length + 1];
+        int[] cur = new int[t.length + 1];
+        for (int j = 0; j <= t.length; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= s.length; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= t.length; j++) {
+                final int cost = s[i - 1] == t[j - 1] ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (transpositions && i > 1 && j > 1 && s[i - 1] == t[j - 2] && s[i - 2] == t[j - 1]) {
+                    cur[j] = Math.min(cur[j], prevPrev[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            final int[] tmp = prevPrev;
+            prevPrev = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[t.length];
+    }
+
+    private int termOrd(final Term term) {
+        return this.termOrds.getOrDefault(term.text(), -1);
+    }
+
+    private int docFreq(final Term term) {
+        final int ord = this.termOrd(term);
+        return ord < 0 ? 0 : this.docFreqs[ord];
+    }
+
+    /**
+     * @return the index of the posting of the given document for the given term, a negative value if the document does
+     * not hold the term
+     */
+    private int findPosting(final int ord, final int doc) {
+        if (ord < 0) {
+            return -1;
+        }
+        return Arrays.binarySearch(this.postingDocs[ord], doc);
+    }
+
+    private int postingPositionsStart(final int ord, final int posting) {
+        int start = 0;
+        final int[] freqs = this.postingFreqs[ord];
+        for (int p = 0; p < posting; p++) {
+            start += freqs[p];
+        }
+        return start;
+    }
+
+    private float decodeNorm(final int doc) {
+        return SIMILARITY.decodeNormValue(this.norms[doc]);
+    }
+
+    private static final class FuzzyTerm {
+
+        private final int ord;
+        private final float boost;
+
+        private FuzzyTerm(final int ord, final float boost) {
+            this.ord = ord;
+            this.boost = boost;
+        }
+    }
+
+    /**
+     * Mirrors the weight/scorer pair of the corresponding Lucene query: the value for normalization is collected
+     * first, then the query norm is pushed down and finally documents are scored one by one.
+     */
+    private interface Scorer {
+
+        float getValueForNormalization();
+
+        void normalize(float norm, float boost);
+
+        /**
+         * @return the score of the given document, 0 if the document does not match
+         */
+        float score(int doc);
+    }
+
+    private static final class NoMatchScorer implements Scorer {
+
+        @Override
+        public float getValueForNormalization() {
+            return 0f;
+        }
+
+        @Override
+        public void normalize(final float norm, final float boost) {
+        }
+
+        @Override
+        public float score(final int doc) {
+            return 0f;
+        }
+    }
+
+    private static final class BoostScorer implements Scorer {
+
+        private final Scorer inner;
+        private final float boost;
+
+        private BoostScorer(final Scorer inner, final float boost) {
+            this.inner = inner;
+            this.boost = boost;
+        }
+
+        @Override
+        public float getValueForNormalization() {
+            return this.inner.getValueForNormalization() * this.boost * this.boost;
+        }
+
+        @Override
+        public void normalize(final float norm, final float boost) {
+            this.inner.normalize(norm, this.boost * boost);
+        }
+
+        @Override
+        public float score(final int doc) {
+            return this.inner.score(doc);
+        }
+    }
+
+    private abstract class SimilarityScorer implements Scorer {
+
+        private final float idf;
+        private float weight;
+
+        SimilarityScorer(final float idf) {
+            this.idf = idf;
+        }
+
+        @Override
+        public float getValueForNormalization() {
+            return this.idf * this.idf;
+        }
+
+        @Override
+        public void normalize(final float norm, final float boost) {
+            this.weight = norm * boost * this.idf * this.idf;
+        }
+
+        float score(final int doc, final float freq) {
+            return SIMILARITY.tf(freq) * this.weight * decodeNorm(doc);
+        }
+    }
+
+    private final class TermScorer extends SimilarityScorer {
+
+        private final int ord;
+
+        private TermScorer(final int ord, final int docFreq) {
+            super(SIMILARITY.idf(docFreq, maxDoc));
+            this.ord = ord;
+        }
+
+        @Override
+        public float score(final int doc) {
+            final int posting = findPosting(this.ord, doc);
+            if (posting < 0) {
+                return 0f;
+            }
+            return this.score(doc, postingFreqs[this.ord][posting]);
+        }
+    }
+
+    /**
+     * Sloppy phrase matching, as performed by Lucene for phrases whose terms are all distinct.
+     */
+    private final class PhraseScorer extends SimilarityScorer {
+
+        private final int[] ords;
+        private final int[] offsets;
+        private final int slop;
+
+        private PhraseScorer(final int[] ords, final int[] offsets, final int slop, final float idf) {
+            super(idf);
+            this.ords = ords;
+            this.offsets = offsets;
+            this.slop = slop;
+        }
+
+        @Override
+        public float score(final int doc) {
+            final int numTerms = this.ords.length;
+            final int[] starts = new int[numTerms];
+            final int[] ends = new int[numTerms];
+            for (int i = 0; i < numTerms; i++) {
+                final int posting = findPosting(this.ords[i], doc);
+                if (posting < 0) {
+                    return 0f;
+                }
+                starts[i] = postingPositionsStart(this.ords[i], posting);
+                ends[i] = starts[i] + postingFreqs[this.ords[i]][posting];
+            }
+            final int[] cursors = starts.clone();
+            int end = Integer.MIN_VALUE;
+            for (int i = 0; i < numTerms; i++) {
+                end = Math.max(end, this.position(i, cursors[i]));
+            }
+            float freq = 0f;
+            int current = this.min(cursors, -1);
+            int matchLength = end - this.position(current, cursors[current]);
+            final int first = this.min(cursors, current);
+            int next = this.position(first, cursors[first]);
+            while (++cursors[current] < ends[current]) {
+                final int position = this.position(current, cursors[current]);
+                if (position > end) {
+                    end = position;
+                }
+                if (position > next) {
+                    if (matchLength <= this.slop) {
+                        freq += SIMILARITY.sloppyFreq(matchLength);
+                    }
+                    current = this.min(cursors, -1);
+                    final int second = this.min(cursors, current);
+                    next = this.position(second, cursors[second]);
+                    matchLength = end - this.position(current, cursors[current]);
+                } else {
+                    matchLength = Math.min(matchLength, end - position);
+                }
+            }
+            if (matchLength <= this.slop) {
+                freq += SIMILARITY.sloppyFreq(matchLength);
+            }
+            return freq == 0f ? 0f : this.score(doc, freq);
+        }
+
+        private int position(final int term, final int cursor) {
+            return postingPositions[this.ords[term]][cursor] - this.offsets[term];
+        }
+
+        /**
+         * @return the term whose current position comes first, skipping the given one
+         */
+        private int min(final int[] cursors, final int skip) {
+            int res = -1;
+            for (int i = 0; i < cursors.length; i++) {
+                if (i == skip) {
+                    continue;
+                }
+                if (res < 0 || this.position(i, cursors[i]) < this.position(res, cursors[res])
+                    || (this.position(i, cursors[i]) == this.position(res, cursors[res])
+                        && this.offsets[i] < this.offsets[res])) {
+                    res = i;
+                }
+            }
+            return res;
+        }
+    }
+
+    private static final class BooleanScorer implements Scorer {
+
+        private final List<Scorer> clauses;
+        private final List<BooleanClause.Occur> occurs;
+        private final boolean disableCoord;
+        private final int maxCoord;
+
+        private BooleanScorer(final List<Scorer> clauses, final List<BooleanClause.Occur> occurs,
+            final boolean disableCoord) {
+            this.clauses = clauses;
+            this.occurs = occurs;
+            this.disableCoord = disableCoord;
+            this.maxCoord = (int) occurs.stream()
+                .filter(o -> o == BooleanClause.Occur.SHOULD || o == BooleanClause.Occur.MUST).count();
+        }
+
+        @Override
+        public float getValueForNormalization() {
+            float sum = 0f;
+            for (int i = 0; i < this.clauses.size(); i++) {
+                if (this.occurs.get(i) == BooleanClause.Occur.SHOULD || this.occurs.get(i) == BooleanClause.Occur.MUST) {
+                    sum += this.clauses.get(i).getValueForNormalization();
+                }
+            }
+            return sum;
+        }
+
+        @Override
+        public void normalize(final float norm, final float boost) {
+            for (final Scorer clause : this.clauses) {
+                clause.normalize(norm, boost);
+            }
+        }
+
+        @Override
+        public float score(final int doc) {
+            double sum = 0d;
+            int matching = 0;
+            for (int i = 0; i < this.clauses.size(); i++) {
+                final float score = this.clauses.get(i).score(doc);
+                switch (this.occurs.get(i)) {
+                    case MUST_NOT:
+                        if (score > 0f) {
+                            return 0f;
+                        }
+                        break;
+                    case MUST:
+                    case FILTER:
+                        if (score <= 0f) {
+                            return 0f;
+                        }
+                        if (this.occurs.get(i) == BooleanClause.Occur.MUST) {
+                            sum += score;
+                            matching++;
+                        }
+                        break;
+                    case SHOULD:
+                    default:
+                        if (score > 0f) {
+                            sum += score;
+                            matching++;
+                        }
+                }
+            }
+            if (matching == 0) {
+                return 0f;
+            }
+            return this.disableCoord ? (float) sum : (float) sum * SIMILARITY.coord(matching, this.maxCoord);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response handed to the worker thread serving an async request. The worker and the async timeout race to end the
+ * request: whichever calls {@link #finish()} or {@link #expire()} first wins, and once the timeout has won every
+ * further change to the response by the worker is dropped and every write fails with an {@link IOException}, so that
+ * the worker never touches a response the container may have recycled already.
+ * <p>
+ * Changes to the response are made under the same lock the timeout takes, hence the timeout waits for a write in
+ * progress to end before answering the request.
+ *
+ */
+final class DocetAsyncResponse extends HttpServletResponseWrapper {
+
+    private static final int STATE_RUNNING = 0;
+    private static final int STATE_FINISHED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final ReentrantLock lock;
+    private int state;
+    private GuardedOutputStream outputStream;
+    private PrintWriter writer;
+
+    DocetAsyncResponse(final HttpServletResponse response) {
+        super(response);
+        this.lock = new ReentrantLock();
+        this.state = STATE_RUNNING;
+    }
+
+    /**
+     * Called by the worker once it is done with the response.
+     *
+     * @return true if the worker is to complete the request, false if the timeout has done it already
+     */
+    boolean finish() {
+        return this.end(STATE_FINISHED);
+    }
+
+    /**
+     * Called on async timeout; from now on the worker cannot change the response anymore.
+     *
+     * @return true if the timeout is to answer and complete the request, false if the worker has done it already
+     */
+    boolean expire() {
+        return this.end(STATE_EXPIRED);
+    }
+
+    private boolean end(final int endState) {
+        try {
+            this.lock.lock();
+            if (this.state != STATE_RUNNING) {
+                return false;
+            }
+            this.state = endState;
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void ensureNotExpired() throws IOException {
+        if (this.state == STATE_EXPIRED) {
+            throw new IOException("Async request timed out");
+        }
+    }
+
+    /**
+     * Apply a change to the response, unless the timeout has won.
+     */
+    private void update(final Runnable change) {
+        try {
+            this.lock.lock();
+            if (this.state != STATE_EXPIRED) {
+                change.run();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        try {
+            this.lock.lock();
+            this.ensureNotExpired();
+            if (this.outputStream == null) {
+                this.outputStream = new GuardedOutputStream(super.getOutputStream());
+            }
+            return this.outputStream;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        try {
+            this.lock.lock();
+            this.ensureNotExpired();
+            if (this.writer == null) {
+                this.writer = new PrintWriter(new GuardedWriter(super.getWriter()));
+            }
+            return this.writer;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void sendError(final int sc, final String msg) throws IOException {
+        try {
+            this.lock.lock();
+            this.ensureNotExpired();
+            super.sendError(sc, msg);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void sendError(final int sc) throws IOException {
+        try {
+            this.lock.lock();
+            this.ensureNotExpired();
+            super.sendError(sc);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void sendRedirect(final String location) throws IOException {
+        try {
+            this.lock.lock();
+            this.ensureNotExpired();
+            super.sendRedirect(location);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        try {
+            this.lock.lock();
+            this.ensureNotExpired();
+            super.flushBuffer();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void setStatus(final int sc) {
+        this.update(() -> super.setStatus(sc));
+    }
+
+    @Override
+    public void setHeader(final String name, final String value) {
+        this.update(() -> super.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(final String name, final String value) {
+        this.update(() -> super.addHeader(name, value));
+    }
+
+    @Override
+    public void setDateHeader(final String name, final long date) {
+        this.update(() -> super.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(final String name, final long date) {
+        this.update(() -> super.addDateHeader(name, date));
+    }
+
+    @Override
+    public void setIntHeader(final String name, final int value) {
+        this.update(() -> super.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(final String name, final int value) {
+        this.update(() -> super.addIntHeader(name, value));
+    }
+
+    @Override
+    public void addCookie(final Cookie cookie) {
+        this.update(() -> super.addCookie(cookie));
+    }
+
+    @Override
+    public void setContentType(final String type) {
+        this.update(() -> super.setContentType(type));
+    }
+
+    @Override
+    public void setCharacterEncoding(final String charset) {
+        this.update(() -> super.setCharacterEncoding(charset));
+    }
+
+    @Override
+    public void setContentLength(final int len) {
+        this.update(() -> super.setContentLength(len));
+    }
+
+    @Override
+    public void setContentLengthLong(final long len) {
+        this.update(() -> super.setContentLengthLong(len));
+    }
+
+    @Override
+    public void setLocale(final Locale loc) {
+        this.update(() -> super.setLocale(loc));
+    }
+
+    @Override
+    public void setBufferSize(final int size) {
+        this.update(() -> super.setBufferSize(size));
+    }
+
+    @Override
+    public void reset() {
+        this.update(super::reset);
+    }
+
+    @Override
+    public void resetBuffer() {
+        this.update(super::resetBuffer);
+    }
+
+    private final class GuardedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        private GuardedOutputStream(final ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            try {
+                lock.lock();
+                ensureNotExpired();
+                this.out.write(b);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            try {
+                lock.lock();
+                ensureNotExpired();
+                this.out.write(b, off, len);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                lock.lock();
+                ensureNotExpired();
+                this.out.flush();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.lock();
+                if (state != STATE_EXPIRED) {
+                    this.out.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+            this.out.setWriteListener(writeListener);
+        }
+    }
+
+    private final class GuardedWriter extends Writer {
+
+        private final Writer out;
+
+        private GuardedWriter(final Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            try {
+                DocetAsyncResponse.this.lock.lock();
+                ensureNotExpired();
+                this.out.write(cbuf, off, len);
+            } finally {
+                DocetAsyncResponse.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            try {
+                DocetAsyncResponse.this.lock.lock();
+                ensureNotExpired();
+                this.out.write(str, off, len);
+            } finally {
+                DocetAsyncResponse.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                DocetAsyncResponse.this.lock.lock();
+                ensureNotExpired();
+                this.out.flush();
+            } finally {
+                DocetAsyncResponse.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                DocetAsyncResponse.this.lock.lock();
+                if (state != STATE_EXPIRED) {
+                    this.out.close();
+                }
+            } finally {
+                DocetAsyncResponse.this.lock.unlock();
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package docet.engine;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -30,6 +31,9 @@ import java.util.Set;
  */
 public class DocetConfiguration {
 
+    private static final String SEARCH_INDEX_DIRECTORY_PACKAGE_PREFIX = "docet.search.index.directory.package.";
+    private static final String BULKHEAD_PREFIX = "docet.bulkhead.";
+
     private final Map<String, String> pathToInstalledDocPackages;
     private final String pathToCustomCss;
     private final String pathToPages;
@@ -41,6 +45,8 @@ public class DocetConfiguration {
     private final String linkToPdfPattern;
     private final String linkToImagePattern;
     private final String linkToPackageIconPattern;
+    private final String linkToPdfJobPattern;
+    private final String linkToPdfJobDownloadPattern;
     private final String linkToFaqPattern;
     private final String docetStaticResAdditionalParams;
     private final String docetPackageDocsFolderPath;
@@ -48,6 +54,35 @@ public class DocetConfiguration {
     private final String version;
     private final String defaultLanguage;
     private final int maxSearchResultsForPackage;
+    private final int maxSuggestions;
+    private final int searchGlobalTopK;
+    private final boolean searchFederatedIndexEnabled;
+    private final String searchFederatedIndexPath;
+    private final DocetSearchFuzzyStrategy searchFuzzyStrategy;
+    private final int searchFuzzyFallbackMinHits;
+    private final DocetSearchLimits searchLimits;
+    private final DocetSearchIndexDirectoryType searchIndexDirectoryType;
+    private final Map<String, DocetSearchIndexDirectoryType> searchIndexDirectoryTypeForPackage;
+    private final long searchIndexRamMaxSize;
+    private final boolean searchIndexWarmUp;
+    private final int searchIndexCompactMaxDocs;
+    private final long searchClientIndexMaxAge;
+    private final long asyncTimeout;
+    private final int pdfGenerationThreads;
+    private final int pdfGenerationQueueSize;
+    private final long pdfGenerationMaxWait;
+    private final String pdfCacheDirPath;
+    private final long pdfCacheMaxSize;
+    private final int pdfLayoutThreads;
+    private final int pdfContextPoolSize;
+    private final boolean pdfStreaming;
+    private final int pdfJobsThreads;
+    private final int pdfJobsQueueSize;
+    private final long pdfJobsRetention;
+    private final Map<DocetRequestType, Integer> bulkheadMaxConcurrent;
+    private final Map<DocetRequestType, Integer> bulkheadMaxQueued;
+    private final long bulkheadMaxWait;
+    private final int bulkheadRetryAfter;
     private final boolean faqTocAtRuntime;
     private final boolean previewMode;
     private final boolean debugMode;
@@ -74,6 +109,9 @@ public class DocetConfiguration {
         this.linkToFaqPattern = conf.getProperty("docet.linktofaq.pattern", servletPath + "/faq/{0}/{1}_{2}.mndoc");
         this.linkToImagePattern = conf.getProperty("docet.linktoimage.pattern", servletPath + "/images/{0}/{1}_{2}");
         this.linkToPackageIconPattern = conf.getProperty("docet.linktopackageicon.pattern", servletPath + "/icons/{0}");
+        this.linkToPdfJobPattern = conf.getProperty("docet.linktopdfjob.pattern", servletPath + "/pdfjobs/{0}");
+        this.linkToPdfJobDownloadPattern = conf.getProperty("docet.linktopdfjobdownload.pattern",
+            servletPath + "/pdfjobs/{0}.pdf");
         this.previewMode = Boolean.parseBoolean(conf.getProperty("docet.previewmode", "false"));
         this.faqTocAtRuntime = Boolean.parseBoolean(conf.getProperty("docet.faq.toc.runtime", "true"));
         this.pathToInstalledDocPackages = new HashMap<>();
@@ -81,6 +119,69 @@ public class DocetConfiguration {
         this.docetPackageDocsFolderPath = conf.getProperty("docet.package.docs.dirpath", "docs");
         this.docetPackageSearchIndexFolderPath = conf.getProperty("docet.package.searchindex.dirpath", "index");
         this.maxSearchResultsForPackage = Integer.parseInt(conf.getProperty("docet.search.resultsforpackage.max", "20"));
+        this.maxSuggestions = Integer.parseInt(conf.getProperty("docet.suggest.max", "8"));
+        this.searchFederatedIndexEnabled = Boolean.parseBoolean(conf.getProperty("docet.search.federated.enabled", "false"));
+        this.searchFederatedIndexPath = conf.getProperty("docet.search.federated.dirpath", "");
+        this.searchGlobalTopK = Integer.parseInt(conf.getProperty("docet.search.topk.global", "0"));
+        this.searchFuzzyStrategy = DocetSearchFuzzyStrategy.parseDocetSearchFuzzyStrategyByName(
+            conf.getProperty("docet.search.fuzzy.strategy", DocetSearchFuzzyStrategy.ALWAYS.toString()));
+        this.searchFuzzyFallbackMinHits = Integer.parseInt(conf.getProperty("docet.search.fuzzy.fallback.minhits", "5"));
+        this.searchLimits = new DocetSearchLimits(
+            Long.parseLong(conf.getProperty("docet.search.timeout.ms", "2000")),
+            Integer.parseInt(conf.getProperty("docet.search.query.maxlength", "256")),
+            Integer.parseInt(conf.getProperty("docet.search.query.maxterms", "32")),
+            Integer.parseInt(conf.getProperty("docet.search.highlight.maxchars", "100000")));
+        this.searchIndexDirectoryType = DocetSearchIndexDirectoryType.parseDocetSearchIndexDirectoryTypeByName(
+            conf.getProperty("docet.search.index.directory", DocetSearchIndexDirectoryType.FS.toString()));
+        this.searchIndexDirectoryTypeForPackage = new HashMap<>();
+        conf.stringPropertyNames().stream()
+            .filter(name -> name.startsWith(SEARCH_INDEX_DIRECTORY_PACKAGE_PREFIX))
+            .forEach(name -> {
+                this.searchIndexDirectoryTypeForPackage.put(name.substring(SEARCH_INDEX_DIRECTORY_PACKAGE_PREFIX.length()),
+                    DocetSearchIndexDirectoryType.parseDocetSearchIndexDirectoryTypeByName(conf.getProperty(name)));
+            });
+        this.searchIndexRamMaxSize = Long.parseLong(conf.getProperty("docet.search.index.directory.ram.maxsize", "2097152"));
+        this.searchIndexWarmUp = Boolean.parseBoolean(conf.getProperty("docet.search.index.warmup", "false"));
+        this.searchIndexCompactMaxDocs = Integer.parseInt(conf.getProperty("docet.search.index.compact.maxdocs", "50"));
+        this.searchClientIndexMaxAge = Long.parseLong(conf.getProperty("docet.search.clientindex.maxage", "3600"));
+        this.asyncTimeout = Long.parseLong(conf.getProperty("docet.async.timeout.ms", "300000"));
+        this.pdfGenerationThreads = Integer.parseInt(conf.getProperty("docet.pdf.generation.threads", "2"));
+        this.pdfGenerationQueueSize = Integer.parseInt(conf.getProperty("docet.pdf.generation.queue", "8"));
+        this.pdfGenerationMaxWait = Long.parseLong(conf.getProperty("docet.pdf.generation.maxwait.ms", "120000"));
+        this.pdfCacheDirPath = conf.getProperty("docet.pdf.cache.dirpath", "");
+        this.pdfCacheMaxSize = Long.parseLong(conf.getProperty("docet.pdf.cache.maxsize", "536870912"));
+        this.pdfLayoutThreads = Integer.parseInt(conf.getProperty("docet.pdf.layout.threads", "1"));
+        this.pdfContextPoolSize = Integer.parseInt(conf.getProperty("docet.pdf.contexts.pool.size", "16"));
+        this.pdfStreaming = Boolean.parseBoolean(conf.getProperty("docet.pdf.streaming", "false"));
+        this.pdfJobsThreads = Integer.parseInt(conf.getProperty("docet.pdf.jobs.threads", "1"));
+        this.pdfJobsQueueSize = Integer.parseInt(conf.getProperty("docet.pdf.jobs.queue", "16"));
+        this.pdfJobsRetention = Long.parseLong(conf.getProperty("docet.pdf.jobs.retention.ms", "3600000"));
+        this.bulkheadMaxConcurrent = new EnumMap<>(DocetRequestType.class);
+        this.bulkheadMaxQueued = new EnumMap<>(DocetRequestType.class);
+        for (final DocetRequestType type : DocetRequestType.values()) {
+            final String defaultMaxConcurrent;
+            final String defaultMaxQueued;
+            switch (type) {
+                case TYPE_SEARCH:
+                    defaultMaxConcurrent = "16";
+                    defaultMaxQueued = "32";
+                    break;
+                case TYPE_PDFS:
+                    defaultMaxConcurrent = "16";
+                    defaultMaxQueued = "16";
+                    break;
+                default:
+                    defaultMaxConcurrent = "0";
+                    defaultMaxQueued = "0";
+                    break;
+            }
+            this.bulkheadMaxConcurrent.put(type, Integer.parseInt(
+                conf.getProperty(BULKHEAD_PREFIX + type + ".maxconcurrent", defaultMaxConcurrent)));
+            this.bulkheadMaxQueued.put(type, Integer.parseInt(
+                conf.getProperty(BULKHEAD_PREFIX + type + ".maxqueue", defaultMaxQueued)));
+        }
+        this.bulkheadMaxWait = Long.parseLong(conf.getProperty("docet.bulkhead.maxwait.ms", "1000"));
+        this.bulkheadRetryAfter = Integer.parseInt(conf.getProperty("docet.bulkhead.retryafter", "5"));
         this.version = conf.getProperty("docet.version", "-");
         this.enablePackageLifecycleExecutor = Boolean.parseBoolean(conf.getProperty("docet.package.enable.lifecycle.executor", "true"));
         this.enableIframe = Boolean.parseBoolean(conf.getProperty("docet.enable.iframe", "false"));
@@ -188,6 +289,214 @@ public class DocetConfiguration {
         return maxSearchResultsForPackage;
     }
 
+    public int getMaxSuggestions() {
+        return maxSuggestions;
+    }
+
+    /**
+     * @return max no. of search results to be returned overall, merging the results of all the searched packages by
+     * rank as their scores are not comparable; 0 to return up to {@link #getMaxSearchResultsForPackage()} results for
+     * each package
+     */
+    public int getSearchGlobalTopK() {
+        return searchGlobalTopK;
+    }
+
+    public boolean isSearchGlobalTopKEnabled() {
+        return searchGlobalTopK > 0;
+    }
+
+    public boolean isSearchFederatedIndexEnabled() {
+        return searchFederatedIndexEnabled;
+    }
+
+    /**
+     * @return the directory where the federated search index is stored, an empty string to keep it on heap
+     */
+    public String getSearchFederatedIndexPath() {
+        return searchFederatedIndexPath;
+    }
+
+    public DocetSearchFuzzyStrategy getSearchFuzzyStrategy() {
+        return searchFuzzyStrategy;
+    }
+
+    public int getSearchFuzzyFallbackMinHits() {
+        return searchFuzzyFallbackMinHits;
+    }
+
+    /**
+     * @return time budget and size limits applied to each search query
+     */
+    public DocetSearchLimits getSearchLimits() {
+        return searchLimits;
+    }
+
+    /**
+     * @param packageId the package whose search index is to be opened
+     * @return the directory implementation to be adopted for the search index of the given package, that is the
+     * one configured specifically for the package or the default one otherwise
+     */
+    public DocetSearchIndexDirectoryType getSearchIndexDirectoryTypeForPackage(final String packageId) {
+        return this.searchIndexDirectoryTypeForPackage.getOrDefault(packageId, this.searchIndexDirectoryType);
+    }
+
+    /**
+     * @return max size in bytes of a search index to be copied on heap, when adopting
+     * {@link DocetSearchIndexDirectoryType#AUTO}
+     */
+    public long getSearchIndexRamMaxSize() {
+        return searchIndexRamMaxSize;
+    }
+
+    /**
+     * @return true to open and warm up the search index of a package as soon as the package is loaded, false (the
+     * default) to open it on the first search
+     */
+    public boolean isSearchIndexWarmUp() {
+        return searchIndexWarmUp;
+    }
+
+    /**
+     * @return max no. of pages a language of a package may hold to be searched through the compact on heap search
+     * index, rather than through Lucene; 0 to always use Lucene. The maven plugin writes compact indexes for up to
+     * 50 pages, which is the default: greater values have no effect
+     */
+    public int getSearchIndexCompactMaxDocs() {
+        return searchIndexCompactMaxDocs;
+    }
+
+    /**
+     * @return how long in seconds browsers may cache the search indexes exported for docet.js
+     */
+    public long getSearchClientIndexMaxAge() {
+        return searchClientIndexMaxAge;
+    }
+
+    /**
+     * @return how long in milliseconds an async request may take, waiting time included; 0 for no limit
+     */
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    /**
+     * @return max no. of pdfs generated at the same time; identical pdfs requested at the same time are generated
+     * once. Pdfs are generated to temporary files and sent from there, so their size does not weigh on the heap.
+     */
+    public int getPdfGenerationThreads() {
+        return pdfGenerationThreads;
+    }
+
+    /**
+     * @return max no. of pdf generations waiting for a thread, further requests are refused
+     */
+    public int getPdfGenerationQueueSize() {
+        return pdfGenerationQueueSize;
+    }
+
+    /**
+     * @return max time in milliseconds a request waits for its pdf to be generated, waiting time in queue included
+     */
+    public long getPdfGenerationMaxWait() {
+        return pdfGenerationMaxWait;
+    }
+
+    /**
+     * @return folder generated pdfs are cached in, kept across restarts; empty if pdfs are not cached
+     */
+    public String getPdfCacheDirPath() {
+        return pdfCacheDirPath;
+    }
+
+    /**
+     * @return max size in bytes of the cached pdfs, least recently used ones are deleted beyond it; a pdf bigger than
+     * that on its own is not cached at all
+     */
+    public long getPdfCacheMaxSize() {
+        return pdfCacheMaxSize;
+    }
+
+    /**
+     * @return no. of threads sections of pdfs are laid out on concurrently, shared by all of the generations, with as
+     * many sections waiting for them at most: further sections are laid out on the generating thread; 1 to lay
+     * sections out one at a time on the generating thread
+     */
+    public int getPdfLayoutThreads() {
+        return pdfLayoutThreads;
+    }
+
+    /**
+     * @return max no. of idle rendering contexts kept for reuse by pdf generations (for each pdf css); 0 to create new
+     * contexts for each pdf
+     */
+    public int getPdfContextPoolSize() {
+        return pdfContextPoolSize;
+    }
+
+    /**
+     * @return whether pdfs are written to their file section by section as they are laid out, instead of being kept
+     * in memory until complete
+     */
+    public boolean isPdfStreaming() {
+        return pdfStreaming;
+    }
+
+    /**
+     * @return max no. of pdf jobs running at the same time
+     */
+    public int getPdfJobsThreads() {
+        return pdfJobsThreads;
+    }
+
+    /**
+     * @return max no. of pdf jobs waiting for a thread, further jobs are refused
+     */
+    public int getPdfJobsQueueSize() {
+        return pdfJobsQueueSize;
+    }
+
+    /**
+     * @return how long in milliseconds a pdf job, and its pdf, are kept after the job is done
+     */
+    public long getPdfJobsRetention() {
+        return pdfJobsRetention;
+    }
+
+    /**
+     * @param type a request type
+     * @return max no. of requests of the given type served at the same time, see {@link DocetRequestBulkhead}; 0 for
+     * no limit. Pages and faqs requested in pdf format count as {@link DocetRequestType#TYPE_PDFS} requests. Searches
+     * and pdfs received through {@link DocetManager#serveRequestAsync} are served on a pool of threads sized after
+     * this limit and the queue size, or synchronously if there is no limit.
+     */
+    public int getBulkheadMaxConcurrent(final DocetRequestType type) {
+        return this.bulkheadMaxConcurrent.get(type);
+    }
+
+    /**
+     * @param type a request type
+     * @return max no. of requests of the given type waiting to be served once the max no. of concurrent requests is
+     * reached
+     */
+    public int getBulkheadMaxQueued(final DocetRequestType type) {
+        return this.bulkheadMaxQueued.get(type);
+    }
+
+    /**
+     * @return max time in milliseconds a request may wait to be served before being refused
+     */
+    public long getBulkheadMaxWait() {
+        return bulkheadMaxWait;
+    }
+
+    /**
+     * @return no. of seconds clients are asked to wait before retrying a refused request
+     */
+    public int getBulkheadRetryAfter() {
+        return bulkheadRetryAfter;
+    }
+
     public boolean isEnablePackageLifecycleExecutor() {
         return enablePackageLifecycleExecutor;
     }
@@ -204,13 +513,21 @@ public class DocetConfiguration {
         return linkToPackageIconPattern;
     }
 
+    public String getLinkToPdfJobPattern() {
+        return linkToPdfJobPattern;
+    }
+
+    public String getLinkToPdfJobDownloadPattern() {
+        return linkToPdfJobDownloadPattern;
+    }
+
     public String getPathToPdfSummaries() {
         return pathToPdfSummaries;
     }
 
     @Override
     public String toString() {
-        return "DocetConfiguration{" + "pathToInstalledDocPackages=" + pathToInstalledDocPackages + ", pathToPages=" + pathToPages + ", pathToImages=" + pathToImages + ", pathToFaq=" + pathToFaq + ", tocFilePath=" + tocFilePath + ", linkToPagePattern=" + linkToPagePattern + ", linkToImagePattern=" + linkToImagePattern + ", linkToFaqPattern=" + linkToFaqPattern + ", docetStaticResAdditionalParams=" + docetStaticResAdditionalParams + ", docetPackageDocsFolderPath=" + docetPackageDocsFolderPath + ", docetPackageSearchIndexFolderPath=" + docetPackageSearchIndexFolderPath + ", version=" + version + ", defaultLanguage=" + defaultLanguage + ", maxSearchResultsForPackage=" + maxSearchResultsForPackage + ", faqTocAtRuntime=" + faqTocAtRuntime + ", previewMode=" + previewMode + ", debugMode=" + debugMode + ", enablePackageLifecycleExecutor=" + enablePackageLifecycleExecutor + '}';
+        return "DocetConfiguration{" + "pathToInstalledDocPackages=" + pathToInstalledDocPackages + ", pathToPages=" + pathToPages + ", pathToImages=" + pathToImages + ", pathToFaq=" + pathToFaq + ", tocFilePath=" + tocFilePath + ", linkToPagePattern=" + linkToPagePattern + ", linkToImagePattern=" + linkToImagePattern + ", linkToFaqPattern=" + linkToFaqPattern + ", docetStaticResAdditionalParams=" + docetStaticResAdditionalParams + ", docetPackageDocsFolderPath=" + docetPackageDocsFolderPath + ", docetPackageSearchIndexFolderPath=" + docetPackageSearchIndexFolderPath + ", version=" + version + ", defaultLanguage=" + defaultLanguage + ", maxSearchResultsForPackage=" + maxSearchResultsForPackage + ", maxSuggestions=" + maxSuggestions + ", searchGlobalTopK=" + searchGlobalTopK + ", searchFederatedIndexEnabled=" + searchFederatedIndexEnabled + ", searchFederatedIndexPath=" + searchFederatedIndexPath + ", searchFuzzyStrategy=" + searchFuzzyStrategy + ", searchFuzzyFallbackMinHits=" + searchFuzzyFallbackMinHits + ", searchLimits=" + searchLimits + ", searchIndexDirectoryType=" + searchIndexDirectoryType + ", searchIndexDirectoryTypeForPackage=" + searchIndexDirectoryTypeForPackage + ", searchIndexRamMaxSize=" + searchIndexRamMaxSize + ", searchIndexWarmUp=" + searchIndexWarmUp + ", searchIndexCompactMaxDocs=" + searchIndexCompactMaxDocs + ", searchClientIndexMaxAge=" + searchClientIndexMaxAge + ", asyncTimeout=" + asyncTimeout + ", pdfGenerationThreads=" + pdfGenerationThreads + ", pdfGenerationQueueSize=" + pdfGenerationQueueSize + ", pdfGenerationMaxWait=" + pdfGenerationMaxWait + ", pdfCacheDirPath=" + pdfCacheDirPath + ", pdfCacheMaxSize=" + pdfCacheMaxSize + ", pdfLayoutThreads=" + pdfLayoutThreads + ", pdfContextPoolSize=" + pdfContextPoolSize + ", pdfStreaming=" + pdfStreaming + ", pdfJobsThreads=" + pdfJobsThreads + ", pdfJobsQueueSize=" + pdfJobsQueueSize + ", pdfJobsRetention=" + pdfJobsRetention + ", bulkheadMaxConcurrent=" + bulkheadMaxConcurrent + ", bulkheadMaxQueued=" + bulkheadMaxQueued + ", bulkheadMaxWait=" + bulkheadMaxWait + ", bulkheadRetryAfter=" + bulkheadRetryAfter + ", faqTocAtRuntime=" + faqTocAtRuntime + ", previewMode=" + previewMode + ", debugMode=" + debugMode + ", enablePackageLifecycleExecutor=" + enablePackageLifecycleExecutor + '}';
     }
 
 }
@@ -16,6 +16,9 @@
  */
 package docet.engine;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import docet.DocetDocumentResourcesAccessor;
 import docet.DocetLanguage;
 import docet.error.DocetDocumentParsingException;
@@ -30,4 +33,12 @@ public interface DocetDocumentParser {
 
     byte[] parsePage(final String html, DocetDocumentResourcesAccessor accessor, DocetLanguage lang)
         throws DocetDocumentParsingException;
+
+    /**
+     * Parse the given page writing it to the given stream, as soon as possible if the parser supports it.
+     */
+    default void parsePage(final String html, DocetDocumentResourcesAccessor accessor, DocetLanguage lang,
+        final OutputStream out) throws DocetDocumentParsingException, IOException {
+        out.write(this.parsePage(html, accessor, lang));
+    }
 }
@@ -21,6 +21,7 @@ import java.util.List;
 
 import docet.error.DocetDocumentSearchException;
 import docet.model.DocetPage;
+import docet.model.DocetSuggestion;
 
 /**
  * Interface of a Document searcher.
@@ -44,6 +45,79 @@ public interface DocetDocumentSearcher {
     List<DocetPage>  searchForMatchingDocuments(final String searchText, final String lang, final int maxNumResults)
         throws DocetDocumentSearchException;
 
+    /**
+     * Same as {@link #searchForMatchingDocuments(String, String, int)}, collecting figures about the search passes
+     * actually performed.
+     *
+     * @param searchText the text to be searched within the installed packages
+     * @param lang the language of the docs to be searched
+     * @param maxNumResults max no. of matching pages to be retrieved
+     * @param statistics where to account for the performed search passes
+     * @return a list of {@link DocetPage} matching the search text
+     *
+     * @throws DocetDocumentSearchException in case of issue over search process
+     */
+    List<DocetPage> searchForMatchingDocuments(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchStatistics statistics) throws DocetDocumentSearchException;
+
+    /**
+     * First phase of a search spanning several packages: retrieves just the scores of at most maxNumResults pages
+     * matching the search text, without loading them.
+     *
+     * @param searchText the text to be searched within the installed packages
+     * @param lang the language of the docs to be searched
+     * @param maxNumResults max no. of matching pages to be retrieved
+     * @param statistics where to account for the performed search passes
+     * @return the matching hits, sorted by decreasing score
+     *
+     * @throws DocetDocumentSearchException in case of issue over search process
+     */
+    DocetSearchHits searchForMatchingHits(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchStatistics statistics) throws DocetDocumentSearchException;
+
+    /**
+     * Same as {@link #searchForMatchingHits(String, String, int, DocetSearchStatistics)}, retrieving the page of
+     * results following the given cursor, as returned by {@link DocetSearchHits#getNextCursor()}.
+     *
+     * @param searchText the text to be searched within the installed packages
+     * @param lang the language of the docs to be searched
+     * @param maxNumResults max no. of matching pages to be retrieved
+     * @param after the cursor to resume the search from, null to retrieve the first page
+     * @param statistics where to account for the performed search passes
+     * @return the matching hits, sorted by decreasing score
+     *
+     * @throws DocetDocumentSearchException in case of issue over search process
+     */
+    DocetSearchHits searchForMatchingHits(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchCursor after, final DocetSearchStatistics statistics) throws DocetDocumentSearchException;
+
+    /**
+     * Second phase of a search spanning several packages: loads and highlights the first numHits of the given hits.
+     *
+     * @param hits hits previously returned by {@link #searchForMatchingHits(String, String, int, DocetSearchStatistics)}
+     * @param numHits no. of top hits to be loaded
+     * @param maxScore the score corresponding to a relevance of 100
+     * @return a list of {@link DocetPage} matching the search text
+     *
+     * @throws DocetDocumentSearchException in case of issue over loading the matching pages
+     */
+    List<DocetPage> loadMatchingDocuments(final DocetSearchHits hits, final int numHits, final float maxScore)
+        throws DocetDocumentSearchException;
+
+    /**
+     * Given a prefix typed in by the user return the best matching completions (page titles and headings) in the given
+     * language, with a maximum size of maxNumResults.
+     *
+     * @param prefix the text to be completed
+     * @param lang the language of the docs to be searched
+     * @param maxNumResults max no. of suggestions to be retrieved
+     * @return a list of {@link DocetSuggestion} sorted by decreasing weight
+     *
+     * @throws DocetDocumentSearchException in case of issue over suggestion lookup
+     */
+    List<DocetSuggestion> suggestForPrefix(final String prefix, final String lang, final int maxNumResults)
+        throws DocetDocumentSearchException;
+
     /**
      *
      * @return true if the searcher is actually open, false in case the underlying search index is already open.
@@ -52,6 +126,17 @@ public interface DocetDocumentSearcher {
      */
     boolean open() throws IOException;
 
+    /**
+     * Opens the searcher and readies the part of the underlying search index holding the documents in the given
+     * language, so that the first search in that language does not pay for loading it.
+     *
+     * @param lang the language whose documents are going to be searched
+     * @return true if the searcher is actually open, false in case the underlying search index is already open.
+     *
+     * @throws IOException
+     */
+    boolean open(final String lang) throws IOException;
+
     /**
     *
     * @return true if the search is closed, false in case the underlying search index is already closed.
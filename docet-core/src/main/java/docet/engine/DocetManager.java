@@ -17,22 +17,31 @@
 package docet.engine;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,13 +49,30 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -72,11 +98,15 @@ import docet.error.DocetPackageNotFoundException;
 import docet.model.DocetDocument;
 import docet.model.DocetPackageDescriptor;
 import docet.model.DocetPage;
+import docet.model.DocetSuggestion;
 import docet.model.PackageDescriptionResult;
 import docet.model.PackageResponse;
+import docet.model.PDFJobResponse;
 import docet.model.PackageSearchResult;
 import docet.model.SearchResponse;
 import docet.model.SearchResult;
+import docet.model.SuggestResponse;
+import docet.model.SuggestResult;
 
 public final class DocetManager {
 
@@ -99,6 +129,8 @@ public final class DocetManager {
     private static final String DOCET_HTML_ATTR_REFERENCE_LANGUAGE_NAME = "reference-language";
 
     private static final Charset ENCODING_UTF_8 = StandardCharsets.UTF_8;
+    private static final String SEARCH_STREAM_RECORD_PACKAGE = "package";
+    private static final String SEARCH_STREAM_RECORD_END = "end";
     private static final String EXTENSION_HTML = ".html";
     private static final String EXTENSION_PDF = ".pdf";
     private static final String DOM_PATH_TO_TOC_LIST = "nav > ul";
@@ -106,24 +138,45 @@ public final class DocetManager {
     private static final String DOCET_ATTR_PACKAGE = "package";
     private static final String DOCET_ATTR_DOCETREF = "docetref";
 
-    private static final String URL_PATTERN = "^(/package)|(/search)|(/toc)|"
-        + "(/main/[a-zA-Z_0-9\\-]+/index.mndoc)|"
-        + "(/faq/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.mndoc)|"
-        + "(/pages/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.mndoc)|"
-        + "(/pdfs/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.pdf)|"
-        + "(/icons/[a-zA-Z_0-9\\-]+)|"
-        + "(/images/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.\\w{3,}\\.mnimg)";
+    /**
+     * Mappers are thread-safe once configured: sharing them keeps their serializer caches warm across requests.
+     */
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectWriter SEARCH_RESPONSE_WRITER = JSON_MAPPER.writerWithType(SearchResponse.class);
+    private static final ObjectWriter SUGGEST_RESPONSE_WRITER = JSON_MAPPER.writerWithType(SuggestResponse.class);
+    private static final ObjectWriter PACKAGE_RESPONSE_WRITER = JSON_MAPPER.writerWithType(PackageResponse.class);
+    private static final ObjectWriter PDF_JOB_RESPONSE_WRITER = JSON_MAPPER.writerWithType(PDFJobResponse.class);
+
+    private static final String CLIENT_SEARCH_INDEX_FILE_PREFIX = "client-";
+    private static final String CLIENT_SEARCH_INDEX_FILE_EXTENSION = ".json";
+    private static final String EXTENSION_GZIP = ".gz";
 
     public static final String STATS_DETAILS_PACKAGE_ID = "package_id";
     public static final String STATS_DETAILS_PAGE_ID = "page_id";
     public static final String STATS_DETAILS_SEARCH_TERM = "search_term";
     public static final String STATS_DETAILS_SEARCH_SOURCE_PACKAGE = "search_source_package";
     public static final String STATS_DETAILS_LANGUAGE = "language";
+    public static final String STATS_DETAILS_SEARCH_EXACT_PASSES = "search_exact_passes";
+    public static final String STATS_DETAILS_SEARCH_EXACT_HITS = "search_exact_hits";
+    public static final String STATS_DETAILS_SEARCH_EXACT_TIME_MS = "search_exact_time_ms";
+    public static final String STATS_DETAILS_SEARCH_FUZZY_PASSES = "search_fuzzy_passes";
+    public static final String STATS_DETAILS_SEARCH_FUZZY_HITS = "search_fuzzy_hits";
+    public static final String STATS_DETAILS_SEARCH_FUZZY_TIME_MS = "search_fuzzy_time_ms";
+    public static final String STATS_DETAILS_SUGGEST_PREFIX = "suggest_prefix";
+    public static final String STATS_DETAILS_SUGGEST_SOURCE_PACKAGE = "suggest_source_package";
 
     private final DocetConfiguration docetConf;
     private final DocetPackageRuntimeManager packageRuntimeManager;
     private final DocetDocumentParserFactory parserFactory;
     private final PDFDocumentGenerator pdfDocumentGenerator;
+    private final Map<String, Map<String, PackageDescription>> packageDescriptionsByLang;
+    private final ThreadPoolExecutor asyncSearchExecutor;
+    private final ThreadPoolExecutor asyncPdfExecutor;
+    private final ThreadPoolExecutor pdfLayoutExecutor;
+    private final Map<DocetRequestType, DocetRequestBulkhead> requestBulkheads;
+    private final PDFGenerationQueue pdfGenerationQueue;
+    private final PDFDiskCache pdfDiskCache;
+    private final PDFGenerationJobs pdfGenerationJobs;
 
     /**
      * Adopted only in DOCet standalone mode.
@@ -136,12 +189,53 @@ public final class DocetManager {
 
     public DocetManager(final DocetConfiguration docetConf, final DocetPackageLocator packageLocator) throws DocetException {
         this.docetConf = docetConf;
-        this.packageRuntimeManager = new DocetPackageRuntimeManager(packageLocator, docetConf);
+        this.packageDescriptionsByLang = new ConcurrentHashMap<>();
+        this.packageRuntimeManager = new DocetPackageRuntimeManager(packageLocator, docetConf,
+            this::evictPackageDescriptions);
         this.parserFactory = new DocetDocumentParserFactory();
+        this.asyncSearchExecutor = newAsyncAdmissionExecutor("Docet async search", DocetRequestType.TYPE_SEARCH,
+            docetConf);
+        this.asyncPdfExecutor = newAsyncAdmissionExecutor("Docet async pdf", DocetRequestType.TYPE_PDFS, docetConf);
+        this.requestBulkheads = new EnumMap<>(DocetRequestType.class);
+        for (final DocetRequestType type : DocetRequestType.values()) {
+            this.requestBulkheads.put(type, new DocetRequestBulkhead(type, docetConf.getBulkheadMaxConcurrent(type),
+                docetConf.getBulkheadMaxQueued(type), docetConf.getBulkheadMaxWait()));
+        }
+        if (docetConf.getPdfCacheDirPath().isEmpty() || docetConf.isPreviewMode()) {
+            this.pdfDiskCache = null;
+        } else {
+            try {
+                this.pdfDiskCache = new PDFDiskCache(Paths.get(docetConf.getPdfCacheDirPath()),
+                    docetConf.getPdfCacheMaxSize());
+            } catch (IOException e) {
+                throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Initializaton of pdf cache failed", e);
+            }
+        }
+        this.pdfGenerationQueue = new PDFGenerationQueue(docetConf.getPdfGenerationThreads(),
+            docetConf.getPdfGenerationQueueSize(), docetConf.getPdfGenerationMaxWait(),
+            this.pdfDiskCache != null ? this.pdfDiskCache.getTmpDir() : null);
+        this.pdfGenerationJobs = new PDFGenerationJobs(docetConf.getPdfJobsThreads(),
+            docetConf.getPdfJobsQueueSize(), docetConf.getPdfJobsRetention(),
+            this.pdfDiskCache != null ? this.pdfDiskCache.getTmpDir() : null);
+
+        if (docetConf.getPdfLayoutThreads() > 1) {
+            // sections beyond the queue are laid out by the generating thread, slowing down the pdfs holding it only
+            this.pdfLayoutExecutor = newAsyncExecutor("Docet pdf layout", docetConf.getPdfLayoutThreads(),
+                docetConf.getPdfLayoutThreads());
+        } else {
+            this.pdfLayoutExecutor = null;
+        }
 
         if (isPDFGenerationLibraryPresent()) {
             try {
-                this.pdfDocumentGenerator = new PDFDocumentGenerator(this);
+                final PDFDocumentHandler.RenderingContextPool contextPool;
+                if (docetConf.getPdfContextPoolSize() > 0) {
+                    contextPool = new PDFDocumentHandler.RenderingContextPool(docetConf.getPdfContextPoolSize());
+                } else {
+                    contextPool = null;
+                }
+                this.pdfDocumentGenerator = new PDFDocumentGenerator(this, this.pdfLayoutExecutor, contextPool,
+                    docetConf.isPdfStreaming());
             } catch (IOException e) {
                 throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Initializaton of package runtime manager failed", e);
             }
@@ -155,9 +249,59 @@ public final class DocetManager {
     }
 
     public void stop() throws InterruptedException {
+        if (this.asyncSearchExecutor != null) {
+            this.asyncSearchExecutor.shutdownNow();
+        }
+        if (this.asyncPdfExecutor != null) {
+            this.asyncPdfExecutor.shutdownNow();
+        }
+        this.pdfGenerationQueue.shutdown();
+        this.pdfGenerationJobs.shutdown();
+        if (this.pdfLayoutExecutor != null) {
+            this.pdfLayoutExecutor.shutdownNow();
+        }
         this.packageRuntimeManager.stop();
     }
 
+    /**
+     * @return admission control state for each request type, e.g. to be exposed for monitoring
+     */
+    public Map<DocetRequestType, DocetRequestBulkhead> getRequestBulkheads() {
+        return Collections.unmodifiableMap(this.requestBulkheads);
+    }
+
+    /**
+     * Async requests are admitted by the bulkhead of their type as any other request, on the thread serving them:
+     * hence the pool has a thread for each request the bulkhead may hold, either served or waiting, and no queue.
+     *
+     * @return the executor serving async requests of the given type, null if the type has no concurrency limit
+     */
+    private static ThreadPoolExecutor newAsyncAdmissionExecutor(final String name, final DocetRequestType type,
+        final DocetConfiguration docetConf) {
+        final int maxConcurrent = docetConf.getBulkheadMaxConcurrent(type);
+        if (maxConcurrent <= 0) {
+            return null;
+        }
+        return newAsyncExecutor(name, maxConcurrent + docetConf.getBulkheadMaxQueued(type), 0);
+    }
+
+    private static ThreadPoolExecutor newAsyncExecutor(final String name, final int threads, final int queueSize) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final BlockingQueue<Runnable> queue;
+        if (queueSize > 0) {
+            queue = new LinkedBlockingQueue<>(queueSize);
+        } else {
+            queue = new SynchronousQueue<>();
+        }
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, r -> {
+            final Thread t = new Thread(r, name + " " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private Path getPathToPackageDoc(final String packageName, final DocetExecutionContext ctx) throws DocetPackageException {
         return this.packageRuntimeManager.getDocumentDirectoryForPackage(packageName, ctx).toAbsolutePath();
     }
@@ -288,9 +432,7 @@ public final class DocetManager {
                     res = DocetUtils.cleanPageText(html.toString(), docetConf.isEnableIframe());
                     break;
                 case TYPE_PDF:
-                    htmlDoc.outputSettings().prettyPrint(false);
-                    html.append(htmlDoc.html());
-                    res = DocetUtils.cleanPageText(html.toString(), false);
+                    res = cleanPdfPage(htmlDoc).body().html();
                     break;
                 default:
                     throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Page format not supported for page " + pageId + " package " + packageName);
@@ -303,6 +445,43 @@ public final class DocetManager {
         return res;
     }
 
+    /**
+     * Retrieves a page in pdf format as a cleaned document, ready to be handed over to pdf layout as it is.
+     *
+     * @param packageName the target documentation package
+     * @param pageId the id of the page to be served
+     * @param lang the reference language for this page's id
+     * @param faq true if the page to be served is a faq page, false in case of a "standard" documentation page
+     * @param params the additional params to be appended to each link in the page
+     *
+     * @return the cleaned page, the same that {@link #servePageIdForLanguageForPackage} serializes for
+     * {@link DocetDocFormat#TYPE_PDF}
+     *
+     * @throws DocetException in case the page cannot be retrieved
+     */
+    Document servePdfPageIdForLanguageForPackage(final String packageName, final String pageId, final String lang,
+        final boolean faq, final Map<String, String[]> params, final DocetExecutionContext ctx)
+        throws DocetException {
+        Document res = null;
+        try {
+            res = cleanPdfPage(parsePageForPackage(packageName, pageId, lang, DocetDocFormat.TYPE_PDF, faq, params, ctx));
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_RESOURCE_NOTFOUND, "Error on retrieving page '" + pageId + "' for package '" + packageName + "'", ex);
+        } catch (DocetPackageException ex) {
+            this.handleDocetPackageException(ex, packageName);
+        }
+        return res;
+    }
+
+    /**
+     * The page is parsed as xml, its html is parsed again while cleaning it to get the html tree builder
+     * normalisation pdf layout relies on.
+     */
+    private static Document cleanPdfPage(final Document htmlDoc) {
+        htmlDoc.outputSettings().prettyPrint(false);
+        return DocetUtils.cleanPage(htmlDoc.html(), false);
+    }
+
     private Document parsePageForPackage(final String packageName, final String pageId, final String lang,
         final DocetDocFormat format, final boolean faq, final Map<String, String[]> params, final DocetExecutionContext ctx)
         throws DocetPackageException, IOException {
@@ -547,12 +726,6 @@ public final class DocetManager {
         }
     }
 
-    private String parsePackageIconUrl(final String packageName, final Map<String, String[]> params) {
-        String url = MessageFormat.format(this.docetConf.getLinkToPackageIconPattern(), packageName);
-        url = appendParamsToUrl(url, params);
-        return url;
-    }
-
     private void parseImage(final String packageName, final Element item, final String lang, final DocetDocFormat format,
         final Map<String, String[]> params, final DocetExecutionContext ctx) throws DocetPackageException, IOException {
         final String[] imgPathTokens = item.attr("src").split("/");
@@ -724,35 +897,20 @@ public final class DocetManager {
         }
         for (final String packageId : requestedPackages) {
             try {
-                final Path pathToPackage = this.getPathToPackageDoc(packageId, ctx);
-                final Document descriptor = Jsoup.parseBodyFragment(
-                    new String(
-                        DocetUtils.fastReadFile(DocetUtils.resolve(pathToPackage, "descriptor.html")), ENCODING_UTF_8));
-                final Elements divDescriptor = descriptor.select("div[lang=" + lang + "]");
-                final String title;
-                final String desc;
-                final String imageIcoPath;
-                final boolean packageFound;
-                String actualLanguage = lang;
-                if (divDescriptor.isEmpty()) {
+                final PackageDescription description = this.getPackageDescription(packageId, lang, ctx);
+                if (description == null) {
                     LOGGER.log(Level.WARNING, "Descriptor for package '"
                         + packageId + "' is empty for language '" + lang + "'. Skipping...");
-                    title = "";
-                    desc = "";
-                    packageFound = false;
                 } else {
-                    title = divDescriptor.select("h1").get(0).text();
-                    desc = divDescriptor.select("p").get(0).text();
-                    if (divDescriptor.hasAttr(DOCET_HTML_ATTR_REFERENCE_LANGUAGE_NAME)) {
-                        actualLanguage = divDescriptor.attr(DOCET_HTML_ATTR_REFERENCE_LANGUAGE_NAME);
+                    final String packageLink = this.appendParamsToUrl(description.mainPageLink, additionalParams);
+                    final String imageIcoPath;
+                    if (description.iconLink != null) {
+                        imageIcoPath = this.appendParamsToUrl(description.iconLink, additionalParams);
+                    } else {
+                        imageIcoPath = request.getContextPath() + "/docetres/docet/doc-default.png";
                     }
-                    packageFound = true;
-                }
-                if (packageFound) {
-                    final String packageLink = getLinkToPackageMainPage(packageId, actualLanguage, additionalParams);
-                    imageIcoPath = this.buildPackageIconPath(packageId, pathToPackage, additionalParams, request);
-                    final PackageDescriptionResult res
-                        = new PackageDescriptionResult(title, packageId, packageLink, desc, imageIcoPath, actualLanguage, null);
+                    final PackageDescriptionResult res = new PackageDescriptionResult(description.title, packageId,
+                        packageLink, description.description, imageIcoPath, description.language, null);
                     results.add(res);
                 }
             } catch (IOException | DocetPackageException ex) {
@@ -768,96 +926,415 @@ public final class DocetManager {
         return packageResponse;
     }
 
-    private String buildPackageIconPath(final String packageId, final Path pathToPackage,
-        final Map<String, String[]> additionalParams, final HttpServletRequest request) {
-        final String iconPath;
-        final Path iconFile = pathToPackage.resolve("icon.png");
-        if (Files.isRegularFile(iconFile)) {
-            iconPath = parsePackageIconUrl(packageId, additionalParams);
+    /**
+     * Retrieve the request-independent part of the description of a package for the given language, from the cache
+     * if the package has not been reloaded meanwhile. In preview mode the descriptor is read again from disk on each
+     * call, so that changes to it are visible right away.
+     *
+     * @return the description of the package, or null if its descriptor has no section for the given language
+     */
+    PackageDescription getPackageDescription(final String packageId, final String lang,
+        final DocetExecutionContext ctx) throws DocetPackageException, IOException {
+        if (this.docetConf.isPreviewMode()) {
+            return this.toPackageDescription(packageId, lang,
+                DocetUtils.generatePackageDescriptor(this.getPathToPackageDoc(packageId, ctx)));
+        }
+        final DocetPackageDescriptor descriptor = this.packageRuntimeManager.getDescriptorForPackage(packageId, ctx);
+        if (!descriptor.isLanguageAvailable(lang)) {
+            return null;
+        }
+        final Map<String, PackageDescription> descriptionsForLang = this.packageDescriptionsByLang
+            .computeIfAbsent(lang, l -> new ConcurrentHashMap<>());
+        PackageDescription description = descriptionsForLang.get(packageId);
+        if (description == null || description.descriptor != descriptor) {
+            description = this.toPackageDescription(packageId, lang, descriptor);
+            descriptionsForLang.put(packageId, description);
+        }
+        return description;
+    }
+
+    /**
+     * Drop the cached descriptions of a package being reloaded or discarded.
+     */
+    private void evictPackageDescriptions(final String packageId) {
+        this.packageDescriptionsByLang.values().forEach(descriptionsForLang -> descriptionsForLang.remove(packageId));
+    }
+
+    /**
+     * @return true if the description of the given package for the given language is currently cached
+     */
+    boolean isPackageDescriptionCached(final String packageId, final String lang) {
+        final Map<String, PackageDescription> descriptionsForLang = this.packageDescriptionsByLang.get(lang);
+        return descriptionsForLang != null && descriptionsForLang.containsKey(packageId);
+    }
+
+    private PackageDescription toPackageDescription(final String packageId, final String lang,
+        final DocetPackageDescriptor descriptor) {
+        if (!descriptor.isLanguageAvailable(lang)) {
+            return null;
+        }
+        final String actualLanguage = descriptor.getReferenceLanguageForLang(lang);
+        final String iconLink;
+        if (descriptor.isIconAvailable()) {
+            iconLink = MessageFormat.format(this.docetConf.getLinkToPackageIconPattern(), packageId);
         } else {
-            iconPath = request.getContextPath() + "/docetres/docet/doc-default.png";
+            iconLink = null;
+        }
+        return new PackageDescription(descriptor, descriptor.getLabelForLang(lang), descriptor.getAbstractForLang(lang),
+            actualLanguage, MessageFormat.format(this.docetConf.getLinkToPagePattern(), packageId, "main", actualLanguage),
+            iconLink);
+    }
+
+    /**
+     * The part of a {@link PackageDescriptionResult} which does not depend on request params.
+     */
+    static final class PackageDescription {
+
+        private final DocetPackageDescriptor descriptor;
+        final String title;
+        private final String description;
+        private final String language;
+        private final String mainPageLink;
+        private final String iconLink;
+
+        private PackageDescription(final DocetPackageDescriptor descriptor, final String title,
+            final String description, final String language, final String mainPageLink, final String iconLink) {
+            this.descriptor = descriptor;
+            this.title = title;
+            this.description = description;
+            this.language = language;
+            this.mainPageLink = mainPageLink;
+            this.iconLink = iconLink;
         }
-        return iconPath;
     }
 
     private SearchResponse searchPagesByKeywordAndLangWithRerencePackage(final String searchText, final String lang,
         final String sourcePackageName, final Set<String> enabledPackages, final Map<String, String[]> additionalParams,
-        final DocetExecutionContext ctx)
+        final DocetSearchCursor cursor, final DocetExecutionContext ctx, final DocetSearchStatistics statistics)
         throws DocetException {
         SearchResponse searchResponse;
 
         final List<PackageSearchResult> results = new ArrayList<>();
         final Holder<PackageSearchResult> packageResForCurrentPackage = new Holder<>();
+        try {
+            this.searchPagesByKeywordAndLang(searchText, lang, sourcePackageName, enabledPackages, additionalParams,
+                cursor, ctx, statistics, (packageRes, currentPackage) -> {
+                    if (currentPackage) {
+                        packageResForCurrentPackage.setValue(packageRes);
+                    } else {
+                        results.add(packageRes);
+                    }
+                });
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on completing search '" + searchText + "'",
+                ex);
+        }
+        searchResponse = new SearchResponse(sourcePackageName);
+        searchResponse.addResults(results);
+        if (packageResForCurrentPackage.value != null) {
+            searchResponse.setCurrentPackageResults(packageResForCurrentPackage.value);
+        }
+        return searchResponse;
+    }
+
+    /**
+     * Search the given packages, handing the results of each package to the given consumer as soon as they are
+     * ready. Results of the source package always come first.
+     */
+    private void searchPagesByKeywordAndLang(final String searchText, final String lang,
+        final String sourcePackageName, final Set<String> enabledPackages, final Map<String, String[]> additionalParams,
+        final DocetSearchCursor cursor, final DocetExecutionContext ctx, final DocetSearchStatistics statistics,
+        final PackageSearchResultConsumer consumer) throws IOException {
+        final List<String> orderedPackages = new ArrayList<>();
+        if (cursor != null) {
+            orderedPackages.add(cursor.getPackageId());
+        } else {
+            orderedPackages.addAll(enabledPackages);
+            if (orderedPackages.remove(sourcePackageName)) {
+                orderedPackages.add(0, sourcePackageName);
+            }
+        }
         final Map<String, List<SearchResult>> docsForPackage = new HashMap<>();
         final Map<String, String> errorForPackage = new HashMap<>();
+        final Map<String, Integer> totalHitsForPackage = new HashMap<>();
+        final Map<String, String> nextCursorForPackage = new HashMap<>();
+        final Set<String> partialPackages = new HashSet<>();
 
         //perform actual search
+        if (cursor != null) {
+            // later pages are always served by the search index of the package the cursor refers to
+            this.searchPagesOnPackage(searchText, lang, cursor.getPackageId(), cursor, additionalParams, ctx,
+                docsForPackage, errorForPackage, totalHitsForPackage, nextCursorForPackage, partialPackages, statistics);
+        } else if (this.packageRuntimeManager.isFederatedSearchIndexEnabled()) {
+            this.searchPagesOnFederatedIndex(searchText, lang, enabledPackages, additionalParams, ctx,
+                docsForPackage, errorForPackage, partialPackages, statistics);
+        } else if (this.docetConf.isSearchGlobalTopKEnabled()) {
+            this.searchPagesWithGlobalTopK(searchText, lang, enabledPackages, additionalParams, ctx,
+                docsForPackage, errorForPackage, totalHitsForPackage, partialPackages, statistics);
+        } else {
+            // results of each package are independent from the other ones, hence handed over as soon as ready
+            for (final String packageId : orderedPackages) {
+                this.searchPagesOnPackage(searchText, lang, packageId, null, additionalParams, ctx,
+                    docsForPackage, errorForPackage, totalHitsForPackage, nextCursorForPackage, partialPackages,
+                    statistics);
+                consumer.accept(this.toPackageSearchResult(packageId, lang, additionalParams, ctx, docsForPackage,
+                    errorForPackage, totalHitsForPackage, nextCursorForPackage, partialPackages),
+                    packageId.equals(sourcePackageName));
+            }
+            return;
+        }
+        for (final String packageId : orderedPackages) {
+            if (docsForPackage.containsKey(packageId) || errorForPackage.containsKey(packageId)) {
+                consumer.accept(this.toPackageSearchResult(packageId, lang, additionalParams, ctx, docsForPackage,
+                    errorForPackage, totalHitsForPackage, nextCursorForPackage, partialPackages),
+                    packageId.equals(sourcePackageName));
+            }
+        }
+    }
+
+    private PackageSearchResult toPackageSearchResult(final String packageid, final String lang,
+        final Map<String, String[]> additionalParams, final DocetExecutionContext ctx,
+        final Map<String, List<SearchResult>> docsForPackage, final Map<String, String> errorForPackage,
+        final Map<String, Integer> totalHitsForPackage, final Map<String, String> nextCursorForPackage,
+        final Set<String> partialPackages) {
+        String packageName = null;
+        final String packageLink = getLinkToPackageMainPage(packageid, lang, additionalParams);
+        try {
+            final DocetPackageDescriptor desc = this.packageRuntimeManager.getDescriptorForPackage(packageid, ctx);
+            packageName = desc.getLabelForLang(lang);
+        } catch (DocetPackageException ex) {
+            LOGGER.log(Level.WARNING, "Package name not found in descriptor for package " + packageid, ex);
+        }
+        final List<SearchResult> searchRes = docsForPackage.get(packageid);
+        if (searchRes == null) {
+            return PackageSearchResult.toPackageSearchResult(packageid, packageName,
+                packageLink, new ArrayList<>(), errorForPackage.get(packageid));
+        }
+        final PackageSearchResult packageRes = PackageSearchResult.toPackageSearchResult(packageid, packageName,
+            packageLink, searchRes, errorForPackage.get(packageid), totalHitsForPackage.getOrDefault(packageid, -1));
+        packageRes.setNextCursor(nextCursorForPackage.get(packageid));
+        packageRes.setPartial(partialPackages.contains(packageid));
+        return packageRes;
+    }
+
+    @FunctionalInterface
+    private interface PackageSearchResultConsumer {
+
+        void accept(PackageSearchResult packageRes, boolean currentPackage) throws IOException;
+    }
+
+    private List<SearchResult> convertDocetPagesToSearchResults(final String lang, final String packageId,
+        final Map<String, String[]> additionalParams, final List<DocetPage> docs, final DocetExecutionContext ctx)
+        throws DocetPackageException, IOException {
+        final List<SearchResult> packageSearchRes = new ArrayList<>();
+        final Document toc = parseTocForPackage(packageId, lang, additionalParams, ctx);
+        docs.stream().sorted((d1, d2) -> d2.getRelevance() - d1.getRelevance()).forEach(e -> {
+            final SearchResult searchRes
+                = this.convertDocetDocumentToSearchResult(lang, packageId, additionalParams, toc, e);
+            packageSearchRes.add(searchRes);
+        });
+        return packageSearchRes;
+    }
+
+    private void searchPagesOnPackage(final String searchText, final String lang, final String packageId,
+        final DocetSearchCursor cursor, final Map<String, String[]> additionalParams, final DocetExecutionContext ctx,
+        final Map<String, List<SearchResult>> docsForPackage, final Map<String, String> errorForPackage,
+        final Map<String, Integer> totalHitsForPackage, final Map<String, String> nextCursorForPackage,
+        final Set<String> partialPackages, final DocetSearchStatistics statistics) {
+        try {
+            final DocetDocumentSearcher packageSearcher = this.packageRuntimeManager.getSearchIndexForPackage(packageId, ctx);
+            try (DocetSearchHits hits = packageSearcher.searchForMatchingHits(searchText, lang,
+                this.docetConf.getMaxSearchResultsForPackage(), cursor, statistics)) {
+                final List<DocetPage> docs = packageSearcher.loadMatchingDocuments(hits, hits.size(), hits.getMaxScore());
+                docsForPackage.put(packageId,
+                    this.convertDocetPagesToSearchResults(lang, packageId, additionalParams, docs, ctx));
+                totalHitsForPackage.put(packageId, hits.getTotalHits());
+                final DocetSearchCursor nextCursor = hits.getNextCursor();
+                if (nextCursor != null) {
+                    nextCursorForPackage.put(packageId, nextCursor.toToken(packageId));
+                }
+                if (hits.isPartial()) {
+                    partialPackages.add(packageId);
+                }
+            }
+        } catch (IOException | DocetDocumentSearchException | DocetPackageException ex) {
+            LOGGER.log(Level.WARNING, "Error on completing search '"
+                + searchText + "' on package '" + packageId + "'", ex);
+            errorForPackage.put(packageId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Search each package for lightweight hits only, then keep the best ranked ones among all the packages, see
+     * {@link #selectGlobalTopK(Map, int)}: pages are actually loaded and highlighted only for the hits surviving the
+     * cut.
+     */
+    private void searchPagesWithGlobalTopK(final String searchText, final String lang,
+        final Set<String> enabledPackages, final Map<String, String[]> additionalParams, final DocetExecutionContext ctx,
+        final Map<String, List<SearchResult>> docsForPackage, final Map<String, String> errorForPackage,
+        final Map<String, Integer> totalHitsForPackage, final Set<String> partialPackages,
+        final DocetSearchStatistics statistics) {
+        final int topK = this.docetConf.getSearchGlobalTopK();
+        final Map<String, DocetSearchHits> hitsForPackage = new HashMap<>();
+        final Map<String, DocetDocumentSearcher> searcherForPackage = new HashMap<>();
+        try {
+            for (final String packageId : enabledPackages) {
+                try {
+                    final DocetDocumentSearcher packageSearcher
+                        = this.packageRuntimeManager.getSearchIndexForPackage(packageId, ctx);
+                    final DocetSearchHits hits = packageSearcher.searchForMatchingHits(searchText, lang,
+                        Math.min(topK, this.docetConf.getMaxSearchResultsForPackage()), statistics);
+                    searcherForPackage.put(packageId, packageSearcher);
+                    hitsForPackage.put(packageId, hits);
+                    totalHitsForPackage.put(packageId, hits.getTotalHits());
+                } catch (DocetDocumentSearchException ex) {
+                    LOGGER.log(Level.WARNING, "Error on completing search '"
+                        + searchText + "' on package '" + packageId + "'", ex);
+                    errorForPackage.put(packageId, ex.getMessage());
+                }
+            }
+            final Map<String, Integer> survivorsForPackage = selectGlobalTopK(hitsForPackage, topK);
+            for (final Map.Entry<String, DocetSearchHits> entry : hitsForPackage.entrySet()) {
+                final String packageId = entry.getKey();
+                try {
+                    final DocetSearchHits hits = entry.getValue();
+                    final List<DocetPage> docs = searcherForPackage.get(packageId)
+                        .loadMatchingDocuments(hits, survivorsForPackage.getOrDefault(packageId, 0), hits.getMaxScore());
+                    if (hits.isPartial()) {
+                        partialPackages.add(packageId);
+                    }
+                    docsForPackage.put(packageId,
+                        this.convertDocetPagesToSearchResults(lang, packageId, additionalParams, docs, ctx));
+                } catch (IOException | DocetDocumentSearchException | DocetPackageException ex) {
+                    LOGGER.log(Level.WARNING, "Error on completing search '"
+                        + searchText + "' on package '" + packageId + "'", ex);
+                    errorForPackage.put(packageId, ex.getMessage());
+                }
+            }
+        } finally {
+            hitsForPackage.values().forEach(DocetSearchHits::close);
+        }
+    }
+
+    /**
+     * Scores coming from separate search indexes are not comparable, as each index has its own document count and
+     * term statistics. Hits are hence merged by rank: the n-th best hit of any package comes before the (n+1)-th
+     * best hit of every other package. Hits of the same rank are ordered by their score relative to the best score
+     * of their package, then by package id, so the resulting order among packages is approximate by design.
+     *
+     * @param hitsForPackage the hits of each package, sorted by decreasing score
+     * @param topK max no. of hits to be kept overall
+     * @return the no. of top hits of each package surviving the cut
+     */
+    static Map<String, Integer> selectGlobalTopK(final Map<String, DocetSearchHits> hitsForPackage, final int topK) {
+        final Map<String, Integer> survivorsForPackage = new HashMap<>();
+        int left = topK;
+        for (int rank = 0; left > 0; rank++) {
+            final int currentRank = rank;
+            final List<String> packagesAtRank = hitsForPackage.entrySet().stream()
+                .filter(entry -> entry.getValue().size() > currentRank)
+                .sorted(Comparator.comparingDouble((Map.Entry<String, DocetSearchHits> entry)
+                    -> -relativeScore(entry.getValue(), currentRank)).thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+            if (packagesAtRank.isEmpty()) {
+                break;
+            }
+            for (final String packageId : packagesAtRank.subList(0, Math.min(left, packagesAtRank.size()))) {
+                survivorsForPackage.merge(packageId, 1, Integer::sum);
+            }
+            left -= packagesAtRank.size();
+        }
+        return survivorsForPackage;
+    }
+
+    private static float relativeScore(final DocetSearchHits hits, final int index) {
+        final float maxScore = hits.getMaxScore();
+        return maxScore > 0 ? hits.getScore(index) / maxScore : 0f;
+    }
+
+    private void searchPagesOnFederatedIndex(final String searchText, final String lang,
+        final Set<String> enabledPackages, final Map<String, String[]> additionalParams, final DocetExecutionContext ctx,
+        final Map<String, List<SearchResult>> docsForPackage, final Map<String, String> errorForPackage,
+        final Set<String> partialPackages, final DocetSearchStatistics statistics) {
+        final Map<String, DocetPackageDescriptor> searchablePackages = new HashMap<>();
         for (final String packageId : enabledPackages) {
-            final List<DocetPage> docs = new ArrayList<>();
-            final List<SearchResult> packageSearchRes = new ArrayList<>();
             try {
-                final DocetDocumentSearcher packageSearcher
-                    = this.packageRuntimeManager.getSearchIndexForPackage(packageId, ctx);
-                docs.addAll(
-                    packageSearcher
-                        .searchForMatchingDocuments(searchText, lang, this.docetConf.getMaxSearchResultsForPackage()));
-                final Document toc = parseTocForPackage(packageId, lang, additionalParams, ctx);
-                docs.stream().sorted((d1, d2) -> d2.getRelevance() - d1.getRelevance()).forEach(e -> {
-                    final SearchResult searchRes
-                        = this.convertDocetDocumentToSearchResult(lang, packageId, additionalParams, toc, e);
-                    packageSearchRes.add(searchRes);
-                });
-                docsForPackage.put(packageId, packageSearchRes);
-            } catch (IOException | DocetDocumentSearchException | DocetPackageException ex) {
+                searchablePackages.put(packageId,
+                    this.packageRuntimeManager.importPackageInFederatedSearchIndex(packageId, ctx));
+            } catch (DocetDocumentSearchException ex) {
                 LOGGER.log(Level.WARNING, "Error on completing search '"
                     + searchText + "' on package '" + packageId + "'", ex);
                 errorForPackage.put(packageId, ex.getMessage());
             }
         }
-        docsForPackage.entrySet().stream().forEach(entry -> {
-            final String packageid = entry.getKey();
-            final List<SearchResult> searchRes = entry.getValue();
-            String packageName = null;
-            final String packageLink = getLinkToPackageMainPage(packageid, lang, additionalParams);
+        final Map<String, List<DocetPage>> docs;
+        try {
+            docs = this.packageRuntimeManager.getFederatedSearchIndex().searchForMatchingDocuments(searchText, lang,
+                searchablePackages, this.docetConf.getMaxSearchResultsForPackage(), statistics, partialPackages);
+        } catch (DocetDocumentSearchException ex) {
+            LOGGER.log(Level.WARNING, "Error on completing search '" + searchText + "' on federated search index", ex);
+            searchablePackages.keySet().forEach(packageId -> errorForPackage.put(packageId, ex.getMessage()));
+            return;
+        }
+        for (final String packageId : searchablePackages.keySet()) {
             try {
-                final DocetPackageDescriptor desc = this.packageRuntimeManager.getDescriptorForPackage(packageid, ctx);
-                packageName = desc.getLabelForLang(lang);
-            } catch (DocetPackageException ex) {
-                LOGGER.log(Level.WARNING, "Package name not found in descriptor for package " + packageid, ex);
-            }
-            final PackageSearchResult packageRes = PackageSearchResult.toPackageSearchResult(packageid, packageName,
-                packageLink, searchRes, errorForPackage.get(packageid));
-            if (packageid.equals(sourcePackageName)) {
-                packageResForCurrentPackage.setValue(packageRes);
-            } else {
-                results.add(packageRes);
+                docsForPackage.put(packageId, this.convertDocetPagesToSearchResults(lang, packageId, additionalParams,
+                    docs.getOrDefault(packageId, Collections.emptyList()), ctx));
+            } catch (IOException | DocetPackageException ex) {
+                LOGGER.log(Level.WARNING, "Error on completing search '"
+                    + searchText + "' on package '" + packageId + "'", ex);
+                errorForPackage.put(packageId, ex.getMessage());
             }
-        });
-        errorForPackage.entrySet().stream().forEach(entry -> {
-            final String packageid = entry.getKey();
-            final String errorMsg = entry.getValue();
-            String packageName = null;
-            final String packageLink = getLinkToPackageMainPage(packageid, lang, additionalParams);
+        }
+    }
+
+    private SuggestResponse suggestPagesByPrefixAndLang(final String prefix, final String lang,
+        final String sourcePackageName, final Set<String> enabledPackages, final Map<String, String[]> additionalParams,
+        final DocetExecutionContext ctx) {
+        final int maxSuggestions = this.docetConf.getMaxSuggestions();
+        final List<String> orderedPackages = new ArrayList<>(enabledPackages);
+        // suggestions coming from the current package win ties against the other ones
+        if (orderedPackages.remove(sourcePackageName)) {
+            orderedPackages.add(0, sourcePackageName);
+        }
+        final List<SuggestResult> results = new ArrayList<>();
+        for (final String packageId : orderedPackages) {
             try {
-                final DocetPackageDescriptor desc = this.packageRuntimeManager.getDescriptorForPackage(packageid, ctx);
-                packageName = desc.getLabelForLang(lang);
-            } catch (DocetPackageException ex) {
-                LOGGER.log(Level.WARNING, "Package name not found in descriptor for package " + packageid, ex);
-            }
-            final PackageSearchResult packageRes = PackageSearchResult.toPackageSearchResult(packageid, packageName,
-                packageLink, new ArrayList<>(), errorMsg);
-            if (packageid.equals(sourcePackageName)) {
-                packageResForCurrentPackage.setValue(packageRes);
-            } else {
-                results.add(packageRes);
+                final DocetDocumentSearcher packageSearcher
+                    = this.packageRuntimeManager.getSearchIndexForPackage(packageId, ctx);
+                for (final DocetSuggestion suggestion : packageSearcher.suggestForPrefix(prefix, lang, maxSuggestions)) {
+                    results.add(this.convertDocetSuggestionToSuggestResult(lang, packageId, additionalParams, suggestion));
+                }
+            } catch (DocetDocumentSearchException ex) {
+                LOGGER.log(Level.WARNING, "Error on completing suggestion '"
+                    + prefix + "' on package '" + packageId + "'", ex);
             }
-        });
-        searchResponse = new SearchResponse(sourcePackageName);
-        searchResponse.addResults(results);
-        if (packageResForCurrentPackage.value != null) {
-            searchResponse.setCurrentPackageResults(packageResForCurrentPackage.value);
         }
-        return searchResponse;
+        final SuggestResponse suggestResponse = new SuggestResponse();
+        results.sort(Comparator.comparingLong(SuggestResult::getWeight).reversed());
+        suggestResponse.addItems(results.subList(0, Math.min(maxSuggestions, results.size())));
+        return suggestResponse;
+    }
+
+    private SuggestResult convertDocetSuggestionToSuggestResult(final String lang, final String packageId,
+        final Map<String, String[]> additionalParams, final DocetSuggestion suggestion) {
+        final int docType = suggestion.getType();
+        final String pageLink;
+        final String pageId;
+        switch (docType) {
+            case DocetPage.DOCTYPE_FAQ:
+                pageLink = MessageFormat.format(this.docetConf.getLinkToFaqPattern(), packageId, suggestion.getPageId(), lang);
+                pageId = "faq_" + suggestion.getPageId() + "_" + lang;
+                break;
+            case DocetPage.DOCTYPE_PAGE:
+                pageLink = MessageFormat.format(this.docetConf.getLinkToPagePattern(), packageId, suggestion.getPageId(), lang);
+                pageId = suggestion.getPageId() + "_" + lang;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported document type " + docType);
+        }
+        return SuggestResult.toSuggestResult(packageId, suggestion, pageId, appendParamsToUrl(pageLink, additionalParams));
     }
 
     private String[] createBreadcrumbsForPageFromToc(final String packageId, final String pageId, final Document toc) {
@@ -938,25 +1415,225 @@ public final class DocetManager {
         HttpServletResponse response, StatsCollector statsCollector,
         DocetDocumentResourcesAccessor placeholderAccessor)
         throws DocetException {
+        final String reqPath = getRequestPath(request);
+        this.serveRoute(DocetRequestRoute.parseRequestRoute(reqPath), reqPath, request, response, statsCollector,
+            placeholderAccessor);
+    }
+
+    /**
+     * Asynchronous variant of {@link #serveRequest(HttpServletRequest, HttpServletResponse, DocetDocumentResourcesAccessor)}.
+     *
+     * @see #serveRequestAsync(HttpServletRequest, HttpServletResponse, StatsCollector, DocetDocumentResourcesAccessor)
+     */
+    public void serveRequestAsync(HttpServletRequest request, HttpServletResponse response,
+        DocetDocumentResourcesAccessor placeholderAccessor) throws DocetException {
+        this.serveRequestAsync(request, response, null, placeholderAccessor);
+    }
+
+    /**
+     * Asynchronous variant of
+     * {@link #serveRequest(HttpServletRequest, HttpServletResponse, StatsCollector, DocetDocumentResourcesAccessor)}.
+     * Searches and pdfs are served on dedicated thread pools, releasing the container thread right away, while any
+     * other request is served synchronously as usual. Requests are served synchronously as well if the servlet does
+     * not support async processing, or if their type has no concurrency limit.
+     * <p>
+     * Async requests are admitted by the same {@link DocetRequestBulkhead} as synchronous ones, the thread pools are
+     * just sized to hold every request the bulkheads may admit or queue: requests refused by the bulkheads are answered
+     * with 503 (Service Unavailable). Errors occurring
+     * once the request has gone async cannot be thrown back to the servlet, they are answered with the matching HTTP
+     * status instead. Requests timing out are answered with 503 as well, unless already committed: their work is
+     * cancelled by interrupting the serving thread, which is not allowed to touch the response anymore. The same
+     * happens to requests failing on the container side, e.g. because the client went away.
+     *
+     * @param request
+     * @param response
+     * @param statsCollector allows details about request to be collected
+     * @param placeholderAccessor to retrieve app-specific placeholder to customize pages and pdfs
+     * @throws DocetException on errors serving synchronous requests
+     */
+    public void serveRequestAsync(HttpServletRequest request, HttpServletResponse response,
+        StatsCollector statsCollector, DocetDocumentResourcesAccessor placeholderAccessor) throws DocetException {
+        final String reqPath = getRequestPath(request);
+        final DocetRequestRoute route = DocetRequestRoute.parseRequestRoute(reqPath);
+        final ThreadPoolExecutor executor = this.getAsyncExecutorForRoute(route);
+        if (executor == null || !request.isAsyncSupported()) {
+            this.serveRoute(route, reqPath, request, response, statsCollector, placeholderAccessor);
+            return;
+        }
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        final DocetAsyncResponse asyncResponse = new DocetAsyncResponse(response);
+        final FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                this.serveRoute(route, reqPath, request, asyncResponse, statsCollector, placeholderAccessor);
+            } catch (DocetException ex) {
+                LOGGER.log(Level.SEVERE, "Error on serving async request " + reqPath, ex);
+                sendError(asyncResponse, getHttpStatusForError(ex));
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.SEVERE, "Unexpected error on serving async request " + reqPath, ex);
+                sendError(asyncResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                if (asyncResponse.finish()) {
+                    completeAsync(asyncContext);
+                }
+            }
+        }, null);
+        asyncContext.setTimeout(this.docetConf.getAsyncTimeout());
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(final AsyncEvent event) throws IOException {
+                if (!asyncResponse.expire()) {
+                    return;
+                }
+                LOGGER.log(Level.WARNING, "Async request {0} timed out", reqPath);
+                task.cancel(true);
+                sendServiceUnavailable(response);
+                completeAsync(asyncContext);
+            }
+
+            @Override
+            public void onComplete(final AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(final AsyncEvent event) {
+                // e.g. the client went away: stop working for it, a pdf generation nobody waits for gets cancelled
+                if (asyncResponse.expire()) {
+                    LOGGER.log(Level.FINE, "Async request " + reqPath + " failed", event.getThrowable());
+                    task.cancel(true);
+                    completeAsync(asyncContext);
+                }
+            }
+
+            @Override
+            public void onStartAsync(final AsyncEvent event) {
+            }
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            if (asyncResponse.finish()) {
+                LOGGER.log(Level.WARNING, "Too many concurrent requests, refusing request {0}", reqPath);
+                this.requestBulkheads.get(getAdmissionTypeForRoute(route)).reject();
+                sendServiceUnavailable(response);
+                completeAsync(asyncContext);
+            }
+        }
+    }
+
+    /**
+     * @return the executor the given request is to be served on, null for requests to be served synchronously
+     */
+    private ThreadPoolExecutor getAsyncExecutorForRoute(final DocetRequestRoute route) {
+        if (route == null) {
+            return null;
+        }
+        switch (getAdmissionTypeForRoute(route)) {
+            case TYPE_SEARCH:
+                return this.asyncSearchExecutor;
+            case TYPE_PDFS:
+                return this.asyncPdfExecutor;
+            default:
+                return null;
+        }
+    }
+
+    private static int getHttpStatusForError(final DocetException ex) {
+        switch (ex.getCode()) {
+            case DocetException.CODE_PACKAGE_NOTFOUND:
+            case DocetException.CODE_RESOURCE_NOTFOUND:
+                return HttpServletResponse.SC_NOT_FOUND;
+            case DocetException.CODE_PACKAGE_ACCESS_DENIED:
+                return HttpServletResponse.SC_FORBIDDEN;
+            default:
+                return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+    }
+
+    private static void sendError(final HttpServletResponse response, final int status) {
+        try {
+            if (!response.isCommitted()) {
+                response.sendError(status);
+            }
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.log(Level.FINE, "Impossible to send error " + status + " for async request", ex);
+        }
+    }
+
+    private void sendServiceUnavailable(final HttpServletResponse response) {
+        if (!response.isCommitted()) {
+            response.setHeader("Retry-After", String.valueOf(this.docetConf.getBulkheadRetryAfter()));
+        }
+        sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    private static void completeAsync(final AsyncContext asyncContext) {
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException ex) {
+            LOGGER.log(Level.FINE, "Async request already completed", ex);
+        }
+    }
+
+    private static String getRequestPath(final HttpServletRequest request) {
+        final String base = request.getContextPath() + request.getServletPath();
+        return request.getRequestURI().substring(base.length());
+    }
+
+    private void serveRoute(final DocetRequestRoute route, final String reqPath, final HttpServletRequest request,
+        final HttpServletResponse response, final StatsCollector statsCollector,
+        DocetDocumentResourcesAccessor placeholderAccessor) throws DocetException {
+        final DocetRequestBulkhead bulkhead = route != null
+            ? this.requestBulkheads.get(getAdmissionTypeForRoute(route)) : null;
+        if (bulkhead != null && !bulkhead.enter()) {
+            LOGGER.log(Level.WARNING, "Too many concurrent {0} requests, refusing request {1}",
+                new Object[]{bulkhead.getType(), reqPath});
+            this.sendServiceUnavailable(response);
+            return;
+        }
+        try {
+            this.serveAdmittedRoute(route, reqPath, request, response, statsCollector, placeholderAccessor);
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.exit();
+            }
+        }
+    }
+
+    /**
+     * @return the request type whose limits apply to the given request; pages in pdf format are as expensive as pdfs
+     */
+    private static DocetRequestType getAdmissionTypeForRoute(final DocetRequestRoute route) {
+        switch (route.getType()) {
+            case TYPE_FAQ:
+            case TYPE_MAIN:
+            case TYPE_PAGES:
+                if (route.getFormat() == DocetDocFormat.TYPE_PDF) {
+                    return DocetRequestType.TYPE_PDFS;
+                }
+                return route.getType();
+            default:
+                return route.getType();
+        }
+    }
+
+    private void serveAdmittedRoute(final DocetRequestRoute route, final String reqPath,
+        final HttpServletRequest request, final HttpServletResponse response, final StatsCollector statsCollector,
+        DocetDocumentResourcesAccessor placeholderAccessor) throws DocetException {
         if (placeholderAccessor == null) {
             placeholderAccessor = new SimpleDocetDocumentAccessor();
         }
-        String base = request.getContextPath() + request.getServletPath();
-        final String reqPath = request.getRequestURI().substring(base.length());
-        if (reqPath.matches(URL_PATTERN)) {
+        if (route != null) {
             final DocetExecutionContext ctx = new DocetExecutionContext(request);
             final Map<String, String[]> additionalParams = request.getParameterMap();
 
-            String[] tokens = reqPath.substring(1).split("/");
-            String lang = Optional.ofNullable(request.getParameter("lang")).orElse(this.docetConf.getDefaultLanguage());
-            final String packageId;
-            if (tokens.length > 1) {
-                packageId = tokens[1];
+            final String lang;
+            if (route.getLanguage() != null) {
+                lang = route.getLanguage();
             } else {
-                packageId = null;
+                lang = Optional.ofNullable(request.getParameter("lang")).orElse(this.docetConf.getDefaultLanguage());
             }
-
-            final DocetRequestType req = DocetRequestType.parseDocetRequestByName(tokens[0]);
+            final String packageId = route.getPackageId();
+            final DocetRequestType req = route.getType();
             switch (req) {
                 case TYPE_TOC:
                     final String packageIdParam = request.getParameter("packageId");
@@ -965,17 +1642,8 @@ public final class DocetManager {
                 case TYPE_FAQ:
                 case TYPE_MAIN:
                 case TYPE_PAGES:
-                    DocetDocFormat format = DocetDocFormat.TYPE_HTML;
-                    String[] pageFields = tokens[2].split("_");
-                    final String pageName = pageFields[1];
-                    if (pageName.endsWith(".mndoc")) {
-                        lang = pageName.split(".mndoc")[0];
-                    } else if (pageName.endsWith(".pdf")) {
-                        lang = pageName.split(".pdf")[0];
-                        format = DocetDocFormat.TYPE_PDF;
-                    }
-                    final String pageId = pageFields[0];
-                    this.servePageRequest(packageId, pageId, lang, req == DocetRequestType.TYPE_FAQ, format,
+                    final String pageId = route.getPageId();
+                    this.servePageRequest(packageId, pageId, lang, req == DocetRequestType.TYPE_FAQ, route.getFormat(),
                         additionalParams, ctx, placeholderAccessor, response);
                     if (statsCollector != null) {
                         final Map<String, Object> details = new HashMap<>();
@@ -986,9 +1654,7 @@ public final class DocetManager {
                     }
                     break;
                 case TYPE_PDFS:
-                    final String[] reqFields = tokens[2].split("_");
-                    final String pdfname = reqFields[1];
-                    lang = pdfname.split(".pdf")[0];
+                    final String pdfname = route.getResourceName();
 
                     /* Check if pdf generation is enabled and configured */
                     if (pdfDocumentGenerator == null) {
@@ -997,8 +1663,8 @@ public final class DocetManager {
                         throw new DocetException(DocetException.CODE_GENERIC_ERROR,
                                 "Impossible to generate pdf: pdf generation disabled");
                     }
-                    final String documentId = reqFields[0];
-                    this.servePDFRequest(packageId, documentId, pdfname, lang, placeholderAccessor, ctx, response);
+                    final String documentId = route.getPageId();
+                    this.servePDFRequest(packageId, documentId, pdfname, lang, placeholderAccessor, ctx, request, response);
                     if (statsCollector != null) {
                         final Map<String, Object> details = new HashMap<>();
                         details.put(STATS_DETAILS_PACKAGE_ID, packageId);
@@ -1007,20 +1673,38 @@ public final class DocetManager {
                         statsCollector.afterRequest(req, details);
                     }
                     break;
+                case TYPE_PDFJOBS:
+                    if (packageId != null) {
+                        if (pdfDocumentGenerator == null) {
+                            LOGGER.log(Level.SEVERE, "Error on submitting pdf job for " + route.getResourceName()
+                                + " for package " + packageId + ": pdf generation disabled");
+                            throw new DocetException(DocetException.CODE_GENERIC_ERROR,
+                                "Impossible to generate pdf: pdf generation disabled");
+                        }
+                        this.submitPDFJob(packageId, route.getPageId(), route.getResourceName(), lang, placeholderAccessor,
+                            ctx, response);
+                    } else if (route.getFormat() == DocetDocFormat.TYPE_PDF) {
+                        this.servePDFJobDownload(route.getResourceName(), request, response);
+                    } else {
+                        this.servePDFJobStatus(route.getResourceName(), response);
+                    }
+                    break;
                 case TYPE_ICONS:
                     this.serveIconRequest(packageId, ctx, response);
                     break;
                 case TYPE_IMAGES:
-                    String[] imgFields = tokens[2].split("_");
-                    lang = imgFields[0];
-                    final String imgName = imgFields[1].split(".mnimg")[0];
+                    final String imgName = route.getResourceName();
                     this.serveImageRequest(packageId, imgName, lang, ctx, response);
                     break;
                 case TYPE_SEARCH:
                     final String sourcePackage = request.getParameter("sourcePkg");
                     final String[] packages = request.getParameterValues("enablePkg[]");
                     final String query = request.getParameter("q");
-                    this.serveSearchRequest(query, lang, packages, sourcePackage, additionalParams, ctx, response);
+                    final String searchCursor = request.getParameter("cursor");
+                    final boolean streamSearch = "ndjson".equals(request.getParameter("stream"));
+                    final DocetSearchStatistics searchStatistics = new DocetSearchStatistics();
+                    this.serveSearchRequest(query, lang, packages, sourcePackage, searchCursor, streamSearch,
+                        additionalParams, ctx, response, searchStatistics);
                     if (statsCollector != null) {
                         final Map<String, Object> details = new HashMap<>();
                         details.put(STATS_DETAILS_SEARCH_TERM, query);
@@ -1028,9 +1712,33 @@ public final class DocetManager {
                             details.put(STATS_DETAILS_SEARCH_SOURCE_PACKAGE, sourcePackage);
                         }
                         details.put(STATS_DETAILS_LANGUAGE, lang);
+                        details.put(STATS_DETAILS_SEARCH_EXACT_PASSES, searchStatistics.getExactPasses());
+                        details.put(STATS_DETAILS_SEARCH_EXACT_HITS, searchStatistics.getExactHits());
+                        details.put(STATS_DETAILS_SEARCH_EXACT_TIME_MS, searchStatistics.getExactTimeMs());
+                        details.put(STATS_DETAILS_SEARCH_FUZZY_PASSES, searchStatistics.getFuzzyPasses());
+                        details.put(STATS_DETAILS_SEARCH_FUZZY_HITS, searchStatistics.getFuzzyHits());
+                        details.put(STATS_DETAILS_SEARCH_FUZZY_TIME_MS, searchStatistics.getFuzzyTimeMs());
+                        statsCollector.afterRequest(req, details);
+                    }
+                    break;
+                case TYPE_SUGGEST:
+                    final String suggestSourcePackage = request.getParameter("sourcePkg");
+                    final String[] suggestPackages = request.getParameterValues("enablePkg[]");
+                    final String prefix = request.getParameter("q");
+                    this.serveSuggestRequest(prefix, lang, suggestPackages, suggestSourcePackage, additionalParams, ctx, response);
+                    if (statsCollector != null) {
+                        final Map<String, Object> details = new HashMap<>();
+                        details.put(STATS_DETAILS_SUGGEST_PREFIX, prefix);
+                        if (suggestSourcePackage != null) {
+                            details.put(STATS_DETAILS_SUGGEST_SOURCE_PACKAGE, suggestSourcePackage);
+                        }
+                        details.put(STATS_DETAILS_LANGUAGE, lang);
                         statsCollector.afterRequest(req, details);
                     }
                     break;
+                case TYPE_SEARCH_INDEX:
+                    this.serveClientSearchIndexRequest(packageId, lang, ctx, request, response);
+                    break;
                 case TYPE_PACKAGE:
                     String[] packageIds = request.getParameterValues("id");
                     this.servePackageListRequest(lang, packageIds, additionalParams, ctx, request, response);
@@ -1083,7 +1791,12 @@ public final class DocetManager {
                 switch (format) {
                     case TYPE_PDF:
                         final DocetLanguage language = DocetLanguage.parseDocetLanguageByName(lang);
-                        out.write(this.parserFactory.getParserForFormat(format).parsePage(html, accessor, language));
+                        final DocetDocumentParser parser = this.parserFactory.getParserForFormat(format);
+                        if (this.docetConf.isPdfStreaming()) {
+                            parser.parsePage(html, accessor, language, out);
+                        } else {
+                            out.write(parser.parsePage(html, accessor, language));
+                        }
                         break;
                     case TYPE_HTML:
                     default:
@@ -1102,14 +1815,16 @@ public final class DocetManager {
     }
 
     private void serveSearchRequest(final String query, final String lang,
-        final String[] packages, String sourcePackage, final Map<String, String[]> params,
-        final DocetExecutionContext ctx, final HttpServletResponse response)
+        final String[] packages, String sourcePackage, final String cursorToken, final boolean streaming,
+        final Map<String, String[]> params, final DocetExecutionContext ctx, final HttpServletResponse response,
+        final DocetSearchStatistics statistics)
         throws DocetException {
         final Map<String, String[]> additionalParams = new HashMap<>();
         params.entrySet()
             .stream()
             .filter(entry -> !"q".equals(entry.getKey()) && !"lang".equals(entry.getKey())
-                                        && !"sourcePkg".equals(entry.getKey()) && !"enablePkg".equals(entry.getKey()))
+                                        && !"sourcePkg".equals(entry.getKey()) && !"enablePkg".equals(entry.getKey())
+                                        && !"cursor".equals(entry.getKey()) && !"stream".equals(entry.getKey()))
             .forEach(e -> {
                 additionalParams.put(e.getKey(), e.getValue());
             });
@@ -1125,12 +1840,26 @@ public final class DocetManager {
             srcPackageParsed = sourcePackage;
             inScopePackages.add(sourcePackage);
         }
+        final DocetSearchCursor cursor;
+        if (cursorToken == null || cursorToken.isEmpty()) {
+            cursor = null;
+        } else {
+            try {
+                cursor = DocetSearchCursor.parseToken(cursorToken);
+            } catch (DocetDocumentSearchException ex) {
+                throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Invalid search cursor " + cursorToken, ex);
+            }
+        }
+        if (streaming) {
+            this.serveStreamingSearchRequest(query, lang, srcPackageParsed, inScopePackages, additionalParams, cursor,
+                ctx, response, statistics);
+            return;
+        }
         try (OutputStream out = response.getOutputStream();) {
             final SearchResponse searchResp = this.searchPagesByKeywordAndLangWithRerencePackage(query, lang,
-                srcPackageParsed, inScopePackages, additionalParams, ctx);
-            String json = new ObjectMapper().writeValueAsString(searchResp);
+                srcPackageParsed, inScopePackages, additionalParams, cursor, ctx, statistics);
             response.setContentType("application/json;charset=" + ENCODING_UTF_8);
-            out.write(json.getBytes(ENCODING_UTF_8));
+            SEARCH_RESPONSE_WRITER.writeValue(out, searchResp);
         } catch (DocetException ex) {
             LOGGER.log(Level.SEVERE, "Error on serving search query " + query + " lang ", ex);
             throw ex;
@@ -1139,6 +1868,133 @@ public final class DocetManager {
         }
     }
 
+    /**
+     * Stream search results as newline-delimited JSON: one record for each package, written as soon as the results
+     * of the package are ready, then a final record carrying the overall counts.
+     */
+    private void serveStreamingSearchRequest(final String query, final String lang, final String sourcePackage,
+        final Set<String> inScopePackages, final Map<String, String[]> additionalParams, final DocetSearchCursor cursor,
+        final DocetExecutionContext ctx, final HttpServletResponse response, final DocetSearchStatistics statistics)
+        throws DocetException {
+        response.setContentType("application/x-ndjson;charset=" + ENCODING_UTF_8);
+        try (OutputStream out = response.getOutputStream();
+            JsonGenerator generator = JSON_MAPPER.getJsonFactory().createJsonGenerator(out, JsonEncoding.UTF8)) {
+            // records are separated by the newline following each of them
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            final long[] counts = new long[2];
+            this.searchPagesByKeywordAndLang(query, lang, sourcePackage, inScopePackages, additionalParams, cursor, ctx,
+                statistics, (packageRes, currentPackage) -> {
+                    if (packageRes.isOk()) {
+                        counts[0] += packageRes.getTotalCount();
+                    } else {
+                        counts[1]++;
+                    }
+                    generator.writeStartObject();
+                    generator.writeStringField("type", SEARCH_STREAM_RECORD_PACKAGE);
+                    generator.writeBooleanField("current", currentPackage);
+                    generator.writeObjectField("result", packageRes);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    generator.flush();
+                    response.flushBuffer();
+                });
+            generator.writeStartObject();
+            generator.writeStringField("type", SEARCH_STREAM_RECORD_END);
+            generator.writeStringField("currentpackage", sourcePackage);
+            generator.writeNumberField("totalCount", counts[0]);
+            generator.writeNumberField("totalPackageErrors", counts[1]);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on sending response", ex);
+        }
+    }
+
+    private void serveSuggestRequest(final String prefix, final String lang,
+        final String[] packages, final String sourcePackage, final Map<String, String[]> params,
+        final DocetExecutionContext ctx, final HttpServletResponse response)
+        throws DocetException {
+        final Map<String, String[]> additionalParams = new HashMap<>();
+        params.entrySet()
+            .stream()
+            .filter(entry -> !"q".equals(entry.getKey()) && !"lang".equals(entry.getKey())
+                                        && !"sourcePkg".equals(entry.getKey()) && !"enablePkg".equals(entry.getKey()))
+            .forEach(e -> {
+                additionalParams.put(e.getKey(), e.getValue());
+            });
+
+        final Set<String> inScopePackages = new HashSet<>();
+        if (packages != null && packages.length > 0) {
+            inScopePackages.addAll(Arrays.asList(packages));
+        }
+        if (sourcePackage != null) {
+            inScopePackages.add(sourcePackage);
+        }
+        try (OutputStream out = response.getOutputStream();) {
+            final SuggestResponse suggestResp;
+            if (prefix == null || prefix.trim().isEmpty()) {
+                suggestResp = new SuggestResponse();
+            } else {
+                suggestResp = this.suggestPagesByPrefixAndLang(prefix, lang, sourcePackage, inScopePackages,
+                    additionalParams, ctx);
+            }
+            response.setContentType("application/json;charset=" + ENCODING_UTF_8);
+            SUGGEST_RESPONSE_WRITER.writeValue(out, suggestResp);
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on sending response", ex);
+        }
+    }
+
+    /**
+     * Search indexes exported for docet.js are served as static resources: browsers may cache them, as well as
+     * receive them gzipped as written by the plugin.
+     */
+    private void serveClientSearchIndexRequest(final String packageId, final String lang,
+        final DocetExecutionContext ctx, final HttpServletRequest request, final HttpServletResponse response)
+        throws DocetException {
+        try {
+            final String fallbackLang = this.packageRuntimeManager.getDescriptorForPackage(packageId, ctx)
+                .getFallbackLangForLang(lang);
+            final String actualLang = fallbackLang == null || fallbackLang.isEmpty() ? lang : fallbackLang;
+            final Path indexFile = this.packageRuntimeManager.getSearchIndexDirectoryForPackage(packageId, ctx)
+                .resolve(CLIENT_SEARCH_INDEX_FILE_PREFIX + actualLang + CLIENT_SEARCH_INDEX_FILE_EXTENSION);
+            if (!Files.isRegularFile(indexFile)) {
+                throw new DocetException(DocetException.CODE_RESOURCE_NOTFOUND,
+                    "No client search index for package " + packageId + " lang " + lang);
+            }
+            final Path gzipIndexFile = indexFile.resolveSibling(indexFile.getFileName() + EXTENSION_GZIP);
+            final String acceptEncoding = request.getHeader("Accept-Encoding");
+            final boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip")
+                && Files.isRegularFile(gzipIndexFile);
+            final Path servedFile = gzip ? gzipIndexFile : indexFile;
+            final long lastModified = Files.getLastModifiedTime(servedFile).toMillis();
+            final String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(Files.size(servedFile))
+                + "\"";
+            response.setHeader("Cache-Control", "public, max-age=" + this.docetConf.getSearchClientIndexMaxAge());
+            response.setHeader("Vary", "Accept-Encoding");
+            response.setHeader("ETag", etag);
+            response.setDateHeader("Last-Modified", lastModified);
+            final String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null ? ifNoneMatch.contains(etag)
+                : request.getDateHeader("If-Modified-Since") / 1000 >= lastModified / 1000) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setContentType("application/json;charset=" + ENCODING_UTF_8);
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+            }
+            response.setContentLengthLong(Files.size(servedFile));
+            try (OutputStream out = response.getOutputStream()) {
+                Files.copy(servedFile, out);
+            }
+        } catch (DocetPackageException ex) {
+            this.handleDocetPackageException(ex, packageId);
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on sending response", ex);
+        }
+    }
+
     private void servePackageListRequest(final String lang, final String[] packageIds, final Map<String, String[]> params,
         final DocetExecutionContext ctx, final HttpServletRequest request, final HttpServletResponse response)
         throws DocetException {
@@ -1155,9 +2011,8 @@ public final class DocetManager {
 
             final PackageResponse packageResp
                 = this.servePackageDescriptionForLanguage(packageIds, lang, additionalParams, ctx, request);
-            String json = new ObjectMapper().writeValueAsString(packageResp);
             response.setContentType("application/json;charset=" + ENCODING_UTF_8);
-            out.write(json.getBytes(ENCODING_UTF_8));
+            PACKAGE_RESPONSE_WRITER.writeValue(out, packageResp);
         } catch (IOException ex) {
             throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on sending response", ex);
         }
@@ -1184,18 +2039,307 @@ public final class DocetManager {
 
     private void servePDFRequest(final String packageId, final String documentId, String pdfname, final String lang,
          final DocetDocumentResourcesAccessor placeholderAccessor,
-         final DocetExecutionContext ctx, final HttpServletResponse response)
+         final DocetExecutionContext ctx, final HttpServletRequest request, final HttpServletResponse response)
          throws DocetException {
 
-        response.setContentType("application/pdf");
-        try (final OutputStream out = response.getOutputStream();) {
+        final String fingerprint;
+        final String cacheKey;
+        try {
             final DocetDocument doc = this.loadPdfSummaryForPackage(packageId, documentId, lang, placeholderAccessor, ctx);
-            this.pdfDocumentGenerator.generateDocetDocument(doc, ctx, out, placeholderAccessor);
+            final List<String> pdfKey = getPdfKey(packageId, documentId, doc.getLang(), placeholderAccessor);
+            if (this.pdfDiskCache != null) {
+                fingerprint = this.packageRuntimeManager.getContentFingerprintForPackage(packageId, ctx);
+                cacheKey = this.getPdfCacheKey(pdfKey, fingerprint);
+                final Path cachedPdf = this.pdfDiskCache.get(packageId, fingerprint, cacheKey);
+                if (cachedPdf != null && sendPdfFile(cachedPdf, cacheKey, request, response)) {
+                    return;
+                }
+            } else {
+                fingerprint = null;
+                cacheKey = null;
+            }
+            // streamed or not, pdfs are generated to a file: only this thread writes to the response, once complete
+            try (PDFGenerationQueue.PDFFile pdf = this.pdfGenerationQueue.generate(pdfKey,
+                file -> this.generatePdf(doc, placeholderAccessor, ctx, new PDFGenerationProgress(), fingerprint,
+                    cacheKey, file))) {
+                if (!sendPdfFile(pdf.getPath(), cacheKey, request, response)) {
+                    // dropped from the pdf cache before it could be sent
+                    throw new RejectedExecutionException("Pdf " + pdf.getPath() + " not available anymore");
+                }
+            }
+        } catch (RejectedExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Pdf " + pdfname + " for package " + packageId + " not generated", ex);
+            this.sendServiceUnavailable(response);
         } catch (DocetPackageException | IOException | DocetDocumentParsingException ex) {
            LOGGER.log(Level.SEVERE, "Error on serving pdf " + pdfname + " for package " + packageId, ex);
            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Impossible to generate pdf", ex);
         }
+    }
+
+    /**
+     * Generate the given pdf to the given file, storing it in the pdf cache if enabled.
+     *
+     * @return the generated pdf, either the given file or the pdf in the cache
+     */
+    private Path generatePdf(final DocetDocument doc, final DocetDocumentResourcesAccessor placeholderAccessor,
+        final DocetExecutionContext ctx, final PDFGenerationProgress progress, final String fingerprint,
+        final String cacheKey, final Path file) throws DocetDocumentParsingException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            this.pdfDocumentGenerator.generateDocetDocument(doc, ctx, out, placeholderAccessor, progress);
+        } catch (IOException ex) {
+            throw new DocetDocumentParsingException("Error on writing pdf " + doc.getTitle(), ex);
+        }
+        if (this.pdfDiskCache != null) {
+            try {
+                final Path cachedPdf = this.pdfDiskCache.put(doc.getPackageName(), fingerprint, cacheKey, file);
+                if (cachedPdf != null) {
+                    return cachedPdf;
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Impossible to cache pdf " + doc.getTitle() + " for package "
+                    + doc.getPackageName(), ex);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return the name of the given pdf in the pdf cache, depending on the contents of its package too
+     */
+    private String getPdfCacheKey(final List<String> pdfKey, final String fingerprint) {
+        final List<String> cacheKeyValues = new ArrayList<>(pdfKey);
+        cacheKeyValues.add(fingerprint);
+        cacheKeyValues.add(this.docetConf.getVersion());
+        return DocetUtils.sha256Hex(cacheKeyValues);
+    }
+
+    private void submitPDFJob(final String packageId, final String documentId, String pdfname, final String lang,
+        final DocetDocumentResourcesAccessor placeholderAccessor, final DocetExecutionContext ctx,
+        final HttpServletResponse response) throws DocetException {
+        final PDFGenerationJobs.Job job;
+        try {
+            final DocetDocument doc = this.loadPdfSummaryForPackage(packageId, documentId, lang, placeholderAccessor, ctx);
+            final List<String> pdfKey = getPdfKey(packageId, documentId, doc.getLang(), placeholderAccessor);
+            final String fingerprint = this.packageRuntimeManager.getContentFingerprintForPackage(packageId, ctx);
+            final String cacheKey = this.getPdfCacheKey(pdfKey, fingerprint);
+            // jobs outlive requests: a job for the package as it was before a reload must not be reused
+            job = this.pdfGenerationJobs.submit(cacheKey, packageId, documentId, doc.getLang(), (progress, file) -> {
+                try {
+                    if (this.pdfDiskCache != null) {
+                        final Path cachedPdf = this.pdfDiskCache.get(packageId, fingerprint, cacheKey);
+                        if (cachedPdf != null) {
+                            try {
+                                Files.copy(cachedPdf, file, StandardCopyOption.REPLACE_EXISTING);
+                                return;
+                            } catch (NoSuchFileException ex) {
+                                LOGGER.log(Level.FINE, "Cached pdf " + cachedPdf + " not available anymore", ex);
+                            }
+                        }
+                    }
+                    final Path pdf = this.generatePdf(doc, placeholderAccessor, ctx, progress, fingerprint, cacheKey,
+                        file);
+                    if (!pdf.equals(file)) {
+                        // moved into the pdf cache, which may drop it before the job expires
+                        Files.copy(pdf, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException ex) {
+                    throw new DocetDocumentParsingException("Error on generating pdf " + doc.getTitle(), ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Pdf job for " + pdfname + " for package " + packageId + " refused", ex);
+            this.sendServiceUnavailable(response);
+            return;
+        } catch (DocetPackageException | IOException ex) {
+            LOGGER.log(Level.SEVERE, "Error on submitting pdf job for " + pdfname + " for package " + packageId, ex);
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Impossible to generate pdf", ex);
+        }
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", MessageFormat.format(this.docetConf.getLinkToPdfJobPattern(), job.getId()));
+        this.writePDFJobResponse(job, response);
+    }
+
+    private void servePDFJobStatus(final String jobId, final HttpServletResponse response) throws DocetException {
+        final PDFGenerationJobs.Job job = this.pdfGenerationJobs.getJob(jobId);
+        if (job == null) {
+            throw new DocetException(DocetException.CODE_RESOURCE_NOTFOUND, "Unknown pdf job " + jobId);
+        }
+        this.writePDFJobResponse(job, response);
+    }
+
+    private void writePDFJobResponse(final PDFGenerationJobs.Job job, final HttpServletResponse response)
+        throws DocetException {
+        final PDFGenerationProgress progress = job.getProgress();
+        final PDFGenerationJobs.JobState state = job.getState();
+        final String downloadLink;
+        if (state == PDFGenerationJobs.JobState.COMPLETED) {
+            downloadLink = MessageFormat.format(this.docetConf.getLinkToPdfJobDownloadPattern(), job.getId());
+        } else {
+            downloadLink = "";
+        }
+        final PDFJobResponse jobResponse = new PDFJobResponse(job.getId(), state.toString(), job.getPackageId(),
+            job.getDocumentId(), job.getLanguage(), progress.getSectionsRendered(), progress.getSectionsTotal(),
+            progress.getPagesRendered(), progress.getPagesTotal(),
+            MessageFormat.format(this.docetConf.getLinkToPdfJobPattern(), job.getId()), downloadLink,
+            job.getErrorMessage());
+        response.setContentType("application/json;charset=" + ENCODING_UTF_8);
+        response.setHeader("Cache-Control", "no-store");
+        try (OutputStream out = response.getOutputStream();) {
+            PDF_JOB_RESPONSE_WRITER.writeValue(out, jobResponse);
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on sending response", ex);
+        }
+    }
+
+    private void servePDFJobDownload(final String jobId, final HttpServletRequest request,
+        final HttpServletResponse response) throws DocetException {
+        final PDFGenerationJobs.Job job = this.pdfGenerationJobs.getJob(jobId);
+        if (job == null) {
+            throw new DocetException(DocetException.CODE_RESOURCE_NOTFOUND, "Unknown pdf job " + jobId);
+        }
+        final Path file = job.getFile();
+        if (file == null) {
+            throw new DocetException(DocetException.CODE_RESOURCE_NOTFOUND, "Pdf job " + jobId + " not completed");
+        }
+        response.setHeader("Content-Disposition",
+            "attachment; filename=\"" + job.getDocumentId() + "_" + job.getLanguage() + EXTENSION_PDF + "\"");
+        if (!sendPdfFile(file, jobId, request, response)) {
+            throw new DocetException(DocetException.CODE_RESOURCE_NOTFOUND, "Pdf job " + jobId + " expired");
+        }
+    }
 
+    /**
+     * Send a pdf, either cached or just generated, or the byte range of it requested by the client; a client holding
+     * the same pdf already gets 304 (Not Modified). The file is copied to the response from a channel opened upfront,
+     * rather than handed over to the container for sendfile after the request: cached pdfs may be evicted and
+     * temporary ones deleted meanwhile, while an open file stays readable even once deleted.
+     *
+     * @param etag identifies the contents of the pdf, null if not cached
+     * @return false if the pdf was dropped from the cache meanwhile and nothing has been sent
+     */
+    static boolean sendPdfFile(final Path file, final String etag, final HttpServletRequest request,
+        final HttpServletResponse response) throws DocetException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            return false;
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on reading cached pdf", ex);
+        }
+        try (final FileChannel pdf = channel) {
+            final long length = pdf.size();
+            long start = 0;
+            long end = length - 1;
+            final String quotedEtag = etag != null ? "\"" + etag + "\"" : null;
+            response.setHeader("Accept-Ranges", "bytes");
+            if (quotedEtag != null) {
+                response.setHeader("ETag", quotedEtag);
+                if (matchesEtag(request.getHeader("If-None-Match"), quotedEtag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return true;
+                }
+            }
+            final String range = request.getHeader("Range");
+            final String ifRange = request.getHeader("If-Range");
+            if (range != null && (ifRange == null || ifRange.equals(quotedEtag))) {
+                final long[] bounds = parseByteRange(range, length);
+                if (bounds == null) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    sendError(response, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return true;
+                }
+                start = bounds[0];
+                end = bounds[1];
+                if (start > 0 || end < length - 1) {
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+                }
+            }
+            response.setContentType("application/pdf");
+            response.setContentLengthLong(end - start + 1);
+            try (final OutputStream out = response.getOutputStream()) {
+                final WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                while (position <= end) {
+                    position += pdf.transferTo(position, end + 1 - position, target);
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            throw new DocetException(DocetException.CODE_GENERIC_ERROR, "Error on sending response", ex);
+        }
+    }
+
+    /**
+     * @param ifNoneMatch value of the {@code If-None-Match} header, if any
+     * @return true if the given header matches the given strong entity tag
+     */
+    static boolean matchesEtag(final String ifNoneMatch, final String quotedEtag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String trimmed = tag.trim();
+            // weak comparison, as mandated for If-None-Match
+            if (trimmed.equals("*") || trimmed.equals(quotedEtag) || trimmed.equals("W/" + quotedEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a single range of the given {@code Range} header; a malformed header or a request for multiple ranges
+     * results in the whole content.
+     *
+     * @return first and last byte position of the range, null if not satisfiable
+     */
+    static long[] parseByteRange(final String range, final long length) {
+        final long[] whole = new long[]{0, length - 1};
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return whole;
+        }
+        final String spec = range.substring("bytes=".length()).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return whole;
+        }
+        final String first = spec.substring(0, dash).trim();
+        final String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                final long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, length - suffixLength), length - 1};
+            }
+            final long start = Long.parseLong(first);
+            final long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start < 0 || start >= length || end < start) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException ex) {
+            return whole;
+        }
+    }
+
+    /**
+     * @return a key identifying the pdf of the given document, as customized by the given accessor
+     */
+    private static List<String> getPdfKey(final String packageId, final String documentId, final String lang,
+        final DocetDocumentResourcesAccessor placeholderAccessor) {
+        final DocetLanguage language = DocetLanguage.parseDocetLanguageByName(lang);
+        final List<String> key = new ArrayList<>();
+        key.add(packageId);
+        key.add(documentId);
+        key.add(lang);
+        for (final DocetDocumentPlaceholder placeholder : DocetDocumentPlaceholder.values()) {
+            key.add(placeholderAccessor.getPlaceholderForDocument(placeholder, language));
+        }
+        return key;
     }
 
     private void serveIconRequest(final String packageId, final DocetExecutionContext ctx,
@@ -18,12 +18,17 @@ package docet.engine;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,14 +54,46 @@ public class DocetPackageRuntimeManager {
     private final Map<String, DocetPackageInfo> openPackages;
     private final DocetConfiguration docetConf;
     private final ReadWriteLock lock;
+    private final FederatedDocetDocSearcher federatedSearchIndex;
+    private final ExecutorService warmUpExecutor;
+    private final Consumer<String> packageUnloadListener;
 
     public DocetPackageRuntimeManager(final DocetPackageLocator packageLocator, final DocetConfiguration docetConf) {
+        this(packageLocator, docetConf, packageId -> {
+        });
+    }
+
+    /**
+     * @param packageUnloadListener notified with the id of each loaded package which gets reloaded or discarded, so
+     * that anything derived from it can be dropped
+     */
+    public DocetPackageRuntimeManager(final DocetPackageLocator packageLocator, final DocetConfiguration docetConf,
+        final Consumer<String> packageUnloadListener) {
+        this.packageUnloadListener = packageUnloadListener;
         this.executor = new PackageRuntimeCheckerExecutor();
         this.packageLocator = packageLocator;
         this.openPackages = new HashMap<>();
         this.docetConf = docetConf;
         this.lock = new ReentrantReadWriteLock();
         this.disableExecutor = !docetConf.isEnablePackageLifecycleExecutor();
+        if (docetConf.isSearchFederatedIndexEnabled()) {
+            final String federatedIndexPath = docetConf.getSearchFederatedIndexPath();
+            this.federatedSearchIndex = new FederatedDocetDocSearcher(
+                federatedIndexPath.isEmpty() ? null : Paths.get(federatedIndexPath),
+                docetConf.getSearchFuzzyStrategy(), docetConf.getSearchFuzzyFallbackMinHits(),
+                docetConf.getSearchLimits());
+        } else {
+            this.federatedSearchIndex = null;
+        }
+        if (docetConf.isSearchIndexWarmUp()) {
+            this.warmUpExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread t = new Thread(r, "Docet search index warm-up");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.warmUpExecutor = null;
+        }
     }
 
     public void start() {
@@ -74,6 +111,45 @@ public class DocetPackageRuntimeManager {
             this.executorThread.interrupt();
             this.executorThread.join();
         }
+        if (this.warmUpExecutor != null) {
+            this.warmUpExecutor.shutdownNow();
+        }
+        if (this.federatedSearchIndex != null) {
+            try {
+                this.federatedSearchIndex.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, "Error on closing federated search index", ex);
+            }
+        }
+    }
+
+    public boolean isFederatedSearchIndexEnabled() {
+        return this.federatedSearchIndex != null;
+    }
+
+    public FederatedDocetDocSearcher getFederatedSearchIndex() {
+        return this.federatedSearchIndex;
+    }
+
+    /**
+     * Make sure the given package is searchable through the federated search index, importing its slice in case it is
+     * missing or the package has been reloaded meanwhile.
+     *
+     * @return the descriptor of the imported package
+     */
+    public DocetPackageDescriptor importPackageInFederatedSearchIndex(final String packageName,
+        final DocetExecutionContext ctx) throws DocetDocumentSearchException {
+        try {
+            final DocetPackageInfo packageInfo = this.retrievePackageInfo(packageName, ctx);
+            this.federatedSearchIndex.importPackage(packageInfo);
+            packageInfo.setLastSearchTS(System.currentTimeMillis());
+            return packageInfo.getDescriptor();
+        } catch (DocetPackageException ex) {
+            throw new DocetDocumentSearchException("Impossible to find package " + packageName, ex);
+        } catch (IOException ex) {
+            throw new DocetDocumentSearchException("Impossible to import package " + packageName
+                + " in federated search index", ex);
+        }
     }
 
     public DocetPackageDescriptor getDescriptorForPackage(final String packageId, final DocetExecutionContext ctx)
@@ -90,6 +166,28 @@ public class DocetPackageRuntimeManager {
         return packageInfo.getPackageDocsDir();
     }
 
+    /**
+     * @return a fingerprint of the docs of the given package, as loaded; it is computed on first request, the docs of
+     * a loaded package being not expected to change unless the package is reloaded
+     */
+    public String getContentFingerprintForPackage(final String packageName, final DocetExecutionContext ctx)
+        throws DocetPackageException, IOException {
+        final DocetPackageInfo packageInfo = this.retrievePackageInfo(packageName, ctx);
+        String fingerprint = packageInfo.getContentFingerprint();
+        if (fingerprint == null) {
+            fingerprint = DocetUtils.computeDirectoryFingerprint(packageInfo.getPackageDocsDir());
+            packageInfo.setContentFingerprint(fingerprint);
+        }
+        return fingerprint;
+    }
+
+    public Path getSearchIndexDirectoryForPackage(final String packageName, final DocetExecutionContext ctx)
+        throws DocetPackageException {
+        final DocetPackageInfo packageInfo = this.retrievePackageInfo(packageName, ctx);
+        packageInfo.setLastSearchTS(System.currentTimeMillis());
+        return packageInfo.getPackageSearchIndexDir();
+    }
+
     public DocetDocumentSearcher getSearchIndexForPackage(final String packageName, final DocetExecutionContext ctx)
         throws DocetDocumentSearchException {
         try {
@@ -124,24 +222,76 @@ public class DocetPackageRuntimeManager {
                 if (packageInfo == null) {
                     packageInfo = this.constructPackageInfo(packageid, retrievedPkgLocation);
                     this.openPackages.put(packageid, packageInfo);
+                    this.warmUpSearchIndex(packageInfo);
                     LOGGER.log(Level.INFO, "Load Package {0} information", packageid);
                 } else {
                     if (!packageInfo.getPackageLocation().equals(retrievedPkgLocation)) {
                         packageInfo.getSearchIndex().close();
+                        this.packageUnloadListener.accept(packageid);
                         packageInfo = this.constructPackageInfo(packageid, retrievedPkgLocation);
                         this.openPackages.put(packageid, packageInfo);
+                        this.warmUpSearchIndex(packageInfo);
                         LOGGER.log(Level.INFO, "Package {0} location has changed, reload configuration", packageid);
                     }
                 }
             } finally {
                 this.lock.writeLock().unlock();
             }
-        } catch (IOException | DocetPackageNotFoundException ex) {
+        } catch (DocetPackageNotFoundException ex) {
+            if (packageInfo != null) {
+                this.discardPackage(packageInfo);
+            }
+            throw DocetPackageException.buildPackageNotFoundException(ex);
+        } catch (IOException ex) {
             throw DocetPackageException.buildPackageNotFoundException(ex);
         }
         return packageInfo;
     }
 
+    /**
+     * Forget about a loaded package no more available, so that its search index does not get searched anymore.
+     */
+    private void discardPackage(final DocetPackageInfo packageInfo) {
+        final String packageId = packageInfo.getPackageId();
+        this.lock.writeLock().lock();
+        try {
+            if (!this.openPackages.remove(packageId, packageInfo)) {
+                return;
+            }
+            this.packageUnloadListener.accept(packageId);
+            packageInfo.getSearchIndex().close();
+            if (this.federatedSearchIndex != null) {
+                this.federatedSearchIndex.removePackage(packageId);
+            }
+            LOGGER.log(Level.INFO, "Package {0} is no more available, discarded", packageId);
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Error on discarding package " + packageId, ex);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the search index of a freshly loaded package in background, so that the first search on it does not pay
+     * for the warm-up.
+     */
+    private void warmUpSearchIndex(final DocetPackageInfo packageInfo) {
+        if (this.warmUpExecutor == null) {
+            return;
+        }
+        try {
+            this.warmUpExecutor.submit(() -> {
+                try {
+                    packageInfo.getSearchIndex().open(this.docetConf.getDefaultLanguage());
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Error on warming up search index for package " + packageInfo.getPackageId(), ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            LOGGER.log(Level.FINE, "Search index warm-up skipped for package {0}", packageInfo.getPackageId());
+        }
+    }
+
     private DocetPackageInfo constructPackageInfo(final String packageid, final DocetPackageLocation location)
         throws DocetPackageException {
         DocetPackageDescriptor desc;
@@ -150,8 +300,27 @@ public class DocetPackageRuntimeManager {
         } catch (IOException ex) {
             throw DocetPackageException.buildPackageDescriptionException(ex);
         }
+        final Path searchIndexPath = location.getPackagePath()
+            .resolve(this.docetConf.getDocetPackageSearchIndexFolderPath()).toAbsolutePath();
+        final DocetDocumentSearcher searcher;
+        if (this.docetConf.isPreviewMode()) {
+            searcher = new PreviewDocetDocSearcher(searchIndexPath, getPathToPackageDoc(location.getPackagePath()),
+                desc, this.docetConf.getPathToPages(), this.docetConf.getPathToFaq(),
+                this.docetConf.getSearchFuzzyStrategy(), this.docetConf.getSearchFuzzyFallbackMinHits(),
+                this.docetConf.getSearchLimits());
+        } else if (CompactDocetDocSearcher.isApplicable(searchIndexPath, this.docetConf.getSearchIndexCompactMaxDocs())) {
+            searcher = new CompactDocetDocSearcher(searchIndexPath, desc, this.docetConf.getSearchFuzzyStrategy(),
+                this.docetConf.getSearchFuzzyFallbackMinHits(), this.docetConf.getSearchLimits());
+        } else {
+            searcher = new SimpleDocetDocSearcher(searchIndexPath, desc,
+                this.docetConf.getSearchFuzzyStrategy(), this.docetConf.getSearchFuzzyFallbackMinHits(),
+                this.docetConf.getSearchIndexDirectoryTypeForPackage(packageid),
+                this.docetConf.getSearchIndexRamMaxSize(), this.docetConf.isSearchIndexWarmUp(),
+                this.docetConf.getSearchLimits());
+        }
         return new DocetPackageInfo(packageid, location, desc,
-            this.docetConf.getDocetPackageDocsFolderPath(), this.docetConf.getDocetPackageSearchIndexFolderPath());
+            this.docetConf.getDocetPackageDocsFolderPath(), this.docetConf.getDocetPackageSearchIndexFolderPath(),
+            searcher);
     }
 
     private final class PackageRuntimeCheckerExecutor implements Runnable {
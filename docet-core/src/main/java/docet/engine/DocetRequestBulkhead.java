@@ -0,0 +1,159 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for a given {@link DocetRequestType}: at most a given no. of requests of the type are served at
+ * the same time, a bounded no. of further requests wait for their turn for a bounded time, all other ones are refused
+ * right away. This way a surge of expensive requests (e.g. pdfs) cannot take all of the request threads, leaving
+ * cheap ones (e.g. pages) to starve.
+ *
+ */
+public final class DocetRequestBulkhead {
+
+    private final DocetRequestType type;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final AtomicInteger active;
+    private final AtomicInteger queued;
+    private final AtomicLong accepted;
+    private final AtomicLong rejected;
+
+    /**
+     * @param type the type of requests the bulkhead is for
+     * @param maxConcurrent max no. of requests served at the same time; 0 for no limit
+     * @param maxQueued max no. of requests waiting to be served when the limit is reached
+     * @param maxWaitMs max time a request may wait to be served before being refused
+     */
+    public DocetRequestBulkhead(final DocetRequestType type, final int maxConcurrent, final int maxQueued,
+        final long maxWaitMs) {
+        this.type = type;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+        this.active = new AtomicInteger();
+        this.queued = new AtomicInteger();
+        this.accepted = new AtomicLong();
+        this.rejected = new AtomicLong();
+    }
+
+    /**
+     * Try to get the right to serve a request, waiting for it if need be. A successful call must be followed by a call
+     * to {@link #exit()} once the request has been served.
+     *
+     * @return false if the request is to be refused
+     */
+    boolean enter() {
+        if (this.permits != null) {
+            try {
+                // unlike tryAcquire(), a timed tryAcquire does not overtake the requests waiting for a permit
+                if (!this.permits.tryAcquire(0, TimeUnit.MILLISECONDS) && !this.waitForPermit()) {
+                    this.rejected.incrementAndGet();
+                    return false;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                this.rejected.incrementAndGet();
+                return false;
+            }
+        }
+        this.active.incrementAndGet();
+        this.accepted.incrementAndGet();
+        return true;
+    }
+
+    private boolean waitForPermit() throws InterruptedException {
+        try {
+            if (this.queued.incrementAndGet() > this.maxQueued) {
+                return false;
+            }
+            return this.permits.tryAcquire(this.maxWaitMs, TimeUnit.MILLISECONDS);
+        } finally {
+            this.queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Account for a request refused before reaching the bulkhead, e.g. for lack of threads to serve it.
+     */
+    void reject() {
+        this.rejected.incrementAndGet();
+    }
+
+    void exit() {
+        this.active.decrementAndGet();
+        if (this.permits != null) {
+            this.permits.release();
+        }
+    }
+
+    public DocetRequestType getType() {
+        return type;
+    }
+
+    /**
+     * @return max no. of requests served at the same time; 0 for no limit
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * @return no. of requests being served right now
+     */
+    public int getActiveCount() {
+        return this.active.get();
+    }
+
+    /**
+     * @return no. of requests waiting to be served right now
+     */
+    public int getQueueDepth() {
+        return this.queued.get();
+    }
+
+    /**
+     * @return no. of requests served since startup
+     */
+    public long getAcceptedCount() {
+        return this.accepted.get();
+    }
+
+    /**
+     * @return no. of requests refused since startup
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DocetRequestBulkhead{" + "type=" + type + ", maxConcurrent=" + maxConcurrent + ", maxQueued=" + maxQueued + ", maxWaitMs=" + maxWaitMs + ", active=" + active + ", queued=" + queued + ", accepted=" + accepted + ", rejected=" + rejected + '}';
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+/**
+ * A request path parsed into its components, as seen by {@link DocetManager#serveRequest}. Paths are scanned once,
+ * by hand, accepting exactly the paths the former URL regular expression accepted and extracting the same values the
+ * former split-based parsing extracted from them. Paths the former parsing could not cope with (i.e. page paths with
+ * no language part) are rejected. Pdf job paths, which came later, are {@code /pdfjobs/<package>/<document>_<lang>.pdf}
+ * to submit a job, {@code /pdfjobs/<job>} for its status and {@code /pdfjobs/<job>.pdf} to download its pdf.
+ */
+final class DocetRequestRoute {
+
+    private static final String SUFFIX_MNDOC = "mndoc";
+    private static final String SUFFIX_PDF = "pdf";
+    private static final String SUFFIX_MNIMG = "mnimg";
+    private static final String EXTENSION_JSON = ".json";
+    private static final String MAIN_PAGE = "index_mndoc";
+
+    private final DocetRequestType type;
+    private final String packageId;
+    private final String pageId;
+    private final String language;
+    private final DocetDocFormat format;
+    private final String resourceName;
+
+    private DocetRequestRoute(final DocetRequestType type, final String packageId, final String pageId,
+        final String language, final DocetDocFormat format, final String resourceName) {
+        this.type = type;
+        this.packageId = packageId;
+        this.pageId = pageId;
+        this.language = language;
+        this.format = format;
+        this.resourceName = resourceName;
+    }
+
+    public DocetRequestType getType() {
+        return type;
+    }
+
+    /**
+     * @return the package the request refers to, null for requests not bound to a package in their path (including
+     * pdf job status and download requests)
+     */
+    public String getPackageId() {
+        return packageId;
+    }
+
+    /**
+     * @return the page (or pdf document) requested, null for requests other than pages, faqs and pdfs
+     */
+    public String getPageId() {
+        return pageId;
+    }
+
+    /**
+     * @return the language stated in the path, null if the language is to be taken from request params
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    public DocetDocFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the name of the image requested for image requests, the name of the pdf file for pdf requests and pdf
+     * job submissions, the job id for pdf job status and download requests
+     */
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    /**
+     * Parse the given request path, relative to the Docet servlet.
+     *
+     * @return the route for the given path, null if the path does not match any of the supported requests
+     */
+    public static DocetRequestRoute parseRequestRoute(final String path) {
+        final int length = path.length();
+        if (length < 2 || path.charAt(0) != '/') {
+            return null;
+        }
+        final int typeEnd = path.indexOf('/', 1);
+        final DocetRequestType type = DocetRequestType.parseDocetRequestByName(
+            typeEnd < 0 ? path.substring(1) : path.substring(1, typeEnd));
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case TYPE_PACKAGE:
+            case TYPE_SEARCH:
+            case TYPE_SUGGEST:
+            case TYPE_TOC:
+                if (typeEnd >= 0) {
+                    return null;
+                }
+                return new DocetRequestRoute(type, null, null, null, DocetDocFormat.TYPE_HTML, null);
+            default:
+                break;
+        }
+        if (typeEnd < 0) {
+            return null;
+        }
+        final int packageEnd = scanId(path, typeEnd + 1);
+        if (packageEnd == typeEnd + 1) {
+            return null;
+        }
+        final String packageId = path.substring(typeEnd + 1, packageEnd);
+        if (type == DocetRequestType.TYPE_ICONS) {
+            if (packageEnd != length) {
+                return null;
+            }
+            return new DocetRequestRoute(type, packageId, null, null, DocetDocFormat.TYPE_HTML, null);
+        }
+        if (type == DocetRequestType.TYPE_PDFJOBS) {
+            if (packageEnd == length) {
+                return new DocetRequestRoute(type, null, null, null, DocetDocFormat.TYPE_HTML, packageId);
+            }
+            if (endsWithSuffixAt(path, packageEnd, SUFFIX_PDF)) {
+                return new DocetRequestRoute(type, null, null, null, DocetDocFormat.TYPE_PDF, packageId);
+            }
+        }
+        if (packageEnd == length || path.charAt(packageEnd) != '/') {
+            return null;
+        }
+        final int nameStart = packageEnd + 1;
+        final int nameEnd = scanId(path, nameStart);
+        switch (type) {
+            case TYPE_MAIN:
+                if (!path.startsWith(MAIN_PAGE, nameStart) || nameStart + MAIN_PAGE.length() != length) {
+                    return null;
+                }
+                return parsePageRoute(type, packageId, path.substring(nameStart));
+            case TYPE_FAQ:
+            case TYPE_PAGES:
+                if (nameEnd == nameStart || !endsWithSuffixAt(path, nameEnd, SUFFIX_MNDOC)) {
+                    return null;
+                }
+                return parsePageRoute(type, packageId, path.substring(nameStart));
+            case TYPE_PDFS:
+            case TYPE_PDFJOBS:
+                if (nameEnd == nameStart || !endsWithSuffixAt(path, nameEnd, SUFFIX_PDF)) {
+                    return null;
+                }
+                return parsePdfRoute(type, packageId, path.substring(nameStart));
+            case TYPE_SEARCH_INDEX:
+                if (length != nameStart + 2 + EXTENSION_JSON.length()
+                    || !isLowerCaseLetter(path.charAt(nameStart)) || !isLowerCaseLetter(path.charAt(nameStart + 1))
+                    || !path.endsWith(EXTENSION_JSON)) {
+                    return null;
+                }
+                return new DocetRequestRoute(type, packageId, null, path.substring(nameStart, nameStart + 2),
+                    DocetDocFormat.TYPE_HTML, null);
+            case TYPE_IMAGES:
+                if (nameEnd == nameStart || nameEnd == length || path.charAt(nameEnd) != '.') {
+                    return null;
+                }
+                final int extensionEnd = scanWord(path, nameEnd + 1);
+                if (extensionEnd - nameEnd - 1 < 3 || !endsWithSuffixAt(path, extensionEnd, SUFFIX_MNIMG)) {
+                    return null;
+                }
+                return parseImageRoute(packageId, path.substring(nameStart));
+            default:
+                return null;
+        }
+    }
+
+    private static DocetRequestRoute parsePageRoute(final DocetRequestType type, final String packageId,
+        final String name) {
+        final int firstSeparator = name.indexOf('_');
+        if (firstSeparator < 0) {
+            return null;
+        }
+        final String pageName = secondField(name, firstSeparator);
+        final String pageId = name.substring(0, firstSeparator);
+        final String language;
+        final DocetDocFormat format;
+        if (hasExtension(pageName, SUFFIX_MNDOC)) {
+            language = headBeforeSuffix(pageName, SUFFIX_MNDOC);
+            format = DocetDocFormat.TYPE_HTML;
+        } else if (hasExtension(pageName, SUFFIX_PDF)) {
+            language = headBeforeSuffix(pageName, SUFFIX_PDF);
+            format = DocetDocFormat.TYPE_PDF;
+        } else {
+            return new DocetRequestRoute(type, packageId, pageId, null, DocetDocFormat.TYPE_HTML, null);
+        }
+        if (language == null) {
+            return null;
+        }
+        return new DocetRequestRoute(type, packageId, pageId, language, format, null);
+    }
+
+    private static DocetRequestRoute parsePdfRoute(final DocetRequestType type, final String packageId,
+        final String name) {
+        final int firstSeparator = name.indexOf('_');
+        if (firstSeparator < 0) {
+            return null;
+        }
+        final String pdfName = secondField(name, firstSeparator);
+        final String language = headBeforeSuffix(pdfName, SUFFIX_PDF);
+        if (language == null) {
+            return null;
+        }
+        return new DocetRequestRoute(type, packageId, name.substring(0, firstSeparator),
+            language, DocetDocFormat.TYPE_PDF, pdfName);
+    }
+
+    private static DocetRequestRoute parseImageRoute(final String packageId, final String name) {
+        final int firstSeparator = name.indexOf('_');
+        if (firstSeparator < 0) {
+            return null;
+        }
+        final String imageName = headBeforeSuffix(secondField(name, firstSeparator), SUFFIX_MNIMG);
+        if (imageName == null) {
+            return null;
+        }
+        return new DocetRequestRoute(DocetRequestType.TYPE_IMAGES, packageId, null,
+            name.substring(0, firstSeparator), DocetDocFormat.TYPE_HTML, imageName);
+    }
+
+    /**
+     * The second of the '_' separated fields of the given name, names being always terminated by something other than
+     * a '_'.
+     */
+    private static String secondField(final String name, final int firstSeparator) {
+        final int secondSeparator = name.indexOf('_', firstSeparator + 1);
+        return name.substring(firstSeparator + 1, secondSeparator < 0 ? name.length() : secondSeparator);
+    }
+
+    /**
+     * The first token of the given value split around any character followed by the given suffix, that is what
+     * {@code value.split("." + suffix)[0]} used to return.
+     *
+     * @return the first token, null if splitting yields no tokens at all
+     */
+    private static String headBeforeSuffix(final String value, final String suffix) {
+        int match = findAnyCharFollowedBy(value, suffix, 0);
+        if (match < 0) {
+            return value;
+        }
+        if (match > 0) {
+            return value.substring(0, match);
+        }
+        int from = suffix.length() + 1;
+        while (true) {
+            match = findAnyCharFollowedBy(value, suffix, from);
+            if (match < 0) {
+                return from < value.length() ? "" : null;
+            }
+            if (match > from) {
+                return "";
+            }
+            from = match + suffix.length() + 1;
+        }
+    }
+
+    private static int findAnyCharFollowedBy(final String value, final String suffix, final int from) {
+        final int last = value.length() - suffix.length() - 1;
+        for (int i = from; i <= last; i++) {
+            if (value.startsWith(suffix, i + 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasExtension(final String value, final String suffix) {
+        return endsWithSuffixAt(value, value.length() - suffix.length() - 1, suffix);
+    }
+
+    private static boolean endsWithSuffixAt(final String path, final int dot, final String suffix) {
+        return dot >= 0 && dot + 1 + suffix.length() == path.length() && path.charAt(dot) == '.'
+            && path.startsWith(suffix, dot + 1);
+    }
+
+    private static int scanId(final String path, final int from) {
+        int i = from;
+        while (i < path.length() && (isWordChar(path.charAt(i)) || path.charAt(i) == '-')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int scanWord(final String path, final int from) {
+        int i = from;
+        while (i < path.length() && isWordChar(path.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isLowerCaseLetter(final char c) {
+        return c >= 'a' && c <= 'z';
+    }
+}
@@ -16,7 +16,9 @@
  */
 package docet.engine;
 
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
@@ -29,10 +31,23 @@ public enum DocetRequestType {
     TYPE_IMAGES("images"),
     TYPE_ICONS("icons"),
     TYPE_PDFS("pdfs"),
+    TYPE_PDFJOBS("pdfjobs"),
     TYPE_FAQ("faq"),
     TYPE_SEARCH("search"),
+    TYPE_SUGGEST("suggest"),
+    TYPE_SEARCH_INDEX("searchindex"),
     TYPE_PACKAGE("package");
 
+    private static final Map<String, DocetRequestType> TYPES_BY_NAME;
+
+    static {
+        final Map<String, DocetRequestType> typesByName = new HashMap<>();
+        for (final DocetRequestType type : DocetRequestType.values()) {
+            typesByName.put(type.name, type);
+        }
+        TYPES_BY_NAME = Collections.unmodifiableMap(typesByName);
+    }
+
     private String name;
 
     private DocetRequestType(final String name) {
@@ -45,8 +60,6 @@ public enum DocetRequestType {
     }
 
     public static DocetRequestType parseDocetRequestByName(final String name) {
-        return Arrays.asList(DocetRequestType.values())
-                .stream()
-                .filter(req -> req.toString().equals(name)).findFirst().orElse(null);
+        return TYPES_BY_NAME.get(name);
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import docet.error.DocetDocumentSearchException;
+
+/**
+ * Position reached while paging through the results of a search on a given package. It is handed to clients as an
+ * opaque token, to be sent back to retrieve the next page of results with no need to recompute the previous ones.
+ *
+ */
+public final class DocetSearchCursor {
+
+    private static final String TOKEN_SEPARATOR = ":";
+    private static final String PASS_EXACT = "e";
+    private static final String PASS_FUZZY = "f";
+
+    private final String packageId;
+    final int doc;
+    final float score;
+    final int position;
+    final float maxScore;
+    final boolean fuzzy;
+    final String indexVersion;
+
+    DocetSearchCursor(final String packageId, final int doc, final float score, final int position,
+        final float maxScore, final boolean fuzzy, final String indexVersion) {
+        this.packageId = packageId;
+        this.doc = doc;
+        this.score = score;
+        this.position = position;
+        this.maxScore = maxScore;
+        this.fuzzy = fuzzy;
+        this.indexVersion = indexVersion;
+    }
+
+    /**
+     * @return the package the cursor refers to, null if the cursor has not been bound to a package yet
+     */
+    public String getPackageId() {
+        return packageId;
+    }
+
+    /**
+     * @return the no. of results preceding the page the cursor points to
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Make sure the cursor has been handed out by a search on the very same version of the index being searched
+     * now, as doc ids and scores are meaningless on any other version, e.g. after the package has been reloaded or
+     * the preview index has been refreshed.
+     *
+     * @param currentVersion the version of the index being searched
+     * @throws DocetDocumentSearchException in case the cursor refers to another version of the index
+     */
+    void checkIndexVersion(final String currentVersion) throws DocetDocumentSearchException {
+        if (!this.indexVersion.equals(currentVersion)) {
+            throw new DocetDocumentSearchException("Search cursor refers to a search index no more available, "
+                + "search has to be started again");
+        }
+    }
+
+    /**
+     * Encode this cursor as an opaque token, to be later parsed by {@link #parseToken(String)}.
+     *
+     * @param packageId the package the cursor refers to
+     * @return the token representing this cursor
+     */
+    public String toToken(final String packageId) {
+        final String token = this.doc + TOKEN_SEPARATOR
+            + Integer.toHexString(Float.floatToIntBits(this.score)) + TOKEN_SEPARATOR
+            + this.position + TOKEN_SEPARATOR
+            + Integer.toHexString(Float.floatToIntBits(this.maxScore)) + TOKEN_SEPARATOR
+            + (this.fuzzy ? PASS_FUZZY : PASS_EXACT) + TOKEN_SEPARATOR
+            + this.indexVersion + TOKEN_SEPARATOR
+            + packageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a token previously returned by {@link #toToken(String)}
+     * @return the corresponding cursor
+     * @throws DocetDocumentSearchException in case the token is not a valid search cursor
+     */
+    public static DocetSearchCursor parseToken(final String token) throws DocetDocumentSearchException {
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split(TOKEN_SEPARATOR, 7);
+            if (parts.length != 7 || parts[5].isEmpty() || parts[6].isEmpty()
+                || !PASS_EXACT.equals(parts[4]) && !PASS_FUZZY.equals(parts[4])) {
+                throw new DocetDocumentSearchException("Invalid search cursor " + token);
+            }
+            return new DocetSearchCursor(parts[6],
+                Integer.parseInt(parts[0]),
+                Float.intBitsToFloat(Integer.parseUnsignedInt(parts[1], 16)),
+                Integer.parseInt(parts[2]),
+                Float.intBitsToFloat(Integer.parseUnsignedInt(parts[3], 16)),
+                PASS_FUZZY.equals(parts[4]),
+                parts[5]);
+        } catch (IllegalArgumentException ex) {
+            throw new DocetDocumentSearchException("Invalid search cursor " + token, ex);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.util.Arrays;
+
+/**
+ * Defines when the fuzzy expansion of the search terms is performed.
+ *
+ */
+public enum DocetSearchFuzzyStrategy {
+    /**
+     * Search terms are always expanded with their fuzzy variants.
+     */
+    ALWAYS("always"),
+    /**
+     * Exact terms are searched first, fuzzy expansion is performed only whenever exact search returns too few
+     * results.
+     */
+    FALLBACK("fallback");
+
+    private String name;
+
+    private DocetSearchFuzzyStrategy(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    public static DocetSearchFuzzyStrategy parseDocetSearchFuzzyStrategyByName(final String name) {
+        return Arrays.asList(DocetSearchFuzzyStrategy.values())
+                .stream()
+                .filter(strategy -> strategy.toString().equals(name)).findFirst().orElse(ALWAYS);
+    }
+}
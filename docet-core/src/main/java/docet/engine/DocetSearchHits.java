@@ -0,0 +1,172 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+
+/**
+ * Lightweight outcome of a search on a single package: just the scores of the matching documents, sorted by
+ * decreasing score. Stored fields are loaded and excerpts highlighted only for the hits actually shown, see
+ * {@link DocetDocumentSearcher#loadMatchingDocuments(DocetSearchHits, int, float)}.
+ * <p>
+ * Hits hold a reference to the search index they come from, which must be released by {@link #close()} once the
+ * matching documents have been loaded.
+ *
+ */
+public class DocetSearchHits implements AutoCloseable {
+
+    final IndexSearcher searcher;
+    final CompactSearchIndex compactIndex;
+    final Query query;
+    final Analyzer analyzer;
+    final String field;
+    final ScoreDoc[] scoreDocs;
+    final long deadline;
+    private final int totalHits;
+    private final int position;
+    private final float maxScore;
+    private final boolean fuzzy;
+    private volatile boolean partial;
+    private final AtomicBoolean closed;
+
+    DocetSearchHits(final IndexSearcher searcher, final Query query, final Analyzer analyzer, final String field,
+        final ScoreDoc[] scoreDocs, final int totalHits, final int position, final float maxScore,
+        final boolean fuzzy, final long deadline) {
+        this(searcher, null, query, analyzer, field, scoreDocs, totalHits, position, maxScore, fuzzy, deadline);
+    }
+
+    DocetSearchHits(final IndexSearcher searcher, final CompactSearchIndex compactIndex, final Query query,
+        final Analyzer analyzer, final String field, final ScoreDoc[] scoreDocs, final int totalHits,
+        final int position, final float maxScore, final boolean fuzzy, final long deadline) {
+        this.searcher = searcher;
+        this.compactIndex = compactIndex;
+        this.query = query;
+        this.analyzer = analyzer;
+        this.field = field;
+        this.scoreDocs = scoreDocs;
+        this.totalHits = totalHits;
+        this.position = position;
+        this.maxScore = maxScore;
+        this.fuzzy = fuzzy;
+        this.deadline = deadline;
+        this.closed = new AtomicBoolean();
+    }
+
+    /**
+     * @return new hits with no matching documents; a new instance is returned each time, as hits may be marked as
+     * partial
+     */
+    public static DocetSearchHits empty() {
+        return new DocetSearchHits(null, null, null, null, new ScoreDoc[0], 0, 0, 0f, false, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the stored fields of the given matching document
+     */
+    Document doc(final int doc) throws IOException {
+        if (this.compactIndex != null) {
+            return this.compactIndex.document(doc);
+        }
+        return this.searcher.doc(doc);
+    }
+
+    /**
+     * @return the number of hits retrieved, at most the max no. of results requested
+     */
+    public int size() {
+        return this.scoreDocs.length;
+    }
+
+    /**
+     * @return the number of documents matching the query, including the ones not retrieved
+     */
+    public int getTotalHits() {
+        return this.totalHits;
+    }
+
+    public float getScore(final int index) {
+        return this.scoreDocs[index].score;
+    }
+
+    /**
+     * @return the best score among all the matching documents, including the ones on previous pages
+     */
+    public float getMaxScore() {
+        if (Float.isNaN(this.maxScore)) {
+            return 0f;
+        }
+        return this.maxScore;
+    }
+
+    /**
+     * @return true in case the search ran out of its time budget, hence some matching pages may be missing or lack
+     * their matching excerpt
+     */
+    public boolean isPartial() {
+        return this.partial;
+    }
+
+    void markPartial() {
+        this.partial = true;
+    }
+
+    boolean isOutOfTime() {
+        return this.deadline != Long.MAX_VALUE && System.nanoTime() - this.deadline >= 0;
+    }
+
+    /**
+     * @return the no. of results on the pages preceding this one
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * @return the cursor to retrieve the page of results following this one, null if this is the last page
+     */
+    public DocetSearchCursor getNextCursor() {
+        if (this.scoreDocs.length == 0 || this.position + this.scoreDocs.length >= this.totalHits) {
+            return null;
+        }
+        final ScoreDoc last = this.scoreDocs[this.scoreDocs.length - 1];
+        final String indexVersion;
+        if (this.compactIndex != null) {
+            indexVersion = this.compactIndex.getVersion();
+        } else {
+            indexVersion = SimpleDocetDocSearcher.computeIndexVersion(this.searcher.getIndexReader());
+        }
+        return new DocetSearchCursor(null, last.doc, last.score, this.position + this.scoreDocs.length,
+            this.getMaxScore(), this.fuzzy, indexVersion);
+    }
+
+    /**
+     * Release the search index the hits come from; matching documents cannot be loaded anymore afterwards.
+     */
+    @Override
+    public void close() {
+        if (this.searcher != null && this.closed.compareAndSet(false, true)) {
+            SimpleDocetDocSearcher.releaseReader(this.searcher.getIndexReader());
+        }
+    }
+}
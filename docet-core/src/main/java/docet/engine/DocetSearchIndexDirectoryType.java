@@ -0,0 +1,63 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.util.Arrays;
+
+/**
+ * Defines how the search index of a package is accessed.
+ *
+ */
+public enum DocetSearchIndexDirectoryType {
+    /**
+     * Let Lucene choose the best implementation for the current platform.
+     */
+    FS("fs"),
+    /**
+     * Read index files through NIO positional reads.
+     */
+    NIO("nio"),
+    /**
+     * Memory-map index files, preloading their content.
+     */
+    MMAP("mmap"),
+    /**
+     * Copy the whole index on heap, leaving no file handle open.
+     */
+    RAM("ram"),
+    /**
+     * Copy the index on heap if smaller than a given threshold, memory-map it otherwise.
+     */
+    AUTO("auto");
+
+    private String name;
+
+    private DocetSearchIndexDirectoryType(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    public static DocetSearchIndexDirectoryType parseDocetSearchIndexDirectoryTypeByName(final String name) {
+        return Arrays.asList(DocetSearchIndexDirectoryType.values())
+                .stream()
+                .filter(type -> type.toString().equals(name)).findFirst().orElse(FS);
+    }
+}
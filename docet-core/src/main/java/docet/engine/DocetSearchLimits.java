@@ -0,0 +1,103 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Bounds applied to every single search, so that a pathological query (e.g. a long paste of log text) cannot hold a
+ * request thread for long.
+ *
+ */
+public final class DocetSearchLimits {
+
+    private static final DocetSearchLimits UNLIMITED = new DocetSearchLimits(0, 0, 0, Integer.MAX_VALUE);
+
+    private final long timeoutMs;
+    private final int maxQueryLength;
+    private final int maxQueryTerms;
+    private final int maxHighlightChars;
+
+    /**
+     * @param timeoutMs time budget of a query, including highlighting of results; 0 for no limit
+     * @param maxQueryLength max no. of characters of the search text, exceeding ones are dropped; 0 for no limit
+     * @param maxQueryTerms max no. of terms (hence clauses) of the search text, exceeding ones are dropped; 0 for no
+     * limit
+     * @param maxHighlightChars max no. of characters of a page analyzed to build its matching excerpt
+     */
+    public DocetSearchLimits(final long timeoutMs, final int maxQueryLength, final int maxQueryTerms,
+        final int maxHighlightChars) {
+        this.timeoutMs = timeoutMs;
+        this.maxQueryLength = maxQueryLength;
+        this.maxQueryTerms = maxQueryTerms;
+        this.maxHighlightChars = maxHighlightChars;
+    }
+
+    public static DocetSearchLimits unlimited() {
+        return UNLIMITED;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public int getMaxQueryLength() {
+        return maxQueryLength;
+    }
+
+    public int getMaxQueryTerms() {
+        return maxQueryTerms;
+    }
+
+    public int getMaxHighlightChars() {
+        return maxHighlightChars;
+    }
+
+    /**
+     * @return the deadline, in terms of {@link System#nanoTime()}, of a query started right now; Long.MAX_VALUE in
+     * case of no time limit
+     */
+    long computeDeadline() {
+        if (this.timeoutMs <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return System.nanoTime() + this.timeoutMs * 1_000_000L;
+    }
+
+    /**
+     * Cut the given search text to the configured max length and no. of terms, before it gets parsed.
+     */
+    String limitSearchText(final String searchText) {
+        String res = searchText.trim();
+        if (this.maxQueryLength > 0 && res.length() > this.maxQueryLength) {
+            res = res.substring(0, this.maxQueryLength);
+        }
+        if (this.maxQueryTerms > 0) {
+            final String[] terms = res.split("\\s+");
+            if (terms.length > this.maxQueryTerms) {
+                res = Arrays.stream(terms).limit(this.maxQueryTerms).collect(Collectors.joining(" "));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        return "DocetSearchLimits{" + "timeoutMs=" + timeoutMs + ", maxQueryLength=" + maxQueryLength + ", maxQueryTerms=" + maxQueryTerms + ", maxHighlightChars=" + maxHighlightChars + '}';
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects figures about the passes performed while serving a single search request, that is the exact pass and the
+ * (possibly skipped) fuzzy one.
+ *
+ */
+public class DocetSearchStatistics {
+
+    private int exactPasses;
+    private long exactHits;
+    private long exactTimeNanos;
+    private int fuzzyPasses;
+    private long fuzzyHits;
+    private long fuzzyTimeNanos;
+
+    public synchronized void addExactPass(final long hits, final long elapsedNanos) {
+        this.exactPasses++;
+        this.exactHits += hits;
+        this.exactTimeNanos += elapsedNanos;
+    }
+
+    public synchronized void addFuzzyPass(final long hits, final long elapsedNanos) {
+        this.fuzzyPasses++;
+        this.fuzzyHits += hits;
+        this.fuzzyTimeNanos += elapsedNanos;
+    }
+
+    public synchronized int getExactPasses() {
+        return exactPasses;
+    }
+
+    public synchronized long getExactHits() {
+        return exactHits;
+    }
+
+    public synchronized long getExactTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(exactTimeNanos);
+    }
+
+    public synchronized int getFuzzyPasses() {
+        return fuzzyPasses;
+    }
+
+    public synchronized long getFuzzyHits() {
+        return fuzzyHits;
+    }
+
+    public synchronized long getFuzzyTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(fuzzyTimeNanos);
+    }
+}
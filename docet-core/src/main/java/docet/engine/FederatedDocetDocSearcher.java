@@ -0,0 +1,442 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.StringHelper;
+
+import docet.DocetLanguage;
+import docet.error.DocetDocumentSearchException;
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPackageInfo;
+import docet.model.DocetPage;
+
+/**
+ * Searcher over a single index built at runtime by merging the search indexes of all the packages being searched.
+ * Each document is tagged with the id of the package it comes from. Each package is searched by its own query
+ * filtered by package, so that every package gets its own top hits, while relevance is comparable across packages
+ * as all of the queries share the same index statistics.
+ * <p>
+ * The slice of a package is imported the first time the package is searched and rebuilt whenever the package gets
+ * reloaded with a different search index. The slice of a package no more available is dropped by
+ * {@link #removePackage(String)}.
+ *
+ */
+public class FederatedDocetDocSearcher {
+
+    private static final Logger LOGGER = Logger.getLogger(FederatedDocetDocSearcher.class.getName());
+    private static final String FIELD_PACKAGE = "package";
+    private static final String FIELD_PATH = "path";
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_LANGUAGE = "language";
+    private static final String FIELD_TITLE = "title";
+    private static final String FIELD_DOCTYPE = "doctype";
+    private static final String FIELD_ABSTRACT = "abstract";
+
+    private final ReentrantLock lock;
+    private final Path federatedIndexPath;
+    private final Map<String, ImportedSlice> importedPackages;
+    private final DocetSearchFuzzyStrategy fuzzyStrategy;
+    private final int fuzzyFallbackMinHits;
+    private final DocetSearchLimits limits;
+    private Directory index;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    /**
+     * @param federatedIndexPath where to store the combined index, null to keep it on heap
+     * @param fuzzyStrategy when to expand search terms with their fuzzy variants
+     * @param fuzzyFallbackMinHits min no. of exact hits not to run the fuzzy expansion, when adopting
+     * {@link DocetSearchFuzzyStrategy#FALLBACK}
+     */
+    public FederatedDocetDocSearcher(final Path federatedIndexPath, final DocetSearchFuzzyStrategy fuzzyStrategy,
+        final int fuzzyFallbackMinHits) {
+        this(federatedIndexPath, fuzzyStrategy, fuzzyFallbackMinHits, DocetSearchLimits.unlimited());
+    }
+
+    /**
+     * @param federatedIndexPath where to store the combined index, null to keep it on heap
+     * @param fuzzyStrategy when to expand search terms with their fuzzy variants
+     * @param fuzzyFallbackMinHits min no. of exact hits not to run the fuzzy expansion, when adopting
+     * {@link DocetSearchFuzzyStrategy#FALLBACK}
+     * @param limits bounds applied to every search, the time budget being shared by all of the searched packages
+     */
+    public FederatedDocetDocSearcher(final Path federatedIndexPath, final DocetSearchFuzzyStrategy fuzzyStrategy,
+        final int fuzzyFallbackMinHits, final DocetSearchLimits limits) {
+        this.federatedIndexPath = federatedIndexPath;
+        this.fuzzyStrategy = fuzzyStrategy;
+        this.fuzzyFallbackMinHits = fuzzyFallbackMinHits;
+        this.limits = limits;
+        this.importedPackages = new HashMap<>();
+        this.lock = new ReentrantLock(true);
+    }
+
+    /**
+     * Make sure the slice of the given package is up to date with respect to the given package runtime information,
+     * (re)importing it from the package search index otherwise.
+     *
+     * @param packageInfo runtime information of the package to be imported
+     * @return true if the slice has been (re)imported, false if it was already up to date
+     *
+     * @throws IOException in case of issues on reading the package index or on writing the combined one
+     */
+    public boolean importPackage(final DocetPackageInfo packageInfo) throws IOException {
+        final String packageId = packageInfo.getPackageId();
+        try {
+            this.lock.lock();
+            final ImportedSlice imported = this.importedPackages.get(packageId);
+            if (imported != null && imported.packageInfo == packageInfo) {
+                return false;
+            }
+            final Path packageIndexPath = packageInfo.getPackageSearchIndexDir().toAbsolutePath();
+            final String signature = computeSliceSignature(packageIndexPath);
+            if (imported != null && imported.signature.equals(signature)) {
+                this.importedPackages.put(packageId, new ImportedSlice(packageInfo, signature));
+                LOGGER.log(Level.FINE, "Search index of package {0} unchanged, federated search index slice kept",
+                    packageId);
+                return false;
+            }
+            this.open();
+            final long start = System.currentTimeMillis();
+            this.writer.deleteDocuments(new Term(FIELD_PACKAGE, packageId));
+            int importedDocs = 0;
+            for (final Path partitionPath : SimpleDocetDocSearcher.listIndexPartitionPaths(packageIndexPath)) {
+                try (Directory packageIndex = FSDirectory.open(partitionPath);
+                    DirectoryReader packageReader = DirectoryReader.open(packageIndex)) {
+                    final Bits liveDocs = MultiFields.getLiveDocs(packageReader);
+                    for (int i = 0; i < packageReader.maxDoc(); i++) {
+                        if (liveDocs != null && !liveDocs.get(i)) {
+                            continue;
+                        }
+                        this.writer.addDocument(toFederatedDocument(packageId, packageReader.document(i)));
+                        importedDocs++;
+                    }
+                }
+            }
+            this.writer.commit();
+            this.searcherManager.maybeRefreshBlocking();
+            this.importedPackages.put(packageId, new ImportedSlice(packageInfo, signature));
+            LOGGER.log(Level.INFO, "Imported {0} documents of package {1} in federated search index in {2} ms",
+                new Object[]{importedDocs, packageId, System.currentTimeMillis() - start});
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the slice of the given package, if any.
+     *
+     * @param packageId the id of the package no more available
+     *
+     * @throws IOException in case of issues on writing the combined index
+     */
+    public void removePackage(final String packageId) throws IOException {
+        try {
+            this.lock.lock();
+            if (this.importedPackages.remove(packageId) == null || this.writer == null) {
+                return;
+            }
+            this.writer.deleteDocuments(new Term(FIELD_PACKAGE, packageId));
+            this.writer.commit();
+            this.searcherManager.maybeRefreshBlocking();
+            LOGGER.log(Level.INFO, "Removed package {0} from federated search index", packageId);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the ids of the packages whose slice is currently imported
+     */
+    public Set<String> getImportedPackages() {
+        try {
+            this.lock.lock();
+            return new HashSet<>(this.importedPackages.keySet());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * A signature of the last commit of each partition of a package search index, so that a package reloaded with
+     * the very same index does not need its slice to be imported again.
+     */
+    private static String computeSliceSignature(final Path packageIndexPath) throws IOException {
+        final StringBuilder signature = new StringBuilder();
+        for (final Path partitionPath : SimpleDocetDocSearcher.listIndexPartitionPaths(packageIndexPath)) {
+            try (Directory packageIndex = FSDirectory.open(partitionPath)) {
+                final SegmentInfos commit = SegmentInfos.readLatestCommit(packageIndex);
+                signature.append(partitionPath.getFileName()).append(':')
+                    .append(StringHelper.idToString(commit.getId())).append(':')
+                    .append(commit.getVersion()).append(';');
+            }
+        }
+        return signature.toString();
+    }
+
+    private static Document toFederatedDocument(final String packageId, final Document packageDoc) {
+        final Document doc = new Document();
+        doc.add(new StringField(FIELD_PACKAGE, packageId, Field.Store.YES));
+        for (final IndexableField field : packageDoc.getFields()) {
+            final String name = field.name();
+            if (name.startsWith(SimpleDocetDocSearcher.LUCENE_QUERY_CONTENT_PREFIX) || FIELD_ABSTRACT.equals(name)) {
+                doc.add(new TextField(name, field.stringValue(), Field.Store.YES));
+            } else if (FIELD_DOCTYPE.equals(name)) {
+                doc.add(new IntField(name, field.numericValue().intValue(), Field.Store.YES));
+            } else if (FIELD_PATH.equals(name) || FIELD_ID.equals(name) || FIELD_LANGUAGE.equals(name)
+                || FIELD_TITLE.equals(name)) {
+                doc.add(new StringField(name, field.stringValue(), Field.Store.YES));
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Search the given packages with a query for each package, so that each package gets up to the given no. of
+     * matching pages and matching pages get a relevance normalized over all the packages.
+     *
+     * @param searchText the text to be searched
+     * @param lang the language of the docs to be searched
+     * @param descriptors the descriptors of the packages to be searched, indexed by package id
+     * @param maxNumResults max no. of matching pages to be retrieved for each package
+     * @param statistics where to account for the performed search passes
+     * @param partialPackages where to collect the ids of the packages whose results have been cut short by the time
+     * budget of the search
+     * @return the matching pages, indexed by package id
+     *
+     * @throws DocetDocumentSearchException in case of issue over search process
+     */
+    public Map<String, List<DocetPage>> searchForMatchingDocuments(final String searchText, final String lang,
+        final Map<String, DocetPackageDescriptor> descriptors, final int maxNumResults,
+        final DocetSearchStatistics statistics, final Set<String> partialPackages) throws DocetDocumentSearchException {
+        return this.searchForMatchingDocuments(searchText, lang, descriptors, maxNumResults, statistics, partialPackages,
+            this.limits.computeDeadline());
+    }
+
+    Map<String, List<DocetPage>> searchForMatchingDocuments(final String searchText, final String lang,
+        final Map<String, DocetPackageDescriptor> descriptors, final int maxNumResults,
+        final DocetSearchStatistics statistics, final Set<String> partialPackages, final long deadline)
+        throws DocetDocumentSearchException {
+        final String limitedSearchText = this.limits.limitSearchText(searchText);
+        final Map<String, List<String>> packagesForLang = new HashMap<>();
+        descriptors.forEach((packageId, descriptor) -> {
+            final String fallbackLang = descriptor.getFallbackLangForLang(lang);
+            final String actualSearchLang = fallbackLang == null || fallbackLang.isEmpty() ? lang : fallbackLang;
+            packagesForLang.computeIfAbsent(actualSearchLang, l -> new ArrayList<>()).add(packageId);
+        });
+        final Map<String, List<Document>> docsForPackage = new HashMap<>();
+        final Map<Document, String> excerpts = new HashMap<>();
+        final Map<Document, Float> scores = new HashMap<>();
+        float maxScore = 0f;
+        final SearcherManager manager;
+        final IndexSearcher searcher;
+        try {
+            this.lock.lock();
+            if (this.searcherManager == null) {
+                return new HashMap<>();
+            }
+            manager = this.searcherManager;
+            // acquired while holding the lock, so that the searcher cannot be closed meanwhile by close() or
+            // removePackage(): once acquired, the searcher stays open until released
+            searcher = manager.acquire();
+        } catch (IOException ex) {
+            throw new DocetDocumentSearchException("Error on searching query " + searchText + " for lang "
+                                                        + lang + " on federated search index", ex);
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            try {
+                for (final Map.Entry<String, List<String>> entry : packagesForLang.entrySet()) {
+                    final String actualSearchLang = entry.getKey();
+                    final String field = SimpleDocetDocSearcher.LUCENE_QUERY_CONTENT_PREFIX + actualSearchLang;
+                    final Analyzer analyzer = new SimpleDocetDocSearcher.AnalyzerBuilder().language(actualSearchLang).build();
+                    for (final String packageId : entry.getValue()) {
+                        if (isOutOfTime(deadline)) {
+                            // out of time budget: the packages still to be searched get no results
+                            partialPackages.add(packageId);
+                            continue;
+                        }
+                        final Query packageFilter = new TermQuery(new Term(FIELD_PACKAGE, packageId));
+                        final AtomicBoolean timedOut = new AtomicBoolean();
+                        final SimpleDocetDocSearcher.SearchPass pass = SimpleDocetDocSearcher.searchWithFuzzyStrategy(
+                            new QueryParser(field, analyzer), limitedSearchText, this.fuzzyStrategy,
+                            this.fuzzyFallbackMinHits,
+                            contentQuery -> SimpleDocetDocSearcher.searchWithDeadline(searcher, new BooleanQuery.Builder()
+                                .add(contentQuery, BooleanClause.Occur.MUST)
+                                .add(packageFilter, BooleanClause.Occur.FILTER)
+                                .build(), null, maxNumResults, deadline, timedOut),
+                            statistics);
+                        if (timedOut.get()) {
+                            LOGGER.log(Level.WARNING, "Search of query {0} for lang {1} on package {2} ran out of its "
+                                + "time budget on federated search index, returning partial results",
+                                new Object[]{searchText, actualSearchLang, packageId});
+                            partialPackages.add(packageId);
+                        }
+
+                        final TopDocs res = pass.topDocs;
+                        if (res.scoreDocs.length == 0) {
+                            continue;
+                        }
+                        maxScore = Math.max(maxScore, res.getMaxScore());
+
+                        final QueryScorer queryScorer = new QueryScorer(pass.query, field);
+                        final Highlighter highlighter = new Highlighter(queryScorer);
+                        highlighter.setMaxDocCharsToAnalyze(this.limits.getMaxHighlightChars());
+                        highlighter.setTextFragmenter(new SimpleSpanFragmenter(queryScorer));
+
+                        final List<Document> packageDocs = new ArrayList<>();
+                        for (final ScoreDoc sd : res.scoreDocs) {
+                            final Document doc = searcher.doc(sd.doc);
+                            packageDocs.add(doc);
+                            scores.put(doc, sd.score);
+                            if (!isOutOfTime(deadline)) {
+                                excerpts.put(doc, SimpleDocetDocSearcher.buildMatchingExcerpt(highlighter, analyzer,
+                                    field, doc.get(field)));
+                            } else {
+                                // out of time budget: return the remaining pages with no matching excerpt
+                                excerpts.put(doc, "");
+                                partialPackages.add(packageId);
+                            }
+                        }
+                        docsForPackage.put(packageId, packageDocs);
+                    }
+                }
+            } finally {
+                manager.release(searcher);
+            }
+        } catch (ParseException | IOException | InvalidTokenOffsetsException ex) {
+            throw new DocetDocumentSearchException("Error on searching query " + searchText + " for lang "
+                                                        + lang + " on federated search index", ex);
+        }
+        final Map<String, List<DocetPage>> results = new HashMap<>();
+        final float normalization = maxScore;
+        docsForPackage.forEach((packageId, docs) -> {
+            final List<DocetPage> pages = new ArrayList<>();
+            docs.forEach(doc -> {
+                final int relevance = Math.round((scores.get(doc) / normalization) * 100);
+                pages.add(DocetPage.toDocetDocument(doc, excerpts.get(doc), relevance));
+            });
+            results.put(packageId, pages);
+        });
+        return results;
+    }
+
+    private static boolean isOutOfTime(final long deadline) {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    private void open() throws IOException {
+        if (this.writer != null) {
+            return;
+        }
+        if (this.federatedIndexPath == null) {
+            this.index = new RAMDirectory();
+        } else {
+            this.index = FSDirectory.open(this.federatedIndexPath);
+        }
+        final Map<String, Analyzer> analyzers = new HashMap<>();
+        for (final DocetLanguage lang : DocetLanguage.values()) {
+            analyzers.put(SimpleDocetDocSearcher.LUCENE_QUERY_CONTENT_PREFIX + lang,
+                new SimpleDocetDocSearcher.AnalyzerBuilder().language(lang.toString()).build());
+        }
+        final IndexWriterConfig iwc = new IndexWriterConfig(new PerFieldAnalyzerWrapper(new StandardAnalyzer(), analyzers));
+        // slices are imported again as soon as their package is searched
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        this.writer = new IndexWriter(this.index, iwc);
+        this.searcherManager = new SearcherManager(this.writer, true, new SearcherFactory());
+    }
+
+    public void close() throws IOException {
+        try {
+            this.lock.lock();
+            if (this.searcherManager != null) {
+                this.searcherManager.close();
+                this.searcherManager = null;
+            }
+            if (this.writer != null) {
+                this.writer.close();
+                this.writer = null;
+            }
+            if (this.index != null) {
+                this.index.close();
+                this.index = null;
+            }
+            this.importedPackages.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static final class ImportedSlice {
+
+        private final DocetPackageInfo packageInfo;
+        private final String signature;
+
+        private ImportedSlice(final DocetPackageInfo packageInfo, final String signature) {
+            this.packageInfo = packageInfo;
+            this.signature = signature;
+        }
+    }
+}
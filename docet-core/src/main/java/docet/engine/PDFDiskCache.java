@@ -0,0 +1,217 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded cache of generated pdfs on disk. Pdfs are stored in a folder for each package, named after a digest of
+ * everything the pdf depends on. Least recently used pdfs are deleted when the cache grows over its max size, and all
+ * of the pdfs of a package are deleted as soon as the package is found to have changed (e.g. on reload).
+ *
+ */
+final class PDFDiskCache {
+
+    private static final Logger LOGGER = Logger.getLogger(PDFDiskCache.class.getName());
+    private static final String EXTENSION_PDF = ".pdf";
+    private static final String EXTENSION_TMP = ".tmp";
+    private static final String FINGERPRINT_FILE_NAME = "fingerprint";
+
+    private final Path cacheDir;
+    private final long maxSize;
+    private final LinkedHashMap<Path, Long> sizeForFile;
+    private final Map<String, String> fingerprintForPackage;
+    private long size;
+
+    /**
+     * @param cacheDir the folder pdfs are stored in, pdfs already there are kept
+     * @param maxSize max size in bytes of the cached pdfs
+     */
+    PDFDiskCache(final Path cacheDir, final long maxSize) throws IOException {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.sizeForFile = new LinkedHashMap<>(16, 0.75f, true);
+        this.fingerprintForPackage = new HashMap<>();
+        Files.createDirectories(cacheDir);
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(cacheDir, 2)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        final List<Path> pdfs = new ArrayList<>();
+        for (final Path file : files) {
+            final String fileName = file.getFileName().toString();
+            if (fileName.endsWith(EXTENSION_PDF)) {
+                pdfs.add(file);
+            } else if (fileName.equals(FINGERPRINT_FILE_NAME)) {
+                this.fingerprintForPackage.put(file.getParent().getFileName().toString(),
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            } else if (fileName.endsWith(EXTENSION_TMP)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        final Map<Path, Long> lastModifiedForPdf = new HashMap<>();
+        for (final Path pdf : pdfs) {
+            lastModifiedForPdf.put(pdf, Files.getLastModifiedTime(pdf).toMillis());
+        }
+        pdfs.sort(Comparator.comparing(lastModifiedForPdf::get));
+        for (final Path pdf : pdfs) {
+            final long pdfSize = Files.size(pdf);
+            this.sizeForFile.put(pdf, pdfSize);
+            this.size += pdfSize;
+        }
+        this.deleteFiles(this.evict());
+        LOGGER.log(Level.INFO, "Pdf cache in {0}: {1} pdfs, {2} bytes",
+            new Object[]{cacheDir, this.sizeForFile.size(), this.size});
+    }
+
+    /**
+     * @param packageId the package the pdf belongs to
+     * @param fingerprint the fingerprint of the contents of the package
+     * @param key digest of everything the pdf depends on
+     * @return the cached pdf, null if not cached
+     */
+    Path get(final String packageId, final String fingerprint, final String key) {
+        this.checkFingerprint(packageId, fingerprint);
+        final Path file = this.resolve(packageId, key);
+        synchronized (this) {
+            if (this.sizeForFile.get(file) == null) {
+                return null;
+            }
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Impossible to update last access time of " + file, ex);
+        }
+        return file;
+    }
+
+    /**
+     * Store a pdf in the cache, replacing it atomically if already there. The given file is moved into the cache,
+     * thus it is expected to be on the same file system, e.g. generated in {@link #getTmpDir()}.
+     *
+     * @param pdf the pdf to be cached
+     * @return the cached pdf, null if the pdf does not fit in the cache at all: in that case the given file is left
+     * where it is
+     */
+    Path put(final String packageId, final String fingerprint, final String key, final Path pdf) throws IOException {
+        final long pdfSize = Files.size(pdf);
+        if (pdfSize > this.maxSize) {
+            LOGGER.log(Level.FINE, "Pdf {0} of package {1} too big to be cached: {2} bytes",
+                new Object[]{key, packageId, pdfSize});
+            return null;
+        }
+        this.checkFingerprint(packageId, fingerprint);
+        final Path file = this.resolve(packageId, key);
+        Files.createDirectories(file.getParent());
+        Files.move(pdf, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        final List<Path> evicted;
+        synchronized (this) {
+            final Long previousSize = this.sizeForFile.put(file, pdfSize);
+            this.size += pdfSize - (previousSize == null ? 0 : previousSize);
+            evicted = this.evict();
+        }
+        this.deleteFiles(evicted);
+        return file;
+    }
+
+    /**
+     * @return a folder on the same file system as the cache, for pdfs to be generated in before being cached;
+     * leftovers of {@value #EXTENSION_TMP} files are deleted on startup
+     */
+    Path getTmpDir() {
+        return this.cacheDir;
+    }
+
+    /**
+     * Drop all of the pdfs of the given package in case it changed since they were generated.
+     */
+    private void checkFingerprint(final String packageId, final String fingerprint) {
+        final List<Path> stale = new ArrayList<>();
+        final Path packageDir = this.cacheDir.resolve(packageId);
+        synchronized (this) {
+            if (fingerprint.equals(this.fingerprintForPackage.put(packageId, fingerprint))) {
+                return;
+            }
+            for (final Iterator<Map.Entry<Path, Long>> it = this.sizeForFile.entrySet().iterator(); it.hasNext();) {
+                final Map.Entry<Path, Long> entry = it.next();
+                if (entry.getKey().getParent().equals(packageDir)) {
+                    stale.add(entry.getKey());
+                    this.size -= entry.getValue();
+                    it.remove();
+                }
+            }
+        }
+        if (!stale.isEmpty()) {
+            LOGGER.log(Level.INFO, "Package {0} changed, dropping {1} cached pdfs", new Object[]{packageId, stale.size()});
+        }
+        this.deleteFiles(stale);
+        // pdfs are named after the fingerprint too, at worst a stale fingerprint file makes pdfs be dropped on restart
+        try {
+            Files.createDirectories(packageDir);
+            Files.write(packageDir.resolve(FINGERPRINT_FILE_NAME), fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Impossible to store fingerprint of package " + packageId, ex);
+        }
+    }
+
+    /**
+     * @return the least recently used pdfs to be deleted to get back under the max size, already dropped from the
+     * cache
+     */
+    private synchronized List<Path> evict() {
+        final List<Path> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<Path, Long>> it = this.sizeForFile.entrySet().iterator();
+        while (this.size > this.maxSize && it.hasNext()) {
+            final Map.Entry<Path, Long> entry = it.next();
+            evicted.add(entry.getKey());
+            this.size -= entry.getValue();
+            it.remove();
+        }
+        return evicted;
+    }
+
+    private void deleteFiles(final List<Path> files) {
+        for (final Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Impossible to delete cached pdf " + file, ex);
+            }
+        }
+    }
+
+    private Path resolve(final String packageId, final String key) {
+        return this.cacheDir.resolve(packageId).resolve(key + EXTENSION_PDF);
+    }
+}
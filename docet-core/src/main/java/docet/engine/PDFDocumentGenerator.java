@@ -19,6 +19,8 @@ package docet.engine;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import docet.DocetDocumentGenerator;
 import docet.DocetDocumentResourcesAccessor;
@@ -28,19 +30,48 @@ import docet.error.DocetDocumentParsingException;
 import docet.error.DocetException;
 import docet.model.DocetDocument;
 import docet.model.SummaryEntry;
+import org.jsoup.nodes.Document;
 
 public class PDFDocumentGenerator implements DocetDocumentGenerator, DocetDocumentParser {
 
     private final DocetManager manager;
+    private final Executor layoutExecutor;
+    private final PDFDocumentHandler.RenderingContextPool contextPool;
+    private final boolean streaming;
 
     public PDFDocumentGenerator(final DocetManager manager) throws IOException {
+        this(manager, null, null, false);
+    }
+
+    /**
+     * @param layoutExecutor executor sections of documents are laid out on concurrently, null to lay them out one at
+     * a time
+     * @param contextPool pool of rendering contexts to reuse, null to create new contexts for each document
+     * @param streaming whether to write each section of documents as soon as it is laid out, instead of keeping all
+     * of them in memory until the whole document is laid out
+     */
+    public PDFDocumentGenerator(final DocetManager manager, final Executor layoutExecutor,
+        final PDFDocumentHandler.RenderingContextPool contextPool, final boolean streaming) throws IOException {
         this.manager = manager;
+        this.layoutExecutor = layoutExecutor;
+        this.contextPool = contextPool;
+        this.streaming = streaming;
     }
 
     @Override
     public byte[] parsePage(String html, DocetDocumentResourcesAccessor accessor, DocetLanguage language)
             throws DocetDocumentParsingException {
 
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parsePage(html, accessor, language, out);
+
+        return out.toByteArray();
+    }
+
+    @Override
+    public void parsePage(String html, DocetDocumentResourcesAccessor accessor, DocetLanguage language,
+            OutputStream out) throws DocetDocumentParsingException {
+
         PDFDocumentHandler handler = PDFDocumentHandler
             .builder()
             .language(language)
@@ -48,15 +79,13 @@ public class PDFDocumentGenerator implements DocetDocumentGenerator, DocetDocume
             .cover(false)
             .toc(false)
             .bookmarks(false)
+            .contextPool(contextPool)
             .create();
 
         /* No need of title or page, just a single page without toc */
         handler.addSection(html, "", "", null);
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
         handler.createPDF(out);
-
-        return out.toByteArray();
     }
 
     @Override
@@ -66,6 +95,19 @@ public class PDFDocumentGenerator implements DocetDocumentGenerator, DocetDocume
             OutputStream out,
             DocetDocumentResourcesAccessor placeholderAccessor) throws DocetDocumentParsingException {
 
+        generateDocetDocument(document, ctx, out, placeholderAccessor, new PDFGenerationProgress());
+    }
+
+    /**
+     * Generate the given document reporting progress on the given object as sections and pages get rendered.
+     */
+    public void generateDocetDocument(
+            DocetDocument document,
+            DocetExecutionContext ctx,
+            OutputStream out,
+            DocetDocumentResourcesAccessor placeholderAccessor,
+            PDFGenerationProgress progress) throws DocetDocumentParsingException {
+
         final DocetLanguage language = DocetLanguage.parseDocetLanguageByName(document.getLang());
 
         PDFDocumentHandler handler = PDFDocumentHandler
@@ -74,14 +116,43 @@ public class PDFDocumentGenerator implements DocetDocumentGenerator, DocetDocume
             .language(language)
             .placeholders(placeholderAccessor)
             .title(document.getTitle())
+            .progress(progress)
+            .layoutExecutor(layoutExecutor)
+            .contextPool(contextPool)
+            .streaming(streaming)
             .create();
 
-        addDocument(handler, document, ctx, language);
+        progress.setSectionsTotal(countSummaryEntries(document.getSummary()));
 
-        handler.createPDF(out);
+        try {
+            if (streaming) {
+                declareSections(handler, document.getSummary(), null);
+                handler.startPDF(out);
+                addDocument(handler, document, ctx, language);
+                handler.finishPDF();
+            } else {
+                addDocument(handler, document, ctx, language);
+                handler.createPDF(out);
+            }
+        } catch (DocetDocumentParsingException | RuntimeException e) {
+            /* Do not keep laying out sections of a pdf nobody will get */
+            handler.abort();
+            throw e;
+        }
 
     }
 
+    /**
+     * Declare the sections of the given entries, in the same order {@link #handleSummaryEntry} adds them.
+     */
+    private static void declareSections(PDFDocumentHandler handler, List<SummaryEntry> entries, String parentId)
+            throws DocetDocumentParsingException {
+        for (SummaryEntry entry : entries) {
+            handler.declareSection(entry.getTargetPageId(), entry.getName(), parentId);
+            declareSections(handler, entry.getSubSummary(), entry.getTargetPageId());
+        }
+    }
+
     private void addDocument(
             PDFDocumentHandler handler,
             DocetDocument document,
@@ -94,6 +165,14 @@ public class PDFDocumentGenerator implements DocetDocumentGenerator, DocetDocume
         }
     }
 
+    private static int countSummaryEntries(List<SummaryEntry> entries) {
+        int count = entries.size();
+        for (SummaryEntry entry : entries) {
+            count += countSummaryEntries(entry.getSubSummary());
+        }
+        return count;
+    }
+
     private void handleSummaryEntry(
             final PDFDocumentHandler handler,
             final SummaryEntry entry,
@@ -104,15 +183,14 @@ public class PDFDocumentGenerator implements DocetDocumentGenerator, DocetDocume
         final String id = entry.getTargetPageId();
         final String lang = entry.getLang();
 
-        final String html;
+        final Document page;
         try {
-            html = this.manager.servePageIdForLanguageForPackage(
-                    packageName, id, lang, DocetDocFormat.TYPE_PDF, false, null, ctx);
+            page = this.manager.servePdfPageIdForLanguageForPackage(packageName, id, lang, false, null, ctx);
         } catch (DocetException e) {
             throw new DocetDocumentParsingException("Cannot retrieve page " + id, e);
         }
 
-        handler.addSection(html, id, entry.getName(), parentId);
+        handler.addSection(page, id, entry.getName(), parentId);
 
         for (final SummaryEntry subEntry : entry.getSubSummary()) {
             handleSummaryEntry(handler, subEntry, packageName, ctx, id);
@@ -26,14 +26,27 @@ import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,13 +61,21 @@ import org.jsoup.parser.Parser;
 import org.jsoup.parser.Tag;
 import org.jsoup.select.Elements;
 import org.xhtmlrenderer.context.StyleReference;
+import org.xhtmlrenderer.context.StylesheetFactoryImpl;
+import org.xhtmlrenderer.css.extend.ContentFunction;
+import org.xhtmlrenderer.css.extend.StylesheetFactory;
+import org.xhtmlrenderer.css.parser.FSFunction;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.extend.FSImage;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.BoxBuilder;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.pdf.ITextFSImage;
 import org.xhtmlrenderer.pdf.ITextFontContext;
 import org.xhtmlrenderer.pdf.ITextFontResolver;
 import org.xhtmlrenderer.pdf.ITextOutputDevice;
@@ -62,8 +83,11 @@ import org.xhtmlrenderer.pdf.ITextReplacedElementFactory;
 import org.xhtmlrenderer.pdf.ITextTextRenderer;
 import org.xhtmlrenderer.pdf.ITextUserAgent;
 import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.InlineText;
 import org.xhtmlrenderer.render.PageBox;
 import org.xhtmlrenderer.render.RenderingContext;
+import org.xhtmlrenderer.resource.ImageResource;
 import org.xhtmlrenderer.render.ViewportBox;
 import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
@@ -98,6 +122,12 @@ public class PDFDocumentHandler {
 
     private static final String DEFAULT_TITLE = "";
 
+    /* Streaming mode: TOC page numbers get laid out as wide as this one */
+    private static final int STREAMING_MAX_PAGE_NO = 9999;
+
+    /* Streaming mode: max no. of sections laid out concurrently ahead of the one being written */
+    private static final int STREAMING_MAX_PENDING_SECTIONS = 8;
+
     public static final DocetLanguage DEFAULT_LANGUAGE = DocetLanguage.EN;
 
     /* These two defaults combine to produce an effective resolution of 96 px to the inch */
@@ -114,6 +144,9 @@ public class PDFDocumentHandler {
 
     public static final Parser HTML_PARSER = Parser.htmlParser();
 
+    /* Sources of the classpath fragments, placeholders still to be replaced */
+    private static final Map<String,String> FRAGMENT_SOURCES = new ConcurrentHashMap<>();
+
     /** Patterns for replace placeholders */
     private static final Map<HTMLPlaceholder,Pattern> REPLACEMENT_PATTERNS;
     static {
@@ -124,6 +157,7 @@ public class PDFDocumentHandler {
         }
     }
 
+    private final boolean debug;
     private final boolean renderCover;
     private final boolean renderToc;
     private final boolean renderBookmarks;
@@ -144,6 +178,7 @@ public class PDFDocumentHandler {
     /* Declared as LinkedHashMap, we need the order preserving feature! */
     private final LinkedHashMap<String,DocumentPart> documents = new LinkedHashMap<>();
 
+    private final PooledContext mainContext;
     private final SharedContext sharedContext;
     private final ITextOutputDevice outputDevice;
 
@@ -153,6 +188,45 @@ public class PDFDocumentHandler {
 
     private final Map<HTMLPlaceholder,String> placeholders;
 
+    private final PDFGenerationProgress progress;
+
+    /* Runs section layouts, null to lay sections out as they are added */
+    private final Executor layoutExecutor;
+
+    /* Set once the pdf won't be written: layouts still running stop at their next step */
+    private volatile boolean layoutsCancelled;
+
+    /* Images loaded by any of the contexts, see ClassloaderAwareUserAgent */
+    private final Map<String,ImageResource> sharedImages = new ConcurrentHashMap<>();
+
+    /* Where contexts are taken from and given back to, null to create new ones */
+    private final RenderingContextPool contextPool;
+    private final String contextKey;
+
+    /* Contexts in use, main one included, to be given back once the pdf is written */
+    private final List<PooledContext> contexts = Collections.synchronizedList(new ArrayList<>());
+
+    /* Contexts done with laying a section out, ready for the next one: one context per concurrent layout at most */
+    private final Deque<PooledContext> idleContexts = new ConcurrentLinkedDeque<>();
+
+    private final boolean streaming;
+
+    private OutputStream output;
+    private com.lowagie.text.Document pdf;
+    private PdfWriter writer;
+
+    /* Streaming mode: TOC waiting for sections page numbers */
+    private DocumentPart toc;
+
+    /* Streaming mode: declared sections still to be added, in order */
+    private Iterator<DocumentPart> sectionsToAdd;
+
+    /* Streaming mode: sections added but not written yet, in order */
+    private final Deque<DocumentPart> pendingSections = new ArrayDeque<>();
+
+    /* Streaming mode: page number of the next section to write */
+    private int nextPageNo;
+
     public static interface Builder {
 
         public Builder debug(boolean debug);
@@ -177,6 +251,32 @@ public class PDFDocumentHandler {
 
         public Builder namespaceHandler(NamespaceHandler namespaceHandler);
 
+        public Builder progress(PDFGenerationProgress progress);
+
+        /**
+         * Lay sections out concurrently on the given executor, each section with a rendering context of its own;
+         * pages are written in order anyway. Sections the executor rejects are laid out as they are added. By default
+         * sections are laid out one at a time as they are added.
+         */
+        public Builder layoutExecutor(Executor layoutExecutor);
+
+        /**
+         * Take rendering contexts from the given pool, giving them back once the pdf is written. By default new
+         * contexts are created for each pdf.
+         */
+        public Builder contextPool(RenderingContextPool contextPool);
+
+        /**
+         * Write each section as soon as it is laid out, releasing its boxes and keeping only what bookmarks and the
+         * TOC need. Sections must be declared upfront with {@link PDFDocumentHandler#declareSection}, the pdf is
+         * written by {@link PDFDocumentHandler#startPDF}, {@link PDFDocumentHandler#addSection} and
+         * {@link PDFDocumentHandler#finishPDF} instead of {@link PDFDocumentHandler#createPDF}. The TOC gets
+         * written last and moved after the cover; {@code counter(pages)} counts pages written up to the end of each
+         * section only, as the total isn't known while writing. By default all of the sections are kept until the
+         * pdf is created.
+         */
+        public Builder streaming(boolean streaming);
+
         public PDFDocumentHandler create() throws DocetDocumentParsingException;
 
     }
@@ -196,9 +296,14 @@ public class PDFDocumentHandler {
             NamespaceHandler namespaceHandler,
             String title,
             DocetDocumentResourcesAccessor accessor,
-            DocetLanguage language)
+            DocetLanguage language,
+            PDFGenerationProgress progress,
+            Executor layoutExecutor,
+            RenderingContextPool contextPool,
+            boolean streaming)
                     throws DocetDocumentParsingException {
 
+        this.debug = debug;
         this.renderCover = renderCover;
         this.renderToc = renderToc;
         this.renderBookmarks = renderBookmarks;
@@ -214,6 +319,11 @@ public class PDFDocumentHandler {
         this.accessor = accessor;
         this.language = language;
 
+        this.progress = progress;
+        this.layoutExecutor = layoutExecutor;
+        this.contextPool = contextPool;
+        this.streaming = streaming;
+
         this.css = evaluateAccessorConfiguration(DocetDocumentPlaceholder.PDF_CSS, DEFAULT_CSS);
 
         /* ************************* */
@@ -245,33 +355,98 @@ public class PDFDocumentHandler {
         /* *** OUTPUTDEVICE AND CONTEXT *** */
         /* ******************************** */
 
-        outputDevice = new ITextOutputDevice(dotsPerPoint);
-        ClassloaderAwareUserAgent userAgent = new ClassloaderAwareUserAgent(outputDevice);
+        contextKey = css + "|" + dotsPerPoint + "|" + dotsPerPixel + "|" + debug + "|" + namespaceHandler.getClass().getName();
 
-        sharedContext = new SharedContext();
-        sharedContext.setUserAgentCallback(userAgent);
-        sharedContext.setCss(new StyleReference(userAgent));
+        mainContext = acquireContext();
+        outputDevice = mainContext.device;
+        sharedContext = mainContext.context;
 
-        userAgent.setSharedContext(sharedContext);
-        outputDevice.setSharedContext(sharedContext);
+        /* Needed to paint links even when no part is laid out with the main context, see layoutExecutor */
+        sharedContext.setNamespaceHandler(new ClasspathStylesheetsNamespaceHandler(namespaceHandler, mainContext));
 
-        ITextFontResolver fontResolver = new ITextFontResolver(sharedContext);
-        sharedContext.setFontResolver(fontResolver);
+    }
 
-        ITextReplacedElementFactory replacedElementFactory = new ITextReplacedElementFactory(outputDevice);
-        sharedContext.setReplacedElementFactory(replacedElementFactory);
+    /**
+     * Take a context from the pool, or create a new one, for the exclusive use of this handler.
+     */
+    private PooledContext acquireContext() {
 
-        sharedContext.setTextRenderer(new ITextTextRenderer());
-        sharedContext.setDPI(72 * dotsPerPoint);
-        sharedContext.setDotsPerPixel(dotsPerPixel);
-        sharedContext.setPrint(true);
-        sharedContext.setInteractive(false);
+        PooledContext context = null;
+        if (contextPool != null) {
+            context = contextPool.acquire(contextKey);
+        }
 
-        sharedContext.setDebug_draw_boxes(debug);
-        sharedContext.setDebug_draw_font_metrics(debug);
-        sharedContext.setDebug_draw_inline_boxes(debug);
-        sharedContext.setDebug_draw_line_boxes(debug);
+        if (context == null) {
+            ITextOutputDevice device = new ITextOutputDevice(dotsPerPoint);
+            ClassloaderAwareUserAgent userAgent = new ClassloaderAwareUserAgent(device,
+                    contextPool == null ? new HashMap<>() : contextPool.classpathURIs);
+            context = new PooledContext(contextKey, device, newSharedContext(device, userAgent), userAgent);
+        }
 
+        context.userAgent.reset(sharedImages);
+        contexts.add(context);
+
+        return context;
+    }
+
+    /**
+     * Give the contexts used back to the pool, unless the pdf could not be written: in such case their state is
+     * unknown.
+     */
+    @SuppressWarnings("unchecked")
+    private void releaseContexts() {
+
+        if (contextPool == null) {
+            return;
+        }
+
+        synchronized (contexts) {
+            for (PooledContext context : contexts) {
+                context.userAgent.reset(null);
+
+                /* Boxes by id would keep laid out sections alive until the context is used again */
+                Map<String,Box> boxIds = context.context.getIdMap();
+                if (boxIds != null) {
+                    boxIds.clear();
+                }
+
+                contextPool.release(context);
+            }
+            contexts.clear();
+            idleContexts.clear();
+        }
+    }
+
+    /**
+     * Create a context to lay documents out with and to render them on the given device.
+     */
+    private SharedContext newSharedContext(ITextOutputDevice device, ClassloaderAwareUserAgent userAgent) {
+
+        SharedContext context = new SharedContext();
+        context.setUserAgentCallback(userAgent);
+        context.setCss(new StyleReference(userAgent));
+
+        userAgent.setSharedContext(context);
+        device.setSharedContext(context);
+
+        ITextFontResolver fontResolver = new ITextFontResolver(context);
+        context.setFontResolver(fontResolver);
+
+        ITextReplacedElementFactory replacedElementFactory = new ITextReplacedElementFactory(device);
+        context.setReplacedElementFactory(replacedElementFactory);
+
+        context.setTextRenderer(new ITextTextRenderer());
+        context.setDPI(72 * dotsPerPoint);
+        context.setDotsPerPixel(dotsPerPixel);
+        context.setPrint(true);
+        context.setInteractive(false);
+
+        context.setDebug_draw_boxes(debug);
+        context.setDebug_draw_font_metrics(debug);
+        context.setDebug_draw_inline_boxes(debug);
+        context.setDebug_draw_line_boxes(debug);
+
+        return context;
     }
 
     private final String evaluateAccessorConfiguration(DocetDocumentPlaceholder placeholder, String fallback) {
@@ -372,22 +547,164 @@ public class PDFDocumentHandler {
      */
     public void createPDF(OutputStream os) throws DocetDocumentParsingException {
 
+        if (streaming) {
+            throw new DocetDocumentParsingException("Streaming handlers write pdfs through startPDF and finishPDF");
+        }
+
         createPDF(os, 1);
+        releaseContexts();
     }
 
-    public void addSection(String html, String id, String name, String parentId) throws DocetDocumentParsingException {
+    /**
+     * Declare a section to be added later, needed by streaming handlers to lay the TOC out before writing sections.
+     * Sections have to be added in the same order they are declared.
+     */
+    public void declareSection(String id, String name, String parentId) throws DocetDocumentParsingException {
 
-        final DocumentPart parent;
-        if (parentId != null) {
-            parent = documents.get(parentId);
-            if (parent == null) {
-                throw new DocetDocumentParsingException("Unknown parent " + parentId);
+        if (sectionsToAdd != null) {
+            throw new DocetDocumentParsingException("Cannot declare section " + id + ", pdf already started");
+        }
+
+        if (documents.containsKey(id)) {
+            LOGGER.log(Level.FINE, "Section {0} of {1} already declared", new Object[] {id, title});
+            return;
+        }
+
+        documents.put(id, newDocumentPart(name, getParent(parentId)));
+    }
+
+    /**
+     * Start writing the pdf to the given stream, streaming mode only: cover and TOC are laid out, sections are
+     * written as soon as they are added.
+     * <p>
+     * <B>NOTE:</B> Caller is responsible for cleaning up the OutputStream if something goes wrong.
+     * </p>
+     */
+    public void startPDF(OutputStream os) throws DocetDocumentParsingException {
+
+        if (!streaming) {
+            throw new DocetDocumentParsingException("Only streaming handlers can start a pdf");
+        }
+
+        if (sectionsToAdd != null) {
+            throw new DocetDocumentParsingException("Pdf " + title + " already started");
+        }
+
+        if (documents.isEmpty() ) {
+            throw new DocetDocumentParsingException("No available pages to parse");
+        }
+
+        output = os;
+        sectionsToAdd = documents.values().iterator();
+        nextPageNo = 1;
+
+        if (renderCover) {
+            streamDocumentPart(generateCover());
+        }
+
+        if (renderToc) {
+
+            /*
+             * Sections are not laid out yet: use placeholders wide enough for any reasonable page number, page
+             * numbers are written once the TOC gets rendered after the last section.
+             */
+            toc = generateTOC(documents.values(), new TOCPageNumberFunction(documents.values(), STREAMING_MAX_PAGE_NO));
+            nextPageNo += toc.pageCount;
+        }
+    }
+
+    /**
+     * Terminate a pdf started by {@link #startPDF}, writing the TOC and bookmarks once all of the declared sections
+     * have been added.
+     */
+    public void finishPDF() throws DocetDocumentParsingException {
+
+        if (sectionsToAdd == null) {
+            throw new DocetDocumentParsingException("Pdf " + title + " not started");
+        }
+
+        if (sectionsToAdd.hasNext()) {
+            throw new DocetDocumentParsingException("Section " + sectionsToAdd.next().name + " declared but never added");
+        }
+
+        try {
+
+            writePendingSections(true);
+
+            int totalPages = nextPageNo - 1;
+            progress.setPagesTotal(totalPages);
+
+            int[] pagesOrder = null;
+            if (renderToc) {
+
+                int coversize = renderCover ? 1 : 0;
+                int sectionsEnd = writer.getPageNumber();
+
+                writePDF(toc, 1 + coversize, totalPages);
+
+                /* Move the TOC, written last, right after the cover */
+                pagesOrder = new int[totalPages];
+                int i = 0;
+                for (int page = 1; page <= coversize; ++page) {
+                    pagesOrder[i++] = page;
+                }
+                for (int page = sectionsEnd; page < sectionsEnd + toc.pageCount; ++page) {
+                    pagesOrder[i++] = page;
+                }
+                for (int page = coversize + 1; page < sectionsEnd; ++page) {
+                    pagesOrder[i++] = page;
+                }
             }
-        } else {
-            parent = null;
+
+            /* Terminate writing bookmarks with collected pages */
+            if (renderBookmarks) {
+                writeTOCBookmarks(documents.values(), writer);
+            }
+
+            if (pagesOrder != null) {
+                writer.reorderPages(pagesOrder);
+            }
+
+        } catch (DocumentException e) {
+            throw new DocetDocumentParsingException("Cannot write document " + placeholders.get(HTMLPlaceholder.TITLE) + " to pdf", e);
+        } finally {
+            closePDF();
+        }
+
+        releaseContexts();
+    }
+
+    /**
+     * Give up on the pdf, e.g. as its sections could not be retrieved: layouts still pending or running are cancelled.
+     */
+    public void abort() {
+
+        cancelLayouts();
+    }
+
+    public void addSection(String html, String id, String name, String parentId) throws DocetDocumentParsingException {
+
+        addSection(Jsoup.parse(html, baseURL, PDFDocumentHandler.HTML_PARSER), id, name, parentId);
+
+    }
+
+    /**
+     * Add a section from an already parsed page, sparing its serialization. The document is taken over by the
+     * handler: it gets modified and must not be used anymore by the caller.
+     */
+    public void addSection(Document document, String id, String name, String parentId) throws DocetDocumentParsingException {
+
+        if (Thread.currentThread().isInterrupted()) {
+            cancelLayouts();
+            throw new DocetDocumentParsingException("Interrupted while adding section " + id + " to " + title);
         }
 
-        addSection(html, id, name, parent);
+        if (streaming) {
+            streamSection(document, id);
+            return;
+        }
+
+        generateSection(document, id, name, getParent(parentId));
 
     }
 
@@ -395,11 +712,25 @@ public class PDFDocumentHandler {
     /* *** PRIVATE METHODS *** */
     /* *********************** */
 
-    private DocumentPart addSection(String html, String id, String name, DocumentPart parent) throws DocetDocumentParsingException {
+    private DocumentPart getParent(String parentId) throws DocetDocumentParsingException {
 
-        final Document rawHtml = Jsoup.parse(html, baseURL, PDFDocumentHandler.HTML_PARSER);
+        if (parentId == null) {
+            return null;
+        }
 
-        DocumentPart section = generatePages(rawHtml, id, name, parent);
+        DocumentPart parent = documents.get(parentId);
+        if (parent == null) {
+            throw new DocetDocumentParsingException("Unknown parent " + parentId);
+        }
+
+        return parent;
+    }
+
+    private DocumentPart generateSection(Document document, String id, String name, DocumentPart parent) throws DocetDocumentParsingException {
+
+        DocumentPart section = newDocumentPart(name, parent);
+
+        generatePages(document, id, section);
 
         documents.put(id, section);
 
@@ -407,7 +738,79 @@ public class PDFDocumentHandler {
 
     }
 
-    private DocumentPart generatePages(Document document, String id, String name, DocumentPart parent) throws DocetDocumentParsingException {
+    /**
+     * Streaming mode: lay the given declared section out and write it along with any previous section whose layout
+     * is done.
+     */
+    private void streamSection(Document document, String id) throws DocetDocumentParsingException {
+
+        if (sectionsToAdd == null) {
+            throw new DocetDocumentParsingException("Pdf " + title + " not started, cannot add section " + id);
+        }
+
+        DocumentPart section = documents.get(id);
+        if (section == null) {
+            throw new DocetDocumentParsingException("Section " + id + " not declared");
+        }
+
+        if (section.added) {
+            LOGGER.log(Level.FINE, "Section {0} of {1} already added", new Object[] {id, title});
+            return;
+        }
+
+        if (!sectionsToAdd.hasNext() || sectionsToAdd.next() != section) {
+            throw new DocetDocumentParsingException("Section " + id + " added out of declaration order");
+        }
+
+        generatePages(document, id, section);
+
+        pendingSections.add(section);
+
+        writePendingSections(false);
+    }
+
+    /**
+     * Streaming mode: write sections already laid out, in order. Waits for pending layouts when too many sections
+     * are held in memory, or when asked to write them all.
+     */
+    private void writePendingSections(boolean all) throws DocetDocumentParsingException {
+
+        while (!pendingSections.isEmpty()) {
+
+            DocumentPart section = pendingSections.peekFirst();
+
+            if (!all && section.layout != null && !section.layout.isDone()
+                    && pendingSections.size() <= STREAMING_MAX_PENDING_SECTIONS) {
+                return;
+            }
+
+            awaitLayout(section);
+            pendingSections.removeFirst();
+
+            streamDocumentPart(section);
+        }
+    }
+
+    /**
+     * Streaming mode: write the given part at the next page number, opening the pdf with its page size if needed.
+     * The total of pages is not known yet, pages written up to the end of the part are given instead.
+     */
+    private void streamDocumentPart(DocumentPart part) throws DocetDocumentParsingException {
+
+        if (pdf == null) {
+            openPDF(part);
+        }
+
+        try {
+            writePDF(part, nextPageNo, nextPageNo + part.pageCount - 1);
+        } catch (DocumentException e) {
+            throw new DocetDocumentParsingException("Cannot write document " + placeholders.get(HTMLPlaceholder.TITLE) + " to pdf", e);
+        }
+
+        nextPageNo += part.pageCount;
+    }
+
+    private void generatePages(Document document, String id, DocumentPart part) throws DocetDocumentParsingException {
 
         document.select("#main").get(0).before("<a name=\"" + id + "\"></a>");
 
@@ -424,9 +827,39 @@ public class PDFDocumentHandler {
 
         injectHTML(document, head, true, body, false);
 
-        DocumentPart part = generateDocumentPart(document, name, parent);
+        setDocument(part, document);
+        part.added = true;
 
-        return part;
+        if (layoutExecutor == null) {
+            layoutDocumentPart(part, mainContext);
+            progress.sectionRendered();
+        } else {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            final FutureTask<Void> layout = new FutureTask<>(() -> {
+                final Thread thread = Thread.currentThread();
+                final ClassLoader previousClassLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    PooledContext context = idleContexts.poll();
+                    if (context == null) {
+                        context = acquireContext();
+                    }
+                    layoutDocumentPart(part, context);
+                    idleContexts.add(context);
+                    progress.sectionRendered();
+                } finally {
+                    thread.setContextClassLoader(previousClassLoader);
+                }
+            }, null);
+            part.layout = layout;
+            try {
+                layoutExecutor.execute(layout);
+            } catch (RejectedExecutionException e) {
+                /* Executor busy with other pdfs too: lay the section out here, slowing this pdf down only */
+                LOGGER.log(Level.FINE, "Laying out section {0} of {1} on the generating thread", new Object[] {id, title});
+                layout.run();
+            }
+        }
 
     }
 
@@ -442,15 +875,13 @@ public class PDFDocumentHandler {
 
             PdfOutline parent = outlines.getOrDefault(document.parent, root);
 
-            PageBox page = document.pages.get(0);
-
 //            PdfDestination dest = new PdfDestination(PdfDestination.XYZ, 0, 0, 0);
             PdfDestination dest = new PdfDestination(PdfDestination.FIT);
 
             LOGGER.log(Level.FINE, "Writing bookmark {0} - {1} to page {2}",
-                    new Object[] {title, document.name, document.startPageNo + page.getPageNo()});
+                    new Object[] {title, document.name, document.startPageNo});
 
-            dest.addPage(writer.getPageReference(document.startPageNo + page.getPageNo()));
+            dest.addPage(writer.getPageReference(document.startPageNo));
 
             PdfOutline outline = new PdfOutline(parent, dest, document.name, true);
 
@@ -499,6 +930,23 @@ public class PDFDocumentHandler {
             String name,
             Map<HTMLPlaceholder,String> placeholders) throws DocetDocumentParsingException {
 
+        String fragment = FRAGMENT_SOURCES.get(name);
+        if (fragment == null) {
+            fragment = loadFragment(name);
+            FRAGMENT_SOURCES.put(name, fragment);
+        }
+
+        for(Map.Entry<HTMLPlaceholder,String> entry : placeholders.entrySet()) {
+            fragment = REPLACEMENT_PATTERNS.get(entry.getKey())
+                    .matcher(fragment)
+                    .replaceAll(entry.getValue());
+        }
+
+        return Jsoup.parse(fragment, baseURL, HTML_PARSER);
+    }
+
+    private String loadFragment(String name) throws DocetDocumentParsingException {
+
         String fragment;
 
         final InputStream is = this.getClass().getClassLoader().getResourceAsStream(name);
@@ -526,13 +974,7 @@ public class PDFDocumentHandler {
             throw new DocetDocumentParsingException("Failed to load fragment " + name, e);
         }
 
-        for(Map.Entry<HTMLPlaceholder,String> entry : placeholders.entrySet()) {
-            fragment = REPLACEMENT_PATTERNS.get(entry.getKey())
-                    .matcher(fragment)
-                    .replaceAll(entry.getValue());
-        }
-
-        return Jsoup.parse(fragment, baseURL, HTML_PARSER);
+        return fragment;
     }
 
     /**
@@ -680,15 +1122,62 @@ public class PDFDocumentHandler {
      * @return
      * @throws DocetDocumentParsingException
      */
-    @SuppressWarnings("unchecked")
-    private DocumentPart generateDocumentPart(Document document, String name, DocumentPart parent) throws DocetDocumentParsingException {
+    private DocumentPart generateDocumentPart(Document document, String name, DocumentPart parent,
+            ContentFunction... functions) throws DocetDocumentParsingException {
+
+        DocumentPart part = newDocumentPart(name, parent);
+
+        setDocument(part, document);
+        layoutDocumentPart(part, mainContext, functions);
+
+        return part;
+
+    }
+
+    /**
+     * Create a part with no document yet.
+     */
+    private DocumentPart newDocumentPart(String name, DocumentPart parent) {
+
+        DocumentPart part = new DocumentPart();
+
+        part.name = name;
+
+        if (parent != null) {
+            part.parent = parent;
+        }
+
+        return part;
+
+    }
+
+    /**
+     * Give the part the document to be laid out.
+     */
+    private void setDocument(DocumentPart part, Document document) {
 
         if (LOGGER.isLoggable(Level.FINER)) {
-            LOGGER.log(Level.FINER, "Rendering {0} - {1} as {2}:\n", new Object[] {title, name, document});
+            LOGGER.log(Level.FINER, "Rendering {0} - {1} as {2}:\n", new Object[] {title, part.name, document});
         }
-        org.w3c.dom.Document doc = W3CDOM.fromJsoup(document);
 
-        getFontResolver().flushFontFaceFonts();
+        part.doc = W3CDOM.fromJsoup(document);
+
+    }
+
+    /**
+     * Lay the given part out with the given context, computing its pages.
+     *
+     * @param functions additional css content functions available to the part
+     */
+    @SuppressWarnings("unchecked")
+    private void layoutDocumentPart(DocumentPart part, PooledContext pooled, ContentFunction... functions) {
+
+        checkLayoutCancelled(part);
+
+        org.w3c.dom.Document doc = part.doc;
+        SharedContext context = pooled.context;
+
+        getFontResolver(context).flushFontFaceFonts();
 
         /*
          * Do NOT reset the context!
@@ -697,45 +1186,105 @@ public class PDFDocumentHandler {
          */
 
         if (Configuration.isTrue("xr.cache.stylesheets", true)) {
-            sharedContext.getCss().flushStyleSheets();
+            context.getCss().flushStyleSheets();
         } else {
-            sharedContext.getCss().flushAllStyleSheets();
+            context.getCss().flushAllStyleSheets();
         }
 
-        sharedContext.setBaseURL(baseURL);
-        sharedContext.setNamespaceHandler(namespaceHandler);
-        sharedContext.getCss().setDocumentContext(sharedContext, sharedContext.getNamespaceHandler(), doc, NullUserInterface.INSTANCE);
+        context.setBaseURL(baseURL);
+        context.setNamespaceHandler(new ClasspathStylesheetsNamespaceHandler(namespaceHandler, pooled));
+        context.getCss().setDocumentContext(context, context.getNamespaceHandler(), doc, NullUserInterface.INSTANCE);
 
-        getFontResolver().importFontFaces(sharedContext.getCss().getFontFaceRules());
+        getFontResolver(context).importFontFaces(context.getCss().getFontFaceRules());
 
-        LayoutContext c = newLayoutContext();
+        LayoutContext c = newLayoutContext(context);
+        for (ContentFunction function : functions) {
+            c.getContentFunctionFactory().registerFunction(function);
+        }
         BlockBox root = BoxBuilder.createRootBox(c, doc);
         root.setContainingBlock(new ViewportBox(getInitialExtents(c)));
         root.layout(c);
 
+        checkLayoutCancelled(part);
+
         Dimension dim = root.getLayer().getPaintingDimension(c);
         root.getLayer().trimEmptyPages(c, dim.height);
 
         root.getLayer().layoutPages(c);
 
-        DocumentPart part = new DocumentPart();
-
-        part.doc = doc;
-        part.name = name;
         part.root = root;
         part.pages = root.getLayer().getPages();
+        part.pageCount = part.pages.size();
 
-        if (parent != null) {
-            part.parent = parent;
+        /* Take boxes by id (link targets) away from the context, it would retain every part it lays out otherwise */
+        Map<String,Box> boxIds = context.getIdMap();
+        if (boxIds != null) {
+            part.boxIds = new HashMap<>(boxIds);
+            boxIds.clear();
         }
 
-        return part;
+    }
 
+    /**
+     * Wait for sections being laid out concurrently, if any.
+     */
+    private void awaitLayout() throws DocetDocumentParsingException {
+
+        for (DocumentPart part : documents.values()) {
+            awaitLayout(part);
+        }
     }
 
-    private DocumentPart generateTOC(Collection<DocumentPart> parts, int initialPageNo) throws DocetDocumentParsingException {
+    /**
+     * Wait for the given section to be laid out, cancelling any other pending layout on failure.
+     */
+    private void awaitLayout(DocumentPart part) throws DocetDocumentParsingException {
 
-        Document document = jsoupFromSrc(buildTOC(parts, initialPageNo), baseURL);
+        if (part.layout == null) {
+            return;
+        }
+
+        try {
+            part.layout.get();
+        } catch (InterruptedException e) {
+            cancelLayouts();
+            Thread.currentThread().interrupt();
+            throw new DocetDocumentParsingException("Interrupted while laying out " + title, e);
+        } catch (ExecutionException e) {
+            cancelLayouts();
+            throw new DocetDocumentParsingException("Cannot lay out " + title, e.getCause());
+        }
+    }
+
+    /**
+     * Stop any layout of this pdf, as the pdf won't be written: pending layouts never start, running ones are
+     * interrupted and stop at their next step.
+     */
+    private void cancelLayouts() {
+
+        layoutsCancelled = true;
+
+        for (DocumentPart part : documents.values()) {
+            if (part.layout != null) {
+                part.layout.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Layouts cannot be interrupted while Flying Saucer works on them, check between their steps instead.
+     */
+    private void checkLayoutCancelled(DocumentPart part) {
+
+        if (layoutsCancelled) {
+            throw new CancellationException("Layout of " + part.name + " in " + title + " cancelled");
+        }
+    }
+
+    private DocumentPart generateTOC(Collection<DocumentPart> parts, TOCPageNumberFunction pageNumbers)
+            throws DocetDocumentParsingException {
+
+        Document document = jsoupFromSrc(buildTOC(parts), baseURL);
 
         normaliseHTML(document);
 
@@ -750,7 +1299,7 @@ public class PDFDocumentHandler {
 
         injectHTML(document, head, true, body, false);
 
-        return generateDocumentPart(document, "Table of Contents", null);
+        return generateDocumentPart(document, "Table of Contents", null, pageNumbers);
     }
 
     private DocumentPart generateCover() throws DocetDocumentParsingException {
@@ -773,7 +1322,7 @@ public class PDFDocumentHandler {
                 .append("<td class=\"toc-bullet\">").append(node.bullet).append("</td>")
                 .append("<td>").append(node.document.name).append("</td>")
                 .append("<td class=\"fill\">").append("</td>")
-                .append("<td>").append(node.page).append("</td>")
+                .append("<td class=\"tocpagenumber\" data-toc-entry=\"").append(node.entry).append("\">").append("</td>")
                 .append("</tr>")
                 .append("</table>");
 
@@ -786,32 +1335,36 @@ public class PDFDocumentHandler {
 
     }
 
-    private String buildTOC(Collection<DocumentPart> parts, int initialPageNo) {
+    /**
+     * Build the table of contents of the given parts. Page numbers are given as indexes of the parts, see
+     * {@link TOCPageNumberFunction}: parts need not be laid out.
+     */
+    private String buildTOC(Collection<DocumentPart> parts) {
 
         List<TOCNode> roots = new ArrayList<>();
         Map<DocumentPart,TOCNode> nodes = new HashMap<>();
 
-        int pageNo = initialPageNo;
+        int entry = 0;
         for(DocumentPart part : parts) {
 
             final TOCNode parent = nodes.get(part.parent);
 
             if (parent == null) {
 
-                TOCNode node = new TOCNode(part,pageNo,Integer.toString(roots.size() + 1));
+                TOCNode node = new TOCNode(part,entry,Integer.toString(roots.size() + 1));
                 nodes.put(part, node);
 
                 roots.add(node);
 
             } else {
 
-                TOCNode node = new TOCNode(part,pageNo,parent.bullet + '.' + Integer.toString(parent.children.size() + 1));
+                TOCNode node = new TOCNode(part,entry,parent.bullet + '.' + Integer.toString(parent.children.size() + 1));
                 nodes.put(part, node);
 
                 parent.children.add(node);
             }
 
-            pageNo += part.pages.size();
+            ++entry;
         }
 
 
@@ -839,6 +1392,8 @@ public class PDFDocumentHandler {
             throw new DocetDocumentParsingException("No available pages to parse");
         }
 
+        awaitLayout();
+
         if (initialPageNo < 1) {
             initialPageNo = 1;
         }
@@ -850,59 +1405,51 @@ public class PDFDocumentHandler {
             coversize = 1;
         }
 
+        int documentsPages = documents.values().stream().mapToInt(p -> p.pageCount).sum();
+
         int tocsize = 0;
         DocumentPart toc = null;
         if (renderToc) {
-            toc = generateTOC(documents.values(), initialPageNo + coversize + 1 /* Cover & TOC part*/);
 
-            /* Regenerate TOC if more than one page */
-            if (toc.pages.size() > 1) {
-                toc = generateTOC(documents.values(), initialPageNo + coversize + toc.pages.size());
-            }
-            tocsize = toc.pages.size();
+            /*
+             * Page numbers depend on how many pages the TOC itself takes: lay it out once with placeholders wide
+             * enough for any page number (the TOC won't take more pages than its entries) and write actual page
+             * numbers when rendering.
+             */
+            toc = generateTOC(documents.values(), new TOCPageNumberFunction(documents.values(),
+                    initialPageNo + coversize + documents.size() + documentsPages));
+            tocsize = toc.pageCount;
+        }
+
+        int pageNo = initialPageNo + coversize + tocsize;
+        for(DocumentPart part : documents.values()) {
+            part.pageNo = pageNo;
+            pageNo += part.pageCount;
         }
 
-        int totalPages = documents.values().stream().mapToInt(p -> p.pages.size()).sum() + coversize + tocsize;
+        int totalPages = documentsPages + coversize + tocsize;
+        progress.setPagesTotal(totalPages);
 
-        com.lowagie.text.Document pdf = null;
-        PdfWriter writer = null;
+        output = os;
         try {
 
             /* Uses the first page added to evaluate page size and create the writer */
 
-            DocumentPart firstSection = documents.values().stream().findFirst().get();
-            PageBox firstPage = firstSection.pages.get(0);
-
-            RenderingContext renderingContext = newRenderingContext(firstSection.root);
-            com.lowagie.text.Rectangle firstPageSize = new com.lowagie.text.Rectangle(0, 0,
-                    firstPage.getWidth(renderingContext) / dotsPerPoint,
-                    firstPage.getHeight(renderingContext) / dotsPerPoint);
-
-            pdf = new com.lowagie.text.Document(firstPageSize, 0, 0, 0, 0);
-
-            try {
-                writer = PdfWriter.getInstance(pdf, os);
-            } catch (DocumentException e) {
-                throw new DocetDocumentParsingException("Cannot create a pdf writer", e);
-            }
-
-            pdf.addTitle(placeholders.get(HTMLPlaceholder.TITLE));
-
-            pdf.open();
+            openPDF(documents.values().stream().findFirst().get());
 
 
             /* Write each document */
             try {
                 if (renderCover) {
-                    writePDF(cover, totalPages, pdf, writer);
+                    writePDF(cover, initialPageNo, totalPages);
                 }
 
                 if (renderToc) {
-                    writePDF(toc, totalPages, pdf, writer);
+                    writePDF(toc, initialPageNo + coversize, totalPages);
                 }
 
                 for(DocumentPart part : documents.values()) {
-                    writePDF(part, totalPages, pdf, writer);
+                    writePDF(part, part.pageNo, totalPages);
                 }
 
             } catch (DocumentException e) {
@@ -915,40 +1462,83 @@ public class PDFDocumentHandler {
             }
 
         } finally {
-            if (pdf != null) {
-                pdf.close();
-            }
+            closePDF();
+        }
+    }
 
-            if (writer != null) {
-                writer.close();
-            }
+    /**
+     * Create the pdf writer, giving the pdf the size of the first page of the given part.
+     */
+    private void openPDF(DocumentPart firstPart) throws DocetDocumentParsingException {
+
+        PageBox firstPage = firstPart.pages.get(0);
+
+        RenderingContext renderingContext = newRenderingContext(firstPart.root);
+        com.lowagie.text.Rectangle firstPageSize = new com.lowagie.text.Rectangle(0, 0,
+                firstPage.getWidth(renderingContext) / dotsPerPoint,
+                firstPage.getHeight(renderingContext) / dotsPerPoint);
+
+        pdf = new com.lowagie.text.Document(firstPageSize, 0, 0, 0, 0);
+
+        try {
+            writer = PdfWriter.getInstance(pdf, output);
+        } catch (DocumentException e) {
+            throw new DocetDocumentParsingException("Cannot create a pdf writer", e);
+        }
+
+        pdf.addTitle(placeholders.get(HTMLPlaceholder.TITLE));
+
+        pdf.open();
+
+        if (streaming && renderToc) {
+            /* Needed to move the TOC once written */
+            writer.setLinearPageMode();
         }
     }
 
+    private void closePDF() {
+        if (pdf != null) {
+            pdf.close();
+        }
+
+        if (writer != null) {
+            writer.close();
+        }
+    }
 
+    /**
+     * Write the pages of the given part, then release them: only what bookmarks and the TOC need is kept.
+     *
+     * @param pageNo page number of the first page of the part
+     * @param totalPages value of {@code counter(pages)}
+     */
     private void writePDF(
             DocumentPart part,
-            int totalPages,
-            com.lowagie.text.Document pdf,
-            PdfWriter writer) throws DocumentException {
+            int pageNo,
+            int totalPages) throws DocumentException {
 
         int initialPageNo = writer.getPageNumber();
 
         LOGGER.log(Level.FINE, "Writing {0} - {1}: {3} pages from {2}",
-                new Object[] {title, part.name, initialPageNo, part.pages.size(), initialPageNo});
+                new Object[] {title, part.name, initialPageNo, part.pageCount, initialPageNo});
 
         part.startPageNo = initialPageNo;
+        part.pageNo = pageNo;
 
         RenderingContext renderingContext = newRenderingContext(part.root);
-        renderingContext.setInitialPageNo(initialPageNo);
+        renderingContext.setInitialPageNo(pageNo);
 
-        if (initialPageNo > 0) {
-            renderingContext.setPageCount(totalPages - initialPageNo + 1);
+        if (pageNo > 0) {
+            renderingContext.setPageCount(totalPages - pageNo + 1);
         } else {
             renderingContext.setPageCount(totalPages);
         }
 
 
+        if (part.boxIds != null) {
+            part.boxIds.forEach(sharedContext::addBoxId);
+        }
+
         outputDevice.setRoot(part.root);
 
         outputDevice.start(part.doc);
@@ -957,7 +1547,7 @@ public class PDFDocumentHandler {
 
         part.root.getLayer().assignPagePaintingPositions(renderingContext, Layer.PAGED_MODE_PRINT);
 
-        int pageNo = 0;
+        int partPageNo = 0;
         for(PageBox page : part.pages) {
 
             if (Thread.currentThread().isInterrupted())
@@ -970,17 +1560,27 @@ public class PDFDocumentHandler {
 
             outputDevice.initializePage(writer.getDirectContent(), pageSize.getHeight());
 
-            renderingContext.setPage(pageNo++, page);
+            renderingContext.setPage(partPageNo++, page);
 
             paintPage(renderingContext, writer, page, part.root);
             outputDevice.finishPage();
 
             /* Advance page */
             pdf.newPage();
+            progress.pageRendered();
         }
 
         outputDevice.finish(renderingContext, part.root);
         cleanOutputDevice();
+
+        if (part.boxIds != null) {
+            part.boxIds.keySet().forEach(sharedContext::removeBoxId);
+        }
+
+        part.doc = null;
+        part.root = null;
+        part.pages = null;
+        part.boxIds = null;
     }
 
     /** Hack to be able to clean bookmarks */
@@ -1013,8 +1613,8 @@ public class PDFDocumentHandler {
         }
     }
 
-    private ITextFontResolver getFontResolver() {
-        return (ITextFontResolver) sharedContext.getFontResolver();
+    private static ITextFontResolver getFontResolver(SharedContext context) {
+        return (ITextFontResolver) context.getFontResolver();
     }
 
     private Rectangle getInitialExtents(LayoutContext c) {
@@ -1035,11 +1635,11 @@ public class PDFDocumentHandler {
         return result;
     }
 
-    private LayoutContext newLayoutContext() {
-        LayoutContext result = sharedContext.newLayoutContextInstance();
+    private static LayoutContext newLayoutContext(SharedContext context) {
+        LayoutContext result = context.newLayoutContextInstance();
         result.setFontContext(new ITextFontContext());
 
-        sharedContext.getTextRenderer().setup(result.getFontContext());
+        context.getTextRenderer().setup(result.getFontContext());
 
         return result;
     }
@@ -1091,9 +1691,21 @@ public class PDFDocumentHandler {
 
         private BlockBox root;
         private List<PageBox> pages;
+        private int pageCount;
+        private Map<String,Box> boxIds;
+
+        /* Pending concurrent layout, null if laid out when added */
+        private FutureTask<Void> layout;
+
+        /* Whether its document has been given, declared sections have none until added */
+        private boolean added;
 
+        /* Position of the first page in the pdf as written, before any reordering */
         private int startPageNo;
 
+        /* Page number printed on the first page */
+        private int pageNo;
+
         private DocumentPart parent;
         private transient int level = 0;
 
@@ -1120,12 +1732,14 @@ public class PDFDocumentHandler {
         final List<TOCNode> children;
 
         final String bullet;
-        final int page;
 
-        public TOCNode(DocumentPart document, int page, String bullet) {
+        /* Index of the part among the TOC ones */
+        final int entry;
+
+        public TOCNode(DocumentPart document, int entry, String bullet) {
             super();
             this.document = document;
-            this.page = page;
+            this.entry = entry;
 
             this.bullet = bullet;
             this.children = new ArrayList<>();
@@ -1134,6 +1748,66 @@ public class PDFDocumentHandler {
     }
 
 
+    /**
+     * Css content function {@code -fs-docet-toc-page(attr(data-toc-entry))} writing the page number of a TOC entry,
+     * given as the index of its part.
+     * <p>
+     * Like {@code counter(page)} its value is computed while rendering: the layout uses a placeholder as wide as the
+     * widest page number, thus the TOC can be laid out before knowing how many pages it takes or before laying the
+     * parts out at all. Lines get aligned again once the actual number is known.
+     * </p>
+     */
+    private static final class TOCPageNumberFunction implements ContentFunction {
+
+        private static final String NAME = "-fs-docet-toc-page";
+
+        private final List<DocumentPart> parts;
+        private final String placeholder;
+
+        /**
+         * @param parts the parts in the TOC, their page numbers are read while rendering
+         * @param maxPageNo the greatest page number which could be written
+         */
+        private TOCPageNumberFunction(Collection<DocumentPart> parts, int maxPageNo) {
+            this.parts = new ArrayList<>(parts);
+            this.placeholder = Integer.toString(maxPageNo).replaceAll("[0-9]", "9");
+        }
+
+        @Override
+        public boolean isStatic() {
+            return false;
+        }
+
+        @Override
+        public String calculate(LayoutContext c, FSFunction function) {
+            return null;
+        }
+
+        @Override
+        public String calculate(RenderingContext c, FSFunction function, InlineText text) {
+
+            final FSFunction attr = ((PropertyValue) function.getParameters().get(0)).getFunction();
+            final String attribute = ((PropertyValue) attr.getParameters().get(0)).getStringValue();
+            final String entry = text.getParent().getElement().getAttribute(attribute);
+            return Integer.toString(parts.get(Integer.parseInt(entry)).pageNo);
+        }
+
+        @Override
+        public String getLayoutReplacementText() {
+            return placeholder;
+        }
+
+        @Override
+        public boolean canHandle(LayoutContext c, FSFunction function) {
+            if (c.isPrint() && NAME.equals(function.getName()) && function.getParameters().size() == 1) {
+                PropertyValue param = (PropertyValue) function.getParameters().get(0);
+                return param.getFunction() != null && "attr".equals(param.getFunction().getName());
+            }
+            return false;
+        }
+
+    }
+
     /** A dummy user interface */
     private static final class NullUserInterface implements UserInterface {
 
@@ -1158,20 +1832,71 @@ public class PDFDocumentHandler {
     /**
      * An user agent capable to resolve URLs from current {@link ClassLoader}.
      * <p>
-     * <b>Not thread safe</b> and keeps memory of resolved uris.
+     * <b>Not thread safe</b> and keeps memory of resolved uris. Images are loaded once for all of the user agents
+     * sharing the same image cache, so that each image gets embedded once in the pdf even if laid out by different
+     * contexts.
      * </p>
      */
     private static final class ClassloaderAwareUserAgent extends ITextUserAgent {
 
-        public ClassloaderAwareUserAgent(ITextOutputDevice outputDevice) {
+        private final Map<String,String> classpathResolved;
+        private Map<String,ImageResource> sharedImages;
+
+        /**
+         * @param classpathResolved where to keep uris resolved to classpath resources, possibly shared with other
+         * (thread safe) user agents
+         */
+        public ClassloaderAwareUserAgent(ITextOutputDevice outputDevice, Map<String,String> classpathResolved) {
             super(outputDevice);
+            this.classpathResolved = classpathResolved;
         }
 
         private final Map<String,String> alreadyResolved = new HashMap<>();
 
+        /**
+         * Forget resources loaded for a previous pdf and share images through the given cache from now on.
+         */
+        void reset(Map<String,ImageResource> sharedImages) {
+            this.sharedImages = sharedImages;
+            alreadyResolved.clear();
+            clearImageCache();
+        }
+
+        @Override
+        public ImageResource getImageResource(String uri) {
+            ImageResource resource = sharedImages.get(uri);
+            if (resource == null) {
+                resource = super.getImageResource(uri);
+                if (resource.getImage() == null) {
+                    return resource;
+                }
+                ImageResource existing = sharedImages.putIfAbsent(uri, resource);
+                if (existing != null) {
+                    resource = existing;
+                }
+            }
+
+            /* Images get scaled once laid out: hand out a copy, sharing the pdf identity of the original */
+            FSImage image = resource.getImage();
+            if (image instanceof ITextFSImage) {
+                image = (FSImage) ((ITextFSImage) image).clone();
+            }
+            return new ImageResource(resource.getImageUri(), image);
+        }
+
+        /**
+         * Whether the given resolved uri points to a classpath resource.
+         */
+        boolean isClasspathResource(String resolvedURI) {
+            return classpathResolved.containsValue(resolvedURI);
+        }
+
         @Override
         public String resolveURI(String uri) {
-            String resolved = alreadyResolved.get(uri);
+            String resolved = classpathResolved.get(uri);
+            if (resolved == null) {
+                resolved = alreadyResolved.get(uri);
+            }
             if (resolved != null) {
                 LOGGER.log(Level.FINE, "Resolved uri in cache from {0} to {1}", new Object[] {uri, resolved});
                 return resolved;
@@ -1181,18 +1906,206 @@ public class PDFDocumentHandler {
             if (resource == null) {
                 resolved = super.resolveURI(uri);
                 LOGGER.log(Level.FINE, "Resolved uri externally from {0} to {1}", new Object[] {uri, resolved});
+                alreadyResolved.put(uri,resolved);
             } else {
                 resolved = resource.toString();
                 LOGGER.log(Level.FINE, "Resolved uri internally from {0} to {1}", new Object[] {uri, resolved});
+                classpathResolved.put(uri,resolved);
             }
 
-            alreadyResolved.put(uri,resolved);
-
             return resolved;
         }
 
     }
 
+    /**
+     * A rendering context: a device to render on and a context to lay out with, keeping parsed stylesheets and
+     * resolved fonts across pdfs.
+     */
+    private static final class PooledContext {
+
+        private final String key;
+        private final ITextOutputDevice device;
+        private final SharedContext context;
+        private final ClassloaderAwareUserAgent userAgent;
+
+        /* Stylesheets from the classpath, never flushed: see ClasspathStylesheetsNamespaceHandler */
+        private final StylesheetFactoryImpl classpathStylesheets;
+
+        private PooledContext(String key, ITextOutputDevice device, SharedContext context,
+                ClassloaderAwareUserAgent userAgent) {
+            this.key = key;
+            this.device = device;
+            this.context = context;
+            this.userAgent = userAgent;
+            this.classpathStylesheets = new StylesheetFactoryImpl(userAgent);
+        }
+    }
+
+    /**
+     * A namespace handler handing out stylesheets from the classpath already parsed.
+     * <p>
+     * Flying Saucer flushes every parsed stylesheet before each layout unless {@code xr.cache.stylesheets} is set,
+     * which is not by default: stylesheets bundled in the classpath cannot change at runtime, thus they are parsed
+     * once per context and kept as long as the context lives, while any other stylesheet is still parsed at each
+     * layout.
+     * </p>
+     */
+    private static final class ClasspathStylesheetsNamespaceHandler implements NamespaceHandler {
+
+        private final NamespaceHandler delegate;
+        private final PooledContext pooled;
+
+        private ClasspathStylesheetsNamespaceHandler(NamespaceHandler delegate, PooledContext pooled) {
+            this.delegate = delegate;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public StylesheetInfo[] getStylesheets(org.w3c.dom.Document doc) {
+            StylesheetInfo[] stylesheets = delegate.getStylesheets(doc);
+            for (StylesheetInfo info : stylesheets) {
+                if (info.getStylesheet() == null && info.getUri() != null
+                        && pooled.userAgent.isClasspathResource(pooled.userAgent.resolveURI(info.getUri()))) {
+                    info.setStylesheet(pooled.classpathStylesheets.getStylesheet(info));
+                }
+            }
+            return stylesheets;
+        }
+
+        @Override
+        public String getNamespace() {
+            return delegate.getNamespace();
+        }
+
+        @Override
+        public StylesheetInfo getDefaultStylesheet(StylesheetFactory factory) {
+            return delegate.getDefaultStylesheet(factory);
+        }
+
+        @Override
+        public String getDocumentTitle(org.w3c.dom.Document doc) {
+            return delegate.getDocumentTitle(doc);
+        }
+
+        @Override
+        public String getAttributeValue(org.w3c.dom.Element e, String attrName) {
+            return delegate.getAttributeValue(e, attrName);
+        }
+
+        @Override
+        public String getAttributeValue(org.w3c.dom.Element e, String namespaceURI, String attrName) {
+            return delegate.getAttributeValue(e, namespaceURI, attrName);
+        }
+
+        @Override
+        public String getClass(org.w3c.dom.Element e) {
+            return delegate.getClass(e);
+        }
+
+        @Override
+        public String getID(org.w3c.dom.Element e) {
+            return delegate.getID(e);
+        }
+
+        @Override
+        public String getElementStyling(org.w3c.dom.Element e) {
+            return delegate.getElementStyling(e);
+        }
+
+        @Override
+        public String getNonCssStyling(org.w3c.dom.Element e) {
+            return delegate.getNonCssStyling(e);
+        }
+
+        @Override
+        public String getLang(org.w3c.dom.Element e) {
+            return delegate.getLang(e);
+        }
+
+        @Override
+        public String getLinkUri(org.w3c.dom.Element e) {
+            return delegate.getLinkUri(e);
+        }
+
+        @Override
+        public String getAnchorName(org.w3c.dom.Element e) {
+            return delegate.getAnchorName(e);
+        }
+
+        @Override
+        public boolean isImageElement(org.w3c.dom.Element e) {
+            return delegate.isImageElement(e);
+        }
+
+        @Override
+        public boolean isFormElement(org.w3c.dom.Element e) {
+            return delegate.isFormElement(e);
+        }
+
+        @Override
+        public String getImageSourceURI(org.w3c.dom.Element e) {
+            return delegate.getImageSourceURI(e);
+        }
+    }
+
+    /**
+     * A pool of reusable rendering contexts, kept apart by css and rendering settings. Creating a context costs the
+     * parsing of the stylesheets and the loading of fonts, a pooled context has them ready. Uris resolved to classpath
+     * resources are shared by all of the contexts of the pool. Thread safe.
+     */
+    public static final class RenderingContextPool {
+
+        private final int maxIdleContexts;
+        private final Map<String, LinkedBlockingDeque<PooledContext>> idleContexts = new ConcurrentHashMap<>();
+        private final Map<String,String> classpathURIs = new ConcurrentHashMap<>();
+        private final AtomicLong createdContexts = new AtomicLong();
+        private final AtomicLong reusedContexts = new AtomicLong();
+
+        /**
+         * @param maxIdleContexts max no. of idle contexts kept for the same css and settings, at least 1
+         */
+        public RenderingContextPool(int maxIdleContexts) {
+            this.maxIdleContexts = maxIdleContexts;
+        }
+
+        private PooledContext acquire(String key) {
+            LinkedBlockingDeque<PooledContext> idle = idleContexts.get(key);
+            PooledContext context = idle == null ? null : idle.pollFirst();
+            if (context == null) {
+                createdContexts.incrementAndGet();
+            } else {
+                reusedContexts.incrementAndGet();
+            }
+            return context;
+        }
+
+        private void release(PooledContext context) {
+            idleContexts.computeIfAbsent(context.key, k -> new LinkedBlockingDeque<>(maxIdleContexts))
+                .offerFirst(context);
+        }
+
+        /**
+         * @return no. of contexts created as none was available in the pool
+         */
+        public long getCreatedContexts() {
+            return createdContexts.get();
+        }
+
+        /**
+         * @return no. of contexts taken from the pool
+         */
+        public long getReusedContexts() {
+            return reusedContexts.get();
+        }
+
+        @Override
+        public String toString() {
+            return "RenderingContextPool{" + "maxIdleContexts=" + maxIdleContexts + ", createdContexts="
+                    + createdContexts + ", reusedContexts=" + reusedContexts + '}';
+        }
+    }
+
     private static final class BuilderImpl implements Builder {
         private boolean debug = DEFAULT_DEBUG;
 
@@ -1211,6 +2124,14 @@ public class PDFDocumentHandler {
         private String baseURL = DEFAULT_BASE_URL;
         private NamespaceHandler namespaceHandler;
 
+        private PDFGenerationProgress progress;
+
+        private Executor layoutExecutor;
+
+        private RenderingContextPool contextPool;
+
+        private boolean streaming;
+
         @Override
         public Builder debug(boolean debug) {
             this.debug = debug;
@@ -1277,6 +2198,30 @@ public class PDFDocumentHandler {
             return this;
         }
 
+        @Override
+        public Builder progress(PDFGenerationProgress progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        @Override
+        public Builder layoutExecutor(Executor layoutExecutor) {
+            this.layoutExecutor = layoutExecutor;
+            return this;
+        }
+
+        @Override
+        public Builder contextPool(RenderingContextPool contextPool) {
+            this.contextPool = contextPool;
+            return this;
+        }
+
+        @Override
+        public Builder streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
         @Override
         public PDFDocumentHandler create() throws DocetDocumentParsingException {
 
@@ -1284,11 +2229,15 @@ public class PDFDocumentHandler {
                 namespaceHandler = new XhtmlNamespaceHandler();
             }
 
+            if (progress == null) {
+                progress = new PDFGenerationProgress();
+            }
+
             return new PDFDocumentHandler(
                     debug, cover, toc, bookmarks,
                     dotsPerPoint, dotsPerPixel,
                     baseURL, namespaceHandler,
-                    title, accessor, language);
+                    title, accessor, language, progress, layoutExecutor, contextPool, streaming);
         }
     }
 }
@@ -0,0 +1,295 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import docet.error.DocetDocumentParsingException;
+
+/**
+ * Pdf generations run as jobs in background, for documents too big to be generated within a single request. Jobs run
+ * on a bounded pool of threads, identical jobs submitted while one is still queued, running or retained share it.
+ * Generated pdfs are kept in temporary files until their job expires, a given time after completion: expired jobs are
+ * swept periodically.
+ * <p>
+ * Job keys are expected to identify the contents of the pdf, e.g. including a fingerprint of the package, so that a
+ * job retained across a package reload is not handed out for the reloaded package.
+ *
+ */
+final class PDFGenerationJobs {
+
+    private static final Logger LOGGER = Logger.getLogger(PDFGenerationJobs.class.getName());
+    private static final String TMP_FILE_PREFIX = "docet-pdfjob-";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+
+    enum JobState {
+        QUEUED("queued"),
+        RUNNING("running"),
+        COMPLETED("completed"),
+        FAILED("failed");
+
+        private final String name;
+
+        private JobState(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    interface PDFJobTask {
+
+        /**
+         * Generate the pdf of the job.
+         *
+         * @param progress to be updated as the generation goes on
+         * @param file the temporary file the pdf is to be written to, kept until the job expires
+         */
+        void generate(PDFGenerationProgress progress, Path file) throws DocetDocumentParsingException;
+    }
+
+    static final class Job {
+
+        private final String id;
+        private final Object key;
+        private final String packageId;
+        private final String documentId;
+        private final String language;
+        private final PDFGenerationProgress progress;
+        private volatile JobState state;
+        private volatile Path file;
+        private volatile String errorMessage;
+        private volatile long expirationTime;
+
+        private Job(final Object key, final String packageId, final String documentId, final String language) {
+            this.id = UUID.randomUUID().toString();
+            this.key = key;
+            this.packageId = packageId;
+            this.documentId = documentId;
+            this.language = language;
+            this.progress = new PDFGenerationProgress();
+            this.state = JobState.QUEUED;
+            this.expirationTime = Long.MAX_VALUE;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getPackageId() {
+            return packageId;
+        }
+
+        String getDocumentId() {
+            return documentId;
+        }
+
+        String getLanguage() {
+            return language;
+        }
+
+        PDFGenerationProgress getProgress() {
+            return progress;
+        }
+
+        JobState getState() {
+            return state;
+        }
+
+        /**
+         * @return the generated pdf, null unless the job is completed
+         */
+        Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return why the job failed, null unless the job is failed
+         */
+        String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * @return when the job is dropped, in milliseconds since the epoch; {@link Long#MAX_VALUE} while not done
+         */
+        long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+
+    private static final long MAX_SWEEP_PERIOD_MS = 60_000;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sweeper;
+    private final long retentionMs;
+    private final Path tmpDir;
+    private final Map<String, Job> jobsById;
+    private final Map<Object, Job> jobsByKey;
+
+    /**
+     * @param threads max no. of jobs running at the same time
+     * @param queueSize max no. of jobs waiting for a thread, further jobs are refused
+     * @param retentionMs how long a job is kept after it is done
+     * @param tmpDir the folder pdfs are generated in, null for the default temporary folder
+     */
+    PDFGenerationJobs(final int threads, final int queueSize, final long retentionMs, final Path tmpDir) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final BlockingQueue<Runnable> queue;
+        if (queueSize > 0) {
+            queue = new LinkedBlockingQueue<>(queueSize);
+        } else {
+            queue = new SynchronousQueue<>();
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, r -> {
+            final Thread t = new Thread(r, "Docet pdf job " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.retentionMs = retentionMs;
+        this.tmpDir = tmpDir;
+        this.jobsById = new LinkedHashMap<>();
+        this.jobsByKey = new HashMap<>();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "Docet pdf jobs sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        final long sweepPeriod = Math.max(1, Math.min(retentionMs, MAX_SWEEP_PERIOD_MS));
+        this.sweeper.scheduleWithFixedDelay(() -> {
+            synchronized (this) {
+                this.dropExpiredJobs();
+            }
+        }, sweepPeriod, sweepPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submit a job generating the pdf identified by the given key, unless an identical job is there already.
+     *
+     * @return the job generating the pdf
+     * @throws RejectedExecutionException if too many jobs are waiting already
+     */
+    Job submit(final Object key, final String packageId, final String documentId, final String language,
+        final PDFJobTask task) {
+        final Job job;
+        synchronized (this) {
+            this.dropExpiredJobs();
+            final Job existing = this.jobsByKey.get(key);
+            if (existing != null && existing.state != JobState.FAILED) {
+                return existing;
+            }
+            job = new Job(key, packageId, documentId, language);
+            this.executor.execute(() -> this.runJob(job, task));
+            this.jobsById.put(job.id, job);
+            this.jobsByKey.put(key, job);
+        }
+        LOGGER.log(Level.FINE, "Submitted pdf job {0} for {1}", new Object[]{job.id, key});
+        return job;
+    }
+
+    /**
+     * @return the given job, null if unknown or expired
+     */
+    synchronized Job getJob(final String id) {
+        this.dropExpiredJobs();
+        return this.jobsById.get(id);
+    }
+
+    void shutdown() {
+        this.sweeper.shutdownNow();
+        this.executor.shutdownNow();
+        final List<Job> jobs;
+        synchronized (this) {
+            jobs = new ArrayList<>(this.jobsById.values());
+            this.jobsById.clear();
+            this.jobsByKey.clear();
+        }
+        jobs.forEach(PDFGenerationJobs::deleteFile);
+    }
+
+    private void runJob(final Job job, final PDFJobTask task) {
+        job.state = JobState.RUNNING;
+        Path file = null;
+        try {
+            file = this.tmpDir != null
+                ? Files.createTempFile(this.tmpDir, TMP_FILE_PREFIX, TMP_FILE_SUFFIX)
+                : Files.createTempFile(TMP_FILE_PREFIX, TMP_FILE_SUFFIX);
+            task.generate(job.progress, file);
+            job.file = file;
+            job.state = JobState.COMPLETED;
+        } catch (DocetDocumentParsingException | IOException | RuntimeException ex) {
+            LOGGER.log(Level.SEVERE, "Pdf job " + job.id + " for " + job.key + " failed", ex);
+            if (file != null) {
+                deleteFile(file);
+            }
+            job.errorMessage = String.valueOf(ex.getMessage());
+            job.state = JobState.FAILED;
+        } finally {
+            job.expirationTime = System.currentTimeMillis() + this.retentionMs;
+        }
+    }
+
+    private void dropExpiredJobs() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator<Job> it = this.jobsById.values().iterator(); it.hasNext();) {
+            final Job job = it.next();
+            if (job.expirationTime <= now) {
+                it.remove();
+                this.jobsByKey.remove(job.key, job);
+                deleteFile(job);
+            }
+        }
+    }
+
+    private static void deleteFile(final Job job) {
+        if (job.file != null) {
+            deleteFile(job.file);
+        }
+    }
+
+    private static void deleteFile(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Impossible to delete pdf " + file, ex);
+        }
+    }
+}
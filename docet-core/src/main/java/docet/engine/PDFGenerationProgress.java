@@ -0,0 +1,82 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of a pdf generation, as reported by {@link PDFDocumentHandler} while laying out sections and writing
+ * pages. It can be read from any thread while the generation goes on.
+ */
+public final class PDFGenerationProgress {
+
+    private volatile int sectionsTotal;
+    private final AtomicInteger sectionsRendered = new AtomicInteger();
+    private volatile int pagesTotal;
+    private final AtomicInteger pagesRendered = new AtomicInteger();
+
+    /**
+     * @return no. of sections of the document, 0 if not known yet
+     */
+    public int getSectionsTotal() {
+        return sectionsTotal;
+    }
+
+    /**
+     * @return no. of sections laid out so far
+     */
+    public int getSectionsRendered() {
+        return sectionsRendered.get();
+    }
+
+    /**
+     * @return no. of pages of the document, cover and table of contents included; 0 until all of the sections are
+     * laid out
+     */
+    public int getPagesTotal() {
+        return pagesTotal;
+    }
+
+    /**
+     * @return no. of pages written to the pdf so far
+     */
+    public int getPagesRendered() {
+        return pagesRendered.get();
+    }
+
+    public void setSectionsTotal(final int sectionsTotal) {
+        this.sectionsTotal = sectionsTotal;
+    }
+
+    void sectionRendered() {
+        this.sectionsRendered.incrementAndGet();
+    }
+
+    void setPagesTotal(final int pagesTotal) {
+        this.pagesTotal = pagesTotal;
+    }
+
+    void pageRendered() {
+        this.pagesRendered.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "PDFGenerationProgress{" + "sections=" + sectionsRendered + "/" + sectionsTotal
+            + ", pages=" + pagesRendered + "/" + pagesTotal + '}';
+    }
+}
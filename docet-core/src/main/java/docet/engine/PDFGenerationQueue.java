@@ -0,0 +1,271 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import docet.error.DocetDocumentParsingException;
+
+/**
+ * Runs pdf generations on a bounded pool of threads, coalescing identical concurrent requests onto a single
+ * generation whose result is handed to all of the requesters. Requesters wait for a bounded time, a generation nobody
+ * waits for anymore is cancelled by interrupting its thread.
+ * <p>
+ * Pdfs are generated to temporary files rather than on heap, requesters send them from there: this way the thread
+ * owning a response is the only one writing to it, and a failed generation has not sent anything yet.
+ *
+ */
+final class PDFGenerationQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(PDFGenerationQueue.class.getName());
+
+    private static final String TMP_FILE_PREFIX = "docet-pdf-";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Object, Generation> inFlight;
+    private final long maxWaitMs;
+    private final Path tmpDir;
+
+    /**
+     * @param threads max no. of pdfs generated at the same time
+     * @param queueSize max no. of generations waiting for a thread
+     * @param maxWaitMs max time a requester waits for its pdf, waiting time in queue included
+     * @param tmpDir the folder pdfs are generated in, null for the default temporary folder
+     */
+    PDFGenerationQueue(final int threads, final int queueSize, final long maxWaitMs, final Path tmpDir) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final BlockingQueue<Runnable> queue;
+        if (queueSize > 0) {
+            queue = new LinkedBlockingQueue<>(queueSize);
+        } else {
+            queue = new SynchronousQueue<>();
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, r -> {
+            final Thread t = new Thread(r, "Docet pdf generation " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.inFlight = new ConcurrentHashMap<>();
+        this.maxWaitMs = maxWaitMs;
+        this.tmpDir = tmpDir;
+    }
+
+    interface PDFGenerationTask {
+
+        /**
+         * @param file a new empty temporary file the pdf can be written to
+         * @return the generated pdf: either the given file or another one, e.g. the pdf as stored in the pdf cache
+         */
+        Path generate(Path file) throws DocetDocumentParsingException;
+    }
+
+    /**
+     * A generated pdf, to be closed once it has been sent: the temporary file it was generated to is deleted as soon
+     * as every requester sharing the generation has closed it.
+     */
+    static final class PDFFile implements AutoCloseable {
+
+        private final Path path;
+        private final Runnable release;
+        private final AtomicBoolean closed;
+
+        private PDFFile(final Path path, final Runnable release) {
+            this.path = path;
+            this.release = release;
+            this.closed = new AtomicBoolean();
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            if (this.closed.compareAndSet(false, true)) {
+                this.release.run();
+            }
+        }
+    }
+
+    /**
+     * Generate a pdf, or wait for the identical one being generated right now.
+     *
+     * @param key identifies the pdf, requests with equal keys are expected to produce the same pdf
+     * @param generator the actual generation, run only if no identical generation is going on
+     * @return the generated pdf, to be closed once sent
+     * @throws RejectedExecutionException if the queue is full or the pdf could not be generated in time
+     * @throws DocetDocumentParsingException in case of errors on generating the pdf
+     */
+    PDFFile generate(final Object key, final PDFGenerationTask generator) throws DocetDocumentParsingException {
+        final Generation[] created = new Generation[1];
+        final Generation generation = this.inFlight.compute(key, (k, current) -> {
+            if (current != null && current.join()) {
+                return current;
+            }
+            final Generation res = new Generation();
+            res.join();
+            created[0] = res;
+            return res;
+        });
+        if (created[0] != null) {
+            this.start(key, generation, generator);
+        } else {
+            LOGGER.log(Level.FINE, "Joining pdf generation already in progress for {0}", key);
+        }
+        return this.await(key, generation);
+    }
+
+    /**
+     * Wait for the given generation, giving up on it (see {@code leave}) after the max waiting time.
+     */
+    private PDFFile await(final Object key, final Generation generation) throws DocetDocumentParsingException {
+        final Runnable leave = () -> this.leave(key, generation);
+        try {
+            return new PDFFile(generation.result.get(this.maxWaitMs, TimeUnit.MILLISECONDS), leave);
+        } catch (ExecutionException ex) {
+            leave.run();
+            if (ex.getCause() instanceof DocetDocumentParsingException) {
+                throw (DocetDocumentParsingException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) ex.getCause();
+            }
+            throw new DocetDocumentParsingException("Error on generating pdf", ex.getCause());
+        } catch (TimeoutException ex) {
+            leave.run();
+            throw new RejectedExecutionException("Pdf " + key + " not generated within " + this.maxWaitMs + " ms", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            leave.run();
+            throw new RejectedExecutionException("Interrupted while waiting for pdf " + key, ex);
+        }
+    }
+
+    private void start(final Object key, final Generation generation, final PDFGenerationTask generator) {
+        try {
+            generation.task = this.executor.submit(() -> {
+                if (generation.result.isDone()) {
+                    return;
+                }
+                try {
+                    generation.file = this.tmpDir != null
+                        ? Files.createTempFile(this.tmpDir, TMP_FILE_PREFIX, TMP_FILE_SUFFIX)
+                        : Files.createTempFile(TMP_FILE_PREFIX, TMP_FILE_SUFFIX);
+                    if (!generation.result.complete(generator.generate(generation.file))) {
+                        // nobody waits for it anymore
+                        generation.deleteFile();
+                    }
+                } catch (Throwable t) {
+                    LOGGER.log(Level.FINE, "Pdf generation for " + key + " failed", t);
+                    generation.result.completeExceptionally(t);
+                    generation.deleteFile();
+                } finally {
+                    this.inFlight.remove(key, generation);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            generation.result.completeExceptionally(ex);
+            this.inFlight.remove(key, generation);
+        }
+    }
+
+    /**
+     * Stop waiting for or using the given generation: once nobody does anymore, its temporary file is deleted and the
+     * generation itself is cancelled if still going on.
+     */
+    private void leave(final Object key, final Generation generation) {
+        if (generation.leave()) {
+            this.inFlight.remove(key, generation);
+            generation.cancel();
+            generation.deleteFile();
+        }
+    }
+
+    void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private static final class Generation {
+
+        private final CompletableFuture<Path> result = new CompletableFuture<>();
+        private volatile Future<?> task;
+        private volatile Path file;
+        private int users;
+        private boolean abandoned;
+
+        /**
+         * @return false if the generation cannot be joined anymore, as failed or given up by all of its users
+         */
+        private synchronized boolean join() {
+            if (this.abandoned || this.result.isCompletedExceptionally()) {
+                return false;
+            }
+            this.users++;
+            return true;
+        }
+
+        /**
+         * @return true if the generation has no users anymore
+         */
+        private synchronized boolean leave() {
+            if (--this.users > 0) {
+                return false;
+            }
+            this.abandoned = true;
+            return true;
+        }
+
+        private void cancel() {
+            final Future<?> generationTask = this.task;
+            if (generationTask != null) {
+                generationTask.cancel(true);
+            }
+            this.result.cancel(false);
+        }
+
+        private void deleteFile() {
+            final Path tmpFile = this.file;
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Impossible to delete pdf " + tmpFile, ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import docet.DocetLanguage;
+import docet.DocetUtils;
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPage;
+
+/**
+ * Document searcher adopted in preview mode: the search index is built on heap at startup right from the source pages
+ * of the package, then kept up to date while authors edit them, so that there is no need to run the maven plugin
+ * again to search the latest contents. Only changed files are indexed again, the reader is reopened in near real
+ * time.
+ *
+ */
+public class PreviewDocetDocSearcher extends SimpleDocetDocSearcher {
+
+    private static final Logger LOGGER = Logger.getLogger(PreviewDocetDocSearcher.class.getName());
+
+    private static final String EXTENSION_HTML = ".html";
+    private static final int SHORT_SEARCH_TEXT_DEFAULT_LENGTH = 300;
+    private static final int SHORT_SEARCH_ANSWER_TEXT_DEFAULT_LENGTH = 90;
+
+    private final ReentrantLock previewLock;
+    private final Path docsPath;
+    private final String pathToPages;
+    private final String pathToFaq;
+    private final Map<WatchKey, WatchedDir> watchedDirs;
+    private RAMDirectory index;
+    private IndexWriter writer;
+    private DirectoryReader reader;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * @param searchIndexPath the search index built by the plugin, only adopted for suggestions
+     * @param docsPath the folder holding the source pages of the package
+     * @param descriptor the descriptor of the package
+     * @param pathToPages pattern of the path to pages of a given language, relative to docsPath
+     * @param pathToFaq pattern of the path to faq pages of a given language, relative to docsPath
+     */
+    public PreviewDocetDocSearcher(final Path searchIndexPath, final Path docsPath,
+        final DocetPackageDescriptor descriptor, final String pathToPages, final String pathToFaq,
+        final DocetSearchFuzzyStrategy fuzzyStrategy, final int fuzzyFallbackMinHits, final DocetSearchLimits limits) {
+        super(searchIndexPath, descriptor, fuzzyStrategy, fuzzyFallbackMinHits, DocetSearchIndexDirectoryType.RAM, 0,
+            false, limits);
+        this.previewLock = new ReentrantLock(true);
+        this.docsPath = docsPath;
+        this.pathToPages = pathToPages;
+        this.pathToFaq = pathToFaq;
+        this.watchedDirs = new HashMap<>();
+    }
+
+    @Override
+    public boolean open() throws IOException {
+        try {
+            this.previewLock.lock();
+            if (this.writer == null) {
+                this.buildIndex();
+            }
+        } finally {
+            this.previewLock.unlock();
+        }
+        return super.open();
+    }
+
+    @Override
+    protected IndexReader getReaderForLang(final String lang) throws IOException {
+        this.open();
+        try {
+            this.previewLock.lock();
+            return this.reader;
+        } finally {
+            this.previewLock.unlock();
+        }
+    }
+
+    /**
+     * The reference is taken while holding the preview lock, as the watcher swaps and closes the reader under the
+     * same lock whenever the index gets reopened: searches keep using the reader they started with.
+     */
+    @Override
+    protected IndexReader acquireReaderForLang(final String lang) throws IOException {
+        this.open();
+        try {
+            this.previewLock.lock();
+            if (this.reader == null) {
+                throw new IOException("Preview search index for " + this.docsPath + " has been closed");
+            }
+            this.reader.incRef();
+            return this.reader;
+        } finally {
+            this.previewLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean close() throws IOException {
+        try {
+            this.previewLock.lock();
+            if (this.watcher != null) {
+                this.watcher.interrupt();
+                this.watcher = null;
+            }
+            if (this.watchService != null) {
+                this.watchService.close();
+                this.watchService = null;
+            }
+            this.watchedDirs.clear();
+            if (this.reader != null) {
+                this.reader.close();
+                this.reader = null;
+            }
+            if (this.writer != null) {
+                this.writer.close();
+                this.writer = null;
+            }
+            if (this.index != null) {
+                this.index.close();
+                this.index = null;
+            }
+        } finally {
+            this.previewLock.unlock();
+        }
+        return super.close();
+    }
+
+    private void buildIndex() throws IOException {
+        final long start = System.currentTimeMillis();
+        final Map<String, Analyzer> analyzers = new HashMap<>();
+        for (final DocetLanguage lang : DocetLanguage.values()) {
+            analyzers.put(LUCENE_QUERY_CONTENT_PREFIX + lang, new AnalyzerBuilder().language(lang.toString()).build());
+        }
+        this.index = new RAMDirectory();
+        this.writer = new IndexWriter(this.index,
+            new IndexWriterConfig(new PerFieldAnalyzerWrapper(new StandardAnalyzer(), analyzers)));
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (final DocetLanguage lang : DocetLanguage.values()) {
+            this.indexTree(new WatchedDir(DocetUtils.resolve(this.docsPath,
+                MessageFormat.format(this.pathToPages, lang.toString())), lang.toString(), DocetPage.DOCTYPE_PAGE));
+            this.indexTree(new WatchedDir(DocetUtils.resolve(this.docsPath,
+                MessageFormat.format(this.pathToFaq, lang.toString())), lang.toString(), DocetPage.DOCTYPE_FAQ));
+        }
+        this.reader = DirectoryReader.open(this.writer, true);
+        this.watcher = new Thread(this::watchDocs, "Docet preview search index watcher " + this.docsPath);
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+        LOGGER.log(Level.INFO, "Built preview search index for {0} with {1} documents in {2} ms",
+            new Object[]{this.docsPath, this.reader.numDocs(), System.currentTimeMillis() - start});
+    }
+
+    /**
+     * Index all the pages found in the given folder and its sub-folders, watching each of them for changes.
+     */
+    private void indexTree(final WatchedDir root) throws IOException {
+        if (!Files.isDirectory(root.path)) {
+            return;
+        }
+        Files.walkFileTree(root.path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                if (dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                final WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedDirs.put(key, new WatchedDir(dir, root.lang, root.docType));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                indexFile(file, root.lang, root.docType);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void indexFile(final Path file, final String lang, final int docType) {
+        final String fileName = file.getFileName().toString();
+        if (fileName.startsWith(".") || !fileName.endsWith(EXTENSION_HTML)) {
+            return;
+        }
+        try {
+            final org.jsoup.nodes.Document htmlDoc = Jsoup.parse(new String(Files.readAllBytes(file),
+                StandardCharsets.UTF_8));
+            final String pageId = fileName.substring(0, fileName.length() - EXTENSION_HTML.length());
+            final Elements headings = htmlDoc.getElementsByTag("h1");
+            final String title = headings.isEmpty() ? pageId : headings.get(0).text();
+            final Document doc = new Document();
+            doc.add(new StringField("path", file.toString(), Field.Store.YES));
+            doc.add(new LongField("modified", Files.getLastModifiedTime(file).toMillis(), Field.Store.NO));
+            doc.add(new TextField(LUCENE_QUERY_CONTENT_PREFIX + lang, htmlDoc.text(), Field.Store.YES));
+            doc.add(new StringField("language", lang, Field.Store.YES));
+            doc.add(new StringField("id", pageId, Field.Store.YES));
+            if (docType == DocetPage.DOCTYPE_FAQ) {
+                doc.add(new StringField("title", "FAQ - " + title, Field.Store.YES));
+                doc.add(new TextField("abstract", buildFaqAbstract(htmlDoc), Field.Store.YES));
+            } else {
+                doc.add(new StringField("title", title, Field.Store.YES));
+                doc.add(new TextField("abstract", buildPageAbstract(htmlDoc), Field.Store.YES));
+            }
+            doc.add(new IntField("doctype", docType, Field.Store.YES));
+            this.writer.updateDocument(new Term("path", file.toString()), doc);
+            LOGGER.log(Level.FINE, "Indexed {0} in preview search index", file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "File " + file + " cannot be indexed", ex);
+        }
+    }
+
+    /**
+     * Same as the maven plugin: the abstract of a page is the first paragraph marked as such.
+     */
+    private static String buildPageAbstract(final org.jsoup.nodes.Document htmlDoc) {
+        final Elements pars = htmlDoc.select("div#main p#abstract");
+        if (pars.isEmpty()) {
+            return "...";
+        }
+        final String abstractText = pars.get(0).text();
+        if (abstractText.length() <= SHORT_SEARCH_TEXT_DEFAULT_LENGTH) {
+            return abstractText;
+        }
+        return abstractText.substring(0, SHORT_SEARCH_TEXT_DEFAULT_LENGTH) + "...";
+    }
+
+    /**
+     * Same as the maven plugin: the abstract of a faq page lists its first questions, with a short answer.
+     */
+    private static String buildFaqAbstract(final org.jsoup.nodes.Document htmlDoc) {
+        final StringBuilder excerptBuilder = new StringBuilder();
+        for (final Element faq : htmlDoc.select("div.faq-item")) {
+            final Elements questions = faq.select(".question");
+            final Elements answers = faq.select(".answer");
+            if (!questions.isEmpty()) {
+                excerptBuilder.append("<b> ").append(questions.get(0).text()).append("</b><br/>");
+            }
+            if (!answers.isEmpty()) {
+                String answer = answers.get(0).text();
+                if (answer.length() > SHORT_SEARCH_ANSWER_TEXT_DEFAULT_LENGTH) {
+                    answer = answer.substring(0, SHORT_SEARCH_ANSWER_TEXT_DEFAULT_LENGTH) + "...";
+                }
+                excerptBuilder.append(answer);
+            }
+            excerptBuilder.append("<br/>");
+            if (excerptBuilder.length() >= SHORT_SEARCH_TEXT_DEFAULT_LENGTH) {
+                break;
+            }
+        }
+        return excerptBuilder.toString();
+    }
+
+    private void watchDocs() {
+        final WatchService service = this.watchService;
+        while (!Thread.currentThread().isInterrupted()) {
+            final WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+            try {
+                this.previewLock.lock();
+                if (this.writer == null) {
+                    return;
+                }
+                final WatchedDir dir = this.watchedDirs.get(key);
+                if (dir != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            this.indexTree(dir);
+                        } else {
+                            this.onFileChanged(dir, dir.path.resolve((Path) event.context()), event.kind());
+                        }
+                    }
+                    final DirectoryReader newReader = DirectoryReader.openIfChanged(this.reader, this.writer, true);
+                    if (newReader != null) {
+                        this.reader.close();
+                        this.reader = newReader;
+                    }
+                }
+                if (!key.reset()) {
+                    this.watchedDirs.remove(key);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Error on updating preview search index for " + this.docsPath, ex);
+            } finally {
+                this.previewLock.unlock();
+            }
+        }
+    }
+
+    private void onFileChanged(final WatchedDir dir, final Path file, final WatchEvent.Kind<?> kind)
+        throws IOException {
+        if (kind == ENTRY_DELETE) {
+            this.writer.deleteDocuments(new Term("path", file.toString()));
+            this.writer.deleteDocuments(new PrefixQuery(new Term("path", file.toString() + File.separator)));
+        } else if (Files.isDirectory(file)) {
+            if (kind == ENTRY_CREATE) {
+                this.indexTree(new WatchedDir(file, dir.lang, dir.docType));
+            }
+        } else {
+            this.indexFile(file, dir.lang, dir.docType);
+        }
+    }
+
+    private static final class WatchedDir {
+
+        private final Path path;
+        private final String lang;
+        private final int docType;
+
+        private WatchedDir(final Path path, final String lang, final int docType) {
+            this.path = path;
+            this.lang = lang;
+            this.docType = docType;
+        }
+    }
+}
@@ -17,37 +17,67 @@
 package docet.engine;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.fr.FrenchAnalyzer;
 import org.apache.lucene.analysis.it.ItalianAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.highlight.Fragmenter;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
 import org.apache.lucene.search.highlight.QueryScorer;
 import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
 
+import docet.DocetLanguage;
 import docet.error.DocetDocumentSearchException;
 import docet.model.DocetPackageDescriptor;
 import docet.model.DocetPage;
+import docet.model.DocetSuggestion;
 
 /**
  * Simple implementation of a (Lucene-based) document searcher.
@@ -57,24 +87,64 @@ import docet.model.DocetPage;
  */
 public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
 
+    private static final Logger LOGGER = Logger.getLogger(SimpleDocetDocSearcher.class.getName());
+
     private static final int DEFAULT_MAX_TERMS_DISTANCE_IN_SEARCH = 6;
     private static final int DEFAULT_TERMS_MAX_DISTANCE_SIMILARITY = 1;
     private static final int MAX_NUM_FRAGMENTS = 3;
     private static final int MIN_TERM_LENGTH_THRESHOLD = 3;
     private static final String MACHING_EXCERPTS_SEPARATOR = " ... ";
 
-    private static final String LUCENE_QUERY_CONTENT_PREFIX = "contents-";
+    static final String LUCENE_QUERY_CONTENT_PREFIX = "contents-";
+    private static final String SUGGEST_FILE_PREFIX = "suggest-";
+    private static final String SUGGEST_FILE_EXTENSION = ".dat";
+    private static final String SUGGEST_PAYLOAD_SEPARATOR = ":";
 
     private final ReentrantLock lock;
     private final Path searchIndexPath;
-    private IndexReader reader;
-    private FSDirectory index;
+    /* Partition of each language searched so far, the legacy index is shared by all of the languages */
+    private final Map<String, IndexPartition> partitions;
+    private boolean opened;
     private DocetPackageDescriptor descriptor;
+    private final Map<String, Optional<Lookup>> suggesters;
+    private final DocetSearchFuzzyStrategy fuzzyStrategy;
+    private final int fuzzyFallbackMinHits;
+    private final DocetSearchIndexDirectoryType directoryType;
+    private final long ramDirectoryMaxSize;
+    private final boolean warmUp;
+    private final DocetSearchLimits limits;
 
     public SimpleDocetDocSearcher(final Path searchIndexPath, final DocetPackageDescriptor descriptor) {
+        this(searchIndexPath, descriptor, DocetSearchFuzzyStrategy.ALWAYS, 0);
+    }
+
+    public SimpleDocetDocSearcher(final Path searchIndexPath, final DocetPackageDescriptor descriptor,
+        final DocetSearchFuzzyStrategy fuzzyStrategy, final int fuzzyFallbackMinHits) {
+        this(searchIndexPath, descriptor, fuzzyStrategy, fuzzyFallbackMinHits, DocetSearchIndexDirectoryType.FS, 0, false);
+    }
+
+    public SimpleDocetDocSearcher(final Path searchIndexPath, final DocetPackageDescriptor descriptor,
+        final DocetSearchFuzzyStrategy fuzzyStrategy, final int fuzzyFallbackMinHits,
+        final DocetSearchIndexDirectoryType directoryType, final long ramDirectoryMaxSize, final boolean warmUp) {
+        this(searchIndexPath, descriptor, fuzzyStrategy, fuzzyFallbackMinHits, directoryType, ramDirectoryMaxSize, warmUp,
+            DocetSearchLimits.unlimited());
+    }
+
+    public SimpleDocetDocSearcher(final Path searchIndexPath, final DocetPackageDescriptor descriptor,
+        final DocetSearchFuzzyStrategy fuzzyStrategy, final int fuzzyFallbackMinHits,
+        final DocetSearchIndexDirectoryType directoryType, final long ramDirectoryMaxSize, final boolean warmUp,
+        final DocetSearchLimits limits) {
         this.searchIndexPath = searchIndexPath;
         this.descriptor = descriptor;
         this.lock  = new ReentrantLock(true);
+        this.suggesters = new HashMap<>();
+        this.partitions = new HashMap<>();
+        this.fuzzyStrategy = fuzzyStrategy;
+        this.fuzzyFallbackMinHits = fuzzyFallbackMinHits;
+        this.directoryType = directoryType;
+        this.ramDirectoryMaxSize = ramDirectoryMaxSize;
+        this.warmUp = warmUp;
+        this.limits = limits;
     }
 
     private String getFallbackLangForLang(final String lang) {
@@ -89,7 +159,26 @@ public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
     @Override
     public List<DocetPage> searchForMatchingDocuments(final String searchText, final String lang, final int maxNumResults)
         throws DocetDocumentSearchException {
-        final List<DocetPage> results = new ArrayList<>();
+        return this.searchForMatchingDocuments(searchText, lang, maxNumResults, new DocetSearchStatistics());
+    }
+
+    @Override
+    public List<DocetPage> searchForMatchingDocuments(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchStatistics statistics) throws DocetDocumentSearchException {
+        try (DocetSearchHits hits = this.searchForMatchingHits(searchText, lang, maxNumResults, statistics)) {
+            return this.loadMatchingDocuments(hits, hits.size(), hits.getMaxScore());
+        }
+    }
+
+    @Override
+    public DocetSearchHits searchForMatchingHits(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchStatistics statistics) throws DocetDocumentSearchException {
+        return this.searchForMatchingHits(searchText, lang, maxNumResults, null, statistics);
+    }
+
+    @Override
+    public DocetSearchHits searchForMatchingHits(final String searchText, final String lang, final int maxNumResults,
+        final DocetSearchCursor after, final DocetSearchStatistics statistics) throws DocetDocumentSearchException {
         final String fallbackLang = this.getFallbackLangForLang(lang);
         final String actualSearchLang;
         if (fallbackLang.isEmpty()) {
@@ -97,37 +186,82 @@ public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
         } else {
             actualSearchLang = fallbackLang;
         }
+        final long deadline = this.limits.computeDeadline();
+        final String limitedSearchText = this.limits.limitSearchText(searchText);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        IndexReader reader = null;
         try {
+            reader = this.acquireReaderForLang(actualSearchLang);
             final IndexSearcher searcher = new IndexSearcher(reader);
             final Analyzer analyzer = new AnalyzerBuilder().language(actualSearchLang).build();
-            QueryParser queryParser = new QueryParser(LUCENE_QUERY_CONTENT_PREFIX + actualSearchLang, analyzer);
-            final Query query = queryParser.parse(constructLucenePhraseTermSearchQuery(searchText));
-            final QueryScorer queryScorer = new QueryScorer(query, LUCENE_QUERY_CONTENT_PREFIX + actualSearchLang);
+            final String field = LUCENE_QUERY_CONTENT_PREFIX + actualSearchLang;
+            QueryParser queryParser = new QueryParser(field, analyzer);
+            final DocetSearchHits hits;
+            if (after == null) {
+                final SearchPass pass = searchWithFuzzyStrategy(queryParser, limitedSearchText, this.fuzzyStrategy,
+                    this.fuzzyFallbackMinHits, q -> searchWithDeadline(searcher, q, null, maxNumResults, deadline, timedOut),
+                    statistics);
+                hits = new DocetSearchHits(searcher, pass.query, analyzer, field, pass.topDocs.scoreDocs,
+                    pass.topDocs.totalHits, 0, pass.topDocs.getMaxScore(), pass.fuzzy, deadline);
+            } else {
+                after.checkIndexVersion(computeIndexVersion(reader));
+                if (after.doc < 0 || after.doc >= searcher.getIndexReader().maxDoc()) {
+                    throw new DocetDocumentSearchException("Search cursor out of range for query " + searchText);
+                }
+                final ScoreDoc afterDoc = new ScoreDoc(after.doc, after.score);
+                final SearchPass pass = searchAfterCursor(queryParser, limitedSearchText, after,
+                    q -> searchWithDeadline(searcher, q, afterDoc, maxNumResults, deadline, timedOut), statistics);
+                hits = new DocetSearchHits(searcher, pass.query, analyzer, field, pass.topDocs.scoreDocs,
+                    pass.topDocs.totalHits, after.position, after.maxScore, pass.fuzzy, deadline);
+            }
+            if (timedOut.get()) {
+                LOGGER.log(Level.WARNING, "Search of query {0} for lang {1} on {2} ran out of its time budget, "
+                    + "returning partial results", new Object[]{searchText, actualSearchLang, this.searchIndexPath});
+                hits.markPartial();
+            }
+            // the reference to the reader is released along with the hits
+            reader = null;
+            return hits;
+        } catch (ParseException | IOException ex) {
+            throw new DocetDocumentSearchException("Error on searching query " + searchText + " for lang "
+                                                        + actualSearchLang, ex);
+        } finally {
+            if (reader != null) {
+                releaseReader(reader);
+            }
+        }
+    }
+
+    @Override
+    public List<DocetPage> loadMatchingDocuments(final DocetSearchHits hits, final int numHits, final float maxScore)
+        throws DocetDocumentSearchException {
+        final List<DocetPage> results = new ArrayList<>();
+        if (numHits <= 0 || hits.size() == 0) {
+            return results;
+        }
+        final String field = hits.field;
+        try {
+            final QueryScorer queryScorer = new QueryScorer(hits.query, field);
 
             final Fragmenter fragmenter = new SimpleSpanFragmenter(queryScorer);
             final Highlighter highlighter = new Highlighter(queryScorer);
-            highlighter.setMaxDocCharsToAnalyze(Integer.MAX_VALUE);
+            highlighter.setMaxDocCharsToAnalyze(this.limits.getMaxHighlightChars());
             highlighter.setTextFragmenter(fragmenter);
 
-            final TopDocs res =  searcher.search(query, maxNumResults);
-            final float maxScore = res.getMaxScore();
-            final List<ScoreDoc> scoreDocs = Arrays.asList(res.scoreDocs);
+            final List<ScoreDoc> scoreDocs = Arrays.asList(hits.scoreDocs).subList(0, Math.min(numHits, hits.size()));
             Map<org.apache.lucene.document.Document, String> docs = new HashMap<>();
             Map<String, ScoreDoc> scoresForDocs = new HashMap<>();
             for (final ScoreDoc sd : scoreDocs) {
-                final org.apache.lucene.document.Document doc = searcher.doc(sd.doc);
-                final String contents = doc.get(LUCENE_QUERY_CONTENT_PREFIX + actualSearchLang);
+                final org.apache.lucene.document.Document doc = hits.doc(sd.doc);
+                final String contents = doc.get(field);
                 final String docId = doc.get("id");
-                final String[] fragments = highlighter.getBestFragments(analyzer, LUCENE_QUERY_CONTENT_PREFIX
-                    + actualSearchLang, contents, MAX_NUM_FRAGMENTS);
-                List<String> fragmentList = Arrays.asList(fragments);
-                fragmentList = fragmentList.stream().map(s1 -> s1.trim().split("\n"))
-                        .map(s1 -> Arrays.asList(s1).stream().filter(s -> !s.trim().isEmpty())
-                                .reduce((sa, sb) -> sa + MACHING_EXCERPTS_SEPARATOR + sb).orElse(MACHING_EXCERPTS_SEPARATOR))
-                                .collect(Collectors.toList());
-                docs.put(doc, MACHING_EXCERPTS_SEPARATOR  + fragmentList.stream()
-                        .filter(s -> !s.isEmpty())
-                        .reduce((s1, s2) -> s1 + "..." + s2).orElse("") + MACHING_EXCERPTS_SEPARATOR);
+                if (!hits.isOutOfTime()) {
+                    docs.put(doc, buildMatchingExcerpt(highlighter, hits.analyzer, field, contents));
+                } else {
+                    // out of time budget: return the remaining pages with no matching excerpt
+                    docs.put(doc, "");
+                    hits.markPartial();
+                }
                 scoresForDocs.putIfAbsent(docId, sd);
             }
             docs.entrySet().stream().forEach(e -> {
@@ -135,20 +269,87 @@ public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
                 results.add(DocetPage.toDocetDocument(e.getKey(), e.getValue(), relevance));
             });
             return results;
-        } catch (ParseException | IOException | InvalidTokenOffsetsException ex) {
-            throw new DocetDocumentSearchException("Error on searching query " + searchText + " for lang "
+        } catch (IOException | InvalidTokenOffsetsException ex) {
+            throw new DocetDocumentSearchException("Error on loading matching documents for query " + hits.query, ex);
+        }
+    }
+
+    static String buildMatchingExcerpt(final Highlighter highlighter, final Analyzer analyzer, final String field,
+        final String contents) throws IOException, InvalidTokenOffsetsException {
+        final String[] fragments = highlighter.getBestFragments(analyzer, field, contents, MAX_NUM_FRAGMENTS);
+        List<String> fragmentList = Arrays.asList(fragments);
+        fragmentList = fragmentList.stream().map(s1 -> s1.trim().split("\n"))
+                .map(s1 -> Arrays.asList(s1).stream().filter(s -> !s.trim().isEmpty())
+                        .reduce((sa, sb) -> sa + MACHING_EXCERPTS_SEPARATOR + sb).orElse(MACHING_EXCERPTS_SEPARATOR))
+                        .collect(Collectors.toList());
+        return MACHING_EXCERPTS_SEPARATOR  + fragmentList.stream()
+                .filter(s -> !s.isEmpty())
+                .reduce((s1, s2) -> s1 + "..." + s2).orElse("") + MACHING_EXCERPTS_SEPARATOR;
+    }
+
+    @Override
+    public List<DocetSuggestion> suggestForPrefix(final String prefix, final String lang, final int maxNumResults)
+        throws DocetDocumentSearchException {
+        final List<DocetSuggestion> results = new ArrayList<>();
+        final String fallbackLang = this.getFallbackLangForLang(lang);
+        final String actualSearchLang;
+        if (fallbackLang.isEmpty()) {
+            actualSearchLang = lang;
+        } else {
+            actualSearchLang = fallbackLang;
+        }
+        try {
+            final Optional<Lookup> suggester = this.getSuggesterForLang(actualSearchLang);
+            if (!suggester.isPresent()) {
+                return results;
+            }
+            for (final Lookup.LookupResult res : suggester.get().lookup(prefix, false, maxNumResults)) {
+                final String[] payload = res.payload.utf8ToString().split(SUGGEST_PAYLOAD_SEPARATOR, 2);
+                results.add(new DocetSuggestion(res.key.toString(), payload[1], actualSearchLang,
+                    Integer.parseInt(payload[0]), res.value));
+            }
+            return results;
+        } catch (IOException | RuntimeException ex) {
+            throw new DocetDocumentSearchException("Error on suggesting prefix " + prefix + " for lang "
                                                         + actualSearchLang, ex);
         }
     }
 
+    /**
+     * Suggesters are loaded lazily, once per language, and kept on heap until the searcher gets closed. Packages
+     * built by older versions of the plugin have no suggester at all: an empty value is cached in that case.
+     */
+    private Optional<Lookup> getSuggesterForLang(final String requestedLang) throws IOException {
+        final String lang = checkLanguage(requestedLang);
+        try {
+            this.lock.lock();
+            Optional<Lookup> suggester = this.suggesters.get(lang);
+            if (suggester == null) {
+                final Path suggestFile = this.searchIndexPath.resolve(SUGGEST_FILE_PREFIX + lang + SUGGEST_FILE_EXTENSION);
+                if (Files.isRegularFile(suggestFile)) {
+                    final AnalyzingSuggester loaded = new AnalyzingSuggester(new StandardAnalyzer(CharArraySet.EMPTY_SET));
+                    try (InputStream in = Files.newInputStream(suggestFile)) {
+                        loaded.load(in);
+                    }
+                    suggester = Optional.of(loaded);
+                } else {
+                    suggester = Optional.empty();
+                }
+                this.suggesters.put(lang, suggester);
+            }
+            return suggester;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     @Override
     public boolean open() throws IOException {
         final boolean res;
         try {
             this.lock.lock();
             if (!isOpen()) {
-                this.index = FSDirectory.open(searchIndexPath);
-                this.reader = DirectoryReader.open(this.index);
+                this.opened = true;
                 res = true;
             } else {
                 res = false;
@@ -159,19 +360,223 @@ public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
         return res;
     }
 
+    @Override
+    public boolean open(final String lang) throws IOException {
+        final String fallbackLang = this.getFallbackLangForLang(lang);
+        try {
+            this.lock.lock();
+            final boolean res = this.open();
+            this.getReaderForLang(fallbackLang.isEmpty() ? lang : fallbackLang);
+            return res;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #getReaderForLang(String)}, taking a reference to the reader so that it stays open until released
+     * by {@link #releaseReader(IndexReader)}, even if the searcher gets closed meanwhile.
+     */
+    protected IndexReader acquireReaderForLang(final String lang) throws IOException {
+        try {
+            this.lock.lock();
+            final IndexReader reader = this.getReaderForLang(lang);
+            reader.incRef();
+            return reader;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    static void releaseReader(final IndexReader reader) {
+        try {
+            reader.decRef();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Error on closing search index reader", ex);
+        }
+    }
+
+    /**
+     * Since version 1.21 the plugin writes a separate search index for each language, in a sub-directory named after
+     * the language: only the partitions of the languages actually searched get opened. Packages built by older
+     * versions of the plugin have a single index holding all the languages, which is shared by all of them.
+     */
+    protected IndexReader getReaderForLang(final String requestedLang) throws IOException {
+        final String lang = checkLanguage(requestedLang);
+        try {
+            this.lock.lock();
+            this.opened = true;
+            IndexPartition partition = this.partitions.get(lang);
+            if (partition == null) {
+                // first search for the language: only now the disk is looked at
+                final Path partitionPath = resolveIndexPartitionPath(this.searchIndexPath, lang);
+                if (partitionPath.equals(this.searchIndexPath)) {
+                    partition = this.partitions.values().stream()
+                        .filter(p -> p.legacy)
+                        .findAny()
+                        .orElse(null);
+                }
+                if (partition == null) {
+                    partition = this.openPartition(partitionPath);
+                }
+                this.partitions.put(lang, partition);
+            }
+            return partition.reader;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Languages come from requests and end up in paths of the search index and in keys of the caches of the searcher:
+     * only supported languages are let through.
+     *
+     * @return the given language
+     * @throws IOException if the language is not supported
+     */
+    static String checkLanguage(final String lang) throws IOException {
+        final DocetLanguage language = DocetLanguage.parseDocetLanguageByName(lang);
+        if (language == null) {
+            throw new IOException("Unsupported language " + lang);
+        }
+        return language.toString();
+    }
+
+    /**
+     * @return the path of the search index partition holding the documents in the given language, falling back to the
+     * whole search index for packages built before the introduction of per-language partitions
+     */
+    static Path resolveIndexPartitionPath(final Path searchIndexPath, final String lang) throws IOException {
+        final Path partitionPath = searchIndexPath.resolve(lang);
+        if (!lang.isEmpty() && Files.isDirectory(partitionPath)) {
+            try (Directory partition = FSDirectory.open(partitionPath)) {
+                if (DirectoryReader.indexExists(partition)) {
+                    return partitionPath;
+                }
+            }
+        }
+        return searchIndexPath;
+    }
+
+    /**
+     * @return the paths of all the index partitions making up the given search index
+     */
+    static List<Path> listIndexPartitionPaths(final Path searchIndexPath) throws IOException {
+        final List<Path> res = new ArrayList<>();
+        for (final DocetLanguage lang : DocetLanguage.values()) {
+            final Path partitionPath = resolveIndexPartitionPath(searchIndexPath, lang.toString());
+            if (!partitionPath.equals(searchIndexPath)) {
+                res.add(partitionPath);
+            }
+        }
+        if (res.isEmpty()) {
+            res.add(searchIndexPath);
+        }
+        return res;
+    }
+
+    private IndexPartition openPartition(final Path partitionPath) throws IOException {
+        final long start = System.nanoTime();
+        final Directory index = this.openDirectory(partitionPath);
+        try {
+            final IndexReader reader = DirectoryReader.open(index);
+            // searches may still hold the reader when the partition gets closed
+            reader.addReaderClosedListener(closed -> {
+                try {
+                    index.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, "Error on closing search index " + partitionPath, ex);
+                }
+            });
+            if (this.warmUp) {
+                warmUpReader(reader);
+            }
+            LOGGER.log(Level.FINE, "Opened search index {0} as {1} in {2} ms", new Object[]{partitionPath,
+                index.getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+            return new IndexPartition(reader, partitionPath.equals(this.searchIndexPath));
+        } catch (IOException | RuntimeException ex) {
+            index.close();
+            throw ex;
+        }
+    }
+
+    private Directory openDirectory(final Path indexPath) throws IOException {
+        DocetSearchIndexDirectoryType type = this.directoryType;
+        if (type == DocetSearchIndexDirectoryType.AUTO) {
+            if (computeDirectorySize(indexPath) <= this.ramDirectoryMaxSize) {
+                type = DocetSearchIndexDirectoryType.RAM;
+            } else {
+                type = DocetSearchIndexDirectoryType.MMAP;
+            }
+        }
+        switch (type) {
+            case RAM:
+                try (FSDirectory fsIndex = FSDirectory.open(indexPath)) {
+                    return new RAMDirectory(fsIndex, IOContext.READONCE);
+                }
+            case MMAP:
+                final MMapDirectory mmapIndex = new MMapDirectory(indexPath);
+                mmapIndex.setPreload(true);
+                return mmapIndex;
+            case NIO:
+                return new NIOFSDirectory(indexPath);
+            case FS:
+            default:
+                return FSDirectory.open(indexPath);
+        }
+    }
+
+    private static long computeDirectorySize(final Path path) throws IOException {
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * Touch term dictionaries and norms of every indexed field, so that the first query does not have to pay for
+     * loading them.
+     */
+    private static void warmUpReader(final IndexReader reader) throws IOException {
+        for (final LeafReaderContext leaf : reader.leaves()) {
+            final LeafReader leafReader = leaf.reader();
+            for (final String field : leafReader.fields()) {
+                final Terms terms = leafReader.terms(field);
+                if (terms != null) {
+                    final TermsEnum termsEnum = terms.iterator();
+                    while (termsEnum.next() != null) {
+                        termsEnum.docFreq();
+                    }
+                }
+                final NumericDocValues norms = leafReader.getNormValues(field);
+                if (norms != null) {
+                    for (int i = 0; i < leafReader.maxDoc(); i++) {
+                        norms.get(i);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public boolean close() throws IOException {
         final boolean res;
         try {
             this.lock.lock();
             if (isOpen()) {
-                if (this.reader != null) {
-                    this.reader.close();
-                    this.reader = null;
+                IOException closeError = null;
+                // the legacy partition is there once for each language
+                for (final IndexPartition partition : new HashSet<>(this.partitions.values())) {
+                    try {
+                        partition.close();
+                    } catch (IOException ex) {
+                        closeError = ex;
+                    }
                 }
-                if (this.index != null) {
-                    this.index.close();
-                    this.index = null;
+                this.partitions.clear();
+                this.suggesters.clear();
+                this.opened = false;
+                if (closeError != null) {
+                    throw closeError;
                 }
                 res = true;
             } else {
@@ -184,10 +589,123 @@ public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
     }
 
     private boolean isOpen() {
-        return this.reader != null && this.index != null;
+        return this.opened;
     }
 
-    private String constructLucenePhraseTermSearchQuery(final String searchText) {
+    /**
+     * The search index of a single language, or the whole legacy search index.
+     */
+    private static final class IndexPartition {
+
+        private final IndexReader reader;
+        private final boolean legacy;
+
+        private IndexPartition(final IndexReader reader, final boolean legacy) {
+            this.reader = reader;
+            this.legacy = legacy;
+        }
+
+        private void close() throws IOException {
+            // the directory gets closed along with the reader, as soon as no search holds it anymore
+            this.reader.close();
+        }
+    }
+
+    /**
+     * Run the given search according to the given fuzzy strategy: with {@link DocetSearchFuzzyStrategy#FALLBACK} the
+     * exact phrase/term query is run first and the fuzzy expansion is performed only in case less than minHits
+     * documents match.
+     */
+    static SearchPass searchWithFuzzyStrategy(final QueryParser queryParser, final String searchText,
+        final DocetSearchFuzzyStrategy strategy, final int minHits, final QueryExecutor executor,
+        final DocetSearchStatistics statistics) throws ParseException, IOException {
+        if (strategy == DocetSearchFuzzyStrategy.FALLBACK) {
+            final long start = System.nanoTime();
+            final Query exactQuery = queryParser.parse(constructLuceneExactSearchQuery(searchText));
+            final TopDocs exactRes = executor.execute(exactQuery);
+            statistics.addExactPass(exactRes.totalHits, System.nanoTime() - start);
+            if (exactRes.totalHits >= minHits) {
+                return new SearchPass(exactQuery, exactRes, false);
+            }
+        }
+        final long start = System.nanoTime();
+        final Query fuzzyQuery = queryParser.parse(constructLucenePhraseTermSearchQuery(searchText));
+        final TopDocs fuzzyRes = executor.execute(fuzzyQuery);
+        statistics.addFuzzyPass(fuzzyRes.totalHits, System.nanoTime() - start);
+        return new SearchPass(fuzzyQuery, fuzzyRes, true);
+    }
+
+    /**
+     * @return an identifier of the snapshot of the index the given reader is reading, changing on every commit or
+     * near-real-time refresh and different for indexes built on their own even if with the same no. of commits
+     */
+    static String computeIndexVersion(final IndexReader reader) {
+        final CRC32 version = new CRC32();
+        if (reader instanceof DirectoryReader) {
+            version.update(Long.toString(((DirectoryReader) reader).getVersion()).getBytes(StandardCharsets.UTF_8));
+        }
+        for (final LeafReaderContext leaf : reader.leaves()) {
+            if (leaf.reader() instanceof SegmentReader) {
+                final SegmentCommitInfo segment = ((SegmentReader) leaf.reader()).getSegmentInfo();
+                version.update(segment.info.getId());
+                version.update(Long.toString(segment.getDelGen()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return Long.toHexString(version.getValue());
+    }
+
+    /**
+     * Collect the top scoring documents matching the given query, stopping as soon as the deadline is reached: in
+     * such a case the best documents collected so far are returned.
+     */
+    static TopDocs searchWithDeadline(final IndexSearcher searcher, final Query query, final ScoreDoc after,
+        final int maxNumResults, final long deadline, final AtomicBoolean timedOut) throws IOException {
+        final int numHits = Math.max(1, Math.min(maxNumResults, searcher.getIndexReader().maxDoc()));
+        final TopScoreDocCollector collector = TopScoreDocCollector.create(numHits, after);
+        if (deadline == Long.MAX_VALUE) {
+            searcher.search(query, collector);
+        } else {
+            final long ticksAllowed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            try {
+                searcher.search(query,
+                    new TimeLimitingCollector(collector, TimeLimitingCollector.getGlobalCounter(), ticksAllowed));
+            } catch (TimeLimitingCollector.TimeExceededException ex) {
+                timedOut.set(true);
+            }
+        }
+        return collector.topDocs();
+    }
+
+    /**
+     * Repeat the pass a previous page of results has been retrieved with, starting right after the given cursor.
+     */
+    static SearchPass searchAfterCursor(final QueryParser queryParser, final String searchText,
+        final DocetSearchCursor after, final QueryExecutor executor, final DocetSearchStatistics statistics)
+        throws ParseException, IOException {
+        final long start = System.nanoTime();
+        final SearchPass pass;
+        if (after.fuzzy) {
+            final Query fuzzyQuery = queryParser.parse(constructLucenePhraseTermSearchQuery(searchText));
+            pass = new SearchPass(fuzzyQuery, executor.execute(fuzzyQuery), true);
+            statistics.addFuzzyPass(pass.topDocs.totalHits, System.nanoTime() - start);
+        } else {
+            final Query exactQuery = queryParser.parse(constructLuceneExactSearchQuery(searchText));
+            pass = new SearchPass(exactQuery, executor.execute(exactQuery), false);
+            statistics.addExactPass(pass.topDocs.totalHits, System.nanoTime() - start);
+        }
+        return pass;
+    }
+
+    static String constructLuceneExactSearchQuery(final String searchText) {
+        final String phraseSearch = "\"" + searchText + "\"~" + DEFAULT_MAX_TERMS_DISTANCE_IN_SEARCH;
+        final String singleTermsQuery = Arrays.asList(searchText.split("\\s")).stream()
+                .filter(s -> !s.trim().isEmpty() && s.trim().length() > MIN_TERM_LENGTH_THRESHOLD)
+                .map(String::trim)
+                .reduce("", (t1, t2) -> t1 + " OR " + t2);
+        return phraseSearch + singleTermsQuery;
+    }
+
+    static String constructLucenePhraseTermSearchQuery(final String searchText) {
         final String phraseSearch = "\"" + searchText + "\"~" + DEFAULT_MAX_TERMS_DISTANCE_IN_SEARCH;
         final List<String> singleTerms = Arrays.asList(searchText.split("\\s")).stream()
                 .filter(s -> !s.trim().isEmpty() && s.trim().length() > MIN_TERM_LENGTH_THRESHOLD)
@@ -198,10 +716,29 @@ public class SimpleDocetDocSearcher implements DocetDocumentSearcher {
         return phraseSearch + singleTermsQuery;
     }
 
+    @FunctionalInterface
+    interface QueryExecutor {
+
+        TopDocs execute(Query query) throws IOException;
+    }
+
+    static final class SearchPass {
+
+        final Query query;
+        final TopDocs topDocs;
+        final boolean fuzzy;
+
+        SearchPass(final Query query, final TopDocs topDocs, final boolean fuzzy) {
+            this.query = query;
+            this.topDocs = topDocs;
+            this.fuzzy = fuzzy;
+        }
+    }
+
     /**
      *
      */
-    private static class AnalyzerBuilder {
+    static class AnalyzerBuilder {
 
         private String lang;
         private static final String DEFAULT_LANGUAGE = "it";
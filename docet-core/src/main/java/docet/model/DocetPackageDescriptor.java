@@ -24,6 +24,7 @@ public class DocetPackageDescriptor {
     private final Map<String, String> labelForLang;
     private final Map<String, String> abstractForLang;
     private final Map<String, String> fallbackLangForLang;
+    private boolean iconAvailable;
 
     public DocetPackageDescriptor() {
         this.labelForLang = new HashMap<>();
@@ -54,4 +55,27 @@ public class DocetPackageDescriptor {
     public String getFallbackLangForLang(final String lang) {
         return this.fallbackLangForLang.get(lang);
     }
+
+    /**
+     * @return true if the descriptor has a section for the given language
+     */
+    public boolean isLanguageAvailable(final String lang) {
+        return this.labelForLang.containsKey(lang);
+    }
+
+    /**
+     * The language the docs of the package are actually written in for the given language, that is the reference
+     * language declared by the descriptor, if any, or the given language itself.
+     */
+    public String getReferenceLanguageForLang(final String lang) {
+        return this.fallbackLangForLang.getOrDefault(lang, lang);
+    }
+
+    public boolean isIconAvailable() {
+        return this.iconAvailable;
+    }
+
+    public void setIconAvailable(final boolean iconAvailable) {
+        this.iconAvailable = iconAvailable;
+    }
 }
@@ -34,9 +34,18 @@ public class DocetPackageInfo {
     private final DocetPackageDescriptor descriptor;
     private final DocetDocumentSearcher searchIndex;
     private final DocetPackageLocation packageLocation;
+    private volatile String contentFingerprint;
 
     public DocetPackageInfo(final String packageId, final DocetPackageLocation packageLocation,
         final DocetPackageDescriptor descriptor, final String docsRelativeFolder, final String searchIndexRelativeFolder) {
+        this(packageId, packageLocation, descriptor, docsRelativeFolder, searchIndexRelativeFolder,
+            new SimpleDocetDocSearcher(packageLocation.getPackagePath().resolve(searchIndexRelativeFolder).toAbsolutePath(),
+                descriptor));
+    }
+
+    public DocetPackageInfo(final String packageId, final DocetPackageLocation packageLocation,
+        final DocetPackageDescriptor descriptor, final String docsRelativeFolder, final String searchIndexRelativeFolder,
+        final DocetDocumentSearcher searchIndex) {
         this.packageLocation = packageLocation;
         this.startupTS = System.currentTimeMillis();
         this.packageId = packageId;
@@ -45,7 +54,7 @@ public class DocetPackageInfo {
         this.packageDocsDir = packageLocation.getPackagePath().resolve(docsRelativeFolder);
         this.packageSearchIndexDir = packageLocation.getPackagePath().resolve(searchIndexRelativeFolder);
         this.descriptor = descriptor;
-        this.searchIndex = new SimpleDocetDocSearcher(packageSearchIndexDir.toAbsolutePath(), descriptor);
+        this.searchIndex = searchIndex;
     }
 
     public DocetPackageDescriptor getDescriptor() {
@@ -88,6 +97,17 @@ public class DocetPackageInfo {
         return searchIndex;
     }
 
+    /**
+     * @return fingerprint of the docs of the package, null if not computed yet
+     */
+    public String getContentFingerprint() {
+        return contentFingerprint;
+    }
+
+    public void setContentFingerprint(final String contentFingerprint) {
+        this.contentFingerprint = contentFingerprint;
+    }
+
     public DocetPackageLocation getPackageLocation() {
         return packageLocation;
     }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.model;
+
+/**
+ * Represents a completion suggested for a prefix typed in by the user, referring to the page it has been extracted
+ * from.
+ *
+ */
+public class DocetSuggestion {
+
+    private final String text;
+    private final String pageId;
+    private final String language;
+    private final int type;
+    private final long weight;
+
+    public DocetSuggestion(final String text, final String pageId, final String language, final int type,
+        final long weight) {
+        this.text = text;
+        this.pageId = pageId;
+        this.language = language;
+        this.type = type;
+        this.weight = weight;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getPageId() {
+        return pageId;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+}
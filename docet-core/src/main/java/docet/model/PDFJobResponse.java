@@ -0,0 +1,106 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.model;
+
+/**
+ * This is a data type class representing the state of a pdf generation job returned from docet.
+ *
+ */
+public class PDFJobResponse extends DocetResponse {
+
+    private final String jobId;
+    private final String state;
+    private final String packageId;
+    private final String documentId;
+    private final String language;
+    private final int sectionsRendered;
+    private final int sectionsTotal;
+    private final int pagesRendered;
+    private final int pagesTotal;
+    private final String statusLink;
+    private final String downloadLink;
+
+    public PDFJobResponse(final String jobId, final String state, final String packageId, final String documentId,
+        final String language, final int sectionsRendered, final int sectionsTotal, final int pagesRendered,
+        final int pagesTotal, final String statusLink, final String downloadLink, final String errorMessage) {
+        super(errorMessage == null ? STATUS_CODE_OK : STATUS_CODE_FAILURE, "", errorMessage == null ? "" : errorMessage);
+        this.jobId = jobId;
+        this.state = state;
+        this.packageId = packageId;
+        this.documentId = documentId;
+        this.language = language;
+        this.sectionsRendered = sectionsRendered;
+        this.sectionsTotal = sectionsTotal;
+        this.pagesRendered = pagesRendered;
+        this.pagesTotal = pagesTotal;
+        this.statusLink = statusLink;
+        this.downloadLink = downloadLink;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * @return one of queued, running, completed, failed
+     */
+    public String getState() {
+        return state;
+    }
+
+    public String getPackageId() {
+        return packageId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public int getSectionsRendered() {
+        return sectionsRendered;
+    }
+
+    public int getSectionsTotal() {
+        return sectionsTotal;
+    }
+
+    public int getPagesRendered() {
+        return pagesRendered;
+    }
+
+    /**
+     * @return no. of pages of the pdf, 0 while not known yet
+     */
+    public int getPagesTotal() {
+        return pagesTotal;
+    }
+
+    public String getStatusLink() {
+        return statusLink;
+    }
+
+    /**
+     * @return where to download the pdf from, empty until the job is completed
+     */
+    public String getDownloadLink() {
+        return downloadLink;
+    }
+}
@@ -33,9 +33,13 @@ public class PackageSearchResult {
     private final String packagelink;
     private final boolean ok;
     private final String errorMessage;
+    private final int totalHits;
+    private String nextCursor;
+    private boolean partial;
 
     private PackageSearchResult(final String packageid, final String packagename,
-        final String packagelink, final List<SearchResult> items, final String errorMsg) {
+        final String packagelink, final List<SearchResult> items, final String errorMsg, final int totalHits) {
+        this.totalHits = totalHits;
         this.packageid = packageid;
         this.packagename = packagename;
         this.packagelink = packagelink;
@@ -54,7 +58,18 @@ public class PackageSearchResult {
 
     public static PackageSearchResult toPackageSearchResult(final String packageid, final String packagename,
         final String packagelink, final List<SearchResult> items, final String errorMsg) {
-        return new PackageSearchResult(packageid, packagename, packagelink, items, errorMsg);
+        return new PackageSearchResult(packageid, packagename, packagelink, items, errorMsg, -1);
+    }
+
+    /**
+     * Same as {@link #toPackageSearchResult(String, String, String, List, String)}, for results cut from a larger set
+     * of matching pages.
+     *
+     * @param totalHits the no. of pages in the package matching the search, including the ones not returned
+     */
+    public static PackageSearchResult toPackageSearchResult(final String packageid, final String packagename,
+        final String packagelink, final List<SearchResult> items, final String errorMsg, final int totalHits) {
+        return new PackageSearchResult(packageid, packagename, packagelink, items, errorMsg, totalHits);
     }
 
     public void addItems(final List<SearchResult> items) {
@@ -69,6 +84,38 @@ public class PackageSearchResult {
         return this.items.size();
     }
 
+    /**
+     * @return the no. of pages in the package matching the search, which may be greater than the returned items
+     */
+    public int getTotalHits() {
+        if (this.totalHits < 0) {
+            return this.items.size();
+        }
+        return totalHits;
+    }
+
+    /**
+     * @return the token to retrieve the next page of results for this package, null if there are no more results
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return true in case the search ran out of its time budget, hence the results may be incomplete
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(final boolean partial) {
+        this.partial = partial;
+    }
+
     public String getPackageid() {
         return packageid;
     }
@@ -0,0 +1,50 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a data type class representing the suggestions returned for a search-as-you-type request.
+ *
+ */
+public class SuggestResponse extends DocetResponse {
+
+    private final List<SuggestResult> items;
+
+    public SuggestResponse() {
+        this(STATUS_CODE_OK, "", "");
+    }
+
+    public SuggestResponse(final int status, final String errorCode, final String errorMessage) {
+        super(status, errorCode, errorMessage);
+        this.items = new ArrayList<>();
+    }
+
+    public void addItems(final List<SuggestResult> items) {
+        this.items.addAll(items);
+    }
+
+    public List<SuggestResult> getItems() {
+        return items;
+    }
+
+    public long getTotalCount() {
+        return this.items.size();
+    }
+}
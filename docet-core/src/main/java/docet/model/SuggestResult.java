@@ -0,0 +1,64 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.model;
+
+/**
+ * A single suggestion returned to the client, linked to the page it refers to.
+ *
+ */
+public class SuggestResult {
+
+    private final String packageId;
+    private final String pageId;
+    private final String pageLink;
+    private final String text;
+    private final long weight;
+
+    private SuggestResult(final String packageId, final String pageId, final String pageLink, final String text,
+        final long weight) {
+        this.packageId = packageId;
+        this.pageId = pageId;
+        this.pageLink = pageLink;
+        this.text = text;
+        this.weight = weight;
+    }
+
+    public static SuggestResult toSuggestResult(final String packageId, final DocetSuggestion suggestion,
+        final String pageId, final String pageLink) {
+        return new SuggestResult(packageId, pageId, pageLink, suggestion.getText(), suggestion.getWeight());
+    }
+
+    public String getPackageId() {
+        return packageId;
+    }
+
+    public String getPageId() {
+        return pageId;
+    }
+
+    public String getPageLink() {
+        return pageLink;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+}
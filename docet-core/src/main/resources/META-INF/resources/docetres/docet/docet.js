@@ -30,6 +30,8 @@ var Docet = (function ($, document) {
         urls: {
             base: "docs",
             search: "/search",
+            suggest: "/suggest",
+            searchindex: "/searchindex",
             toc: "/toc",
             packagelist: "/package",
             pages: "/pages",
@@ -37,7 +39,17 @@ var Docet = (function ($, document) {
             pdfs: "/pdfs"
         },
         search: {
-            pagination: 5
+            pagination: 5,
+            streaming: true,
+            suggest: {
+                enabled: true,
+                minChars: 2,
+                delay: 150
+            },
+            client: {
+                enabled: false,
+                maxResults: 20
+            }
         },
         localization: {
             language: language,
@@ -638,6 +650,18 @@ var Docet = (function ($, document) {
         }
 
         renderSearchResultsBreadcrumbs();
+        if (docet.search.client.enabled) {
+            searchPagesOnClient(queryTerm);
+            return;
+        }
+        searchPagesOnServer(queryTerm);
+    };
+
+    var searchPagesOnServer = function (queryTerm) {
+        if (docet.search.streaming) {
+            streamSearchResults(queryTerm);
+            return;
+        }
         $.ajax({
             url: getBaseURL() + docet.urls.search,
             data: mergeData({
@@ -656,7 +680,282 @@ var Docet = (function ($, document) {
 
     };
 
+    /*
+     * Search results are streamed as newline-delimited JSON records, one for each package: results of the current
+     * package come first and get rendered while the other packages are still being searched.
+     */
+    var streamSearchResults = function (queryTerm) {
+        var consumed = 0;
+        var started = false;
+        var numFoundPkgs = 0;
+        var $count = $('<span />');
+        var renderRecord = function (record) {
+            if (!started) {
+                started = true;
+                searchCursors = {};
+                lastSearchTerm = queryTerm;
+                hideToc();
+                $(docet.elements.content).empty();
+                $(docet.elements.content).append('<h1>' + docet.localization.searchResultTitle + '</h1>');
+                $(docet.elements.content).append($count);
+                notifyPageChanged('search', {term: queryTerm});
+            }
+            if (record.type === 'package') {
+                var packageRes = record.result;
+                if (!packageRes.ok) {
+                    docet.callbacks.search_error(packageRes);
+                } else if (packageRes.items.length > 0) {
+                    numFoundPkgs++;
+                    renderSearchResultForPackage(packageRes);
+                }
+            } else if (record.type === 'end') {
+                $count.html(resultsCountMessage(record.totalCount, numFoundPkgs, queryTerm));
+            }
+        };
+        var consume = function (text) {
+            var end = text.indexOf('\n', consumed);
+            while (end >= 0) {
+                var line = $.trim(text.substring(consumed, end));
+                consumed = end + 1;
+                if (line.length > 0) {
+                    renderRecord(JSON.parse(line));
+                }
+                end = text.indexOf('\n', consumed);
+            }
+        };
+        $.ajax({
+            url: getBaseURL() + docet.urls.search,
+            data: mergeData({
+                q: queryTerm,
+                sourcePkg: $.inArray(docet.packages.current, docet.packages.excludeFromSearch) < 0 ? docet.packages.current : '',
+                enablePkg: searchablePackages(),
+                lang: docet.localization.language,
+                stream: 'ndjson'
+            }),
+            dataType: 'text',
+            xhr: function () {
+                var xhr = $.ajaxSettings.xhr();
+                xhr.onprogress = function () {
+                    consume(xhr.responseText);
+                };
+                return xhr;
+            },
+            success: function (data) {
+                consume(data);
+            },
+            error: function (response) {
+                docet.callbacks.response_error(response);
+            }
+        });
+    };
+
+    /*
+     * Search indexes exported by the plugin are loaded once per package and language, then pages get searched right
+     * in the browser: search falls back to the server in case the index of any package is missing.
+     */
+    var clientSearchIndexes = {};
+    var clientSearchTokenSeparators = /[\s\u00a0!"#$%&'()*+,\-.\/:;<=>?@\[\\\]^_`{|}~]+/;
+    var clientSearchMinTermLength = 2;
+
+    var tokenizeForClientSearch = function (text) {
+        var tokens = text.toLowerCase().split(clientSearchTokenSeparators);
+        var res = [];
+        for (var i = 0; i < tokens.length; i++) {
+            if (tokens[i].length >= clientSearchMinTermLength) {
+                res.push(tokens[i]);
+            }
+        }
+        return res;
+    };
+
+    var loadClientSearchIndex = function (pkgId, callback) {
+        var key = pkgId + '_' + docet.localization.language;
+        if (clientSearchIndexes.hasOwnProperty(key)) {
+            callback(clientSearchIndexes[key]);
+            return;
+        }
+        $.ajax({
+            url: getBaseURL() + docet.urls.searchindex + '/' + pkgId + '/' + docet.localization.language + '.json',
+            data: mergeData({}),
+            cache: true,
+            success: function (data) {
+                var terms = [];
+                var previous = '';
+                for (var i = 0; i < data.terms.length; i++) {
+                    var term = previous.substring(0, data.terms[i][0]) + data.terms[i][1];
+                    terms.push(term);
+                    previous = term;
+                }
+                clientSearchIndexes[key] = {docs: data.docs, terms: terms, entries: data.terms};
+                callback(clientSearchIndexes[key]);
+            },
+            error: function () {
+                callback(null);
+            }
+        });
+    };
+
+    /*
+     * Scores pages much like the server does: tf-idf of each query term, normalized by page length, times the
+     * fraction of query terms found. Terms matching just as a prefix count half.
+     */
+    var searchClientIndex = function (index, tokens) {
+        var scores = {};
+        var matched = {};
+        for (var t = 0; t < tokens.length; t++) {
+            var low = 0;
+            var high = index.terms.length;
+            while (low < high) {
+                var mid = (low + high) >>> 1;
+                if (index.terms[mid] < tokens[t]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (var i = low; i < index.terms.length && index.terms[i].indexOf(tokens[t]) === 0; i++) {
+                var postings = index.entries[i][2];
+                var weight = index.terms[i] === tokens[t] ? 1 : 0.5;
+                var idf = 1 + Math.log(index.docs.length / (postings.length / 2 + 1));
+                var doc = 0;
+                for (var p = 0; p < postings.length; p += 2) {
+                    doc += postings[p];
+                    var score = weight * Math.sqrt(postings[p + 1]) * idf * idf / Math.sqrt(index.docs[doc].length || 1);
+                    scores[doc] = (scores[doc] || 0) + score;
+                    matched[doc] = matched[doc] || {};
+                    matched[doc][t] = true;
+                }
+            }
+        }
+        var res = [];
+        for (var d in scores) {
+            if (scores.hasOwnProperty(d)) {
+                res.push({doc: index.docs[d], score: scores[d] * Object.keys(matched[d]).length / tokens.length});
+            }
+        }
+        res.sort(function (a, b) {
+            return b.score - a.score;
+        });
+        return res.slice(0, docet.search.client.maxResults);
+    };
+
+    var toClientPackageResults = function (pkgId, hits) {
+        var pkgDesc = docet.packages[pkgId] || {};
+        var items = [];
+        var maxScore = hits.length > 0 ? hits[0].score : 1;
+        for (var i = 0; i < hits.length; i++) {
+            var doc = hits[i].doc;
+            var requestType = doc.type === 2 ? docet.urls.faq : docet.urls.pages;
+            items.push({
+                packageId: pkgId,
+                pageId: doc.id,
+                title: doc.title,
+                pageAbstract: doc.summary,
+                pageLink: getBaseURL() + requestType + '/' + pkgId + '/' + doc.id + '_' + docet.localization.language + '.mndoc',
+                breadCrumbs: [],
+                relevance: Math.round(hits[i].score / maxScore * 100)
+            });
+        }
+        return {
+            ok: true,
+            packageid: pkgId,
+            packagename: pkgDesc.label || pkgId,
+            packagelink: pkgDesc.link,
+            items: items
+        };
+    };
+
+    var searchPagesOnClient = function (queryTerm) {
+        var packages = searchablePackages();
+        var tokens = tokenizeForClientSearch(queryTerm);
+        var indexes = {};
+        var pending = packages.length;
+        var missing = false;
+        if (pending === 0 || tokens.length === 0) {
+            searchPagesOnServer(queryTerm);
+            return;
+        }
+        $.each(packages, function (index, pkgId) {
+            loadClientSearchIndex(pkgId, function (clientIndex) {
+                indexes[pkgId] = clientIndex;
+                missing = missing || !clientIndex;
+                pending--;
+                if (pending > 0) {
+                    return;
+                }
+                if (missing) {
+                    searchPagesOnServer(queryTerm);
+                    return;
+                }
+                var data = {results: [], totalCount: 0, totalPackageErrors: 0};
+                for (var i = 0; i < packages.length; i++) {
+                    var packageRes = toClientPackageResults(packages[i], searchClientIndex(indexes[packages[i]], tokens));
+                    data.totalCount += packageRes.items.length;
+                    if (packages[i] === docet.packages.current) {
+                        data.currentPackageResults = packageRes;
+                    } else {
+                        data.results.push(packageRes);
+                    }
+                }
+                renderSearchResults(data, queryTerm);
+            });
+        });
+    };
+
+    var suggestTimer = null;
+    var lastSuggestedTerm = '';
+
+    var suggestTerms = function () {
+        var $field = $(docet.elements.search + ' #docet-search-field');
+        var prefix = $field.val().trim();
+        if (prefix.length < docet.search.suggest.minChars || prefix === lastSuggestedTerm) {
+            return;
+        }
+        lastSuggestedTerm = prefix;
+        $.ajax({
+            url: getBaseURL() + docet.urls.suggest,
+            data: mergeData({
+                q: prefix,
+                sourcePkg: $.inArray(docet.packages.current, docet.packages.excludeFromSearch) < 0 ? docet.packages.current : '',
+                enablePkg: searchablePackages(),
+                lang: docet.localization.language
+            }),
+            success: function (data) {
+                if ($field.val().trim() === prefix) {
+                    renderSuggestions(data.items);
+                }
+            },
+            error: function (response) {
+                docet.callbacks.response_error(response);
+            }
+        });
+    };
+
+    var renderSuggestions = function (items) {
+        var $list = $('#docet-search-suggestions');
+        $list.empty();
+        var seen = {};
+        for (var i = 0; i < items.length; i++) {
+            if (!seen[items[i].text]) {
+                seen[items[i].text] = true;
+                $list.append($('<option />').attr('value', items[i].text));
+            }
+        }
+    };
+
+    var scheduleSuggestions = function () {
+        if (suggestTimer) {
+            window.clearTimeout(suggestTimer);
+        }
+        suggestTimer = window.setTimeout(suggestTerms, docet.search.suggest.delay);
+    };
+
+    var searchCursors = {};
+    var lastSearchTerm = '';
+
     var renderSearchResults = function (data, term) {
+        searchCursors = {};
+        lastSearchTerm = term;
         hideToc();
         $(docet.elements.content).empty();
         var items = data.results;
@@ -705,6 +1004,7 @@ var Docet = (function ($, document) {
         var pkgId = packageRes.packageid;
         var pkgLink = packageRes.packagelink;
         var items = packageRes.items;
+        searchCursors[pkgId] = packageRes.nextCursor || null;
         updatePackageDescription(pkgId, {link: pkgLink, label: name});
         var $pageres = $('<div />');
         $pageres.attr('id', "page-res-" + pkgId);
@@ -720,13 +1020,17 @@ var Docet = (function ($, document) {
     };
 
     var renderResultsCountMessage = function (numFound, numPkg, term) {
+        $(docet.elements.content).append('<span>' + resultsCountMessage(numFound, numPkg, term) + '</span>');
+    };
+
+    var resultsCountMessage = function (numFound, numPkg, term) {
         var message;
         if (numFound > 0) {
             message = docet.localization.someResultsFound.replace('${num}', numFound).replace('${term}', jsHtmlEditFormat(term)).replace('${numPkg}', numPkg);
         } else {
             message = docet.localization.noResultsFound.replace('${term}', jsHtmlEditFormat(term));
         }
-        $(docet.elements.content).append('<span>' + message + '</span>');
+        return message;
     };
 
     var templateResultItemsForPackage = function (data, pkgId, pkgName) {
@@ -736,7 +1040,7 @@ var Docet = (function ($, document) {
             countVisibleItems++;
             html += templateSearchResultItem(countVisibleItems, item, pkgName);
         });
-        if (countVisibleItems <= docet.pagination.size) {
+        if (countVisibleItems <= docet.pagination.size && !searchCursors[pkgId]) {
             renderShowMoreLessLinks(pkgId, pkgName, false);
         } else {
             renderShowMoreLessLinks(pkgId, pkgName, true);
@@ -775,10 +1079,51 @@ var Docet = (function ($, document) {
         });
         $('#showLessAnchor-' + pkgId).removeClass('docet-link-hidden').addClass('docet-link-visible');
         if (!maxReached) {
-            $('#showMoreAnchor-' + pkgId).removeClass('docet-link-visible').addClass('docet-link-hidden');
+            if (!searchCursors[pkgId]) {
+                $('#showMoreAnchor-' + pkgId).removeClass('docet-link-visible').addClass('docet-link-hidden');
+            } else if (countItems === 0) {
+                loadMoreResults(pkgId);
+            }
         }
     };
 
+    var loadMoreResults = function (pkgId) {
+        var cursor = searchCursors[pkgId];
+        searchCursors[pkgId] = null;
+        $.ajax({
+            url: getBaseURL() + docet.urls.search,
+            data: mergeData({
+                q: lastSearchTerm,
+                cursor: cursor,
+                lang: docet.localization.language
+            }),
+            success: function (data) {
+                var packageRes = data.currentPackageResults;
+                for (var i = 0; i < data.results.length; i++) {
+                    if (data.results[i].packageid === pkgId) {
+                        packageRes = data.results[i];
+                    }
+                }
+                if (!packageRes || !packageRes.ok) {
+                    docet.callbacks.search_error(packageRes || data);
+                    return;
+                }
+                var html = '';
+                $.each(packageRes.items, function (index, item) {
+                    html += templateSearchResultItem(index + 1, item, packageRes.packagename);
+                });
+                $('#page-res-' + pkgId).append(html);
+                searchCursors[pkgId] = packageRes.nextCursor || null;
+                if (packageRes.items.length <= docet.pagination.size && !searchCursors[pkgId]) {
+                    $('#showMoreAnchor-' + pkgId).removeClass('docet-link-visible').addClass('docet-link-hidden');
+                }
+            },
+            error: function (response) {
+                docet.callbacks.response_error(response);
+            }
+        });
+    };
+
     var templateSearchResultItem = function (count, res, pkgName) {
 
         var additionalClass = '';
@@ -899,8 +1244,14 @@ var Docet = (function ($, document) {
             if (e.keyCode === 13)
             {
                 $(this).trigger("enterPressed");
+            } else if (docet.search.suggest.enabled) {
+                scheduleSuggestions();
             }
         });
+        if (docet.search.suggest.enabled) {
+            $(docet.elements.search + ' .docet-search').append('<datalist id="docet-search-suggestions"></datalist>');
+            $(docet.elements.search + ' #docet-search-field').attr('list', 'docet-search-suggestions').attr('autocomplete', 'off');
+        }
         $(docet.elements.menu).toggleClass('docet-menu-container-visible');
 
 
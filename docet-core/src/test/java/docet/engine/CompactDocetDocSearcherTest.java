@@ -0,0 +1,137 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPage;
+
+/**
+ * The compact index must return the very same results as the Lucene searcher it replaces.
+ */
+public class CompactDocetDocSearcherTest {
+
+    private static final String[] WORDS = {
+        "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "theta", "iota", "lambda", "sigma", "omega", "alphabet",
+        "install", "installation", "installing", "configure", "configuration", "server", "servers", "client"
+    };
+
+    private static final String[] QUERIES = {
+        // single terms, also matching their fuzzy variants
+        "alpha", "server", "installation",
+        // several terms, matched both as a sloppy phrase and as single terms
+        "alpha beta", "gamma delta epsilon", "configure the server", "omega alpha sigma",
+        // misspelled terms, found by the fuzzy expansion only
+        "alpah", "confgure servre",
+        // no match at all
+        "kappa", "xyz"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameResultsAsLuceneSearcher() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        final Random random = new Random(7);
+        final List<String[]> pages = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = 5 + random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                text.append(WORDS[(int) Math.floor(Math.pow(random.nextDouble(), 2) * WORDS.length)]).append(' ');
+            }
+            pages.add(SearchIndexFixture.page("p" + i, "Page " + i, text.toString()));
+        }
+        SearchIndexFixture.writeIndex(index.resolve("en"), "en", pages.toArray(new String[0][]));
+        SearchIndexFixture.writeCompactIndex(index, "en");
+        assertTrue(CompactDocetDocSearcher.isApplicable(index, 40));
+
+        for (final DocetSearchFuzzyStrategy strategy : DocetSearchFuzzyStrategy.values()) {
+            final SimpleDocetDocSearcher lucene = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+                strategy, 3);
+            final CompactDocetDocSearcher compact = new CompactDocetDocSearcher(index, new DocetPackageDescriptor(),
+                strategy, 3, DocetSearchLimits.unlimited());
+            try {
+                final Map<String, Integer> totalHits = new HashMap<>();
+                for (final String query : QUERIES) {
+                    totalHits.put(query, assertSameResults(strategy + " " + query, lucene, compact, query));
+                }
+                // make sure that the fixture actually covers paging, fuzzy only matches and missing matches
+                assertTrue(totalHits.get("alpha") > 7);
+                assertTrue(totalHits.get("alpah") > 0);
+                assertTrue(totalHits.get("confgure servre") > 0);
+                assertEquals(0, (int) totalHits.get("kappa"));
+            } finally {
+                lucene.close();
+                compact.close();
+            }
+        }
+    }
+
+    private static int assertSameResults(final String message, final SimpleDocetDocSearcher lucene,
+        final CompactDocetDocSearcher compact, final String query) throws Exception {
+        DocetSearchCursor luceneCursor = null;
+        DocetSearchCursor compactCursor = null;
+        int totalHits = 0;
+        do {
+            final DocetSearchStatistics luceneStatistics = new DocetSearchStatistics();
+            final DocetSearchStatistics compactStatistics = new DocetSearchStatistics();
+            try (DocetSearchHits expected = lucene.searchForMatchingHits(query, "en", 7, luceneCursor, luceneStatistics);
+                DocetSearchHits actual = compact.searchForMatchingHits(query, "en", 7, compactCursor, compactStatistics)) {
+                assertEquals(message, expected.getTotalHits(), actual.getTotalHits());
+                totalHits = expected.getTotalHits();
+                assertEquals(message, expected.size(), actual.size());
+                assertEquals(message, expected.getMaxScore(), actual.getMaxScore(), 1e-5f * expected.getMaxScore());
+                assertEquals(message, luceneStatistics.getExactPasses(), compactStatistics.getExactPasses());
+                assertEquals(message, luceneStatistics.getFuzzyPasses(), compactStatistics.getFuzzyPasses());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(message + " #" + i, expected.doc(expected.scoreDocs[i].doc).get("id"),
+                        actual.doc(actual.scoreDocs[i].doc).get("id"));
+                    assertEquals(message + " #" + i, expected.getScore(i), actual.getScore(i),
+                        1e-5f * expected.getScore(i));
+                }
+                assertEquals(message, describe(lucene.loadMatchingDocuments(expected, expected.size(),
+                    expected.getMaxScore())), describe(compact.loadMatchingDocuments(actual, actual.size(),
+                    actual.getMaxScore())));
+                luceneCursor = expected.getNextCursor();
+                compactCursor = actual.getNextCursor();
+                assertEquals(message, luceneCursor == null, compactCursor == null);
+            }
+        } while (luceneCursor != null);
+        return totalHits;
+    }
+
+    private static Map<String, String> describe(final List<DocetPage> pages) {
+        final Map<String, String> res = new HashMap<>();
+        pages.forEach(page -> res.put(page.getId(), page.getTitle() + "|" + page.getRelevance() + "|"
+            + page.getMatchExplanation()));
+        return res;
+    }
+}
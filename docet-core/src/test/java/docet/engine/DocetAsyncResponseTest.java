@@ -0,0 +1,138 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import docet.engine.ServletFixture.RecordingResponse;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class DocetAsyncResponseTest {
+
+    @Test
+    public void testWorkerCannotTouchResponseOnceTimedOut() throws Exception {
+        final RecordingResponse recording = new RecordingResponse();
+        final DocetAsyncResponse response = new DocetAsyncResponse(recording.response);
+        final OutputStream out = response.getOutputStream();
+        response.setHeader("X-Before", "1");
+        out.write('a');
+
+        assertTrue(response.expire());
+        assertFalse(response.finish());
+
+        try {
+            out.write('b');
+            fail();
+        } catch (IOException ex) {
+        }
+        try {
+            response.getOutputStream();
+            fail();
+        } catch (IOException ex) {
+        }
+        try {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            fail();
+        } catch (IOException ex) {
+        }
+        response.setHeader("X-After", "1");
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        out.close();
+
+        assertArrayEquals(new byte[]{'a'}, recording.getBody());
+        assertEquals("1", recording.headers.get("X-Before"));
+        assertNull(recording.headers.get("X-After"));
+        assertEquals(HttpServletResponse.SC_OK, recording.status);
+    }
+
+    @Test
+    public void testWriterIsGuardedToo() throws Exception {
+        final RecordingResponse recording = new RecordingResponse();
+        final DocetAsyncResponse response = new DocetAsyncResponse(recording.response);
+        final PrintWriter writer = response.getWriter();
+        writer.write("before");
+        writer.flush();
+        assertTrue(response.expire());
+        writer.write("after");
+        writer.flush();
+        assertTrue(writer.checkError());
+        assertEquals("before", new String(recording.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTimeoutLosesToFinishedWorker() throws Exception {
+        final RecordingResponse recording = new RecordingResponse();
+        final DocetAsyncResponse response = new DocetAsyncResponse(recording.response);
+        response.getOutputStream().write('a');
+        assertTrue(response.finish());
+        assertFalse(response.expire());
+        assertFalse(response.finish());
+    }
+
+    @Test
+    public void testTimeoutWaitsForWriteInProgress() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingResponse recording = new RecordingResponse() {
+            @Override
+            void beforeWrite() throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        };
+        final DocetAsyncResponse response = new DocetAsyncResponse(recording.response);
+        final CompletableFuture<Void> worker = CompletableFuture.runAsync(() -> {
+            try {
+                response.getOutputStream().write(new byte[]{'a', 'b'}, 0, 2);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        final CompletableFuture<Boolean> timeout = CompletableFuture.supplyAsync(response::expire);
+        try {
+            timeout.get(200, TimeUnit.MILLISECONDS);
+            fail("timeout answered while a write was in progress");
+        } catch (TimeoutException ex) {
+        }
+
+        release.countDown();
+        worker.get(10, TimeUnit.SECONDS);
+        assertTrue(timeout.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{'a', 'b'}, recording.getBody());
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.DocetExecutionContext;
+import docet.DocetPackageLocation;
+import docet.error.DocetException;
+import docet.error.DocetPackageException;
+import docet.error.DocetPackageNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class DocetManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPdfSentEvenIfDeletedMeanwhile() throws Exception {
+        final byte[] pdf = new byte[256 * 1024];
+        new Random(7).nextBytes(pdf);
+        final Path file = folder.newFile("cached.pdf").toPath();
+        Files.write(file, pdf);
+
+        // e.g. evicted from the pdf cache by another request: what is being sent must not be affected
+        final ServletFixture.RecordingResponse response = new ServletFixture.RecordingResponse() {
+            @Override
+            void beforeWrite() throws IOException {
+                Files.deleteIfExists(file);
+            }
+        };
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        assertTrue(DocetManager.sendPdfFile(file, "abc",
+            ServletFixture.request(Collections.emptyMap(), attributes), response.response));
+
+        assertFalse(Files.exists(file));
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        assertEquals("\"abc\"", response.headers.get("ETag"));
+        assertArrayEquals(pdf, response.getBody());
+        assertNull(attributes.get("org.apache.tomcat.sendfile.filename"));
+
+        // gone before being opened: nothing sent
+        final ServletFixture.RecordingResponse missing = new ServletFixture.RecordingResponse();
+        assertFalse(DocetManager.sendPdfFile(file, "abc",
+            ServletFixture.request(Collections.emptyMap(), attributes), missing.response));
+        assertEquals(0, missing.getBody().length);
+    }
+
+    @Test
+    public void testPdfNotModified() throws Exception {
+        final Path file = folder.newFile("cached.pdf").toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+        final ServletFixture.RecordingResponse response = new ServletFixture.RecordingResponse();
+        assertTrue(DocetManager.sendPdfFile(file, "abc",
+            ServletFixture.request(Collections.singletonMap("If-None-Match", "\"abc\""), new HashMap<>()),
+            response.response));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        assertEquals(0, response.getBody().length);
+    }
+
+    @Test
+    public void testPackageDescriptionsFollowPackageLifecycle() throws Exception {
+        final Path v1 = packageWithTitle("v1", "First title");
+        final Path v2 = packageWithTitle("v2", "Second title");
+        final Map<String, Path> locations = new ConcurrentHashMap<>();
+        locations.put("pkg", v1);
+        final DocetManager manager = new DocetManager(new DocetConfiguration(new Properties()), packageId -> {
+            final Path location = locations.get(packageId);
+            if (location == null) {
+                throw new DocetPackageNotFoundException("Package " + packageId + " not found");
+            }
+            return new DocetPackageLocation(packageId, location);
+        });
+        try {
+            final DocetExecutionContext ctx = new DocetExecutionContext(null);
+            final DocetManager.PackageDescription first = manager.getPackageDescription("pkg", "en", ctx);
+            assertEquals("First title", first.title);
+            assertSame(first, manager.getPackageDescription("pkg", "en", ctx));
+            assertTrue(manager.isPackageDescriptionCached("pkg", "en"));
+
+            // reloaded from another location
+            locations.put("pkg", v2);
+            final DocetManager.PackageDescription second = manager.getPackageDescription("pkg", "en", ctx);
+            assertNotSame(first, second);
+            assertEquals("Second title", second.title);
+
+            // no more available
+            locations.remove("pkg");
+            try {
+                manager.getPackageDescription("pkg", "en", ctx);
+                fail("Description of a discarded package served");
+            } catch (DocetPackageException ex) {
+                // expected
+            }
+            assertFalse(manager.isPackageDescriptionCached("pkg", "en"));
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testSearchStreamedAsNdjson() throws Exception {
+        final DocetManager manager = searchableManager();
+        try {
+            final Map<String, String[]> params = new HashMap<>();
+            params.put("q", new String[]{"alpha"});
+            params.put("lang", new String[]{"en"});
+            params.put("sourcePkg", new String[]{"pkg2"});
+            params.put("enablePkg[]", new String[]{"pkg1", "pkg2"});
+            params.put("stream", new String[]{"ndjson"});
+            final ServletFixture.RecordingResponse response = new ServletFixture.RecordingResponse();
+            manager.serveRequest(ServletFixture.request("/search", params, Collections.emptyMap(), new HashMap<>()),
+                response.response);
+
+            assertEquals("application/x-ndjson;charset=UTF-8", response.contentType);
+            final String body = new String(response.getBody(), StandardCharsets.UTF_8);
+            assertTrue(body.endsWith("\n"));
+            final String[] lines = body.split("\n");
+            assertEquals(3, lines.length);
+            final ObjectMapper mapper = new ObjectMapper();
+            final Map<String, Integer> countForPackage = new HashMap<>();
+            for (int i = 0; i < 2; i++) {
+                assertFalse(lines[i].isEmpty());
+                final JsonNode record = mapper.readTree(lines[i]);
+                assertEquals("package", record.get("type").getTextValue());
+                final JsonNode result = record.get("result");
+                assertTrue(result.get("ok").getBooleanValue());
+                final String packageId = result.get("packageid").getTextValue();
+                assertEquals("pkg2".equals(packageId), record.get("current").getBooleanValue());
+                countForPackage.put(packageId, result.get("totalCount").getIntValue());
+            }
+            // the source package comes first
+            assertTrue(mapper.readTree(lines[0]).get("current").getBooleanValue());
+            assertEquals(Integer.valueOf(2), countForPackage.get("pkg1"));
+            assertEquals(Integer.valueOf(1), countForPackage.get("pkg2"));
+
+            final JsonNode end = mapper.readTree(lines[2]);
+            assertEquals("end", end.get("type").getTextValue());
+            assertEquals("pkg2", end.get("currentpackage").getTextValue());
+            assertEquals(3, end.get("totalCount").getIntValue());
+            assertEquals(0, end.get("totalPackageErrors").getIntValue());
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testClientSearchIndexServedAsStaticResource() throws Exception {
+        final Path pkg = packageWithTitle("pkg", "Package");
+        final Path index = Files.createDirectories(pkg.resolve("index"));
+        final byte[] json = "{\"terms\":[]}".getBytes(StandardCharsets.UTF_8);
+        final byte[] gzipped = new byte[]{0x1f, (byte) 0x8b, 8, 0};
+        Files.write(index.resolve("client-en.json"), json);
+        Files.write(index.resolve("client-en.json.gz"), gzipped);
+        final Properties props = new Properties();
+        props.setProperty("docet.search.clientindex.maxage", "60");
+        final DocetManager manager = new DocetManager(new DocetConfiguration(props),
+            packageId -> new DocetPackageLocation(packageId, pkg));
+        try {
+            final ServletFixture.RecordingResponse plain = new ServletFixture.RecordingResponse();
+            manager.serveRequest(ServletFixture.request("/searchindex/pkg/en.json", Collections.emptyMap(),
+                Collections.emptyMap(), new HashMap<>()), plain.response);
+            assertEquals(HttpServletResponse.SC_OK, plain.status);
+            assertArrayEquals(json, plain.getBody());
+            assertEquals("public, max-age=60", plain.headers.get("Cache-Control"));
+            assertEquals("Accept-Encoding", plain.headers.get("Vary"));
+            assertNull(plain.headers.get("Content-Encoding"));
+            final String etag = plain.headers.get("ETag");
+            assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+            // precompressed by the plugin
+            final ServletFixture.RecordingResponse compressed = new ServletFixture.RecordingResponse();
+            manager.serveRequest(ServletFixture.request("/searchindex/pkg/en.json", Collections.emptyMap(),
+                Collections.singletonMap("Accept-Encoding", "gzip, deflate"), new HashMap<>()), compressed.response);
+            assertEquals(HttpServletResponse.SC_OK, compressed.status);
+            assertArrayEquals(gzipped, compressed.getBody());
+            assertEquals("gzip", compressed.headers.get("Content-Encoding"));
+            assertFalse(etag.equals(compressed.headers.get("ETag")));
+
+            // already cached by the browser
+            final ServletFixture.RecordingResponse notModified = new ServletFixture.RecordingResponse();
+            manager.serveRequest(ServletFixture.request("/searchindex/pkg/en.json", Collections.emptyMap(),
+                Collections.singletonMap("If-None-Match", etag), new HashMap<>()), notModified.response);
+            assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.status);
+            assertEquals(0, notModified.getBody().length);
+
+            // not exported for the language
+            try {
+                manager.serveRequest(ServletFixture.request("/searchindex/pkg/it.json", Collections.emptyMap(),
+                    Collections.emptyMap(), new HashMap<>()), new ServletFixture.RecordingResponse().response);
+                fail("Missing client search index served");
+            } catch (DocetException ex) {
+                assertEquals(DocetException.CODE_RESOURCE_NOTFOUND, ex.getCode());
+            }
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testJsonResponsesSerializedBySharedWriters() throws Exception {
+        final DocetManager manager = searchableManager();
+        try {
+            final Map<String, String[]> searchParams = new HashMap<>();
+            searchParams.put("q", new String[]{"alpha"});
+            searchParams.put("lang", new String[]{"en"});
+            searchParams.put("sourcePkg", new String[]{"pkg2"});
+            searchParams.put("enablePkg[]", new String[]{"pkg1", "pkg2"});
+            final Map<String, String[]> packageParams = new HashMap<>();
+            packageParams.put("id", new String[]{"pkg1", "pkg2"});
+            packageParams.put("lang", new String[]{"en"});
+
+            final ObjectMapper mapper = new ObjectMapper();
+            final byte[] search = serve(manager, "/search", searchParams);
+            final JsonNode searchResponse = mapper.readTree(new String(search, StandardCharsets.UTF_8));
+            assertEquals("pkg2", searchResponse.get("currentpackage").getTextValue());
+            assertEquals(3, searchResponse.get("totalCount").getIntValue());
+            assertEquals("pkg2", searchResponse.get("currentPackageResults").get("packageid").getTextValue());
+            assertEquals(1, searchResponse.get("results").size());
+            assertEquals("pkg1", searchResponse.get("results").get(0).get("packageid").getTextValue());
+            final byte[] packages = serve(manager, "/package", packageParams);
+            final JsonNode packageResponse = mapper.readTree(new String(packages, StandardCharsets.UTF_8));
+            assertEquals(2, packageResponse.get("totalCount").getIntValue());
+            assertEquals("First package", packageResponse.get("items").get(0).get("title").getTextValue());
+
+            // the writers are shared among concurrent requests
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<byte[]>> searches = new ArrayList<>();
+                final List<Future<byte[]>> packageLists = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    searches.add(executor.submit(() -> serve(manager, "/search", searchParams)));
+                    packageLists.add(executor.submit(() -> serve(manager, "/package", packageParams)));
+                }
+                for (int i = 0; i < 50; i++) {
+                    assertArrayEquals(search, searches.get(i).get());
+                    assertArrayEquals(packages, packageLists.get(i).get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testPdfPageHandedOverAsServed() throws Exception {
+        final Path pkg = packageWithTitle("pkg", "Package");
+        final Path pages = Files.createDirectories(pkg.resolve("docs").resolve("en").resolve("pages"));
+        Files.write(pages.resolve("page.html"), ("<div id=\"main\"><h1>Page</h1><p>Shown <span class=\"show-web\">"
+            + "web only</span></p><p class=\"hide-pdf\">Not printed</p><table><tr><td>cell</td></tr></table>"
+            + "<p>See <a href=\"other.html\">other</a><br/>done</p></div>").getBytes(StandardCharsets.UTF_8));
+        final DocetManager manager = new DocetManager(new DocetConfiguration(new Properties()),
+            packageId -> new DocetPackageLocation(packageId, pkg));
+        try {
+            final DocetExecutionContext ctx = new DocetExecutionContext(null);
+            final String served = manager.servePageIdForLanguageForPackage("pkg", "page", "en",
+                DocetDocFormat.TYPE_PDF, false, null, ctx);
+            final Document page = manager.servePdfPageIdForLanguageForPackage("pkg", "page", "en", false, null, ctx);
+            assertEquals(served, page.body().html());
+            assertTrue(page.select(".hide-pdf, .show-web").isEmpty());
+            assertEquals(1, page.select("table > tbody > tr > td").size());
+        } finally {
+            manager.stop();
+        }
+    }
+
+    private static byte[] serve(final DocetManager manager, final String uri, final Map<String, String[]> params)
+        throws DocetException {
+        final ServletFixture.RecordingResponse response = new ServletFixture.RecordingResponse();
+        manager.serveRequest(ServletFixture.request(uri, params, Collections.emptyMap(), new HashMap<>()),
+            response.response);
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        assertEquals("application/json;charset=UTF-8", response.contentType);
+        return response.getBody();
+    }
+
+    /**
+     * @return a manager serving two searchable packages, pkg1 and pkg2, with respectively two and one pages matching
+     * "alpha", ranked differently
+     */
+    private DocetManager searchableManager() throws Exception {
+        final Path pkg1 = packageWithTitle("pkg1", "First package");
+        SearchIndexFixture.writeIndex(pkg1.resolve("index"), "en",
+            SearchIndexFixture.page("one", "One", "alpha alpha beta"),
+            SearchIndexFixture.page("two", "Two", "alpha gamma delta epsilon"));
+        final Path pkg2 = packageWithTitle("pkg2", "Second package");
+        SearchIndexFixture.writeIndex(pkg2.resolve("index"), "en",
+            SearchIndexFixture.page("three", "Three", "alpha delta"));
+        for (final Path pkg : new Path[]{pkg1, pkg2}) {
+            Files.write(Files.createDirectories(pkg.resolve("docs").resolve("en")).resolve("toc.html"),
+                "<div></div>".getBytes(StandardCharsets.UTF_8));
+        }
+        final Map<String, Path> locations = new HashMap<>();
+        locations.put("pkg1", pkg1);
+        locations.put("pkg2", pkg2);
+        return new DocetManager(new DocetConfiguration(new Properties()),
+            packageId -> new DocetPackageLocation(packageId, locations.get(packageId)));
+    }
+
+    private Path packageWithTitle(final String name, final String title) throws IOException {
+        final Path packagePath = folder.newFolder(name).toPath();
+        final Path docs = Files.createDirectories(packagePath.resolve("docs"));
+        Files.write(docs.resolve("descriptor.html"), ("<div lang=\"en\"><h1>" + title + "</h1><p>About " + title
+            + "</p></div>").getBytes(StandardCharsets.UTF_8));
+        return packagePath;
+    }
+
+    @Test
+    public void testMatchesEtag() {
+        assertFalse(DocetManager.matchesEtag(null, "\"abc\""));
+        assertTrue(DocetManager.matchesEtag("\"abc\"", "\"abc\""));
+        assertTrue(DocetManager.matchesEtag("W/\"abc\"", "\"abc\""));
+        assertTrue(DocetManager.matchesEtag("\"xyz\", \"abc\"", "\"abc\""));
+        assertTrue(DocetManager.matchesEtag("*", "\"abc\""));
+        assertFalse(DocetManager.matchesEtag("\"xyz\"", "\"abc\""));
+        assertFalse(DocetManager.matchesEtag("abc", "\"abc\""));
+    }
+
+    @Test
+    public void testParseByteRange() {
+        assertArrayEquals(new long[]{0, 99}, DocetManager.parseByteRange("bytes=0-", 100));
+        assertArrayEquals(new long[]{10, 19}, DocetManager.parseByteRange("bytes=10-19", 100));
+        assertArrayEquals(new long[]{10, 99}, DocetManager.parseByteRange("bytes=10-500", 100));
+        assertArrayEquals(new long[]{90, 99}, DocetManager.parseByteRange("bytes=-10", 100));
+        assertArrayEquals(new long[]{0, 99}, DocetManager.parseByteRange("bytes=-500", 100));
+        // malformed or multiple ranges: the whole content
+        assertArrayEquals(new long[]{0, 99}, DocetManager.parseByteRange("items=0-10", 100));
+        assertArrayEquals(new long[]{0, 99}, DocetManager.parseByteRange("bytes=0-1,5-6", 100));
+        assertArrayEquals(new long[]{0, 99}, DocetManager.parseByteRange("bytes=a-b", 100));
+        // not satisfiable
+        assertNull(DocetManager.parseByteRange("bytes=100-", 100));
+        assertNull(DocetManager.parseByteRange("bytes=20-10", 100));
+        assertNull(DocetManager.parseByteRange("bytes=-0", 100));
+    }
+}
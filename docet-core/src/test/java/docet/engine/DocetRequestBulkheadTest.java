@@ -0,0 +1,121 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class DocetRequestBulkheadTest {
+
+    @Test
+    public void testAdmitsUpToTheLimit() throws Exception {
+        final DocetRequestBulkhead bulkhead = new DocetRequestBulkhead(DocetRequestType.TYPE_SEARCH, 2, 0, 0);
+        assertTrue(bulkhead.enter());
+        assertTrue(bulkhead.enter());
+        assertFalse(bulkhead.enter());
+        assertEquals(2, bulkhead.getActiveCount());
+
+        bulkhead.exit();
+        assertTrue(bulkhead.enter());
+        bulkhead.exit();
+        bulkhead.exit();
+
+        assertEquals(0, bulkhead.getActiveCount());
+        assertEquals(3, bulkhead.getAcceptedCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        final DocetRequestBulkhead bulkhead = new DocetRequestBulkhead(DocetRequestType.TYPE_PAGES, 0, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(bulkhead.enter());
+        }
+        assertEquals(100, bulkhead.getActiveCount());
+        assertEquals(0, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testQueuedRequestIsServedOnceAPermitIsFree() throws Exception {
+        final DocetRequestBulkhead bulkhead = new DocetRequestBulkhead(DocetRequestType.TYPE_PDFS, 1, 1, 10_000);
+        assertTrue(bulkhead.enter());
+        final CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(bulkhead::enter);
+        waitForQueueDepth(bulkhead, 1);
+
+        // the queue is full: refused right away rather than after the max wait
+        final long start = System.nanoTime();
+        assertFalse(bulkhead.enter());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+
+        bulkhead.exit();
+        assertTrue(queued.get(10, TimeUnit.SECONDS));
+        assertEquals(0, bulkhead.getQueueDepth());
+        assertEquals(1, bulkhead.getActiveCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testQueuedRequestIsRefusedAfterMaxWait() throws Exception {
+        final DocetRequestBulkhead bulkhead = new DocetRequestBulkhead(DocetRequestType.TYPE_PDFS, 1, 1, 100);
+        assertTrue(bulkhead.enter());
+        assertFalse(bulkhead.enter());
+        assertEquals(0, bulkhead.getQueueDepth());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testNewcomersDoNotOvertakeQueuedRequests() throws Exception {
+        final DocetRequestBulkhead bulkhead = new DocetRequestBulkhead(DocetRequestType.TYPE_PDFS, 1, 2, 10_000);
+        assertTrue(bulkhead.enter());
+        final CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(bulkhead::enter);
+        waitForQueueDepth(bulkhead, 1);
+        // let the queued request park on the semaphore
+        Thread.sleep(200);
+
+        // the newcomer spins so that it asks for a permit right as it is released, way before the queued one wakes up
+        final AtomicBoolean go = new AtomicBoolean();
+        final CompletableFuture<Boolean> newcomer = CompletableFuture.supplyAsync(() -> {
+            while (!go.get()) {
+                // spin
+            }
+            return bulkhead.enter();
+        });
+        Thread.sleep(100);
+        bulkhead.exit();
+        go.set(true);
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertFalse(newcomer.isDone());
+
+        bulkhead.exit();
+        assertTrue(newcomer.get(10, TimeUnit.SECONDS));
+        assertEquals(0, bulkhead.getRejectedCount());
+    }
+
+    private static void waitForQueueDepth(final DocetRequestBulkhead bulkhead, final int depth) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (bulkhead.getQueueDepth() != depth) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
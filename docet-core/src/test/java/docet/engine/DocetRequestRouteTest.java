@@ -0,0 +1,158 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.Random;
+import org.junit.Test;
+
+public class DocetRequestRouteTest {
+
+    /**
+     * The regular expression request paths used to be matched against.
+     */
+    private static final String LEGACY_URL_PATTERN = "^(/package)|(/search)|(/suggest)|(/toc)|"
+        + "(/main/[a-zA-Z_0-9\\-]+/index.mndoc)|"
+        + "(/faq/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.mndoc)|"
+        + "(/pages/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.mndoc)|"
+        + "(/pdfs/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.pdf)|"
+        + "(/icons/[a-zA-Z_0-9\\-]+)|"
+        + "(/searchindex/[a-zA-Z_0-9\\-]+/[a-z]{2}\\.json)|"
+        + "(/images/[a-zA-Z_0-9\\-]+/[a-zA-Z_0-9\\-]+\\.\\w{3,}\\.mnimg)";
+
+    private static final String[] FRAGMENTS = {
+        "/", "_", ".", "-", "a", "en", "it", "Z9", "mndoc", "pdf", "mnimg", "json", "index", "png", "%",
+        "_en", "_it", ".mndoc", ".pdf", ".json", ".png", ".mnimg", "index_mndoc", "index.mndoc"
+    };
+
+    @Test
+    public void testRoutes() {
+        assertEquals("TYPE_PACKAGE|null|null|null|html|null", describe(DocetRequestRoute.parseRequestRoute("/package")));
+        assertEquals("TYPE_PAGES|pkg|page1|it|html|null",
+            describe(DocetRequestRoute.parseRequestRoute("/pages/pkg/page1_it.mndoc")));
+        assertEquals("TYPE_FAQ|pkg|faq1|null|html|null",
+            describe(DocetRequestRoute.parseRequestRoute("/faq/pkg/faq1_a_en.mndoc")));
+        assertEquals("TYPE_MAIN|pkg|index|null|html|null",
+            describe(DocetRequestRoute.parseRequestRoute("/main/pkg/index_mndoc")));
+        assertEquals("TYPE_PDFS|pkg|doc1|en|pdf|en.pdf",
+            describe(DocetRequestRoute.parseRequestRoute("/pdfs/pkg/doc1_en.pdf")));
+        assertEquals("TYPE_IMAGES|pkg|null|en|html|img.png",
+            describe(DocetRequestRoute.parseRequestRoute("/images/pkg/en_img.png.mnimg")));
+        assertEquals("TYPE_SEARCH_INDEX|pkg|null|en|html|null",
+            describe(DocetRequestRoute.parseRequestRoute("/searchindex/pkg/en.json")));
+        assertEquals("TYPE_ICONS|pkg|null|null|html|null", describe(DocetRequestRoute.parseRequestRoute("/icons/pkg")));
+        assertEquals("TYPE_PDFJOBS|pkg|doc1|en|pdf|en.pdf",
+            describe(DocetRequestRoute.parseRequestRoute("/pdfjobs/pkg/doc1_en.pdf")));
+        assertEquals("TYPE_PDFJOBS|null|null|null|html|4f0c-9a1e",
+            describe(DocetRequestRoute.parseRequestRoute("/pdfjobs/4f0c-9a1e")));
+        assertEquals("TYPE_PDFJOBS|null|null|null|pdf|4f0c-9a1e",
+            describe(DocetRequestRoute.parseRequestRoute("/pdfjobs/4f0c-9a1e.pdf")));
+        assertNull(DocetRequestRoute.parseRequestRoute("/package/"));
+        assertNull(DocetRequestRoute.parseRequestRoute("/pages/pkg/page1.mndoc"));
+        assertNull(DocetRequestRoute.parseRequestRoute("/pages/pkg/page1_it.pdf"));
+        assertNull(DocetRequestRoute.parseRequestRoute("/searchindex/pkg/EN.json"));
+        assertNull(DocetRequestRoute.parseRequestRoute("/pdfjobs/4f0c-9a1e.mndoc"));
+        assertNull(DocetRequestRoute.parseRequestRoute(""));
+    }
+
+    @Test
+    public void testSameBehaviourAsLegacyParsing() {
+        final Random random = new Random(42);
+        final String[] prefixes = {
+            "/package", "/search", "/toc", "/main/", "/faq/", "/pages/", "/pdfs/", "/icons/", "/searchindex/", "/images/"
+        };
+        for (int i = 0; i < 200_000; i++) {
+            final StringBuilder path = new StringBuilder(prefixes[random.nextInt(prefixes.length)]);
+            appendFragments(path, random, random.nextInt(3));
+            if (random.nextInt(10) > 0) {
+                path.append("pkg/");
+            }
+            appendFragments(path, random, random.nextInt(7));
+            final String reqPath = path.toString();
+            assertEquals(reqPath, parseLegacy(reqPath), describe(DocetRequestRoute.parseRequestRoute(reqPath)));
+        }
+    }
+
+    private static void appendFragments(final StringBuilder path, final Random random, final int fragments) {
+        for (int i = 0; i < fragments; i++) {
+            path.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+    }
+
+    private static String describe(final DocetRequestRoute route) {
+        if (route == null) {
+            return null;
+        }
+        return route.getType().name() + "|" + route.getPackageId() + "|" + route.getPageId() + "|"
+            + route.getLanguage() + "|" + route.getFormat() + "|" + route.getResourceName();
+    }
+
+    /**
+     * The parsing formerly performed by {@link DocetManager#serveRequest}, returning null where the path was rejected
+     * or the parsing failed.
+     */
+    private static String parseLegacy(final String reqPath) {
+        if (!reqPath.matches(LEGACY_URL_PATTERN)) {
+            return null;
+        }
+        try {
+            final String[] tokens = reqPath.substring(1).split("/");
+            final String packageId = tokens.length > 1 ? tokens[1] : null;
+            final DocetRequestType req = DocetRequestType.parseDocetRequestByName(tokens[0]);
+            String lang = null;
+            String pageId = null;
+            String resourceName = null;
+            DocetDocFormat format = DocetDocFormat.TYPE_HTML;
+            switch (req) {
+                case TYPE_FAQ:
+                case TYPE_MAIN:
+                case TYPE_PAGES:
+                    final String[] pageFields = tokens[2].split("_");
+                    final String pageName = pageFields[1];
+                    if (pageName.endsWith(".mndoc")) {
+                        lang = pageName.split(".mndoc")[0];
+                    } else if (pageName.endsWith(".pdf")) {
+                        lang = pageName.split(".pdf")[0];
+                        format = DocetDocFormat.TYPE_PDF;
+                    }
+                    pageId = pageFields[0];
+                    break;
+                case TYPE_PDFS:
+                    final String[] reqFields = tokens[2].split("_");
+                    resourceName = reqFields[1];
+                    lang = resourceName.split(".pdf")[0];
+                    pageId = reqFields[0];
+                    format = DocetDocFormat.TYPE_PDF;
+                    break;
+                case TYPE_IMAGES:
+                    final String[] imgFields = tokens[2].split("_");
+                    lang = imgFields[0];
+                    resourceName = imgFields[1].split(".mnimg")[0];
+                    break;
+                case TYPE_SEARCH_INDEX:
+                    lang = tokens[2].split(".json")[0];
+                    break;
+                default:
+                    break;
+            }
+            return req.name() + "|" + packageId + "|" + pageId + "|" + lang + "|" + format + "|" + resourceName;
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static docet.engine.SearchIndexFixture.page;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.error.DocetDocumentSearchException;
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPage;
+
+public class DocetSearchCursorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTokenRoundTrip() throws Exception {
+        final DocetSearchCursor cursor = new DocetSearchCursor(null, 42, 0.375f, 20, 1.5f, true, "1a2b");
+        final DocetSearchCursor parsed = DocetSearchCursor.parseToken(cursor.toToken("pkg:with:separators"));
+        assertEquals("pkg:with:separators", parsed.getPackageId());
+        assertEquals(42, parsed.doc);
+        assertEquals(0.375f, parsed.score, 0f);
+        assertEquals(20, parsed.getPosition());
+        assertEquals(1.5f, parsed.maxScore, 0f);
+        assertTrue(parsed.fuzzy);
+        assertEquals("1a2b", parsed.indexVersion);
+    }
+
+    @Test
+    public void testInvalidTokens() {
+        for (final String token : new String[]{"", "!!", "MTox", new DocetSearchCursor(null, 1, 1f, 1, 1f, false, "1a2b")
+            .toToken("").replace('A', '*')}) {
+            try {
+                DocetSearchCursor.parseToken(token);
+                fail("Token " + token + " accepted");
+            } catch (DocetDocumentSearchException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCursorOfRebuiltIndexIsRejected() throws Exception {
+        final Path index = folder.newFolder().toPath();
+        final String[][] pages = {page("p1", "P1", "alpha"), page("p2", "P2", "alpha alpha"),
+            page("p3", "P3", "alpha alpha alpha")};
+        SearchIndexFixture.writeIndex(index, "en", pages);
+        SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            DocetSearchFuzzyStrategy.FALLBACK, 1);
+        final DocetSearchCursor cursor;
+        try (DocetSearchHits hits = searcher.searchForMatchingHits("alpha", "en", 1, new DocetSearchStatistics())) {
+            cursor = DocetSearchCursor.parseToken(hits.getNextCursor().toToken("pkg"));
+        }
+        try (DocetSearchHits hits = searcher.searchForMatchingHits("alpha", "en", 1, cursor,
+            new DocetSearchStatistics())) {
+            assertEquals(1, hits.getPosition());
+        }
+        searcher.close();
+
+        // same documents, hence the same doc ids, but a different index: the cursor cannot be trusted anymore
+        SearchIndexFixture.writeIndex(index, "en", pages);
+        searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(), DocetSearchFuzzyStrategy.FALLBACK, 1);
+        try {
+            searcher.searchForMatchingHits("alpha", "en", 1, cursor, new DocetSearchStatistics()).close();
+            fail("Cursor of a rebuilt index accepted");
+        } catch (DocetDocumentSearchException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("no more available"));
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testPagingMatchesSingleSearch() throws Exception {
+        assertPagingMatchesSingleSearch(DocetSearchFuzzyStrategy.FALLBACK, 1, "alpha");
+        // too few exact hits: the fuzzy pass of the first page must be kept by the following ones
+        assertPagingMatchesSingleSearch(DocetSearchFuzzyStrategy.FALLBACK, 100, "alpha");
+        assertPagingMatchesSingleSearch(DocetSearchFuzzyStrategy.ALWAYS, 0, "alpha beta");
+    }
+
+    private void assertPagingMatchesSingleSearch(final DocetSearchFuzzyStrategy strategy, final int minHits,
+        final String searchText) throws Exception {
+        final Path index = folder.newFolder().toPath();
+        final List<String[]> pages = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int j = 0; j <= i % 5; j++) {
+                text.append(i % 2 == 0 ? "alpha " : "alphas beta ");
+            }
+            text.append("filler").append(i);
+            pages.add(page("p" + i, "P" + i, text.toString()));
+        }
+        SearchIndexFixture.writeIndex(index, "en", pages.toArray(new String[0][]));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            strategy, minHits);
+
+        final List<String> expected;
+        try (DocetSearchHits hits = searcher.searchForMatchingHits(searchText, "en", 100, new DocetSearchStatistics())) {
+            expected = ids(hits);
+        }
+        assertTrue(expected.size() > 10);
+        final List<String> paged = new ArrayList<>();
+        DocetSearchCursor cursor = null;
+        int pageNo = 0;
+        do {
+            try (DocetSearchHits hits = searcher.searchForMatchingHits(searchText, "en", 5, cursor,
+                new DocetSearchStatistics())) {
+                assertEquals(pageNo * 5, hits.getPosition());
+                assertEquals(expected.size(), hits.getTotalHits());
+                final List<DocetPage> docs = searcher.loadMatchingDocuments(hits, hits.size(), hits.getMaxScore());
+                assertEquals(hits.size(), docs.size());
+                paged.addAll(ids(hits));
+                final DocetSearchCursor next = hits.getNextCursor();
+                cursor = next == null ? null : DocetSearchCursor.parseToken(next.toToken("pkg"));
+            }
+            pageNo++;
+        } while (cursor != null);
+        searcher.close();
+
+        assertEquals(expected, paged);
+        assertNull(cursor);
+    }
+
+    private static List<String> ids(final DocetSearchHits hits) throws IOException {
+        final List<String> res = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            res.add(hits.doc(hits.scoreDocs[i].doc).get("id"));
+        }
+        return res;
+    }
+}
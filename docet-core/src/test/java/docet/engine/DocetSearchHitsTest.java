@@ -0,0 +1,113 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static docet.engine.SearchIndexFixture.page;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPage;
+
+public class DocetSearchHitsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHitsOutliveSearcherClose() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("p1", "P1", "alpha beta"), page("p2", "P2", "alpha"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor());
+        searcher.open();
+        final DocetSearchHits hits = searcher.searchForMatchingHits("alpha", "en", 10, new DocetSearchStatistics());
+        assertEquals(2, hits.size());
+
+        // e.g. the package gets reloaded or closed by the lifecycle executor while results are still being loaded
+        searcher.close();
+        final List<DocetPage> pages = searcher.loadMatchingDocuments(hits, hits.size(), hits.getMaxScore());
+        assertEquals(2, pages.size());
+
+        hits.close();
+        hits.close();
+        assertEquals(0, hits.searcher.getIndexReader().getRefCount());
+    }
+
+    @Test
+    public void testSearchAfterCloseReopens() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("p1", "P1", "alpha"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor());
+        assertEquals(1, searcher.searchForMatchingDocuments("alpha", "en", 10).size());
+        searcher.close();
+        assertEquals(1, searcher.searchForMatchingDocuments("alpha", "en", 10).size());
+        searcher.close();
+    }
+
+    @Test
+    public void testGlobalTopKMergesByRank() {
+        final Map<String, DocetSearchHits> hitsForPackage = new LinkedHashMap<>();
+        // scores of different indexes are not comparable: a package scoring low overall still gets its best hits
+        hitsForPackage.put("a", hits(10f, 9f, 8f, 7f));
+        hitsForPackage.put("b", hits(1f, 0.5f));
+        hitsForPackage.put("c", hits());
+
+        assertEquals(survivors("a", 2, "b", 2), DocetManager.selectGlobalTopK(hitsForPackage, 4));
+        assertEquals(survivors("a", 4, "b", 2), DocetManager.selectGlobalTopK(hitsForPackage, 10));
+        // same rank: the best score relative to the top one of its package comes first, then the package id
+        assertEquals(survivors("a", 2, "b", 1), DocetManager.selectGlobalTopK(hitsForPackage, 3));
+        assertEquals(survivors("a", 1), DocetManager.selectGlobalTopK(hitsForPackage, 1));
+        assertTrue(DocetManager.selectGlobalTopK(hitsForPackage, 0).isEmpty());
+    }
+
+    @Test
+    public void testPartialEmptyHitsAreNotShared() {
+        final DocetSearchHits partial = DocetSearchHits.empty();
+        partial.markPartial();
+        assertTrue(partial.isPartial());
+        assertFalse(DocetSearchHits.empty().isPartial());
+        assertEquals(0, DocetSearchHits.empty().size());
+    }
+
+    private static DocetSearchHits hits(final float... scores) {
+        final ScoreDoc[] scoreDocs = new ScoreDoc[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            scoreDocs[i] = new ScoreDoc(i, scores[i]);
+        }
+        return new DocetSearchHits(null, null, null, null, scoreDocs, scores.length, 0,
+            scores.length == 0 ? Float.NaN : scores[0], false, Long.MAX_VALUE);
+    }
+
+    private static Map<String, Integer> survivors(final Object... packagesAndCounts) {
+        final Map<String, Integer> res = new HashMap<>();
+        for (int i = 0; i < packagesAndCounts.length; i += 2) {
+            res.put((String) packagesAndCounts[i], (Integer) packagesAndCounts[i + 1]);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static docet.engine.SearchIndexFixture.page;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.DocetPackageLocation;
+import docet.error.DocetDocumentSearchException;
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPackageInfo;
+import docet.model.DocetPage;
+
+public class FederatedDocetDocSearcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FederatedDocetDocSearcher searcher;
+
+    @Before
+    public void setUp() {
+        searcher = new FederatedDocetDocSearcher(null, DocetSearchFuzzyStrategy.FALLBACK, 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        searcher.close();
+    }
+
+    @Test
+    public void testEachPackageGetsItsOwnHits() throws Exception {
+        final Path strong = folder.newFolder("strong").toPath();
+        SearchIndexFixture.writeIndex(strong.resolve("index"), "en",
+            page("s1", "S1", "alpha alpha alpha"),
+            page("s2", "S2", "alpha alpha alpha beta"),
+            page("s3", "S3", "alpha alpha alpha gamma"),
+            page("s4", "S4", "alpha alpha alpha delta"),
+            page("s5", "S5", "alpha alpha epsilon"));
+        final Path weak = folder.newFolder("weak").toPath();
+        SearchIndexFixture.writeIndex(weak.resolve("index"), "en",
+            page("w1", "W1", "alpha and a long text about many other things that are not searched at all"),
+            page("w2", "W2", "a long text about many other things that are not searched at all and alpha"),
+            page("w3", "W3", "a text about many other things mentioning alpha once, among lots of other words"));
+        searcher.importPackage(packageInfo("strong", strong));
+        searcher.importPackage(packageInfo("weak", weak));
+
+        final Map<String, List<DocetPage>> res = search("alpha", 2, "strong", "weak");
+        assertEquals(2, res.get("strong").size());
+        assertEquals(2, res.get("weak").size());
+        assertTrue(res.get("strong").get(0).getRelevance() > res.get("weak").get(0).getRelevance());
+        assertEquals(100, res.get("strong").get(0).getRelevance());
+    }
+
+    @Test
+    public void testReloadedPackageIsImportedOnlyIfItsIndexChanged() throws Exception {
+        final Path pkg = folder.newFolder("pkg").toPath();
+        SearchIndexFixture.writeIndex(pkg.resolve("index"), "en", page("p1", "P1", "alpha"));
+        assertTrue(searcher.importPackage(packageInfo("pkg", pkg)));
+        assertFalse(searcher.importPackage(packageInfo("pkg", pkg)));
+        assertEquals(ids("p1"), ids(search("alpha", 10, "pkg").get("pkg")));
+
+        SearchIndexFixture.writeIndex(pkg.resolve("index"), "en", page("p2", "P2", "alpha"));
+        assertTrue(searcher.importPackage(packageInfo("pkg", pkg)));
+        assertEquals(ids("p2"), ids(search("alpha", 10, "pkg").get("pkg")));
+    }
+
+    @Test
+    public void testRemovedPackageIsDropped() throws Exception {
+        final Path pkg1 = folder.newFolder("pkg1").toPath();
+        SearchIndexFixture.writeIndex(pkg1.resolve("index"), "en", page("a", "A", "alpha"));
+        final Path pkg2 = folder.newFolder("pkg2").toPath();
+        SearchIndexFixture.writeIndex(pkg2.resolve("index"), "en", page("b", "B", "alpha"));
+        searcher.importPackage(packageInfo("pkg1", pkg1));
+        searcher.importPackage(packageInfo("pkg2", pkg2));
+
+        searcher.removePackage("pkg1");
+        assertEquals(ids("pkg2"), searcher.getImportedPackages().stream().collect(Collectors.toList()));
+        assertFalse(search("alpha", 10, "pkg1", "pkg2").containsKey("pkg1"));
+        assertEquals(ids("b"), ids(search("alpha", 10, "pkg1", "pkg2").get("pkg2")));
+        assertTrue(searcher.importPackage(packageInfo("pkg1", pkg1)));
+    }
+
+    @Test
+    public void testQueryTermsBeyondLimitAreDropped() throws Exception {
+        searcher.close();
+        searcher = new FederatedDocetDocSearcher(null, DocetSearchFuzzyStrategy.FALLBACK, 1,
+            new DocetSearchLimits(0, 0, 1, Integer.MAX_VALUE));
+        final Path pkg = folder.newFolder("pkg").toPath();
+        SearchIndexFixture.writeIndex(pkg.resolve("index"), "en", page("p1", "P1", "alpha"));
+        searcher.importPackage(packageInfo("pkg", pkg));
+
+        assertEquals(ids("p1"), ids(search("alpha zzzz", 10, "pkg").get("pkg")));
+        assertFalse(search("zzzz alpha", 10, "pkg").containsKey("pkg"));
+    }
+
+    @Test
+    public void testHighlightingIsCappedByLimits() throws Exception {
+        final Path pkg = folder.newFolder("pkg").toPath();
+        SearchIndexFixture.writeIndex(pkg.resolve("index"), "en",
+            page("p1", "P1", "a long text about many other things that finally mentions alpha"));
+        searcher.importPackage(packageInfo("pkg", pkg));
+        assertTrue(search("alpha", 10, "pkg").get("pkg").get(0).getMatchExplanation().contains("alpha"));
+        searcher.close();
+
+        searcher = new FederatedDocetDocSearcher(null, DocetSearchFuzzyStrategy.FALLBACK, 1,
+            new DocetSearchLimits(0, 0, 0, 10));
+        searcher.importPackage(packageInfo("pkg", pkg));
+        final List<DocetPage> pages = search("alpha", 10, "pkg").get("pkg");
+        assertEquals(ids("p1"), ids(pages));
+        assertFalse(pages.get(0).getMatchExplanation().contains("alpha"));
+    }
+
+    @Test
+    public void testPackagesOutOfTimeBudgetArePartial() throws Exception {
+        final Path pkg1 = folder.newFolder("pkg1").toPath();
+        SearchIndexFixture.writeIndex(pkg1.resolve("index"), "en", page("a", "A", "alpha"));
+        final Path pkg2 = folder.newFolder("pkg2").toPath();
+        SearchIndexFixture.writeIndex(pkg2.resolve("index"), "en", page("b", "B", "alpha"));
+        searcher.importPackage(packageInfo("pkg1", pkg1));
+        searcher.importPackage(packageInfo("pkg2", pkg2));
+
+        final Set<String> partialPackages = new HashSet<>();
+        final Map<String, List<DocetPage>> res = searcher.searchForMatchingDocuments("alpha", "en",
+            descriptors("pkg1", "pkg2"), 10, new DocetSearchStatistics(), partialPackages, System.nanoTime());
+        assertTrue(res.isEmpty());
+        assertEquals(new HashSet<>(ids("pkg1", "pkg2")), partialPackages);
+
+        partialPackages.clear();
+        assertEquals(ids("a"), ids(searcher.searchForMatchingDocuments("alpha", "en", descriptors("pkg1"), 10,
+            new DocetSearchStatistics(), partialPackages).get("pkg1")));
+        assertTrue(partialPackages.isEmpty());
+    }
+
+    @Test
+    public void testSearchRacingWithClose() throws Exception {
+        final Path pkg = folder.newFolder("pkg").toPath();
+        SearchIndexFixture.writeIndex(pkg.resolve("index"), "en", page("p1", "P1", "alpha"));
+        final DocetPackageInfo info = packageInfo("pkg", pkg);
+        searcher.importPackage(info);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread closer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 50; i++) {
+                    searcher.close();
+                    searcher.importPackage(info);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        closer.start();
+        try {
+            while (closer.isAlive()) {
+                final List<DocetPage> pages = search("alpha", 10, "pkg").get("pkg");
+                assertTrue(pages == null || ids("p1").equals(ids(pages)));
+            }
+        } finally {
+            closer.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private Map<String, List<DocetPage>> search(final String text, final int maxNumResults, final String... packages)
+        throws DocetDocumentSearchException {
+        return searcher.searchForMatchingDocuments(text, "en", descriptors(packages), maxNumResults,
+            new DocetSearchStatistics(), new HashSet<>());
+    }
+
+    private static Map<String, DocetPackageDescriptor> descriptors(final String... packages) {
+        final Map<String, DocetPackageDescriptor> descriptors = new HashMap<>();
+        for (final String packageId : packages) {
+            descriptors.put(packageId, new DocetPackageDescriptor());
+        }
+        return descriptors;
+    }
+
+    private static DocetPackageInfo packageInfo(final String packageId, final Path packagePath) {
+        return new DocetPackageInfo(packageId, new DocetPackageLocation(packageId, packagePath),
+            new DocetPackageDescriptor(), "docs", "index");
+    }
+
+    private static List<String> ids(final String... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> ids(final List<DocetPage> pages) {
+        return pages.stream().map(DocetPage::getId).collect(Collectors.toList());
+    }
+}
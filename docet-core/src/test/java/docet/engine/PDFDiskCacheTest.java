@@ -0,0 +1,132 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PDFDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        this.cacheDir = folder.newFolder("cache").toPath();
+    }
+
+    private static Path pdf(final PDFDiskCache cache, final int size) throws Exception {
+        final Path file = Files.createTempFile(cache.getTmpDir(), "test", ".tmp");
+        Files.write(file, new byte[size]);
+        return file;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPdfsAreEvicted() throws Exception {
+        final PDFDiskCache cache = new PDFDiskCache(this.cacheDir, 100);
+        final Path a = cache.put("pkg", "fp", "a", pdf(cache, 40));
+        final Path b = cache.put("pkg", "fp", "b", pdf(cache, 40));
+        assertNotNull(cache.get("pkg", "fp", "a"));
+
+        final Path c = cache.put("pkg", "fp", "c", pdf(cache, 40));
+        assertNull(cache.get("pkg", "fp", "b"));
+        assertFalse(Files.exists(b));
+        assertEquals(a, cache.get("pkg", "fp", "a"));
+        assertEquals(c, cache.get("pkg", "fp", "c"));
+        assertTrue(Files.exists(a));
+    }
+
+    @Test
+    public void testReplacedPdfIsAccountedOnce() throws Exception {
+        final PDFDiskCache cache = new PDFDiskCache(this.cacheDir, 100);
+        cache.put("pkg", "fp", "a", pdf(cache, 40));
+        cache.put("pkg", "fp", "a", pdf(cache, 50));
+        cache.put("pkg", "fp", "b", pdf(cache, 50));
+        assertNotNull(cache.get("pkg", "fp", "a"));
+        assertNotNull(cache.get("pkg", "fp", "b"));
+
+        // a is the least recently used one
+        cache.get("pkg", "fp", "b");
+        cache.put("pkg", "fp", "c", pdf(cache, 10));
+        assertNull(cache.get("pkg", "fp", "a"));
+        assertNotNull(cache.get("pkg", "fp", "b"));
+        assertNotNull(cache.get("pkg", "fp", "c"));
+    }
+
+    @Test
+    public void testPdfBiggerThanTheCacheIsNotCached() throws Exception {
+        final PDFDiskCache cache = new PDFDiskCache(this.cacheDir, 100);
+        final Path a = cache.put("pkg", "fp", "a", pdf(cache, 60));
+        final Path big = pdf(cache, 150);
+
+        assertNull(cache.put("pkg", "fp", "big", big));
+        // left to the caller, the cache is untouched
+        assertTrue(Files.exists(big));
+        assertNull(cache.get("pkg", "fp", "big"));
+        assertEquals(a, cache.get("pkg", "fp", "a"));
+
+        // had the big pdf been accounted for, a would be evicted now
+        cache.put("pkg", "fp", "b", pdf(cache, 40));
+        assertEquals(a, cache.get("pkg", "fp", "a"));
+    }
+
+    @Test
+    public void testChangedPackageDropsItsPdfs() throws Exception {
+        final PDFDiskCache cache = new PDFDiskCache(this.cacheDir, 1000);
+        final Path a = cache.put("pkg1", "fp1", "a", pdf(cache, 10));
+        final Path b = cache.put("pkg2", "fp1", "b", pdf(cache, 10));
+
+        assertNull(cache.get("pkg1", "fp2", "a"));
+        assertFalse(Files.exists(a));
+        assertEquals(b, cache.get("pkg2", "fp1", "b"));
+    }
+
+    @Test
+    public void testPdfsSurviveRestart() throws Exception {
+        PDFDiskCache cache = new PDFDiskCache(this.cacheDir, 100);
+        final Path a = cache.put("pkg", "fp", "a", pdf(cache, 40));
+        final Path b = cache.put("pkg", "fp", "b", pdf(cache, 40));
+        Files.setLastModifiedTime(a, FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(b, FileTime.fromMillis(2000));
+        final Path leftover = pdf(cache, 10);
+
+        cache = new PDFDiskCache(this.cacheDir, 100);
+        assertFalse(Files.exists(leftover));
+        assertEquals(a, cache.get("pkg", "fp", "a"));
+        assertEquals(b, cache.get("pkg", "fp", "b"));
+        // the fingerprint is kept as well
+        assertNotNull(cache.get("pkg", "fp", "a"));
+
+        // least recently used by modification time: b, then a as just touched
+        cache.put("pkg", "fp", "c", pdf(cache, 40));
+        assertNull(cache.get("pkg", "fp", "b"));
+        assertEquals(a, cache.get("pkg", "fp", "a"));
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import docet.DocetUtils;
+import docet.error.DocetDocumentParsingException;
+
+public class PDFDocumentHandlerTest {
+
+    private static final String[][] SECTIONS = {
+        {"intro", "Introduction", null},
+        {"setup", "Setup", null},
+        {"install", "Installation", "setup"},
+        {"usage", "Usage", null}
+    };
+
+    private static String section(final String text) {
+        return "<html><head></head><body><div id=\"main\"><p>" + text + "</p></div></body></html>";
+    }
+
+    private static PDFDocumentHandler.Builder manual() {
+        return PDFDocumentHandler.builder()
+            .title("Manual")
+            .cover(true)
+            .toc(true)
+            .bookmarks(true);
+    }
+
+    private static List<String> pages(final byte[] pdf) throws Exception {
+        final PdfReader reader = new PdfReader(pdf);
+        final PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        final List<String> pages = new ArrayList<>();
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            pages.add(extractor.getTextFromPage(i));
+        }
+        return pages;
+    }
+
+    private static int pageOf(final List<String> pages, final String text) {
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i).contains(text)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testStreamedPagesInTheSameOrderAsBuffered() throws Exception {
+        final PDFDocumentHandler buffered = manual().create();
+        for (String[] section : SECTIONS) {
+            buffered.addSection(section("Body of " + section[1]), section[0], section[1], section[2]);
+        }
+        final ByteArrayOutputStream bufferedOut = new ByteArrayOutputStream();
+        buffered.createPDF(bufferedOut);
+
+        final PDFDocumentHandler streamed = manual().streaming(true).create();
+        for (String[] section : SECTIONS) {
+            streamed.declareSection(section[0], section[1], section[2]);
+        }
+        final ByteArrayOutputStream streamedOut = new ByteArrayOutputStream();
+        streamed.startPDF(streamedOut);
+        for (String[] section : SECTIONS) {
+            streamed.addSection(section("Body of " + section[1]), section[0], section[1], section[2]);
+        }
+        streamed.finishPDF();
+
+        final List<String> bufferedPages = pages(bufferedOut.toByteArray());
+        final List<String> streamedPages = pages(streamedOut.toByteArray());
+
+        /* Cover, TOC, then sections in order */
+        assertEquals(2 + SECTIONS.length, bufferedPages.size());
+        assertEquals(2, pageOf(bufferedPages, "Installation"));
+        for (int i = 0; i < SECTIONS.length; i++) {
+            assertEquals(3 + i, pageOf(bufferedPages, "Body of " + SECTIONS[i][1]));
+        }
+
+        /* The TOC, written last when streaming, is moved back after the cover */
+        assertEquals(bufferedPages, streamedPages);
+    }
+
+    @Test
+    public void testPageNumbersOfLongTOC() throws Exception {
+        final PDFDocumentHandler handler = manual().create();
+        for (int i = 0; i < 120; i++) {
+            final String name = String.format("Section %03d", i);
+            handler.addSection(section("Body of " + name), "s" + i, name, null);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.createPDF(out);
+        final List<String> pages = pages(out.toByteArray());
+
+        /* Entries are numbered once the TOC page count is known */
+        final int firstSectionPage = pageOf(pages, "Body of Section 000");
+        assertTrue(firstSectionPage > 3);
+        final Pattern entry = Pattern.compile("^\\d+ (Section \\d{3}) (\\d+)$", Pattern.MULTILINE);
+        final Map<String, Integer> tocPages = new HashMap<>();
+        for (int i = 1; i < firstSectionPage - 1; i++) {
+            final Matcher matcher = entry.matcher(pages.get(i));
+            while (matcher.find()) {
+                tocPages.put(matcher.group(1), Integer.parseInt(matcher.group(2)));
+            }
+        }
+        assertEquals(120, tocPages.size());
+        for (Map.Entry<String, Integer> tocPage : tocPages.entrySet()) {
+            assertEquals(tocPage.getKey(), pageOf(pages, "Body of " + tocPage.getKey()), (int) tocPage.getValue());
+        }
+    }
+
+    @Test
+    public void testSectionsFromDocumentsLaidOutAsFromText() throws Exception {
+        final String[] bodies = new String[SECTIONS.length];
+        for (int i = 0; i < SECTIONS.length; i++) {
+            bodies[i] = "<div id=\"main\"><h1>" + SECTIONS[i][1] + "</h1><p>First paragraph<p>Second paragraph<br>"
+                + "next line</p><table><tr><td>cell " + i + "</td><td>other</td></tr></table>"
+                + "<ul><li>one<li>two</ul><script>skipped()</script></div>";
+        }
+        for (boolean streaming : new boolean[]{false, true}) {
+            final List<byte[]> pdfs = new ArrayList<>();
+            for (boolean fromDocuments : new boolean[]{false, true}) {
+                final PDFDocumentHandler handler = manual().streaming(streaming).create();
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (streaming) {
+                    for (String[] section : SECTIONS) {
+                        handler.declareSection(section[0], section[1], section[2]);
+                    }
+                    handler.startPDF(out);
+                }
+                for (int i = 0; i < SECTIONS.length; i++) {
+                    if (fromDocuments) {
+                        handler.addSection(DocetUtils.cleanPage(bodies[i], false), SECTIONS[i][0], SECTIONS[i][1],
+                            SECTIONS[i][2]);
+                    } else {
+                        handler.addSection(DocetUtils.cleanPageText(bodies[i], false), SECTIONS[i][0], SECTIONS[i][1],
+                            SECTIONS[i][2]);
+                    }
+                }
+                if (streaming) {
+                    handler.finishPDF();
+                } else {
+                    handler.createPDF(out);
+                }
+                pdfs.add(out.toByteArray());
+            }
+            final List<String> fromText = pages(pdfs.get(0));
+            assertEquals(2 + SECTIONS.length, fromText.size());
+            assertTrue(pageOf(fromText, "cell 3") > 0);
+            assertEquals(-1, pageOf(fromText, "skipped"));
+            assertEquals(fromText, pages(pdfs.get(1)));
+
+            /* Not only the same text, the very same layout */
+            final PdfReader expected = new PdfReader(pdfs.get(0));
+            final PdfReader actual = new PdfReader(pdfs.get(1));
+            for (int i = 1; i <= expected.getNumberOfPages(); i++) {
+                assertArrayEquals(expected.getPageContent(i), actual.getPageContent(i));
+            }
+        }
+    }
+
+
+    @Test
+    public void testSectionsRejectedByTheLayoutExecutorAreLaidOutWhenAdded() throws Exception {
+        final Executor rejecting = r -> {
+            throw new RejectedExecutionException("busy");
+        };
+        final PDFGenerationProgress progress = new PDFGenerationProgress();
+        final PDFDocumentHandler handler = PDFDocumentHandler.builder()
+            .cover(false)
+            .toc(false)
+            .progress(progress)
+            .layoutExecutor(rejecting)
+            .create();
+
+        handler.addSection(section("first"), "first", "First", null);
+        handler.addSection(section("second"), "second", "Second", null);
+        assertEquals(2, progress.getSectionsRendered());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.createPDF(out);
+        assertEquals(2, new PdfReader(out.toByteArray()).getNumberOfPages());
+    }
+
+    @Test
+    public void testSectionsLaidOutOneAtATimeShareOneContext() throws Exception {
+        final PDFDocumentHandler.RenderingContextPool pool = new PDFDocumentHandler.RenderingContextPool(4);
+        final List<Runnable> pending = new ArrayList<>();
+
+        final PDFDocumentHandler handler = PDFDocumentHandler.builder()
+            .cover(false)
+            .toc(false)
+            .contextPool(pool)
+            .layoutExecutor(pending::add)
+            .create();
+        for (int i = 0; i < 10; i++) {
+            handler.addSection(section("section " + i), "s" + i, "Section " + i, null);
+        }
+        pending.forEach(Runnable::run);
+        handler.createPDF(new ByteArrayOutputStream());
+
+        /* The main context and a single one for the layouts */
+        assertEquals(2, pool.getCreatedContexts());
+
+        final PDFDocumentHandler next = PDFDocumentHandler.builder()
+            .cover(false)
+            .toc(false)
+            .contextPool(pool)
+            .create();
+        next.addSection(section("next"), "next", "Next", null);
+        assertEquals(2, pool.getCreatedContexts());
+        assertEquals(1, pool.getReusedContexts());
+    }
+
+    @Test
+    public void testAbortCancelsPendingLayouts() throws Exception {
+        final List<Runnable> pending = new ArrayList<>();
+        final PDFGenerationProgress progress = new PDFGenerationProgress();
+        final PDFDocumentHandler handler = PDFDocumentHandler.builder()
+            .cover(false)
+            .toc(false)
+            .progress(progress)
+            .layoutExecutor(pending::add)
+            .create();
+
+        handler.addSection(section("first"), "first", "First", null);
+        handler.addSection(section("second"), "second", "Second", null);
+        assertEquals(2, pending.size());
+
+        handler.abort();
+        pending.forEach(Runnable::run);
+        assertEquals(0, progress.getSectionsRendered());
+    }
+
+    @Test
+    public void testInterruptedGenerationCancelsPendingLayouts() throws Exception {
+        final List<Runnable> pending = new ArrayList<>();
+        final PDFGenerationProgress progress = new PDFGenerationProgress();
+        final PDFDocumentHandler handler = PDFDocumentHandler.builder()
+            .cover(false)
+            .toc(false)
+            .progress(progress)
+            .layoutExecutor(pending::add)
+            .create();
+
+        handler.addSection(section("first"), "first", "First", null);
+
+        Thread.currentThread().interrupt();
+        try {
+            handler.addSection(section("second"), "second", "Second", null);
+            fail();
+        } catch (DocetDocumentParsingException ex) {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertEquals(1, pending.size());
+        pending.forEach(Runnable::run);
+        assertEquals(0, progress.getSectionsRendered());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.error.DocetDocumentParsingException;
+
+public class PDFGenerationJobsTest {
+
+    private static final byte[] PDF = "%PDF-1.4 test".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path tmpDir;
+    private PDFGenerationJobs jobs;
+    private final AtomicInteger generations = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        this.tmpDir = folder.newFolder("tmp").toPath();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.jobs != null) {
+            this.jobs.shutdown();
+        }
+    }
+
+    private void generate(final PDFGenerationProgress progress, final Path file)
+        throws DocetDocumentParsingException {
+        this.generations.incrementAndGet();
+        try {
+            this.release.await();
+            Files.write(file, PDF);
+        } catch (InterruptedException | IOException ex) {
+            throw new DocetDocumentParsingException("error", ex);
+        }
+    }
+
+    private PDFGenerationJobs.Job submit(final Object key) {
+        return this.jobs.submit(key, "pkg", "doc", "en", this::generate);
+    }
+
+    private static void waitForState(final PDFGenerationJobs.Job job, final PDFGenerationJobs.JobState state)
+        throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getState() != state) {
+            assertTrue("job still " + job.getState(), System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private long tmpFiles() throws Exception {
+        try (Stream<Path> files = Files.list(this.tmpDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testIdenticalJobsAreShared() throws Exception {
+        this.jobs = new PDFGenerationJobs(1, 4, 60_000, this.tmpDir);
+        final PDFGenerationJobs.Job job = submit("fingerprint1");
+        assertSame(job, submit("fingerprint1"));
+        // e.g. the package has been reloaded with new contents
+        final PDFGenerationJobs.Job reloaded = submit("fingerprint2");
+        assertNotSame(job, reloaded);
+
+        this.release.countDown();
+        waitForState(job, PDFGenerationJobs.JobState.COMPLETED);
+        waitForState(reloaded, PDFGenerationJobs.JobState.COMPLETED);
+        assertArrayEquals(PDF, Files.readAllBytes(job.getFile()));
+        assertSame(job, submit("fingerprint1"));
+        assertSame(job, this.jobs.getJob(job.getId()));
+        assertEquals(2, this.generations.get());
+    }
+
+    @Test
+    public void testExpiredJobsAreSweptWithoutFurtherRequests() throws Exception {
+        this.jobs = new PDFGenerationJobs(1, 4, 100, this.tmpDir);
+        this.release.countDown();
+        final PDFGenerationJobs.Job job = submit("key");
+        waitForState(job, PDFGenerationJobs.JobState.COMPLETED);
+        assertNotNull(job.getFile());
+        assertTrue(job.getExpirationTime() < Long.MAX_VALUE);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (tmpFiles() > 0) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        assertNull(this.jobs.getJob(job.getId()));
+        assertNotSame(job, submit("key"));
+    }
+
+    @Test
+    public void testFailedJobIsReportedAndRetried() throws Exception {
+        this.jobs = new PDFGenerationJobs(1, 4, 60_000, this.tmpDir);
+        final PDFGenerationJobs.Job failed = this.jobs.submit("key", "pkg", "doc", "en", (progress, file) -> {
+            throw new DocetDocumentParsingException("broken");
+        });
+        waitForState(failed, PDFGenerationJobs.JobState.FAILED);
+        assertEquals("broken", failed.getErrorMessage());
+        assertNull(failed.getFile());
+        assertEquals(0, tmpFiles());
+
+        this.release.countDown();
+        final PDFGenerationJobs.Job retried = submit("key");
+        assertNotSame(failed, retried);
+        waitForState(retried, PDFGenerationJobs.JobState.COMPLETED);
+    }
+
+    @Test
+    public void testJobsBeyondTheQueueAreRefused() throws Exception {
+        this.jobs = new PDFGenerationJobs(1, 0, 60_000, this.tmpDir);
+        final PDFGenerationJobs.Job running = submit("key1");
+        try {
+            submit("key2");
+            fail();
+        } catch (RejectedExecutionException ex) {
+        }
+        this.release.countDown();
+        waitForState(running, PDFGenerationJobs.JobState.COMPLETED);
+        assertEquals(1, this.generations.get());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.error.DocetDocumentParsingException;
+
+public class PDFGenerationQueueTest {
+
+    private static final byte[] PDF = "%PDF-1.4 test".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path tmpDir;
+    private PDFGenerationQueue queue;
+    private final AtomicInteger generations = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        this.tmpDir = folder.newFolder("tmp").toPath();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.queue != null) {
+            this.queue.shutdown();
+        }
+    }
+
+    private Path generate(final Path file) throws DocetDocumentParsingException {
+        this.generations.incrementAndGet();
+        this.started.countDown();
+        try {
+            this.release.await();
+            Files.write(file, PDF);
+        } catch (InterruptedException ex) {
+            this.interrupted.countDown();
+            throw new DocetDocumentParsingException("interrupted");
+        } catch (IOException ex) {
+            throw new DocetDocumentParsingException("error", ex);
+        }
+        return file;
+    }
+
+    private CompletableFuture<PDFGenerationQueue.PDFFile> request(final Object key) {
+        final CompletableFuture<PDFGenerationQueue.PDFFile> res = new CompletableFuture<>();
+        final Thread t = new Thread(() -> {
+            try {
+                res.complete(this.queue.generate(key, this::generate));
+            } catch (Throwable ex) {
+                res.completeExceptionally(ex);
+            }
+        });
+        t.start();
+        return res;
+    }
+
+    private long tmpFiles() throws Exception {
+        try (Stream<Path> files = Files.list(this.tmpDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testIdenticalRequestsShareOneGeneration() throws Exception {
+        this.queue = new PDFGenerationQueue(2, 4, 10_000, this.tmpDir);
+        final CompletableFuture<PDFGenerationQueue.PDFFile> first = request("doc");
+        assertTrue(this.started.await(10, TimeUnit.SECONDS));
+        final CompletableFuture<PDFGenerationQueue.PDFFile> second = request("doc");
+        Thread.sleep(100);
+        this.release.countDown();
+
+        final PDFGenerationQueue.PDFFile firstPdf = first.get(10, TimeUnit.SECONDS);
+        final PDFGenerationQueue.PDFFile secondPdf = second.get(10, TimeUnit.SECONDS);
+        assertEquals(1, this.generations.get());
+        assertEquals(firstPdf.getPath(), secondPdf.getPath());
+        assertArrayEquals(PDF, Files.readAllBytes(firstPdf.getPath()));
+
+        // the file is there until every requester is done with it
+        firstPdf.close();
+        firstPdf.close();
+        assertTrue(Files.exists(secondPdf.getPath()));
+        secondPdf.close();
+        assertFalse(Files.exists(secondPdf.getPath()));
+        assertEquals(0, tmpFiles());
+
+        // a request coming once the generation is over gets a new one
+        try (PDFGenerationQueue.PDFFile third = this.queue.generate("doc", this::generate)) {
+            assertArrayEquals(PDF, Files.readAllBytes(third.getPath()));
+        }
+        assertEquals(2, this.generations.get());
+    }
+
+    @Test
+    public void testGenerationIsCancelledOnceNobodyWaitsForIt() throws Exception {
+        this.queue = new PDFGenerationQueue(1, 4, 200, this.tmpDir);
+        try {
+            this.queue.generate("doc", this::generate);
+            fail();
+        } catch (RejectedExecutionException ex) {
+        }
+        assertTrue(this.interrupted.await(10, TimeUnit.SECONDS));
+        waitForNoTmpFiles();
+    }
+
+    @Test
+    public void testRequesterLeavingDoesNotCancelTheOthers() throws Exception {
+        this.queue = new PDFGenerationQueue(1, 4, 10_000, this.tmpDir);
+        final CompletableFuture<PDFGenerationQueue.PDFFile> staying = request("doc");
+        assertTrue(this.started.await(10, TimeUnit.SECONDS));
+
+        final Thread leaving = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                this.queue.generate("doc", this::generate);
+            } catch (RejectedExecutionException | DocetDocumentParsingException ex) {
+            }
+        });
+        leaving.start();
+        leaving.join(10_000);
+
+        this.release.countDown();
+        try (PDFGenerationQueue.PDFFile pdf = staying.get(10, TimeUnit.SECONDS)) {
+            assertArrayEquals(PDF, Files.readAllBytes(pdf.getPath()));
+        }
+        assertEquals(1, this.generations.get());
+        assertEquals(1, this.interrupted.getCount());
+        assertEquals(0, tmpFiles());
+    }
+
+    @Test
+    public void testFailureIsReportedAndNotShared() throws Exception {
+        this.queue = new PDFGenerationQueue(1, 4, 10_000, this.tmpDir);
+        try {
+            this.queue.generate("doc", file -> {
+                this.generations.incrementAndGet();
+                throw new DocetDocumentParsingException("broken");
+            });
+            fail();
+        } catch (DocetDocumentParsingException ex) {
+            assertEquals("broken", ex.getMessage());
+        }
+        waitForNoTmpFiles();
+
+        this.release.countDown();
+        try (PDFGenerationQueue.PDFFile pdf = this.queue.generate("doc", this::generate)) {
+            assertArrayEquals(PDF, Files.readAllBytes(pdf.getPath()));
+        }
+        assertEquals(2, this.generations.get());
+    }
+
+    @Test
+    public void testFullQueueIsRejected() throws Exception {
+        this.queue = new PDFGenerationQueue(1, 0, 10_000, this.tmpDir);
+        final CompletableFuture<PDFGenerationQueue.PDFFile> running = request("doc1");
+        assertTrue(this.started.await(10, TimeUnit.SECONDS));
+        try {
+            this.queue.generate("doc2", this::generate);
+            fail();
+        } catch (RejectedExecutionException ex) {
+        }
+        this.release.countDown();
+        running.get(10, TimeUnit.SECONDS).close();
+        assertEquals(1, this.generations.get());
+    }
+
+    private void waitForNoTmpFiles() throws Exception {
+        // the generation thread cleans up after the requester has given up
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (tmpFiles() > 0) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
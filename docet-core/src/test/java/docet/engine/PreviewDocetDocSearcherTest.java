@@ -0,0 +1,105 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.model.DocetPackageDescriptor;
+
+public class PreviewDocetDocSearcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSearchWhileIndexIsReloaded() throws Exception {
+        final Path docs = folder.newFolder("docs").toPath();
+        final Path pages = Files.createDirectories(docs.resolve("en").resolve("pages"));
+        for (int i = 0; i < 20; i++) {
+            writePage(pages, "page" + i, "alpha text of page " + i);
+        }
+        final PreviewDocetDocSearcher searcher = new PreviewDocetDocSearcher(folder.newFolder("index").toPath(), docs,
+            new DocetPackageDescriptor(), "{0}/pages", "{0}/faq", DocetSearchFuzzyStrategy.FALLBACK, 1,
+            DocetSearchLimits.unlimited());
+        try {
+            assertEquals(20, searcher.searchForMatchingDocuments("alpha", "en", 100).size());
+
+            final AtomicBoolean stop = new AtomicBoolean();
+            final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            final AtomicInteger searches = new AtomicInteger();
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    while (!stop.get()) {
+                        try {
+                            searcher.searchForMatchingDocuments("alpha page", "en", 100);
+                            searches.incrementAndGet();
+                        } catch (Throwable ex) {
+                            errors.add(ex);
+                            return;
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            int round = 0;
+            while (System.nanoTime() < end && errors.isEmpty()) {
+                writePage(pages, "page" + round % 20, "alpha text of page " + round % 20 + " edited " + round);
+                round++;
+                Thread.sleep(2);
+            }
+            stop.set(true);
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            if (!errors.isEmpty()) {
+                throw new AssertionError("Search failed while reloading the index", errors.peek());
+            }
+            assertTrue(searches.get() > 0);
+
+            writePage(pages, "fresh", "omega");
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (searcher.searchForMatchingDocuments("omega", "en", 10).isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, searcher.searchForMatchingDocuments("omega", "en", 10).size());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    private static void writePage(final Path pages, final String id, final String text) throws IOException {
+        Files.write(pages.resolve(id + ".html"), ("<html><body><div id=\"main\"><h1>" + id + "</h1><p>" + text
+            + "</p></div></body></html>").getBytes(StandardCharsets.UTF_8));
+    }
+}
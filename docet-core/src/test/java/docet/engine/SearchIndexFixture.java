@@ -0,0 +1,226 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import docet.model.DocetPage;
+
+/**
+ * Writes package search indexes with the same fields and layout the docet maven plugin does.
+ */
+final class SearchIndexFixture {
+
+    private static final int COMPACT_FILE_MAGIC = 0x44435831;
+    private static final int COMPACT_FILE_VERSION = 1;
+
+    private SearchIndexFixture() {
+    }
+
+    /**
+     * Write the search index of a package for the given language, replacing any existing one.
+     *
+     * @param searchIndexPath the search index directory
+     * @param lang the language of the pages
+     * @param pages each page as an array of id, title and text
+     */
+    static void writeIndex(final Path searchIndexPath, final String lang, final String[]... pages) throws IOException {
+        Files.createDirectories(searchIndexPath);
+        final IndexWriterConfig iwc = new IndexWriterConfig(new SimpleDocetDocSearcher.AnalyzerBuilder().language(lang).build());
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        try (Directory dir = FSDirectory.open(searchIndexPath);
+            IndexWriter writer = new IndexWriter(dir, iwc)) {
+            for (final String[] page : pages) {
+                final Document doc = new Document();
+                doc.add(new StringField("path", searchIndexPath.resolve(page[0] + ".html").toString(), Field.Store.YES));
+                doc.add(new TextField(SimpleDocetDocSearcher.LUCENE_QUERY_CONTENT_PREFIX + lang, page[2], Field.Store.YES));
+                doc.add(new StringField("language", lang, Field.Store.YES));
+                doc.add(new StringField("id", page[0], Field.Store.YES));
+                doc.add(new StringField("title", page[1], Field.Store.YES));
+                doc.add(new IntField("doctype", DocetPage.DOCTYPE_PAGE, Field.Store.YES));
+                doc.add(new TextField("abstract", page[1], Field.Store.YES));
+                writer.addDocument(doc);
+            }
+        }
+    }
+
+    /**
+     * Dump the search index of the given language into a compact index, with the same layout the docet maven plugin
+     * writes.
+     *
+     * @param searchIndexPath the search index directory, holding the index of the language in a sub-directory
+     * @param lang the language of the pages
+     */
+    static void writeCompactIndex(final Path searchIndexPath, final String lang) throws IOException {
+        final String field = SimpleDocetDocSearcher.LUCENE_QUERY_CONTENT_PREFIX + lang;
+        try (Directory dir = FSDirectory.open(searchIndexPath.resolve(lang));
+            IndexReader reader = DirectoryReader.open(dir);
+            OutputStream out = Files.newOutputStream(CompactSearchIndex.resolveCompactIndexPath(searchIndexPath, lang))) {
+            final Bits liveDocs = MultiFields.getLiveDocs(reader);
+            final int[] docMap = new int[reader.maxDoc()];
+            int numDocs = 0;
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                docMap[doc] = liveDocs == null || liveDocs.get(doc) ? numDocs++ : -1;
+            }
+            final Terms terms = MultiFields.getTerms(reader, field);
+            final List<BytesRef> termList = new ArrayList<>();
+            final TermsEnum termsEnum = terms.iterator();
+            for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                termList.add(BytesRef.deepCopyOf(term));
+            }
+            final NumericDocValues norms = MultiDocValues.getNormValues(reader, field);
+            final OutputStreamDataOutput output = new OutputStreamDataOutput(out);
+            output.writeInt(COMPACT_FILE_MAGIC);
+            output.writeVInt(COMPACT_FILE_VERSION);
+            output.writeVInt(reader.maxDoc());
+            output.writeVInt(numDocs);
+            output.writeVInt(termList.size());
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (docMap[doc] < 0) {
+                    continue;
+                }
+                final Document stored = reader.document(doc);
+                output.writeString(stored.get("id"));
+                output.writeString(stored.get("language"));
+                output.writeString(stored.get("title"));
+                output.writeString(stored.get("abstract"));
+                output.writeVInt(stored.getField("doctype").numericValue().intValue());
+                output.writeString(stored.get(field));
+                output.writeByte((byte) norms.get(doc));
+            }
+            for (final BytesRef term : termList) {
+                termsEnum.seekExact(term);
+                output.writeString(term.utf8ToString());
+                output.writeVInt(termsEnum.docFreq());
+                final List<int[]> postings = new ArrayList<>();
+                final PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.POSITIONS);
+                for (int doc = postingsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+                    if (docMap[doc] < 0) {
+                        continue;
+                    }
+                    final int[] posting = new int[postingsEnum.freq() + 1];
+                    posting[0] = docMap[doc];
+                    for (int i = 1; i < posting.length; i++) {
+                        posting[i] = postingsEnum.nextPosition();
+                    }
+                    postings.add(posting);
+                }
+                output.writeVInt(postings.size());
+                int lastDoc = 0;
+                for (final int[] posting : postings) {
+                    output.writeVInt(posting[0] - lastDoc);
+                    lastDoc = posting[0];
+                    output.writeVInt(posting.length - 1);
+                    int lastPosition = 0;
+                    for (int i = 1; i < posting.length; i++) {
+                        output.writeVInt(posting[i] - lastPosition);
+                        lastPosition = posting[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the suggester of the given language next to the search index, as the docet maven plugin does.
+     *
+     * @param searchIndexPath the search index directory
+     * @param lang the language of the suggestions
+     * @param suggestions each suggestion as an array of text, weight and page id
+     */
+    static void writeSuggester(final Path searchIndexPath, final String lang, final String[]... suggestions)
+        throws IOException {
+        Files.createDirectories(searchIndexPath);
+        final AnalyzingSuggester suggester = new AnalyzingSuggester(new StandardAnalyzer(CharArraySet.EMPTY_SET));
+        final Iterator<String[]> entries = Arrays.asList(suggestions).iterator();
+        suggester.build(new InputIterator() {
+            private String[] current;
+
+            @Override
+            public BytesRef next() {
+                this.current = entries.hasNext() ? entries.next() : null;
+                return this.current == null ? null : new BytesRef(this.current[0]);
+            }
+
+            @Override
+            public long weight() {
+                return Long.parseLong(this.current[1]);
+            }
+
+            @Override
+            public BytesRef payload() {
+                return new BytesRef(DocetPage.DOCTYPE_PAGE + ":" + this.current[2]);
+            }
+
+            @Override
+            public boolean hasPayloads() {
+                return true;
+            }
+
+            @Override
+            public Set<BytesRef> contexts() {
+                return null;
+            }
+
+            @Override
+            public boolean hasContexts() {
+                return false;
+            }
+        });
+        try (OutputStream out = Files.newOutputStream(searchIndexPath.resolve("suggest-" + lang + ".dat"))) {
+            suggester.store(out);
+        }
+    }
+
+    static String[] page(final String id, final String title, final String text) {
+        return new String[]{id, title, text};
+    }
+}
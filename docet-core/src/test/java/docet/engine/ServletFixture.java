@@ -0,0 +1,201 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Bare bones servlet response recording what is sent through it.
+ */
+final class ServletFixture {
+
+    private ServletFixture() {
+    }
+
+    /**
+     * @param headers the headers of the request
+     * @param attributes the attributes of the request, e.g. as set by the container
+     * @return a request answering just for its headers and attributes
+     */
+    static HttpServletRequest request(final Map<String, String> headers, final Map<String, Object> attributes) {
+        return request("", Collections.emptyMap(), headers, attributes);
+    }
+
+    /**
+     * @param uri the uri of the request, relative to the docet servlet
+     * @param params the parameters of the request
+     * @param headers the headers of the request
+     * @param attributes the attributes of the request, e.g. as set by the container
+     * @return a request answering for its uri, parameters, headers and attributes
+     */
+    static HttpServletRequest request(final String uri, final Map<String, String[]> params,
+        final Map<String, String> headers, final Map<String, Object> attributes) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletFixture.class.getClassLoader(),
+            new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getContextPath":
+                case "getServletPath":
+                    return "";
+                case "getRequestURI":
+                    return uri;
+                case "getParameter":
+                    final String[] values = params.get((String) args[0]);
+                    return values == null || values.length == 0 ? null : values[0];
+                case "getParameterValues":
+                    return params.get((String) args[0]);
+                case "getParameterMap":
+                    return params;
+                case "getHeader":
+                    return headers.get((String) args[0]);
+                case "getAttribute":
+                    return attributes.get((String) args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Request";
+                default:
+                    if (method.getReturnType() == boolean.class) {
+                        return false;
+                    } else if (method.getReturnType() == int.class) {
+                        return 0;
+                    } else if (method.getReturnType() == long.class) {
+                        return 0L;
+                    }
+                    return null;
+            }
+        });
+    }
+
+    static class RecordingResponse {
+
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        volatile int status = HttpServletResponse.SC_OK;
+        volatile boolean committed;
+        volatile String contentType;
+        final HttpServletResponse response;
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                beforeWrite();
+                synchronized (body) {
+                    body.write(b);
+                }
+                committed = true;
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                beforeWrite();
+                synchronized (body) {
+                    body.write(b, off, len);
+                }
+                committed = true;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+            }
+        };
+
+        RecordingResponse() {
+            this.response = (HttpServletResponse) Proxy.newProxyInstance(ServletFixture.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getOutputStream":
+                        return out;
+                    case "getWriter":
+                        return new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    case "isCommitted":
+                        return committed;
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "sendError":
+                        status = (Integer) args[0];
+                        committed = true;
+                        return null;
+                    case "setHeader":
+                    case "addHeader":
+                        headers.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "setDateHeader":
+                    case "setIntHeader":
+                        headers.put((String) args[0], String.valueOf(args[1]));
+                        return null;
+                    case "setContentType":
+                        contentType = (String) args[0];
+                        return null;
+                    case "getHeader":
+                        return headers.get((String) args[0]);
+                    case "getStatus":
+                        return status;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "RecordingResponse";
+                    default:
+                        if (method.getReturnType() == boolean.class) {
+                            return false;
+                        } else if (method.getReturnType() == int.class) {
+                            return 0;
+                        } else if (method.getReturnType() == long.class) {
+                            return 0L;
+                        }
+                        return null;
+                }
+            });
+        }
+
+        /**
+         * Hook run before each write to the body.
+         */
+        void beforeWrite() throws IOException {
+        }
+
+        byte[] getBody() {
+            synchronized (body) {
+                return body.toByteArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package docet.engine;
+
+import static docet.engine.SearchIndexFixture.page;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import docet.error.DocetDocumentSearchException;
+import docet.model.DocetPackageDescriptor;
+import docet.model.DocetPage;
+import docet.model.DocetSuggestion;
+
+public class SimpleDocetDocSearcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSuggestionsForPrefix() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeSuggester(index, "en",
+            new String[]{"Server configuration", "10", "config"},
+            new String[]{"Server monitoring", "20", "monitor"},
+            new String[]{"Client setup", "30", "client"});
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            DocetSearchFuzzyStrategy.FALLBACK, 1);
+        try {
+            final List<DocetSuggestion> suggestions = searcher.suggestForPrefix("serv", "en", 10);
+            assertEquals(Stream.of("Server monitoring", "Server configuration").collect(Collectors.toList()),
+                suggestions.stream().map(DocetSuggestion::getText).collect(Collectors.toList()));
+            assertEquals("monitor", suggestions.get(0).getPageId());
+            assertEquals(DocetPage.DOCTYPE_PAGE, suggestions.get(0).getType());
+            assertEquals(20, suggestions.get(0).getWeight());
+            assertEquals("en", suggestions.get(0).getLanguage());
+            assertEquals(1, searcher.suggestForPrefix("serv", "en", 1).size());
+            assertTrue(searcher.suggestForPrefix("zz", "en", 10).isEmpty());
+            // no suggester built for the language
+            assertTrue(searcher.suggestForPrefix("serv", "it", 10).isEmpty());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testFuzzyExpansionOnlyOnTooFewExactHits() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("p1", "P1", "alpha one"), page("p2", "P2", "alpha two"),
+            page("p3", "P3", "alphx three"));
+
+        final DocetSearchStatistics enough = new DocetSearchStatistics();
+        assertEquals(Stream.of("p1", "p2").collect(Collectors.toSet()),
+            ids(search(index, DocetSearchFuzzyStrategy.FALLBACK, 2, "alpha", enough)));
+        assertEquals(1, enough.getExactPasses());
+        assertEquals(2, enough.getExactHits());
+        assertEquals(0, enough.getFuzzyPasses());
+
+        final DocetSearchStatistics tooFew = new DocetSearchStatistics();
+        assertEquals(Stream.of("p1", "p2", "p3").collect(Collectors.toSet()),
+            ids(search(index, DocetSearchFuzzyStrategy.FALLBACK, 3, "alpha", tooFew)));
+        assertEquals(1, tooFew.getExactPasses());
+        assertEquals(1, tooFew.getFuzzyPasses());
+        assertEquals(3, tooFew.getFuzzyHits());
+
+        final DocetSearchStatistics always = new DocetSearchStatistics();
+        assertEquals(Stream.of("p1", "p2", "p3").collect(Collectors.toSet()),
+            ids(search(index, DocetSearchFuzzyStrategy.ALWAYS, 0, "alpha", always)));
+        assertEquals(0, always.getExactPasses());
+        assertEquals(1, always.getFuzzyPasses());
+    }
+
+    @Test
+    public void testDirectoryTypes() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("p1", "P1", "alpha"));
+        assertEquals(RAMDirectory.class, openDirectoryType(index, DocetSearchIndexDirectoryType.RAM, 0));
+        assertEquals(NIOFSDirectory.class, openDirectoryType(index, DocetSearchIndexDirectoryType.NIO, 0));
+        assertEquals(MMapDirectory.class, openDirectoryType(index, DocetSearchIndexDirectoryType.MMAP, 0));
+        // small indexes on heap, big ones memory-mapped
+        assertEquals(RAMDirectory.class, openDirectoryType(index, DocetSearchIndexDirectoryType.AUTO, Long.MAX_VALUE));
+        assertEquals(MMapDirectory.class, openDirectoryType(index, DocetSearchIndexDirectoryType.AUTO, 0));
+
+        final Properties props = new Properties();
+        props.setProperty("docet.search.index.directory", "auto");
+        props.setProperty("docet.search.index.directory.package.big", "mmap");
+        final DocetConfiguration conf = new DocetConfiguration(props);
+        assertEquals(DocetSearchIndexDirectoryType.MMAP, conf.getSearchIndexDirectoryTypeForPackage("big"));
+        assertEquals(DocetSearchIndexDirectoryType.AUTO, conf.getSearchIndexDirectoryTypeForPackage("small"));
+        // warm-up is opt-in
+        assertFalse(conf.isSearchIndexWarmUp());
+    }
+
+    @Test
+    public void testWarmedUpIndexOnHeapNeedsNoFiles() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("p1", "P1", "alpha"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            DocetSearchFuzzyStrategy.FALLBACK, 1, DocetSearchIndexDirectoryType.RAM, 0, true);
+        try {
+            searcher.open("en");
+            try (Stream<Path> files = Files.list(index)) {
+                for (final Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            assertEquals(1, searcher.searchForMatchingDocuments("alpha", "en", 10).size());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testSearchLimits() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en",
+            page("p1", "P1", "a long text about many other things that finally mentions alpha"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            DocetSearchFuzzyStrategy.FALLBACK, 1, DocetSearchIndexDirectoryType.FS, 0, false,
+            new DocetSearchLimits(0, 12, 1, 10));
+        try {
+            // terms beyond the limits are dropped
+            assertEquals(1, searcher.searchForMatchingDocuments("alpha zzzz", "en", 10).size());
+            assertTrue(searcher.searchForMatchingDocuments("zzzz alpha", "en", 10).isEmpty());
+            assertTrue(searcher.searchForMatchingDocuments("zzzzzzzzzzzz alpha", "en", 10).isEmpty());
+            // the match is beyond the highlighted characters
+            assertFalse(searcher.searchForMatchingDocuments("alpha", "en", 10).get(0).getMatchExplanation()
+                .contains("alpha"));
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testPagesLoadedOutOfTimeBudgetHaveNoExcerpt() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("p1", "P1", "alpha"), page("p2", "P2", "alpha alpha"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            DocetSearchFuzzyStrategy.FALLBACK, 1, DocetSearchIndexDirectoryType.FS, 0, false,
+            new DocetSearchLimits(1, 0, 0, Integer.MAX_VALUE));
+        try (DocetSearchHits hits = searcher.searchForMatchingHits("alpha", "en", 10, new DocetSearchStatistics())) {
+            assertEquals(2, hits.size());
+            Thread.sleep(20);
+            final List<DocetPage> pages = searcher.loadMatchingDocuments(hits, hits.size(), hits.getMaxScore());
+            assertEquals(2, pages.size());
+            assertTrue(pages.stream().allMatch(p -> p.getMatchExplanation().isEmpty()));
+            assertTrue(hits.isPartial());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testEachLanguageSearchesItsOwnPartition() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index.resolve("en"), "en", page("en1", "Install", "install the server"));
+        SearchIndexFixture.writeIndex(index.resolve("it"), "it", page("it1", "Installa", "installa il server"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor());
+        try {
+            final List<DocetPage> en = searcher.searchForMatchingDocuments("server", "en", 10);
+            assertEquals(1, en.size());
+            assertEquals("en1", en.get(0).getId());
+            final List<DocetPage> it = searcher.searchForMatchingDocuments("server", "it", 10);
+            assertEquals(1, it.size());
+            assertEquals("it1", it.get(0).getId());
+
+            // once opened, a partition is looked up by language without going to the disk anymore
+            final IndexReader reader = searcher.getReaderForLang("en");
+            deleteRecursively(index.resolve("en"));
+            assertSame(reader, searcher.getReaderForLang("en"));
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testLegacyIndexSharedByAllLanguages() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index, "en", page("en1", "Install", "install the server"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor());
+        assertEquals(1, searcher.searchForMatchingDocuments("server", "en", 10).size());
+        assertTrue(searcher.searchForMatchingDocuments("server", "it", 10).isEmpty());
+        final IndexReader reader = searcher.getReaderForLang("en");
+        assertSame(reader, searcher.getReaderForLang("it"));
+        assertSame(reader, searcher.getReaderForLang("fr"));
+
+        // opened once, closed once
+        assertEquals(1, reader.getRefCount());
+        searcher.close();
+        assertEquals(0, reader.getRefCount());
+    }
+
+    @Test
+    public void testUnsupportedLanguagesAreRefused() throws Exception {
+        final Path index = folder.newFolder("index").toPath();
+        SearchIndexFixture.writeIndex(index.resolve("en"), "en", page("en1", "Install", "install the server"));
+        final Path outside = folder.newFolder("outside").toPath();
+        SearchIndexFixture.writeIndex(outside, "en", page("secret", "Secret", "the server password"));
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor());
+        try {
+            for (final String lang : new String[]{"../outside", "en/../../outside", "xx", ""}) {
+                try {
+                    searcher.searchForMatchingDocuments("server", lang, 10);
+                    fail(lang);
+                } catch (DocetDocumentSearchException ex) {
+                }
+                try {
+                    searcher.suggestForPrefix("ser", lang, 10);
+                    fail(lang);
+                } catch (DocetDocumentSearchException ex) {
+                }
+            }
+            assertEquals(1, searcher.searchForMatchingDocuments("server", "en", 10).size());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    private static void deleteRecursively(final Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static List<DocetPage> search(final Path index, final DocetSearchFuzzyStrategy strategy, final int minHits,
+        final String searchText, final DocetSearchStatistics statistics) throws Exception {
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            strategy, minHits);
+        try {
+            return searcher.searchForMatchingDocuments(searchText, "en", 10, statistics);
+        } finally {
+            searcher.close();
+        }
+    }
+
+    private static Class<? extends Directory> openDirectoryType(final Path index,
+        final DocetSearchIndexDirectoryType type, final long ramDirectoryMaxSize) throws Exception {
+        final SimpleDocetDocSearcher searcher = new SimpleDocetDocSearcher(index, new DocetPackageDescriptor(),
+            DocetSearchFuzzyStrategy.FALLBACK, 1, type, ramDirectoryMaxSize, false);
+        try {
+            return ((DirectoryReader) searcher.getReaderForLang("en")).directory().getClass();
+        } finally {
+            searcher.close();
+        }
+    }
+
+    private static Set<String> ids(final List<DocetPage> pages) {
+        return pages.stream().map(DocetPage::getId).collect(Collectors.toSet());
+    }
+}
@@ -73,6 +73,9 @@ public class DocetMojo extends AbstractMojo {
     @Parameter(property = "compactindex", defaultValue = "true")
     private boolean compactindex;
 
+    @Parameter(property = "clientsearchindex", defaultValue = "false")
+    private boolean clientsearchindex;
+
     @Parameter(property = "zipfilename", defaultValue = "documentation.zip")
     private String zipfilename;
 
@@ -183,7 +186,7 @@ public class DocetMojo extends AbstractMojo {
                 } catch (IOException e) {
                     throw new MojoFailureException("Error while generating index directory", e);
                 }
-                DocetPluginUtils.indexDocs(indexDirPath, srcDir, faqs, getLog(), compactindex);
+                DocetPluginUtils.indexDocs(indexDirPath, srcDir, faqs, getLog(), compactindex, clientsearchindex);
             }
             if (!this.zip) {
                 getLog().info("--- Zipping DOCet disabled: SKIPPING");
@@ -16,21 +16,28 @@ import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.fr.FrenchAnalyzer;
 import org.apache.lucene.analysis.it.ItalianAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -40,12 +47,26 @@ import org.apache.lucene.document.IntField;
 import org.apache.lucene.document.LongField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.tika.exception.TikaException;
@@ -99,6 +120,29 @@ public final class DocetPluginUtils {
     private static final int INDEX_DOCTYPE_PAGE = 1;
     private static final int INDEX_DOCTYPE_FAQ = 2;
 
+    private static final String SUGGEST_FILE_PREFIX = "suggest-";
+    private static final String SUGGEST_FILE_EXTENSION = ".dat";
+    private static final String SUGGEST_PAYLOAD_SEPARATOR = ":";
+    private static final long SUGGEST_WEIGHT_TITLE = 100;
+    private static final long SUGGEST_WEIGHT_HEADING = 10;
+
+    private static final String COMPACT_INDEX_FILE_PREFIX = "compact-";
+    private static final String COMPACT_INDEX_FILE_EXTENSION = ".dat";
+    private static final int COMPACT_INDEX_MAGIC = 0x44435831;
+    private static final int COMPACT_INDEX_VERSION = 1;
+    // languages holding more pages are always searched through Lucene at runtime, must match the default of
+    // docet.search.index.compact.maxdocs
+    private static final int COMPACT_INDEX_MAX_DOCS = 50;
+
+    private static final String CLIENT_INDEX_FILE_PREFIX = "client-";
+    private static final String CLIENT_INDEX_FILE_EXTENSION = ".json";
+    private static final String CLIENT_INDEX_GZIP_EXTENSION = ".gz";
+    private static final int CLIENT_INDEX_VERSION = 1;
+    private static final int CLIENT_INDEX_MIN_TERM_LENGTH = 2;
+    // must match the tokenization performed by docet.js
+    private static final Pattern CLIENT_INDEX_TOKEN_SEPARATORS
+        = Pattern.compile("[\\s\\u00a0!\"#$%&'()*+,\\-./:;<=>?@\\[\\\\\\]^_`{|}~]+");
+
     private static final String DEFAULT_TIKA_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><external-parsers></external-parsers>\n";
 
     public enum Language {
@@ -1117,7 +1161,7 @@ public final class DocetPluginUtils {
                         if (log.isDebugEnabled()) {
                             log.debug("Visiting index file " + file.getFileName() + "; path " + outDir.normalize().relativize(file.normalize()));
                         }
-                        writeFileToArchive(zos, indexDir.getParent().relativize(indexDir), file);
+                        writeArchiveEntry(zos, indexDir.getParent().relativize(indexDir).resolve(indexDir.relativize(file)), file);
                         scannedDocs.setValue(scannedDocs.getValue() + 1);
                         return FileVisitResult.CONTINUE;
                     }
@@ -1173,8 +1217,12 @@ public final class DocetPluginUtils {
     }
 
     private static void writeFileToArchive(final ZipOutputStream zos, final Path baseSrcPath, final Path filePath) throws IOException {
+        writeArchiveEntry(zos, baseSrcPath.resolve(extractLanguageRelativePath(filePath)), filePath);
+    }
+
+    private static void writeArchiveEntry(final ZipOutputStream zos, final Path entryPath, final Path filePath) throws IOException {
         final byte[] buffer = new byte[1024];
-        final String zipPath = baseSrcPath.resolve(extractLanguageRelativePath(filePath)).toString();
+        final String zipPath = entryPath.toString();
         final ZipEntry ze = new ZipEntry(zipPath);
         zos.putNextEntry(ze);
         try (InputStream in = Files.newInputStream(filePath);) {
@@ -1226,11 +1274,17 @@ public final class DocetPluginUtils {
     public static void indexDocs(final Path outDir, final Path srcDir, final Map<Language, List<FaqEntry>> faqs,
                                  final Log log, final boolean compact)
             throws MojoFailureException {
+        indexDocs(outDir, srcDir, faqs, log, compact, false);
+    }
+
+    public static void indexDocs(final Path outDir, final Path srcDir, final Map<Language, List<FaqEntry>> faqs,
+                                 final Log log, final boolean compact, final boolean clientIndex)
+            throws MojoFailureException {
         for (Language lang : Language.values()) {
             Path langPath = srcDir.resolve(lang.toString());
             langPath = langPath.resolve(CONFIG_NAMES_FOLDER_PAGES);
             if (Files.isDirectory(langPath)) {
-                indexDocsForLanguage(outDir, langPath, lang, faqs.get(lang), log, compact);
+                indexDocsForLanguage(outDir, langPath, lang, faqs.get(lang), log, compact, clientIndex);
             } else {
                 log.warn("[" + lang + "] No folder found for language");
             }
@@ -1240,8 +1294,17 @@ public final class DocetPluginUtils {
     public static int indexDocsForLanguage(final Path outDir, final Path path, final Language lang,
                                            final List<FaqEntry> faqs, final Log log, final boolean compact)
             throws MojoFailureException {
+        return indexDocsForLanguage(outDir, path, lang, faqs, log, compact, false);
+    }
+
+    public static int indexDocsForLanguage(final Path outDir, final Path path, final Language lang,
+                                           final List<FaqEntry> faqs, final Log log, final boolean compact,
+                                           final boolean clientIndex)
+            throws MojoFailureException {
         final Holder<Integer> indexedDocs = new Holder<>(0);
-        try (Directory dir = FSDirectory.open(outDir);) {
+        final Map<String, SuggestEntry> suggestions = new LinkedHashMap<>();
+        //each language gets its own index partition, so that at runtime only the requested language is opened
+        try (Directory dir = FSDirectory.open(outDir.resolve(lang.toString()));) {
             //build the analyzer specific for the given language
             //Stadard analyzer if language is not supported
             Analyzer analyzer = new AnalyzerBuilder().language(lang).build();
@@ -1272,7 +1335,7 @@ public final class DocetPluginUtils {
                         }
                         log.debug("Visiting " + file);
                         try {
-                            indexDoc(writer, file, attrs.lastModifiedTime().toMillis(), lang.toString(), log);
+                            indexDoc(writer, file, attrs.lastModifiedTime().toMillis(), lang.toString(), suggestions, log);
                             indexedDocs.setValue(indexedDocs.getValue() + 1);
                         } catch (Exception ex) {
                             log.warn("[" + lang + "] File " + file + " cannot be read.", ex);
@@ -1284,7 +1347,8 @@ public final class DocetPluginUtils {
                 Optional.ofNullable(faqs).orElseGet(() -> new ArrayList<>()).stream().forEach(faqPage -> {
                     try {
                         final Path faqFile = faqPage.getFaqPath();
-                        indexFaqPage(writer, faqFile, faqPage.getTitle(), faqFile.toFile().lastModified(), lang.toString(), log);
+                        indexFaqPage(writer, faqFile, faqPage.getTitle(), faqFile.toFile().lastModified(), lang.toString(),
+                            suggestions, log);
                         indexedDocs.setValue(indexedDocs.getValue() + 1);
                     } catch (Exception ex) {
                         log.warn("[" + lang + "] FAQ File " + faqPage.getFaqPath() + " cannot be read.", ex);
@@ -1301,6 +1365,9 @@ public final class DocetPluginUtils {
             } catch (IOException e) {
                 throw new MojoFailureException("Impossible to index Docet docs.", e);
             }
+            buildSuggesterForLanguage(outDir, lang, suggestions.values(), log);
+            buildCompactIndexForLanguage(outDir, lang, dir, log);
+            buildClientIndexForLanguage(outDir, lang, dir, clientIndex, log);
         } catch (IOException e) {
             throw new MojoFailureException("Impossible to index Docet docs.", e);
         }
@@ -1353,7 +1420,8 @@ public final class DocetPluginUtils {
      * @throws IOException
      *
      */
-    private static void indexDoc(final IndexWriter writer, final Path file, final long lastModified, final String lang, final Log log)
+    private static void indexDoc(final IndexWriter writer, final Path file, final long lastModified, final String lang,
+                                 final Map<String, SuggestEntry> suggestions, final Log log)
             throws IOException, SAXException, TikaException {
         String docTitle = "";
         String excerpt = "...";
@@ -1383,6 +1451,12 @@ public final class DocetPluginUtils {
         }
 
         indexGenericDoc(writer, file, lastModified, lang, docTitle, excerpt, INDEX_DOCTYPE_PAGE, log);
+
+        final String pageId = constructPageIdFromFilePath(file);
+        addSuggestion(suggestions, docTitle, SUGGEST_WEIGHT_TITLE, INDEX_DOCTYPE_PAGE, pageId);
+        htmlDoc.select("h2, h3").forEach(heading -> {
+            addSuggestion(suggestions, heading.text(), SUGGEST_WEIGHT_HEADING, INDEX_DOCTYPE_PAGE, pageId);
+        });
     }
 
     /**
@@ -1394,7 +1468,8 @@ public final class DocetPluginUtils {
      *
      */
     private static void indexFaqPage(final IndexWriter writer, final Path file, final String faqTitle, final long lastModified, final String lang,
-                                     final Log log) throws IOException, SAXException, TikaException {
+                                     final Map<String, SuggestEntry> suggestions, final Log log)
+            throws IOException, SAXException, TikaException {
         String excerpt = "";
         final StringBuilder excerptBuilder = new StringBuilder();
         final org.jsoup.nodes.Document htmlDoc = Jsoup.parseBodyFragment(readAll(file, ENCODING_UTF8));
@@ -1425,6 +1500,263 @@ public final class DocetPluginUtils {
         }
         indexGenericDoc(writer, file, lastModified, lang, "FAQ - " + faqTitle, excerpt, INDEX_DOCTYPE_FAQ, log);
 
+        final String faqId = constructPageIdFromFilePath(file);
+        addSuggestion(suggestions, faqTitle, SUGGEST_WEIGHT_TITLE, INDEX_DOCTYPE_FAQ, faqId);
+        htmlDoc.select("div.faq-item .question").forEach(question -> {
+            addSuggestion(suggestions, question.text(), SUGGEST_WEIGHT_HEADING, INDEX_DOCTYPE_FAQ, faqId);
+        });
+
+    }
+
+    private static void addSuggestion(final Map<String, SuggestEntry> suggestions, final String text, final long weight,
+                                      final int docType, final String pageId) {
+        final String surface = text == null ? "" : text.trim();
+        if (surface.isEmpty()) {
+            return;
+        }
+        final String payload = docType + SUGGEST_PAYLOAD_SEPARATOR + pageId;
+        final String key = surface + SUGGEST_PAYLOAD_SEPARATOR + payload;
+        final SuggestEntry existing = suggestions.get(key);
+        if (existing == null || existing.weight < weight) {
+            suggestions.put(key, new SuggestEntry(surface, weight, payload));
+        }
+    }
+
+    /**
+     * Builds the prefix suggester for the given language out of page titles and headings and stores it next to the
+     * search index, so that Docet can answer search-as-you-type requests without querying the full-text index.
+     * <p>
+     * The analyzer adopted here must match the one used at runtime to look suggestions up.
+     */
+    private static void buildSuggesterForLanguage(final Path outDir, final Language lang,
+                                                  final Collection<SuggestEntry> suggestions, final Log log)
+            throws MojoFailureException {
+        final Path suggestFile = outDir.resolve(SUGGEST_FILE_PREFIX + lang + SUGGEST_FILE_EXTENSION);
+        try {
+            Files.deleteIfExists(suggestFile);
+            if (suggestions.isEmpty()) {
+                log.warn("[" + lang + "] \t -> No suggestions found for language");
+                return;
+            }
+            final Analyzer analyzer = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+            final AnalyzingSuggester suggester = new AnalyzingSuggester(analyzer);
+            suggester.build(new SuggestEntryIterator(suggestions.iterator()));
+            try (OutputStream out = Files.newOutputStream(suggestFile)) {
+                suggester.store(out);
+            }
+            log.info("[" + lang + "] Built suggester with " + suggester.getCount() + " entries");
+        } catch (IOException e) {
+            throw new MojoFailureException("Impossible to build suggester for Docet docs.", e);
+        }
+    }
+
+    /**
+     * Dumps the search index of the given language into a compact file stored next to it, which tiny packages are
+     * searched through at runtime, entirely on heap.
+     * <p>
+     * The layout written here must match the one read at runtime by Docet.
+     */
+    private static void buildCompactIndexForLanguage(final Path outDir, final Language lang, final Directory dir,
+                                                     final Log log)
+            throws MojoFailureException {
+        final Path compactFile = outDir.resolve(COMPACT_INDEX_FILE_PREFIX + lang + COMPACT_INDEX_FILE_EXTENSION);
+        final String field = "contents-" + lang;
+        try (IndexReader reader = DirectoryReader.open(dir)) {
+            Files.deleteIfExists(compactFile);
+            if (reader.numDocs() > COMPACT_INDEX_MAX_DOCS) {
+                log.info("[" + lang + "] Too many docs for a compact search index");
+                return;
+            }
+            final Bits liveDocs = MultiFields.getLiveDocs(reader);
+            final int[] docMap = new int[reader.maxDoc()];
+            int numDocs = 0;
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                docMap[doc] = liveDocs == null || liveDocs.get(doc) ? numDocs++ : -1;
+            }
+            final Terms terms = MultiFields.getTerms(reader, field);
+            final List<BytesRef> termList = new ArrayList<>();
+            if (terms != null) {
+                final TermsEnum termsEnum = terms.iterator();
+                for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                    termList.add(BytesRef.deepCopyOf(term));
+                }
+            }
+            final NumericDocValues norms = MultiDocValues.getNormValues(reader, field);
+            try (OutputStream out = Files.newOutputStream(compactFile)) {
+                final OutputStreamDataOutput output = new OutputStreamDataOutput(out);
+                output.writeInt(COMPACT_INDEX_MAGIC);
+                output.writeVInt(COMPACT_INDEX_VERSION);
+                output.writeVInt(reader.maxDoc());
+                output.writeVInt(numDocs);
+                output.writeVInt(termList.size());
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (docMap[doc] < 0) {
+                        continue;
+                    }
+                    final Document stored = reader.document(doc);
+                    output.writeString(stored.get("id"));
+                    output.writeString(stored.get("language"));
+                    output.writeString(stored.get("title"));
+                    output.writeString(stored.get("abstract"));
+                    output.writeVInt(stored.getField("doctype").numericValue().intValue());
+                    output.writeString(Optional.ofNullable(stored.get(field)).orElse(""));
+                    output.writeByte(norms == null ? 0 : (byte) norms.get(doc));
+                }
+                final TermsEnum termsEnum = terms == null ? null : terms.iterator();
+                for (final BytesRef term : termList) {
+                    termsEnum.seekExact(term);
+                    output.writeString(term.utf8ToString());
+                    output.writeVInt(termsEnum.docFreq());
+                    final List<int[]> postings = new ArrayList<>();
+                    final PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.POSITIONS);
+                    for (int doc = postingsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS;
+                         doc = postingsEnum.nextDoc()) {
+                        if (docMap[doc] < 0) {
+                            continue;
+                        }
+                        final int[] posting = new int[postingsEnum.freq() + 1];
+                        posting[0] = docMap[doc];
+                        for (int i = 1; i < posting.length; i++) {
+                            posting[i] = postingsEnum.nextPosition();
+                        }
+                        postings.add(posting);
+                    }
+                    output.writeVInt(postings.size());
+                    int lastDoc = 0;
+                    for (final int[] posting : postings) {
+                        output.writeVInt(posting[0] - lastDoc);
+                        lastDoc = posting[0];
+                        output.writeVInt(posting.length - 1);
+                        int lastPosition = 0;
+                        for (int i = 1; i < posting.length; i++) {
+                            output.writeVInt(posting[i] - lastPosition);
+                            lastPosition = posting[i];
+                        }
+                    }
+                }
+            }
+            log.info("[" + lang + "] Built compact search index with " + numDocs + " docs");
+        } catch (IOException e) {
+            throw new MojoFailureException("Impossible to build compact search index for Docet docs.", e);
+        }
+    }
+
+    /**
+     * Exports the search index of the given language for docet.js to search pages right in the browser: the index is
+     * a JSON document listing the pages (id, title, abstract and doctype) and a prefix-compressed dictionary of the
+     * terms found in their contents, each one followed by its postings as pairs of doc id delta and term frequency.
+     * A gzipped copy is stored too, so that Docet can serve it as is.
+     * <p>
+     * Terms are lower-cased and split on whitespaces and punctuation, exactly as docet.js does on search queries.
+     */
+    private static void buildClientIndexForLanguage(final Path outDir, final Language lang, final Directory dir,
+                                                    final boolean enabled, final Log log)
+            throws MojoFailureException {
+        final Path clientFile = outDir.resolve(CLIENT_INDEX_FILE_PREFIX + lang + CLIENT_INDEX_FILE_EXTENSION);
+        final Path gzipClientFile = outDir.resolve(clientFile.getFileName() + CLIENT_INDEX_GZIP_EXTENSION);
+        final String field = "contents-" + lang;
+        try {
+            Files.deleteIfExists(clientFile);
+            Files.deleteIfExists(gzipClientFile);
+            if (!enabled) {
+                return;
+            }
+            final StringBuilder json = new StringBuilder();
+            final Map<String, List<int[]>> postings = new TreeMap<>();
+            json.append("{\"version\":").append(CLIENT_INDEX_VERSION).append(",\"lang\":");
+            appendJsonString(json, lang.toString());
+            json.append(",\"docs\":[");
+            int numDocs = 0;
+            try (IndexReader reader = DirectoryReader.open(dir)) {
+                final Bits liveDocs = MultiFields.getLiveDocs(reader);
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    final Document stored = reader.document(doc);
+                    final Map<String, Integer> freqs = new HashMap<>();
+                    int length = 0;
+                    final String contents = Optional.ofNullable(stored.get(field)).orElse("").toLowerCase(Locale.ROOT);
+                    for (final String token : CLIENT_INDEX_TOKEN_SEPARATORS.split(contents)) {
+                        if (token.length() >= CLIENT_INDEX_MIN_TERM_LENGTH) {
+                            freqs.merge(token, 1, Integer::sum);
+                            length++;
+                        }
+                    }
+                    for (final Map.Entry<String, Integer> freq : freqs.entrySet()) {
+                        postings.computeIfAbsent(freq.getKey(), t -> new ArrayList<>())
+                            .add(new int[]{numDocs, freq.getValue()});
+                    }
+                    if (numDocs > 0) {
+                        json.append(',');
+                    }
+                    json.append("{\"id\":");
+                    appendJsonString(json, stored.get("id"));
+                    json.append(",\"title\":");
+                    appendJsonString(json, stored.get("title"));
+                    json.append(",\"summary\":");
+                    appendJsonString(json, stored.get("abstract"));
+                    json.append(",\"type\":").append(stored.getField("doctype").numericValue().intValue());
+                    json.append(",\"length\":").append(length).append('}');
+                    numDocs++;
+                }
+            }
+            json.append("],\"terms\":[");
+            String previous = "";
+            boolean first = true;
+            for (final Map.Entry<String, List<int[]>> entry : postings.entrySet()) {
+                final String term = entry.getKey();
+                int shared = 0;
+                while (shared < Math.min(term.length(), previous.length())
+                    && term.charAt(shared) == previous.charAt(shared)) {
+                    shared++;
+                }
+                json.append(first ? "[" : ",[").append(shared).append(',');
+                appendJsonString(json, term.substring(shared));
+                json.append(",[");
+                int lastDoc = 0;
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    final int[] posting = entry.getValue().get(i);
+                    json.append(i == 0 ? "" : ",").append(posting[0] - lastDoc).append(',').append(posting[1]);
+                    lastDoc = posting[0];
+                }
+                json.append("]]");
+                previous = term;
+                first = false;
+            }
+            json.append("]}");
+            final byte[] data = json.toString().getBytes(ENCODING_UTF8);
+            Files.write(clientFile, data);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipClientFile))) {
+                out.write(data);
+            }
+            log.info("[" + lang + "] Exported client search index with " + numDocs + " docs and "
+                + postings.size() + " terms");
+        } catch (IOException e) {
+            throw new MojoFailureException("Impossible to export client search index for Docet docs.", e);
+        }
+    }
+
+    private static void appendJsonString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
     }
 
     private static String getFileSeparatorForString() {
@@ -1480,6 +1812,64 @@ public final class DocetPluginUtils {
 
     }
 
+    private static class SuggestEntry {
+
+        private final String text;
+        private final long weight;
+        private final String payload;
+
+        SuggestEntry(final String text, final long weight, final String payload) {
+            this.text = text;
+            this.weight = weight;
+            this.payload = payload;
+        }
+    }
+
+    private static class SuggestEntryIterator implements InputIterator {
+
+        private final Iterator<SuggestEntry> entries;
+        private SuggestEntry current;
+
+        SuggestEntryIterator(final Iterator<SuggestEntry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public BytesRef next() throws IOException {
+            if (!this.entries.hasNext()) {
+                this.current = null;
+                return null;
+            }
+            this.current = this.entries.next();
+            return new BytesRef(this.current.text);
+        }
+
+        @Override
+        public long weight() {
+            return this.current.weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return new BytesRef(this.current.payload);
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return true;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+
     private static class FileToZipFilter implements FileFilter {
 
         private final String[] toSkipExtensions = new String[]{"css"};